@@ -0,0 +1,293 @@
+package com.blazemeter.jmeter.http2.core;
+
+import com.helger.commons.annotation.VisibleForTesting;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import org.eclipse.jetty.http2.AbstractFlowControlStrategy;
+import org.eclipse.jetty.http2.FlowControlStrategy;
+import org.eclipse.jetty.http2.HTTP2Session;
+import org.eclipse.jetty.http2.api.Session;
+import org.eclipse.jetty.http2.api.Stream;
+import org.eclipse.jetty.http2.frames.Frame;
+import org.eclipse.jetty.http2.frames.PingFrame;
+import org.eclipse.jetty.http2.frames.WindowUpdateFrame;
+import org.eclipse.jetty.util.Callback;
+
+/**
+ * HTTP/2 flow control strategy that gives consumed data back to the server once half of a
+ * receive window is consumed, as Jetty's {@code BufferingFlowControlStrategy} does, and that may
+ * grow the receive windows of its connection with the measured bandwidth-delay product.
+ *
+ * <p>On links with high bandwidth and latency, downloads are throttled whenever the data in
+ * flight reaches the receive window, since the server has to wait a WINDOW_UPDATE round trip
+ * before sending more. With {@link Mode#AUTO}, the strategy sends a PING while data is flowing and
+ * counts the bytes received until its acknowledgement, which measures the bandwidth-delay product
+ * of the connection. When it gets close to a window and the throughput is not decreasing, the
+ * window is grown to twice the measured product, up to {@code maxWindow}.</p>
+ *
+ * <p>Each instance serves a single connection, and counts the times its receive window got
+ * exhausted, the times sending stalled on the server windows and the times windows were grown.</p>
+ */
+final class AdaptiveFlowControlStrategy extends AbstractFlowControlStrategy {
+
+  enum Mode {
+    /**
+     * Keeps the initial windows for the whole connection.
+     */
+    STATIC,
+    AUTO;
+
+    static Mode parse(String value) {
+      return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+  }
+
+  private static final float BUFFER_RATIO = 0.5F;
+  private static final long MIN_PING_INTERVAL_NANOS = TimeUnit.MILLISECONDS.toNanos(50);
+
+  private final int maxWindow;
+  private final Map<Stream, StreamWindow> streamWindows = new ConcurrentHashMap<>();
+  private final LongAdder recvWindowExhausted = new LongAdder();
+  private final LongAdder sendStalls = new LongAdder();
+  private final LongAdder windowGrowths = new LongAdder();
+  private int sessionWindow;
+  private int sessionLevel;
+  private volatile int streamWindow;
+  private long pingPayload;
+  private long pingSentNanos;
+  private boolean pingOutstanding;
+  private long sampleBytes;
+  private double peakBytesPerNano;
+
+  /**
+   * @param maxWindow max size the windows may grow to, no growth when not greater than the
+   *     initial windows.
+   */
+  AdaptiveFlowControlStrategy(int initialSessionRecvWindow, int initialStreamRecvWindow,
+                              int maxWindow) {
+    // The stream recv window is set when the session sends its SETTINGS
+    super(FlowControlStrategy.DEFAULT_WINDOW_SIZE);
+    this.sessionWindow = initialSessionRecvWindow;
+    this.streamWindow = initialStreamRecvWindow;
+    this.maxWindow = maxWindow;
+    this.pingSentNanos = System.nanoTime() - MIN_PING_INTERVAL_NANOS;
+  }
+
+  static FlowControlStrategy.Factory factory(Mode mode, int initialSessionRecvWindow,
+                                             int initialStreamRecvWindow, int maxWindow) {
+    int effectiveMaxWindow = mode == Mode.AUTO ? maxWindow : 0;
+    return () -> new AdaptiveFlowControlStrategy(initialSessionRecvWindow,
+        initialStreamRecvWindow, effectiveMaxWindow);
+  }
+
+  /**
+   * @return listener handing the acknowledgements of the PINGs sent to measure the
+   *     bandwidth-delay product to the strategy of their connection.
+   */
+  static HTTP2Session.FrameListener pingListener() {
+    return new HTTP2Session.FrameListener() {
+      @Override
+      public void onIncomingFrame(Session session, Frame frame) {
+        if (frame instanceof PingFrame && ((PingFrame) frame).isReply()
+            && session instanceof HTTP2Session
+            && ((HTTP2Session) session).getFlowControlStrategy()
+            instanceof AdaptiveFlowControlStrategy) {
+          ((AdaptiveFlowControlStrategy) ((HTTP2Session) session).getFlowControlStrategy())
+              .onPingAck(session, (PingFrame) frame, System.nanoTime());
+        }
+      }
+    };
+  }
+
+  @Override
+  public void onStreamCreated(Stream stream) {
+    super.onStreamCreated(stream);
+    streamWindows.put(stream, new StreamWindow(getInitialStreamRecvWindow()));
+  }
+
+  @Override
+  public void onStreamDestroyed(Stream stream) {
+    streamWindows.remove(stream);
+    super.onStreamDestroyed(stream);
+  }
+
+  @Override
+  public void onDataReceived(Session session, Stream stream, int length) {
+    super.onDataReceived(session, stream, length);
+    if (session instanceof HTTP2Session && ((HTTP2Session) session).getRecvWindow() <= 0) {
+      recvWindowExhausted.increment();
+    }
+    if (isAutoTuning()) {
+      samplePing(session, length, System.nanoTime());
+    }
+  }
+
+  @Override
+  public void onDataConsumed(Session session, Stream stream, int length) {
+    if (length <= 0) {
+      return;
+    }
+    List<WindowUpdateFrame> frames = new ArrayList<>(2);
+    int sessionDelta = 0;
+    synchronized (this) {
+      sessionLevel += length;
+      if (sessionLevel >= sessionWindow * BUFFER_RATIO) {
+        sessionDelta = sessionLevel;
+        sessionLevel = 0;
+      }
+    }
+    if (sessionDelta > 0) {
+      updateRecvWindow(session, sessionDelta);
+      frames.add(new WindowUpdateFrame(0, sessionDelta));
+    }
+    StreamWindow window = stream == null ? null : streamWindows.get(stream);
+    if (window != null && !stream.isRemotelyClosed()) {
+      int streamDelta = window.consume(length, streamWindow);
+      if (streamDelta > 0) {
+        updateRecvWindow(stream, streamDelta);
+        frames.add(new WindowUpdateFrame(stream.getId(), streamDelta));
+      }
+    }
+    if (!frames.isEmpty()) {
+      sendWindowUpdate(session, stream, frames);
+    }
+  }
+
+  @Override
+  public void windowUpdate(Session session, Stream stream, WindowUpdateFrame frame) {
+    super.windowUpdate(session, stream, frame);
+    // Session window enlarged by the session itself, as when the connection is established
+    if (frame.getStreamId() == 0 && session instanceof HTTP2Session) {
+      int recvWindow = ((HTTP2Session) session).getRecvWindow();
+      synchronized (this) {
+        sessionWindow = Math.max(sessionWindow, recvWindow);
+      }
+    }
+  }
+
+  @Override
+  protected void onSessionStalled(Session session) {
+    super.onSessionStalled(session);
+    sendStalls.increment();
+  }
+
+  @Override
+  protected void onStreamStalled(Stream stream) {
+    super.onStreamStalled(stream);
+    sendStalls.increment();
+  }
+
+  private void samplePing(Session session, int length, long now) {
+    PingFrame ping = null;
+    synchronized (this) {
+      sampleBytes += length;
+      if (!pingOutstanding && (streamWindow < maxWindow || sessionWindow < maxWindow)
+          && now - pingSentNanos >= MIN_PING_INTERVAL_NANOS) {
+        pingOutstanding = true;
+        pingPayload = ThreadLocalRandom.current().nextLong();
+        pingSentNanos = now;
+        sampleBytes = length;
+        ping = new PingFrame(pingPayload, false);
+      }
+    }
+    if (ping != null) {
+      session.ping(ping, Callback.NOOP);
+    }
+  }
+
+  void onPingAck(Session session, PingFrame frame, long now) {
+    int sessionGrowth;
+    synchronized (this) {
+      if (!pingOutstanding || frame.getPayloadAsLong() != pingPayload) {
+        return;
+      }
+      pingOutstanding = false;
+      long rttNanos = Math.max(1, now - pingSentNanos);
+      long bdp = sampleBytes;
+      double bytesPerNano = (double) bdp / rttNanos;
+      if (bytesPerNano < peakBytesPerNano) {
+        return;
+      }
+      peakBytesPerNano = bytesPerNano;
+      int target = (int) Math.min(maxWindow, 2 * bdp);
+      int newStreamWindow = bdp * 3 >= streamWindow * 2L
+          ? Math.max(streamWindow, target)
+          : streamWindow;
+      int newSessionWindow = bdp * 3 >= sessionWindow * 2L
+          ? Math.max(sessionWindow, target)
+          : sessionWindow;
+      newSessionWindow = Math.max(newSessionWindow, newStreamWindow);
+      if (newStreamWindow == streamWindow && newSessionWindow == sessionWindow) {
+        return;
+      }
+      windowGrowths.increment();
+      streamWindow = newStreamWindow;
+      sessionGrowth = newSessionWindow - sessionWindow;
+      sessionWindow = newSessionWindow;
+    }
+    if (sessionGrowth > 0) {
+      updateRecvWindow(session, sessionGrowth);
+      sendWindowUpdate(session, null, List.of(new WindowUpdateFrame(0, sessionGrowth)));
+    }
+  }
+
+  private boolean isAutoTuning() {
+    return maxWindow > 0;
+  }
+
+  long getRecvWindowExhausted() {
+    return recvWindowExhausted.sum();
+  }
+
+  long getSendStalls() {
+    return sendStalls.sum();
+  }
+
+  long getWindowGrowths() {
+    return windowGrowths.sum();
+  }
+
+  @VisibleForTesting
+  synchronized int getSessionWindow() {
+    return sessionWindow;
+  }
+
+  int getStreamWindow() {
+    return streamWindow;
+  }
+
+  /**
+   * Receive window of a stream: the data consumed and not yet given back to the server, and the
+   * window size the server was granted so far.
+   */
+  private static final class StreamWindow {
+
+    private int level;
+    private int size;
+
+    private StreamWindow(int size) {
+      this.size = size;
+    }
+
+    /**
+     * @return the window delta to send to the server, growing the window up to
+     *     {@code targetSize}, or 0 when less than half of the window is consumed.
+     */
+    private synchronized int consume(int length, int targetSize) {
+      level += length;
+      if (level < size * BUFFER_RATIO) {
+        return 0;
+      }
+      int delta = level + Math.max(0, targetSize - size);
+      size = Math.max(size, targetSize);
+      level = 0;
+      return delta;
+    }
+  }
+}
@@ -0,0 +1,117 @@
+package com.blazemeter.jmeter.http2.core;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Retry policy with exponential backoff and full jitter, bounded by a retry budget per origin
+ * shared by all virtual users.
+ *
+ * <p>Requests closed by a GOAWAY are retried up to {@code maxGoawayRetries} times, and requests
+ * failing with any other retryable condition up to {@code maxRetries} times, so those retries
+ * are only made when explicitly enabled.</p>
+ *
+ * <p>Retries improve availability when a few requests hit a closing connection or a busy server,
+ * but retrying every failure of an overloaded origin multiplies its load. So besides the retries
+ * allowed per request, an origin only gets {@code budgetPercent} retries for every 100 requests
+ * sent to it in the last {@code budgetWindowMs}, plus {@code budgetMinRetries} so origins with
+ * little traffic can still be retried.</p>
+ *
+ * <p>Each retry waits a random time between 0 and {@code backoffMs * 2^(attempt - 1)}, capped to
+ * {@code maxBackoffMs}, so retries from many virtual users don't hit the origin at once. A
+ * {@code Retry-After} asked by the server is honored, with some jitter, unless it is longer than
+ * {@code maxBackoffMs}, in which case the request is not retried.</p>
+ */
+public class BudgetedRetryPolicy implements RetryPolicy {
+
+  private static final Map<String, Budget> BUDGETS = new ConcurrentHashMap<>();
+  private static final LongAdder RETRIES = new LongAdder();
+  private static final LongAdder RETRIES_OVER_BUDGET = new LongAdder();
+
+  private final int maxGoawayRetries;
+  private final int maxRetries;
+  private final long backoffMs;
+  private final long maxBackoffMs;
+  private final int budgetPercent;
+  private final int budgetMinRetries;
+  private final long budgetWindowMs;
+
+  public BudgetedRetryPolicy(int maxGoawayRetries, int maxRetries, long backoffMs,
+                             long maxBackoffMs, int budgetPercent, int budgetMinRetries,
+                             long budgetWindowMs) {
+    this.maxGoawayRetries = maxGoawayRetries;
+    this.maxRetries = maxRetries;
+    this.backoffMs = backoffMs;
+    this.maxBackoffMs = maxBackoffMs;
+    this.budgetPercent = budgetPercent;
+    this.budgetMinRetries = budgetMinRetries;
+    this.budgetWindowMs = budgetWindowMs;
+  }
+
+  @Override
+  public void onRequest(String origin) {
+    Budget budget = BUDGETS.computeIfAbsent(origin, o -> new Budget());
+    synchronized (budget) {
+      budget.roll(System.currentTimeMillis(), budgetWindowMs);
+      budget.requests++;
+    }
+  }
+
+  @Override
+  public long retryDelayMillis(String origin, Condition condition, int attempt,
+                               long retryAfterMillis) {
+    int max = condition == Condition.GOAWAY ? maxGoawayRetries : maxRetries;
+    if (attempt > max || retryAfterMillis > maxBackoffMs) {
+      return -1;
+    }
+    Budget budget = BUDGETS.computeIfAbsent(origin, o -> new Budget());
+    synchronized (budget) {
+      budget.roll(System.currentTimeMillis(), budgetWindowMs);
+      if (budget.retries >= budgetMinRetries + budget.requests * budgetPercent / 100) {
+        RETRIES_OVER_BUDGET.increment();
+        return -1;
+      }
+      budget.retries++;
+    }
+    RETRIES.increment();
+    if (retryAfterMillis >= 0) {
+      return retryAfterMillis + jitter(backoffMs);
+    }
+    return jitter(Math.min(maxBackoffMs, backoffMs << Math.min(attempt - 1, 30)));
+  }
+
+  private static long jitter(long maxMillis) {
+    return maxMillis > 0 ? ThreadLocalRandom.current().nextLong(maxMillis + 1) : 0;
+  }
+
+  public static Map<String, Long> snapshot() {
+    Map<String, Long> values = new LinkedHashMap<>();
+    values.put("retries", RETRIES.sum());
+    values.put("retriesOverBudget", RETRIES_OVER_BUDGET.sum());
+    return values;
+  }
+
+  public static void clear() {
+    BUDGETS.clear();
+    RETRIES.reset();
+    RETRIES_OVER_BUDGET.reset();
+  }
+
+  private static final class Budget {
+
+    private long windowStart;
+    private long requests;
+    private long retries;
+
+    private void roll(long now, long windowMs) {
+      if (now - windowStart > windowMs) {
+        windowStart = now;
+        requests = 0;
+        retries = 0;
+      }
+    }
+  }
+}
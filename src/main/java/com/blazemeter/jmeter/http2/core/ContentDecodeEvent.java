@@ -0,0 +1,47 @@
+package com.blazemeter.jmeter.http2.core;
+
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+
+/**
+ * Java Flight Recorder event emitted when {@link HTTP2JettyClient} decodes a compressed response
+ * body itself instead of relying on the Jetty content decoders.
+ *
+ * <p>Decoding failures are recorded too, with the exception type as outcome, and carry the
+ * protocol and stream of the response so they can be matched with its exchange event.</p>
+ */
+@Name("com.blazemeter.http.ContentDecode")
+@Label("HTTP Content Decode")
+@Category({"BlazeMeter", "HTTP"})
+@Description("Manual decoding of a compressed response body")
+@StackTrace(false)
+public class ContentDecodeEvent extends Event {
+
+  @Label("Origin")
+  String origin;
+
+  @Label("Protocol")
+  String protocol;
+
+  @Label("Stream Id")
+  long streamId = -1;
+
+  @Label("Encoding")
+  String encoding;
+
+  @Label("Encoded Bytes")
+  @DataAmount
+  long encodedBytes;
+
+  @Label("Decoded Bytes")
+  @DataAmount
+  long decodedBytes;
+
+  @Label("Outcome")
+  String outcome;
+}
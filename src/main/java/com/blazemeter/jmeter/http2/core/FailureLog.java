@@ -0,0 +1,261 @@
+package com.blazemeter.jmeter.http2.core;
+
+import com.blazemeter.jmeter.http2.util.BzmHttpPluginProperties;
+import com.helger.commons.annotation.VisibleForTesting;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import org.eclipse.jetty.http2.ErrorCode;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Engine wide aggregation of request failures, so a failing backend doesn't flood the log.
+ *
+ * <p>Instead of logging each failed request, failures are counted by origin, exception class and
+ * HTTP/2 error code, and a summary with a few example messages is logged periodically (and when
+ * the test ends), even if no other request fails. Logging every failure, as previously done, can
+ * be enabled with {@code blazemeter.http.verboseFailureLog}. Both properties are read when the
+ * test starts.</p>
+ */
+public final class FailureLog {
+
+  private static final Logger LOG = LoggerFactory.getLogger(FailureLog.class);
+  private static final long DEFAULT_SUMMARY_INTERVAL_MILLIS = 10000;
+  private static final int MAX_EXEMPLARS = 3;
+  private static final int MAX_SUMMARY_LINES = 20;
+  private static final String[] ERROR_CODES = buildErrorCodes();
+
+  private static final AtomicReference<Map<Key, Aggregate>> FAILURES =
+      new AtomicReference<>(new ConcurrentHashMap<>());
+  private static final AtomicLong LAST_SUMMARY = new AtomicLong(System.currentTimeMillis());
+
+  private static volatile boolean verbose;
+  private static volatile long summaryIntervalMillis = DEFAULT_SUMMARY_INTERVAL_MILLIS;
+  private static ScheduledExecutorService summaryScheduler;
+
+  private FailureLog() {
+  }
+
+  /**
+   * Reads the logging properties and starts logging the pending summary every interval, so
+   * failures are reported even when no other request fails afterwards.
+   */
+  public static synchronized void start() {
+    verbose = BzmHttpPluginProperties.getPropDefault("httpJettyClient.verboseFailureLog", false);
+    summaryIntervalMillis = Long.parseLong(BzmHttpPluginProperties.getPropDefault(
+        "httpJettyClient.failureLogSummaryIntervalMs",
+        String.valueOf(DEFAULT_SUMMARY_INTERVAL_MILLIS)));
+    if (summaryScheduler != null || verbose || summaryIntervalMillis <= 0) {
+      return;
+    }
+    LAST_SUMMARY.set(System.currentTimeMillis());
+    summaryScheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+      Thread thread = new Thread(r, "failure-log-summary");
+      thread.setDaemon(true);
+      return thread;
+    });
+    summaryScheduler.scheduleAtFixedRate(FailureLog::logSummaryIfDue, summaryIntervalMillis,
+        summaryIntervalMillis, TimeUnit.MILLISECONDS);
+  }
+
+  /**
+   * Stops the periodic summaries and logs the pending one.
+   */
+  public static synchronized void stop() {
+    if (summaryScheduler != null) {
+      summaryScheduler.shutdownNow();
+      summaryScheduler = null;
+    }
+    flush();
+  }
+
+  /**
+   * @return true when every failure is logged with all its details.
+   */
+  public static boolean isVerbose() {
+    return verbose;
+  }
+
+  /**
+   * Logs the failure as an error with its stack trace when logging is verbose, or counts it
+   * for the next summary otherwise.
+   */
+  public static void error(Logger log, String message, URI uri, Throwable failure) {
+    if (verbose) {
+      log.error(message, failure);
+    } else {
+      record(uri, message + ": " + failure, failure);
+    }
+  }
+
+  /**
+   * Counts the failure of a request for the next summary.
+   */
+  public static void record(URI uri, Throwable failure) {
+    record(uri, String.valueOf(failure), failure);
+  }
+
+  private static void record(URI uri, String exemplar, Throwable failure) {
+    Throwable root = rootCause(failure);
+    Key key = new Key(originOf(uri), root.getClass().getName(), errorCodeOf(failure));
+    FAILURES.get().computeIfAbsent(key, k -> new Aggregate()).add(exemplar);
+    logSummaryIfDue();
+  }
+
+  private static void logSummaryIfDue() {
+    long now = System.currentTimeMillis();
+    long last = LAST_SUMMARY.get();
+    if (now - last >= summaryIntervalMillis && LAST_SUMMARY.compareAndSet(last, now)) {
+      logSummary(now - last);
+    }
+  }
+
+  /**
+   * Logs the failures counted since the last summary.
+   */
+  public static void flush() {
+    long now = System.currentTimeMillis();
+    logSummary(now - LAST_SUMMARY.getAndSet(now));
+  }
+
+  /**
+   * @return the failures counted since the last summary, by origin, exception class and error
+   *     code.
+   */
+  @VisibleForTesting
+  static Map<String, Long> pendingCounts() {
+    Map<String, Long> counts = new HashMap<>();
+    FAILURES.get().forEach((key, aggregate) -> counts.put(key.origin + " " + key.exception
+        + (key.errorCode != null ? " " + key.errorCode : ""), aggregate.count.sum()));
+    return counts;
+  }
+
+  private static void logSummary(long elapsedMillis) {
+    Map<Key, Aggregate> failures = FAILURES.getAndSet(new ConcurrentHashMap<>());
+    if (failures.isEmpty()) {
+      return;
+    }
+    int lines = 0;
+    long omitted = 0;
+    for (Map.Entry<Key, Aggregate> entry : failures.entrySet()) {
+      Key key = entry.getKey();
+      Aggregate aggregate = entry.getValue();
+      if (lines++ >= MAX_SUMMARY_LINES) {
+        omitted += aggregate.count.sum();
+        continue;
+      }
+      LOG.warn("{} failed requests to {} with {}{} in the last {}s, e.g.: {}",
+          aggregate.count.sum(), key.origin, key.exception,
+          key.errorCode != null ? " (" + key.errorCode + ")" : "", elapsedMillis / 1000,
+          aggregate.exemplars());
+    }
+    if (omitted > 0) {
+      LOG.warn("{} failed requests with other causes in the last {}s", omitted,
+          elapsedMillis / 1000);
+    }
+  }
+
+  private static String originOf(URI uri) {
+    if (uri == null) {
+      return "unknown";
+    }
+    return uri.getScheme() + "://" + uri.getHost() + (uri.getPort() > 0 ? ":" + uri.getPort()
+        : "");
+  }
+
+  private static Throwable rootCause(Throwable failure) {
+    Throwable root = failure;
+    while (root.getCause() != null && root.getCause() != root) {
+      root = root.getCause();
+    }
+    return root;
+  }
+
+  private static String errorCodeOf(Throwable failure) {
+    for (Throwable t = failure; t != null; t = t.getCause() != t ? t.getCause() : null) {
+      String message = t.getMessage();
+      if (message != null) {
+        String lowerMessage = message.toLowerCase(Locale.ROOT);
+        for (String code : ERROR_CODES) {
+          if (lowerMessage.contains(code)) {
+            return code;
+          }
+        }
+      }
+    }
+    return null;
+  }
+
+  private static String[] buildErrorCodes() {
+    ErrorCode[] codes = ErrorCode.values();
+    String[] names = new String[codes.length];
+    for (int i = 0; i < codes.length; i++) {
+      names[i] = codes[i].name().toLowerCase(Locale.ROOT);
+    }
+    return names;
+  }
+
+  private static final class Key {
+
+    private final String origin;
+    private final String exception;
+    private final String errorCode;
+
+    private Key(String origin, String exception, String errorCode) {
+      this.origin = origin;
+      this.exception = exception;
+      this.errorCode = errorCode;
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof Key)) {
+        return false;
+      }
+      Key key = (Key) o;
+      return origin.equals(key.origin) && exception.equals(key.exception)
+          && Objects.equals(errorCode, key.errorCode);
+    }
+
+    @Override
+    public int hashCode() {
+      return Objects.hash(origin, exception, errorCode);
+    }
+  }
+
+  private static final class Aggregate {
+
+    private final LongAdder count = new LongAdder();
+    private final List<String> exemplars = new ArrayList<>(MAX_EXEMPLARS);
+
+    private void add(String exemplar) {
+      count.increment();
+      synchronized (exemplars) {
+        if (exemplars.size() < MAX_EXEMPLARS && !exemplars.contains(exemplar)) {
+          exemplars.add(exemplar);
+        }
+      }
+    }
+
+    private String exemplars() {
+      synchronized (exemplars) {
+        return String.join(" | ", exemplars);
+      }
+    }
+  }
+}
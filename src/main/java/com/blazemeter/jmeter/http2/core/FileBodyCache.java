@@ -0,0 +1,133 @@
+package com.blazemeter.jmeter.http2.core;
+
+import com.helger.commons.annotation.VisibleForTesting;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Engine wide cache of files sent as request bodies, shared by all virtual users.
+ *
+ * <p>Files are memory mapped read only the first time they are requested, so concurrent uploads
+ * of the same file are served from the OS page cache instead of reading the file once per
+ * request. Entries are keyed by absolute path and revalidated against the file size and last
+ * modification time on every lookup, so a file changed during the test gets mapped again.</p>
+ *
+ * <p>Least recently used files are evicted once the mapped bytes exceed the
+ * {@link #configure(long) configured} size, releasing their mappings (and, on Windows, the lock
+ * on the file) once no request uses them. Files bigger than that are not cached.</p>
+ */
+public final class FileBodyCache {
+
+  public static final long DEFAULT_MAX_BYTES = 256L * 1024 * 1024;
+
+  private static final Map<Path, Entry> ENTRIES = new LinkedHashMap<>(64, 0.75f, true);
+  private static long maxBytes = DEFAULT_MAX_BYTES;
+  private static long bytes;
+
+  private FileBodyCache() {
+  }
+
+  /**
+   * Sets the maximum bytes of mapped files, evicting entries if the cache no longer fits.
+   */
+  public static synchronized void configure(long maxBytes) {
+    FileBodyCache.maxBytes = maxBytes;
+    evict();
+  }
+
+  /**
+   * @return a read only buffer with the file content, positioned at its start, or {@code null}
+   *     when the file is too big to be cached.
+   * @throws IOException if the file can't be accessed.
+   */
+  public static ByteBuffer get(Path path) throws IOException {
+    Path key = path.toAbsolutePath().normalize();
+    BasicFileAttributes attributes = Files.readAttributes(key, BasicFileAttributes.class);
+    long size = attributes.size();
+    long lastModified = attributes.lastModifiedTime().toMillis();
+    synchronized (FileBodyCache.class) {
+      if (size > Integer.MAX_VALUE || size > maxBytes) {
+        return null;
+      }
+      Entry entry = ENTRIES.get(key);
+      if (entry != null && entry.matches(size, lastModified)) {
+        return entry.buffer.duplicate();
+      }
+    }
+    // Mapped outside the lock, a concurrent lookup of the same file may map it too
+    Entry entry = map(key, size, lastModified);
+    synchronized (FileBodyCache.class) {
+      Entry previous = ENTRIES.put(key, entry);
+      if (previous != null) {
+        bytes -= previous.size;
+      }
+      bytes += entry.size;
+      evict();
+    }
+    return entry.buffer.duplicate();
+  }
+
+  private static void evict() {
+    Iterator<Entry> it = ENTRIES.values().iterator();
+    while (bytes > maxBytes && it.hasNext()) {
+      bytes -= it.next().size;
+      it.remove();
+    }
+  }
+
+  public static synchronized int size() {
+    return ENTRIES.size();
+  }
+
+  @VisibleForTesting
+  static synchronized boolean contains(Path path) {
+    return ENTRIES.containsKey(path.toAbsolutePath().normalize());
+  }
+
+  /**
+   * @return the bytes of the mapped files.
+   */
+  public static synchronized long bytes() {
+    return bytes;
+  }
+
+  /**
+   * Drops all the entries, letting mapped files be released once no request uses them.
+   */
+  public static synchronized void clear() {
+    ENTRIES.clear();
+    bytes = 0;
+  }
+
+  private static Entry map(Path path, long size, long lastModified) throws IOException {
+    try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+      ByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size).asReadOnlyBuffer();
+      return new Entry(buffer, size, lastModified);
+    }
+  }
+
+  private static class Entry {
+
+    private final ByteBuffer buffer;
+    private final long size;
+    private final long lastModified;
+
+    private Entry(ByteBuffer buffer, long size, long lastModified) {
+      this.buffer = buffer;
+      this.size = size;
+      this.lastModified = lastModified;
+    }
+
+    private boolean matches(long size, long lastModified) {
+      return this.size == size && this.lastModified == lastModified;
+    }
+  }
+}
@@ -0,0 +1,162 @@
+package com.blazemeter.jmeter.http2.core;
+
+import java.io.ByteArrayOutputStream;
+import java.net.URLDecoder;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import org.apache.jmeter.protocol.http.sampler.HTTPSampleResult;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpStatus;
+
+/**
+ * gRPC over HTTP/2 wire format: length-prefixed messages in request and response bodies, and the
+ * call status carried by the {@code grpc-status} and {@code grpc-message} trailers.
+ *
+ * <p>Messages are sent and reported as serialized protobuf bytes, so calls can be load tested
+ * from precompiled payloads without generating code for the service.</p>
+ */
+public final class GrpcFraming {
+
+  public static final String CONTENT_TYPE = "application/grpc";
+  public static final String TIMEOUT_HEADER = "grpc-timeout";
+  static final String STATUS_HEADER = "grpc-status";
+  static final String MESSAGE_HEADER = "grpc-message";
+  static final int STATUS_OK = 0;
+  static final int STATUS_INTERNAL = 13;
+
+  private static final int PREFIX_LENGTH = 5;
+  // grpc-timeout values have at most 8 digits
+  private static final long MAX_TIMEOUT_VALUE = 99_999_999L;
+  private static final String[] STATUS_NAMES = {"OK", "CANCELLED", "UNKNOWN", "INVALID_ARGUMENT",
+      "DEADLINE_EXCEEDED", "NOT_FOUND", "ALREADY_EXISTS", "PERMISSION_DENIED",
+      "RESOURCE_EXHAUSTED", "FAILED_PRECONDITION", "ABORTED", "OUT_OF_RANGE", "UNIMPLEMENTED",
+      "INTERNAL", "UNAVAILABLE", "DATA_LOSS", "UNAUTHENTICATED"};
+
+  private GrpcFraming() {
+  }
+
+  /**
+   * @return the prefix of an uncompressed message of the given length.
+   */
+  public static ByteBuffer prefix(int messageLength) {
+    ByteBuffer prefix = ByteBuffer.allocate(PREFIX_LENGTH);
+    prefix.put((byte) 0);
+    prefix.putInt(messageLength);
+    return prefix.flip();
+  }
+
+  /**
+   * @return the messages of a body, without their prefixes.
+   * @throws IllegalArgumentException if the body ends in the middle of a message, or a message
+   *     is compressed, which servers may not do since no {@code grpc-accept-encoding} is sent.
+   */
+  static List<byte[]> decode(byte[] body) {
+    List<byte[]> messages = new ArrayList<>();
+    ByteBuffer buffer = ByteBuffer.wrap(body);
+    while (buffer.hasRemaining()) {
+      if (buffer.remaining() < PREFIX_LENGTH) {
+        throw new IllegalArgumentException("Truncated gRPC message prefix");
+      }
+      byte flag = buffer.get();
+      if (flag != 0) {
+        throw new IllegalArgumentException(flag == 1
+            ? "Compressed gRPC message, but no message encoding was accepted"
+            : "Invalid gRPC message compressed flag " + flag);
+      }
+      long length = Integer.toUnsignedLong(buffer.getInt());
+      if (length > buffer.remaining()) {
+        throw new IllegalArgumentException(String.format(
+            "Truncated gRPC message, expected %d bytes but got %d", length, buffer.remaining()));
+      }
+      byte[] message = new byte[(int) length];
+      buffer.get(message);
+      messages.add(message);
+    }
+    return messages;
+  }
+
+  /**
+   * @return the {@code grpc-timeout} header value of a deadline, in seconds when too long to be
+   *     sent in milliseconds.
+   */
+  public static String encodeTimeout(long millis) {
+    return millis <= MAX_TIMEOUT_VALUE
+        ? millis + "m"
+        : Math.min(millis / 1000, MAX_TIMEOUT_VALUE) + "S";
+  }
+
+  /**
+   * Reports the status of a call as the result code and message, and its messages as the
+   * response data.
+   *
+   * <p>The status is taken from the trailers, or from the headers of responses without body
+   * (trailers-only responses). Responses without status, with a truncated message or, for unary
+   * calls, without exactly one message fail. The body size keeps the bytes received, prefixes
+   * included.</p>
+   */
+  public static void applyResponse(HTTPSampleResult result, int httpStatus, HttpFields headers,
+                                   HttpFields trailers, boolean unary) {
+    if (httpStatus != HttpStatus.OK_200) {
+      // Not answered by a gRPC server, the HTTP status tells why
+      result.setSuccessful(false);
+      return;
+    }
+    byte[] body = result.getResponseData();
+    List<byte[]> messages;
+    try {
+      messages = decode(body);
+    } catch (IllegalArgumentException e) {
+      setStatus(result, STATUS_INTERNAL, e.getMessage());
+      return;
+    }
+    ByteArrayOutputStream data = new ByteArrayOutputStream(body.length);
+    for (byte[] message : messages) {
+      data.writeBytes(message);
+    }
+    result.setResponseData(data.toByteArray());
+    result.setBodySize((long) body.length);
+
+    HttpFields statusFields = trailers != null && trailers.contains(STATUS_HEADER)
+        ? trailers
+        : headers;
+    String status = statusFields.get(STATUS_HEADER);
+    if (status == null) {
+      setStatus(result, STATUS_INTERNAL, "Missing " + STATUS_HEADER);
+      return;
+    }
+    int code;
+    try {
+      code = Integer.parseInt(status.trim());
+    } catch (NumberFormatException e) {
+      setStatus(result, STATUS_INTERNAL, "Invalid " + STATUS_HEADER + " " + status);
+      return;
+    }
+    if (code == STATUS_OK && unary && messages.size() != 1) {
+      setStatus(result, STATUS_INTERNAL,
+          "Unary call got " + messages.size() + " response messages");
+      return;
+    }
+    setStatus(result, code, decodeMessage(statusFields.get(MESSAGE_HEADER)));
+  }
+
+  private static void setStatus(HTTPSampleResult result, int code, String message) {
+    String name = code >= 0 && code < STATUS_NAMES.length ? STATUS_NAMES[code] : "CODE_" + code;
+    result.setResponseCode(String.valueOf(code));
+    result.setResponseMessage(message == null || message.isEmpty() ? name : name + ": " + message);
+    result.setSuccessful(code == STATUS_OK);
+  }
+
+  private static String decodeMessage(String message) {
+    if (message == null) {
+      return null;
+    }
+    // grpc-message is percent encoded, where '+' is not a space
+    try {
+      return URLDecoder.decode(message.replace("+", "%2B"), StandardCharsets.UTF_8);
+    } catch (IllegalArgumentException e) {
+      return message;
+    }
+  }
+}
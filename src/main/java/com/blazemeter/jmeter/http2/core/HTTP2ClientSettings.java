@@ -0,0 +1,247 @@
+package com.blazemeter.jmeter.http2.core;
+
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import org.eclipse.jetty.http2.client.HTTP2Client;
+import org.eclipse.jetty.http2.frames.SettingsFrame;
+import org.eclipse.jetty.http3.HTTP3Configuration;
+import org.eclipse.jetty.quic.common.QuicConfiguration;
+
+/**
+ * Settings the client announces when HTTP/2 connections (SETTINGS frame) and HTTP/3 connections
+ * (QUIC transport parameters) are established, bound to the Jetty {@link HTTP2Client} and QUIC
+ * configuration setters.
+ *
+ * <p>Settings start from a {@link Preset} and are validated once when built, so a wrong value
+ * fails the client creation naming the setting, instead of being ignored or rejected by servers
+ * with a protocol error.</p>
+ */
+final class HTTP2ClientSettings {
+
+  enum Preset {
+    /**
+     * Values the client has always announced, accepting server push and leaving the max header
+     * list size unset.
+     */
+    DEFAULT(4096, 100, 16 * 1024 * 1024, 8 * 1024 * 1024, 16384, UNSET),
+    /**
+     * Values announced by Chromium based browsers, without server push. Only used when chosen
+     * explicitly, since pushed resources are then never received nor cached.
+     */
+    BROWSER(65536, 0, 15 * 1024 * 1024, 6 * 1024 * 1024, 16384, 262144);
+
+    private final int headerTableSize;
+    private final int maxConcurrentPushedStreams;
+    private final int sessionRecvWindow;
+    private final int streamRecvWindow;
+    private final int maxFrameSize;
+    private final int maxHeaderListSize;
+
+    Preset(int headerTableSize, int maxConcurrentPushedStreams, int sessionRecvWindow,
+           int streamRecvWindow, int maxFrameSize, int maxHeaderListSize) {
+      this.headerTableSize = headerTableSize;
+      this.maxConcurrentPushedStreams = maxConcurrentPushedStreams;
+      this.sessionRecvWindow = sessionRecvWindow;
+      this.streamRecvWindow = streamRecvWindow;
+      this.maxFrameSize = maxFrameSize;
+      this.maxHeaderListSize = maxHeaderListSize;
+    }
+
+    static Preset parse(String value) {
+      return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+  }
+
+  /**
+   * Max header list size that keeps the Jetty limit and is not announced to servers.
+   */
+  static final int UNSET = 0;
+
+  // RFC 9113 section 6.5.2
+  private static final int MIN_MAX_FRAME_SIZE = 16384;
+  private static final int MAX_MAX_FRAME_SIZE = 16777215;
+  private static final int MIN_SESSION_RECV_WINDOW = 65535;
+
+  private final int headerTableSize;
+  private final int maxConcurrentPushedStreams;
+  private final int sessionRecvWindow;
+  private final int streamRecvWindow;
+  private final int maxFrameSize;
+  private final int maxHeaderListSize;
+  private final String h2cSettingsHeaderValue;
+
+  private HTTP2ClientSettings(Builder builder) {
+    this.headerTableSize = builder.headerTableSize;
+    this.maxConcurrentPushedStreams = builder.maxConcurrentPushedStreams;
+    this.sessionRecvWindow = builder.sessionRecvWindow;
+    this.streamRecvWindow = builder.streamRecvWindow;
+    this.maxFrameSize = builder.maxFrameSize;
+    this.maxHeaderListSize = builder.maxHeaderListSize;
+    this.h2cSettingsHeaderValue = buildH2cSettingsHeaderValue();
+  }
+
+  static Builder builder(Preset preset) {
+    return new Builder(preset);
+  }
+
+  int getHeaderTableSize() {
+    return headerTableSize;
+  }
+
+  int getMaxConcurrentPushedStreams() {
+    return maxConcurrentPushedStreams;
+  }
+
+  int getSessionRecvWindow() {
+    return sessionRecvWindow;
+  }
+
+  int getStreamRecvWindow() {
+    return streamRecvWindow;
+  }
+
+  int getMaxFrameSize() {
+    return maxFrameSize;
+  }
+
+  int getMaxHeaderListSize() {
+    return maxHeaderListSize;
+  }
+
+  /**
+   * Jetty announces SETTINGS_HEADER_TABLE_SIZE from the HPACK decoder table capacity,
+   * SETTINGS_MAX_CONCURRENT_STREAMS and SETTINGS_ENABLE_PUSH from the max pushed streams and
+   * SETTINGS_MAX_HEADER_LIST_SIZE from the max response headers size, which is only changed
+   * when set.
+   */
+  void applyTo(HTTP2Client client) {
+    client.setMaxDecoderTableCapacity(headerTableSize);
+    client.setMaxConcurrentPushedStreams(maxConcurrentPushedStreams);
+    client.setInitialSessionRecvWindow(sessionRecvWindow);
+    client.setInitialStreamRecvWindow(streamRecvWindow);
+    client.setMaxFrameSize(maxFrameSize);
+    if (maxHeaderListSize != UNSET) {
+      client.setMaxResponseHeadersSize(maxHeaderListSize);
+    }
+  }
+
+  /**
+   * Applies the receive windows as QUIC flow control limits and the max header list size as the
+   * HTTP/3 max response headers size. HTTP/3 has no server push support in Jetty, and QPACK
+   * tables are not sized as HPACK ones.
+   */
+  void applyTo(QuicConfiguration quicConfiguration, HTTP3Configuration http3Configuration) {
+    quicConfiguration.setSessionMaxData(sessionRecvWindow);
+    quicConfiguration.setLocalBidirectionalStreamMaxData(streamRecvWindow);
+    if (maxHeaderListSize != UNSET) {
+      http3Configuration.setMaxResponseHeadersSize(maxHeaderListSize);
+    }
+  }
+
+  /**
+   * @return the settings as the base64url encoded payload of the {@code HTTP2-Settings} header
+   *     sent when upgrading an HTTP/1.1 connection to h2c.
+   */
+  String toH2cSettingsHeaderValue() {
+    return h2cSettingsHeaderValue;
+  }
+
+  private String buildH2cSettingsHeaderValue() {
+    Map<Integer, Integer> settings = new LinkedHashMap<>();
+    settings.put(SettingsFrame.HEADER_TABLE_SIZE, headerTableSize);
+    if (maxConcurrentPushedStreams == 0) {
+      settings.put(SettingsFrame.ENABLE_PUSH, 0);
+    }
+    settings.put(SettingsFrame.MAX_CONCURRENT_STREAMS, maxConcurrentPushedStreams);
+    settings.put(SettingsFrame.INITIAL_WINDOW_SIZE, streamRecvWindow);
+    settings.put(SettingsFrame.MAX_FRAME_SIZE, maxFrameSize);
+    if (maxHeaderListSize != UNSET) {
+      settings.put(SettingsFrame.MAX_HEADER_LIST_SIZE, maxHeaderListSize);
+    }
+    ByteBuffer buffer = ByteBuffer.allocate(settings.size() * 6);
+    for (Map.Entry<Integer, Integer> entry : settings.entrySet()) {
+      buffer.putShort(entry.getKey().shortValue());
+      buffer.putInt(entry.getValue());
+    }
+    return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
+  }
+
+  @Override
+  public String toString() {
+    return "headerTableSize=" + headerTableSize
+        + ", maxConcurrentPushedStreams=" + maxConcurrentPushedStreams
+        + ", sessionRecvWindow=" + sessionRecvWindow
+        + ", streamRecvWindow=" + streamRecvWindow
+        + ", maxFrameSize=" + maxFrameSize
+        + ", maxHeaderListSize=" + maxHeaderListSize;
+  }
+
+  static final class Builder {
+    private int headerTableSize;
+    private int maxConcurrentPushedStreams;
+    private int sessionRecvWindow;
+    private int streamRecvWindow;
+    private int maxFrameSize;
+    private int maxHeaderListSize;
+
+    private Builder(Preset preset) {
+      this.headerTableSize = preset.headerTableSize;
+      this.maxConcurrentPushedStreams = preset.maxConcurrentPushedStreams;
+      this.sessionRecvWindow = preset.sessionRecvWindow;
+      this.streamRecvWindow = preset.streamRecvWindow;
+      this.maxFrameSize = preset.maxFrameSize;
+      this.maxHeaderListSize = preset.maxHeaderListSize;
+    }
+
+    Builder headerTableSize(int headerTableSize) {
+      this.headerTableSize = headerTableSize;
+      return this;
+    }
+
+    Builder maxConcurrentPushedStreams(int maxConcurrentPushedStreams) {
+      this.maxConcurrentPushedStreams = maxConcurrentPushedStreams;
+      return this;
+    }
+
+    Builder sessionRecvWindow(int sessionRecvWindow) {
+      this.sessionRecvWindow = sessionRecvWindow;
+      return this;
+    }
+
+    Builder streamRecvWindow(int streamRecvWindow) {
+      this.streamRecvWindow = streamRecvWindow;
+      return this;
+    }
+
+    Builder maxFrameSize(int maxFrameSize) {
+      this.maxFrameSize = maxFrameSize;
+      return this;
+    }
+
+    Builder maxHeaderListSize(int maxHeaderListSize) {
+      this.maxHeaderListSize = maxHeaderListSize;
+      return this;
+    }
+
+    HTTP2ClientSettings build() {
+      validate("settingsHeaderTableSize", headerTableSize, 0, Integer.MAX_VALUE);
+      validate("maxConcurrentPushedStreams", maxConcurrentPushedStreams, 0, Integer.MAX_VALUE);
+      validate("flowControlSessionWindow", sessionRecvWindow, MIN_SESSION_RECV_WINDOW,
+          Integer.MAX_VALUE);
+      validate("flowControlStreamWindow", streamRecvWindow, 0, Integer.MAX_VALUE);
+      validate("settingsMaxFrameSize", maxFrameSize, MIN_MAX_FRAME_SIZE, MAX_MAX_FRAME_SIZE);
+      validate("settingsMaxHeaderListSize", maxHeaderListSize, UNSET, Integer.MAX_VALUE);
+      return new HTTP2ClientSettings(this);
+    }
+
+    private static void validate(String name, int value, int min, int max) {
+      if (value < min || value > max) {
+        throw new IllegalArgumentException(String.format(
+            "Invalid HTTP/2 setting %s=%d, it must be between %d and %d", name, value, min, max));
+      }
+    }
+  }
+}
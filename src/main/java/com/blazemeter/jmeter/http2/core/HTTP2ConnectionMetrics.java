@@ -0,0 +1,321 @@
+package com.blazemeter.jmeter.http2.core;
+
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.WeakHashMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAccumulator;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.jmeter.threads.JMeterVariables;
+import org.eclipse.jetty.client.Request;
+import org.eclipse.jetty.http2.AbstractFlowControlStrategy;
+import org.eclipse.jetty.http2.FlowControlStrategy;
+import org.eclipse.jetty.http2.HTTP2Session;
+import org.eclipse.jetty.http2.api.Session;
+import org.eclipse.jetty.http2.frames.Frame;
+import org.eclipse.jetty.http2.frames.GoAwayFrame;
+import org.eclipse.jetty.http2.frames.HeadersFrame;
+import org.eclipse.jetty.http2.frames.ResetFrame;
+import org.eclipse.jetty.http2.hpack.HpackEncoder;
+import org.eclipse.jetty.io.Connection;
+import org.eclipse.jetty.io.ssl.SslConnection;
+
+/**
+ * Connection and stream level counters collected from Jetty listeners of a
+ * {@link HTTP2JettyClient}.
+ *
+ * <p>Wire level connections (TCP or the TLS layer on top of it) are tracked through a
+ * {@link Connection.Listener}, HTTP/2 stream activity through a
+ * {@link HTTP2Session.FrameListener} and destination queuing through a
+ * {@link Request.Listener}. Gauges that depend on live sessions (active streams, flow control
+ * stall time and HPACK table usage) are computed when {@link #snapshot()} is called.</p>
+ */
+public class HTTP2ConnectionMetrics {
+
+  public static final String VARIABLE_PREFIX = "http2.metrics.";
+  private static final String ATTR_QUEUED_NANOS = "bzm.metrics.queuedNanos";
+
+  private final long publishIntervalMs;
+  private final AtomicLong lastPublishMs = new AtomicLong();
+  private final Map<String, AtomicInteger> openConnectionsByDestination =
+      new ConcurrentHashMap<>();
+  private final Map<Session, Boolean> liveSessions =
+      Collections.synchronizedMap(new WeakHashMap<>());
+  private final LongAdder connectionsOpened = new LongAdder();
+  private final LongAdder connectionsClosed = new LongAdder();
+  private final LongAdder closedBytesIn = new LongAdder();
+  private final LongAdder closedBytesOut = new LongAdder();
+  private final LongAdder streamsOpened = new LongAdder();
+  private final LongAdder goAwayReceived = new LongAdder();
+  private final LongAdder goAwaySent = new LongAdder();
+  private final LongAdder resetReceived = new LongAdder();
+  private final LongAdder resetSent = new LongAdder();
+  private final LongAdder queuedRequests = new LongAdder();
+  private final LongAdder queueWaitNanos = new LongAdder();
+  private final LongAdder happyEyeballsLosers = new LongAdder();
+  private final LongAdder happyEyeballsWastedBytes = new LongAdder();
+  private final LongAdder preEncodedHeadersSent = new LongAdder();
+  private final LongAdder preEncodedHeaderLiterals = new LongAdder();
+  private final LongAccumulator maxQueueWaitNanos = new LongAccumulator(Math::max, 0);
+  private final LongAccumulator peakActiveStreams = new LongAccumulator(Math::max, 0);
+  private final Map<Connection, String> openConnections = new ConcurrentHashMap<>();
+
+  public HTTP2ConnectionMetrics(long publishIntervalMs) {
+    this.publishIntervalMs = Math.max(0, publishIntervalMs);
+  }
+
+  public Connection.Listener connectionListener() {
+    return new Connection.Listener() {
+      @Override
+      public void onOpened(Connection connection) {
+        if (!isWireConnection(connection)) {
+          return;
+        }
+        String destination = destinationOf(connection);
+        connectionsOpened.increment();
+        openConnections.put(connection, destination);
+        openConnectionsByDestination
+            .computeIfAbsent(destination, k -> new AtomicInteger())
+            .incrementAndGet();
+      }
+
+      @Override
+      public void onClosed(Connection connection) {
+        String destination = isWireConnection(connection)
+            ? openConnections.remove(connection)
+            : null;
+        if (destination == null) {
+          return;
+        }
+        connectionsClosed.increment();
+        closedBytesIn.add(connection.getBytesIn());
+        closedBytesOut.add(connection.getBytesOut());
+        openConnectionsByDestination.computeIfPresent(destination,
+            (k, count) -> count.decrementAndGet() <= 0 ? null : count);
+      }
+    };
+  }
+
+  public HTTP2Session.FrameListener frameListener() {
+    return new HTTP2Session.FrameListener() {
+      @Override
+      public void onIncomingFrame(Session session, Frame frame) {
+        liveSessions.put(session, Boolean.TRUE);
+        if (frame instanceof GoAwayFrame) {
+          goAwayReceived.increment();
+        } else if (frame instanceof ResetFrame) {
+          resetReceived.increment();
+        }
+      }
+
+      @Override
+      public void onOutgoingFrame(Session session, Frame frame) {
+        liveSessions.put(session, Boolean.TRUE);
+        if (frame instanceof HeadersFrame && ((HeadersFrame) frame).getMetaData() != null
+            && ((HeadersFrame) frame).getMetaData().isRequest()) {
+          streamsOpened.increment();
+          if (session instanceof HTTP2Session) {
+            peakActiveStreams.accumulate(((HTTP2Session) session).getStreamCount());
+          }
+        } else if (frame instanceof GoAwayFrame) {
+          goAwaySent.increment();
+        } else if (frame instanceof ResetFrame) {
+          resetSent.increment();
+        }
+      }
+    };
+  }
+
+  public Request.Listener requestListener() {
+    return new Request.Listener() {
+      @Override
+      public void onQueued(Request request) {
+        request.attribute(ATTR_QUEUED_NANOS, System.nanoTime());
+      }
+
+      @Override
+      public void onBegin(Request request) {
+        Object queued = request.getAttributes().get(ATTR_QUEUED_NANOS);
+        if (queued instanceof Long) {
+          long waited = System.nanoTime() - (Long) queued;
+          queuedRequests.increment();
+          queueWaitNanos.add(waited);
+          maxQueueWaitNanos.accumulate(waited);
+        }
+      }
+    };
+  }
+
+  /**
+   * Accounts for the losing request of a Happy Eyeballs race, once it has been aborted.
+   *
+   * @param receivedBytes response content bytes the loser received before being aborted.
+   */
+  public void recordHappyEyeballsLoser(long receivedBytes) {
+    happyEyeballsLosers.increment();
+    happyEyeballsWastedBytes.add(receivedBytes);
+  }
+
+  /**
+   * Accounts for a {@link PreEncodedHeaderField} sent in an HTTP/2 HEADERS frame.
+   */
+  public void recordPreEncodedHeaderSent() {
+    preEncodedHeadersSent.increment();
+  }
+
+  /**
+   * Accounts for a {@link PreEncodedHeaderField} the HPACK encoder wrote as a literal because it
+   * was not in its dynamic table.
+   */
+  public void recordPreEncodedHeaderLiteral() {
+    preEncodedHeaderLiterals.increment();
+  }
+
+  /**
+   * Builds an ordered view of the current counters and gauges, keyed by metric name.
+   */
+  public Map<String, Long> snapshot() {
+    long activeStreams = 0;
+    long maxConcurrentStreams = 0;
+    long stallNanos = 0;
+    long hpackTableBytes = 0;
+    long hpackTableCapacity = 0;
+    long recvWindowExhausted = 0;
+    long sendStalls = 0;
+    long windowGrowths = 0;
+    long maxStreamWindow = 0;
+    long liveSessionCount = 0;
+    List<Session> sessions;
+    synchronized (liveSessions) {
+      sessions = new ArrayList<>(liveSessions.keySet());
+    }
+    for (Session session : sessions) {
+      if (!(session instanceof HTTP2Session) || session.isClosed()) {
+        continue;
+      }
+      HTTP2Session http2Session = (HTTP2Session) session;
+      liveSessionCount++;
+      activeStreams += http2Session.getStreamCount();
+      maxConcurrentStreams = Math.max(maxConcurrentStreams, http2Session.getMaxLocalStreams());
+      FlowControlStrategy flowControl = http2Session.getFlowControlStrategy();
+      if (flowControl instanceof AbstractFlowControlStrategy) {
+        AbstractFlowControlStrategy strategy = (AbstractFlowControlStrategy) flowControl;
+        stallNanos += strategy.getSessionStallTime() + strategy.getStreamsStallTime();
+      }
+      if (flowControl instanceof AdaptiveFlowControlStrategy) {
+        AdaptiveFlowControlStrategy strategy = (AdaptiveFlowControlStrategy) flowControl;
+        recvWindowExhausted += strategy.getRecvWindowExhausted();
+        sendStalls += strategy.getSendStalls();
+        windowGrowths += strategy.getWindowGrowths();
+        maxStreamWindow = Math.max(maxStreamWindow, strategy.getStreamWindow());
+      }
+      HpackEncoder encoder = http2Session.getGenerator().getHpackEncoder();
+      hpackTableBytes += encoder.getHpackContext().getDynamicTableSize();
+      hpackTableCapacity += encoder.getTableCapacity();
+    }
+
+    long bytesIn = closedBytesIn.sum();
+    long bytesOut = closedBytesOut.sum();
+    for (Connection connection : openConnections.keySet()) {
+      bytesIn += connection.getBytesIn();
+      bytesOut += connection.getBytesOut();
+    }
+
+    long queued = queuedRequests.sum();
+    long preEncodedSent = preEncodedHeadersSent.sum();
+    long preEncodedIndexed = Math.max(0, preEncodedSent - preEncodedHeaderLiterals.sum());
+    Map<String, Long> values = new LinkedHashMap<>();
+    values.put("connectionsOpen", connectionsOpened.sum() - connectionsClosed.sum());
+    values.put("connectionsOpened", connectionsOpened.sum());
+    values.put("connectionsClosed", connectionsClosed.sum());
+    values.put("destinations", (long) openConnectionsByDestination.size());
+    values.put("maxConnectionsPerDestination", maxOpenPerDestination());
+    values.put("sessions", liveSessionCount);
+    values.put("streamsOpened", streamsOpened.sum());
+    values.put("activeStreams", activeStreams);
+    values.put("peakActiveStreams", peakActiveStreams.get());
+    values.put("maxConcurrentStreams", maxConcurrentStreams);
+    values.put("queuedRequests", queued);
+    values.put("queueWaitAvgMs",
+        queued == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(queueWaitNanos.sum() / queued));
+    values.put("queueWaitMaxMs", TimeUnit.NANOSECONDS.toMillis(maxQueueWaitNanos.get()));
+    values.put("goAwayReceived", goAwayReceived.sum());
+    values.put("goAwaySent", goAwaySent.sum());
+    values.put("resetReceived", resetReceived.sum());
+    values.put("resetSent", resetSent.sum());
+    values.put("flowControlStallMs", TimeUnit.NANOSECONDS.toMillis(stallNanos));
+    values.put("flowControlSendStalls", sendStalls);
+    values.put("flowControlRecvWindowExhausted", recvWindowExhausted);
+    values.put("flowControlWindowGrowths", windowGrowths);
+    values.put("flowControlMaxStreamWindow", maxStreamWindow);
+    values.put("hpackTableBytes", hpackTableBytes);
+    values.put("hpackTableCapacity", hpackTableCapacity);
+    values.put("hpackPreEncodedFields", preEncodedSent);
+    values.put("hpackPreEncodedIndexedPct",
+        preEncodedSent == 0 ? 0 : preEncodedIndexed * 100 / preEncodedSent);
+    values.put("bytesIn", bytesIn);
+    values.put("bytesOut", bytesOut);
+    values.put("happyEyeballsLosers", happyEyeballsLosers.sum());
+    values.put("happyEyeballsWastedBytes", happyEyeballsWastedBytes.sum());
+    values.putAll(OriginCircuitBreaker.snapshot());
+    values.putAll(BudgetedRetryPolicy.snapshot());
+    values.putAll(PushCache.snapshot());
+    return values;
+  }
+
+  public Map<String, Integer> getOpenConnectionsByDestination() {
+    Map<String, Integer> copy = new LinkedHashMap<>();
+    openConnectionsByDestination.forEach((k, v) -> copy.put(k, v.get()));
+    return copy;
+  }
+
+  /**
+   * Publishes the snapshot as {@code http2.metrics.*} variables when the publish interval has
+   * elapsed since the last publication.
+   *
+   * @return true if variables were published.
+   */
+  public boolean publishIfDue(JMeterVariables vars) {
+    if (vars == null) {
+      return false;
+    }
+    long now = System.currentTimeMillis();
+    long last = lastPublishMs.get();
+    if (now - last < publishIntervalMs || !lastPublishMs.compareAndSet(last, now)) {
+      return false;
+    }
+    snapshot().forEach((name, value) -> vars.put(VARIABLE_PREFIX + name, String.valueOf(value)));
+    openConnectionsByDestination.forEach((destination, count) ->
+        vars.put(VARIABLE_PREFIX + "connectionsOpen." + destination, String.valueOf(count.get())));
+    return true;
+  }
+
+  private long maxOpenPerDestination() {
+    long max = 0;
+    for (AtomicInteger count : openConnectionsByDestination.values()) {
+      max = Math.max(max, count.get());
+    }
+    return max;
+  }
+
+  private static boolean isWireConnection(Connection connection) {
+    return connection != null && !(connection.getEndPoint() instanceof SslConnection.SslEndPoint);
+  }
+
+  private static String destinationOf(Connection connection) {
+    SocketAddress address = connection.getEndPoint().getRemoteSocketAddress();
+    if (address instanceof InetSocketAddress) {
+      InetSocketAddress inet = (InetSocketAddress) address;
+      return inet.getHostString() + ":" + inet.getPort();
+    }
+    return String.valueOf(address);
+  }
+}
@@ -4,6 +4,7 @@ import static com.blazemeter.jmeter.http2.core.LowLevelDebugLog.lowLevelDebug;
 
 import java.io.IOException;
 import java.net.URI;
+import java.nio.ByteBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.IllegalCharsetNameException;
 import java.nio.charset.StandardCharsets;
@@ -14,6 +15,9 @@ import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Future;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.LongConsumer;
 import org.eclipse.jetty.client.BufferingResponseListener;
 import org.eclipse.jetty.client.ContentResponse;
 import org.eclipse.jetty.client.HttpClient;
@@ -35,11 +39,17 @@ public class HTTP2FutureResponseListener extends BufferingResponseListener
   private final CountDownLatch latch = new CountDownLatch(1);
   private Request request;
   private HttpClient fallbackHttp1Client;
+  private volatile boolean fallenBackToHttp11;
   private ContentResponse response;
   private Throwable failure;
   private volatile boolean cancelled;
   private long responseStart;
   private long responseEnd;
+  private final AtomicLong receivedBytes = new AtomicLong();
+  private final AtomicBoolean discardReported = new AtomicBoolean();
+  private volatile boolean adopted;
+  private volatile boolean discarded;
+  private volatile LongConsumer discardCallback;
 
   public HTTP2FutureResponseListener() {
     this(2 * 1024 * 1024);
@@ -68,6 +78,14 @@ public class HTTP2FutureResponseListener extends BufferingResponseListener
     this.fallbackHttp1Client = fallbackHttp1Client;
   }
 
+  /**
+   * @return true when the response was got with the HTTP/1.1 fallback client, after the request
+   *     failed with a protocol error.
+   */
+  public boolean isFallenBackToHttp11() {
+    return fallenBackToHttp11;
+  }
+
   protected void setStart() {
     if (this.responseStart == 0) {
       this.responseStart = System.currentTimeMillis();
@@ -94,9 +112,50 @@ public class HTTP2FutureResponseListener extends BufferingResponseListener
     }
     this.responseEnd = responseEnd > 0 ? responseEnd : System.currentTimeMillis();
     this.onCompleteCalled = true;
+    this.adopted = true;
     this.latch.countDown();
   }
 
+  /**
+   * Marks the response as no longer wanted, typically because the request lost a Happy Eyeballs
+   * race. Content received from now on is only counted, not buffered, and waiting on the listener
+   * raises a {@link CancellationException}, unless a response was provided through
+   * {@link #completeWith}, which is kept untouched when the aborted exchange completes.
+   *
+   * @param callback receives the number of response content bytes the exchange received, once
+   *     it has completed. May be null.
+   */
+  public void discard(LongConsumer callback) {
+    discardCallback = callback;
+    discarded = true;
+    if (!adopted) {
+      response = null;
+      cancelled = true;
+    }
+    if (latch.getCount() == 0) {
+      reportDiscarded();
+    }
+  }
+
+  public long getReceivedBytes() {
+    return receivedBytes.get();
+  }
+
+  private void reportDiscarded() {
+    LongConsumer callback = discardCallback;
+    if (discardReported.compareAndSet(false, true) && callback != null) {
+      callback.accept(receivedBytes.get());
+    }
+  }
+
+  @Override
+  public void onContent(Response response, ByteBuffer content) {
+    receivedBytes.addAndGet(content.remaining());
+    if (!discarded) {
+      super.onContent(response, content);
+    }
+  }
+
   /**
    * Called when the request fails before completion.
    * This method is called BEFORE onComplete() when there's a failure.
@@ -146,6 +205,14 @@ public class HTTP2FutureResponseListener extends BufferingResponseListener
   public void onComplete(Result result) {
     // CRITICAL: Mark that onComplete was called
     onCompleteCalled = true;
+    if (discarded) {
+      lowLevelDebug("Discarded response completed after receiving {} bytes",
+          receivedBytes.get());
+      setEnd();
+      latch.countDown();
+      reportDiscarded();
+      return;
+    }
     
     lowLevelDebug("=== onComplete() CALLED ===");
     lowLevelDebug("Thread: {}", Thread.currentThread().getName());
@@ -211,15 +278,19 @@ public class HTTP2FutureResponseListener extends BufferingResponseListener
     }
     
     if (failure != null) {
-      LOG.error("Request failed with exception: type={}, message={}", 
-          failure.getClass().getName(), failure.getMessage());
-      if (failure instanceof IOException) {
-        IOException ioException = (IOException) failure;
-        String message = ioException.getMessage();
-        LOG.error("IOException message: {}", message);
-        if (message != null && message.contains("protocol_error")) {
-          LOG.error("HTTP/2 protocol_error in onComplete() - ALPN negotiation likely failed");
+      if (FailureLog.isVerbose()) {
+        LOG.error("Request failed with exception: type={}, message={}",
+            failure.getClass().getName(), failure.getMessage());
+        if (failure instanceof IOException) {
+          IOException ioException = (IOException) failure;
+          String message = ioException.getMessage();
+          LOG.error("IOException message: {}", message);
+          if (message != null && message.contains("protocol_error")) {
+            LOG.error("HTTP/2 protocol_error in onComplete() - ALPN negotiation likely failed");
+          }
         }
+      } else {
+        FailureLog.record(request != null ? request.getURI() : null, failure);
       }
       lowLevelDebug("Full failure stack trace:", failure);
     }
@@ -311,7 +382,7 @@ public class HTTP2FutureResponseListener extends BufferingResponseListener
 
   @Override
   public boolean cancel(boolean mayInterruptIfRunning) {
-    LOG.error("=== cancel() called ===");
+    lowLevelDebug("=== cancel() called ===");
     cancelled = true;
     // In Jetty 12, abort() returns CompletableFuture<Boolean>
     if (request != null) {
@@ -343,9 +414,10 @@ public class HTTP2FutureResponseListener extends BufferingResponseListener
     } catch (ProtocolErrorException e) {
       ContentResponse fallback = tryHttp11Fallback();
       if (fallback != null) {
+        fallenBackToHttp11 = true;
         return fallback;
       }
-      LOG.error("ProtocolErrorException caught in get(), wrapping in ExecutionException");
+      lowLevelDebug("ProtocolErrorException caught in get(), wrapping in ExecutionException");
       // Wrap ProtocolErrorException in ExecutionException to maintain interface contract
       // The calling code will unwrap it and handle the fallback
       throw new ExecutionException(e);
@@ -373,9 +445,11 @@ public class HTTP2FutureResponseListener extends BufferingResponseListener
     } catch (ProtocolErrorException e) {
       ContentResponse fallback = tryHttp11Fallback();
       if (fallback != null) {
+        fallenBackToHttp11 = true;
         return fallback;
       }
-      LOG.error("ProtocolErrorException caught in get(timeout), wrapping in ExecutionException");
+      lowLevelDebug(
+          "ProtocolErrorException caught in get(timeout), wrapping in ExecutionException");
       // Wrap ProtocolErrorException in ExecutionException to maintain interface contract
       // The calling code will unwrap it and handle the fallback
       throw new ExecutionException(e);
@@ -408,45 +482,44 @@ public class HTTP2FutureResponseListener extends BufferingResponseListener
     if (failure != null) { // Failure and Response can coexist.
       if (response == null) { // Only generate exception response when an response not exist
         // Generated by nginx GOAWAY
-        LOG.error("Request failed without response: exception type={}, message={}",
-            failure.getClass().getName(), failure.getMessage());
-        
-        // Check if this is a protocol_error and throw ProtocolErrorException instead
-        // Add detailed logging to diagnose detection
-        LOG.error("Checking if failure is protocol_error: type={}, message={}", 
-            failure.getClass().getName(), failure.getMessage());
+        // The failure was already counted by onComplete(), so it is only detailed when verbose
+        boolean verbose = FailureLog.isVerbose();
+        if (verbose) {
+          LOG.error("Request failed without response: exception type={}, message={}",
+              failure.getClass().getName(), failure.getMessage());
+        }
         boolean isProtocolError = ProtocolErrorException.isProtocolError(failure);
-        LOG.error("ProtocolErrorException.isProtocolError() returned: {}", isProtocolError);
-        
+        lowLevelDebug("ProtocolErrorException.isProtocolError() returned: {}", isProtocolError);
+
         if (isProtocolError) {
           String message = failure.getMessage();
-          LOG.error("HTTP/2 protocol_error detected in getResult() - "
-              + "throwing ProtocolErrorException");
-          LOG.error("  - ALPN negotiation may have failed during TLS handshake");
-          LOG.error("  - Server rejected HTTP/2 connection");
-          LOG.error("  - This will trigger HTTP/1.1 fallback");
+          if (verbose) {
+            LOG.error("HTTP/2 protocol_error detected in getResult() - "
+                + "throwing ProtocolErrorException");
+            LOG.error("  - ALPN negotiation may have failed during TLS handshake");
+            LOG.error("  - Server rejected HTTP/2 connection");
+            LOG.error("  - This will trigger HTTP/1.1 fallback");
+          }
           throw new ProtocolErrorException(message != null ? message : "protocol_error", failure);
-        } else {
-          LOG.error("Failure is NOT detected as protocol_error, will throw ExecutionException");
         }
-        
-        if (failure instanceof IOException) {
-          IOException ioException = (IOException) failure;
-          String message = ioException.getMessage();
-          LOG.error("IOException details: {}", message);
+        if (verbose && failure instanceof IOException) {
+          LOG.error("IOException details: {}", failure.getMessage());
         }
         lowLevelDebug("Full failure stack trace (no response):", failure);
         throw new ExecutionException(failure);
       } else {
         // It is a failure caused after obtaining the response,
         // analyzing what type of failure it is, and incorporating mechanisms to manage it.
-        LOG.warn("Request failed after response received: status={}, version={}, exception={}",
-            response.getStatus(), response.getVersion(), failure.getClass().getName());
-        
+        if (FailureLog.isVerbose()) {
+          LOG.warn("Request failed after response received: status={}, version={}, "
+              + "exception={}", response.getStatus(), response.getVersion(),
+              failure.getClass().getName());
+        }
+
         // Check if this is a protocol_error even though we have a response
         if (ProtocolErrorException.isProtocolError(failure)) {
           String message = failure.getMessage();
-          LOG.error("HTTP/2 protocol_error detected after response - "
+          lowLevelDebug("HTTP/2 protocol_error detected after response - "
               + "throwing ProtocolErrorException");
           throw new ProtocolErrorException(message != null ? message : "protocol_error", failure);
         }
@@ -501,7 +574,7 @@ public class HTTP2FutureResponseListener extends BufferingResponseListener
       lowLevelDebug("Retrying request with HTTP/1.1 in listener fallback: {}", request.getURI());
       return http11Request.send();
     } catch (Exception e) {
-      LOG.error("HTTP/1.1 fallback in listener failed", e);
+      FailureLog.error(LOG, "HTTP/1.1 fallback in listener failed", request.getURI(), e);
       return null;
     }
   }
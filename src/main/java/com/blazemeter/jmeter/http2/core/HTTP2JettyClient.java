@@ -7,6 +7,7 @@ import com.blazemeter.jmeter.http2.core.jetty.custom.http3.CustomClientConnectio
 import com.blazemeter.jmeter.http2.sampler.HTTP2Sampler;
 import com.blazemeter.jmeter.http2.util.BzmHttpPluginProperties;
 import com.github.luben.zstd.ZstdInputStream;
+import com.helger.commons.annotation.VisibleForTesting;
 import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
@@ -26,13 +27,20 @@ import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.nio.file.StandardOpenOption;
 import java.time.Duration;
+import java.time.ZonedDateTime;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeParseException;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Base64;
+import java.util.Collections;
 import java.util.HashSet;
-import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Locale;
 import java.util.Map;
 import java.util.Set;
+import java.util.WeakHashMap;
+import java.util.concurrent.CompletableFuture;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.Executor;
@@ -42,7 +50,9 @@ import java.util.concurrent.ThreadFactory;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
 import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
 import java.util.regex.Pattern;
 import java.util.stream.StreamSupport;
 import java.util.zip.GZIPInputStream;
@@ -50,7 +60,6 @@ import java.util.zip.InflaterInputStream;
 import org.apache.commons.lang3.StringUtils;
 import org.apache.jmeter.protocol.http.control.AuthManager;
 import org.apache.jmeter.protocol.http.control.Authorization;
-import org.apache.jmeter.protocol.http.control.Cookie;
 import org.apache.jmeter.protocol.http.control.CookieManager;
 import org.apache.jmeter.protocol.http.control.Header;
 import org.apache.jmeter.protocol.http.control.HeaderManager;
@@ -58,13 +67,16 @@ import org.apache.jmeter.protocol.http.sampler.HTTPSampleResult;
 import org.apache.jmeter.protocol.http.util.HTTPArgument;
 import org.apache.jmeter.protocol.http.util.HTTPConstants;
 import org.apache.jmeter.protocol.http.util.HTTPFileArg;
+import org.apache.jmeter.samplers.SampleResult;
 import org.apache.jmeter.testelement.property.JMeterProperty;
+import org.apache.jmeter.threads.JMeterContext;
+import org.apache.jmeter.threads.JMeterContextService;
 import org.apache.jmeter.util.JMeterUtils;
 import org.brotli.dec.BrotliInputStream;
 import org.eclipse.jetty.client.AbstractAuthentication;
 import org.eclipse.jetty.client.AuthenticationStore;
 import org.eclipse.jetty.client.BasicAuthentication;
-import org.eclipse.jetty.client.BytesRequestContent;
+import org.eclipse.jetty.client.ByteBufferRequestContent;
 import org.eclipse.jetty.client.ContentDecoder;
 import org.eclipse.jetty.client.ContentResponse;
 import org.eclipse.jetty.client.DigestAuthentication;
@@ -79,6 +91,7 @@ import org.eclipse.jetty.client.Origin.Address;
 import org.eclipse.jetty.client.PathRequestContent;
 import org.eclipse.jetty.client.Request;
 import org.eclipse.jetty.client.Response;
+import org.eclipse.jetty.client.Result;
 import org.eclipse.jetty.client.RetryableRequestException;
 import org.eclipse.jetty.client.StringRequestContent;
 import org.eclipse.jetty.client.transport.HttpClientConnectionFactory;
@@ -87,12 +100,11 @@ import org.eclipse.jetty.compression.brotli.BrotliCompression;
 import org.eclipse.jetty.compression.client.CompressionContentDecoderFactory;
 import org.eclipse.jetty.compression.gzip.GzipCompression;
 import org.eclipse.jetty.compression.zstandard.ZstandardCompression;
-import org.eclipse.jetty.http.HttpCookie;
-import org.eclipse.jetty.http.HttpCookieStore;
 import org.eclipse.jetty.http.HttpField;
 import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.http.HttpFields.Mutable;
 import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpMethod;
 import org.eclipse.jetty.http.HttpStatus;
 import org.eclipse.jetty.http.HttpVersion;
 import org.eclipse.jetty.http.MetaData;
@@ -147,6 +159,10 @@ public class HTTP2JettyClient {
   private static final String ATTR_HTTP3_ATTEMPTED = "bzm.http3.attempted";
   private static final String ATTR_ORIGIN_KEY = "bzm.http3.origin";
   private static final String ATTR_REQUEST_HEADERS_SERIALIZED = "bzm.request.headers.serialized";
+  private static final String ATTR_SAMPLE_RESULT = "bzm.sample.result";
+  private static final String ATTR_RETRIED = "bzm.retried";
+  private static final String ATTR_RETRY_RESPONSE_END = "bzm.retry.response.end";
+  private static final String REFUSED_STREAM_ERROR = "refused_stream_error";
   private static final String PROP_SKIP_REDUNDANT_MANUAL_DECODE =
       "blazemeter.http.skipManualDecodeWhenAdvertised";
   private static final Path DEBUG_LOG_PATH = resolveDebugLogPath();
@@ -158,10 +174,27 @@ public class HTTP2JettyClient {
   private static final long ALT_SVC_DEFAULT_MAX_AGE_SECONDS = 86400;
   private static final long DEFAULT_HTTP3_BROKEN_COOLDOWN_MS = 300000;
   private static final long DEFAULT_HTTP1_ONLY_COOLDOWN_MS = 300000;
+  private static final long DEFAULT_CIRCUIT_BREAKER_FAILURE_WINDOW_MS = 10000;
+  private static final long DEFAULT_CIRCUIT_BREAKER_DEGRADED_MS = 60000;
+  private static final long DEFAULT_CIRCUIT_BREAKER_OPEN_MS = 5000;
+  private static final int DEFAULT_SPREAD_CONNECTIONS_PER_DESTINATION = 4;
+  private static final int DEFAULT_FLOW_CONTROL_MAX_WINDOW = 64 * 1024 * 1024;
+  private static final long DEFAULT_RETRY_BACKOFF_MS = 100;
+  private static final long DEFAULT_RETRY_MAX_BACKOFF_MS = 5000;
+  private static final int DEFAULT_RETRY_BUDGET_PERCENT = 10;
+  private static final int DEFAULT_RETRY_BUDGET_MIN_RETRIES = 10;
+  private static final long DEFAULT_RETRY_BUDGET_WINDOW_MS = 10000;
   private static final long DEFAULT_H2C_CACHE_TTL_MS = 300000;
   private static final long DEFAULT_HAPPY_EYEBALLS_DELAY_MS = 250;
+  private static final long DEFAULT_METRICS_PUBLISH_INTERVAL_MS = 5000;
   private static final long H3_RECENT_SUCCESS_WINDOW_MS =
       TimeUnit.MINUTES.toMillis(5);
+  private static final int DEFAULT_HAPPY_EYEBALLS_SKIP_AFTER_WINS = 8;
+  private static final int DEFAULT_SAMPLER_DATA_MAX_LENGTH = 4096;
+  private static final int DEFAULT_REQUEST_TEMPLATE_MAX_BODY_SIZE = 64 * 1024;
+  private static final int HAPPY_EYEBALLS_MIN_SAMPLES = 3;
+  private static final int HAPPY_EYEBALLS_REPROBE_INTERVAL = 32;
+  private static final double HAPPY_EYEBALLS_EWMA_ALPHA = 0.2;
   private static final Object SHARED_POOL_LOCK = new Object();
   private static final String SHARED_POOL_NAME = "http2-shared";
   private static volatile QueuedThreadPool sharedThreadPool;
@@ -175,6 +208,8 @@ public class HTTP2JettyClient {
   private static final Map<String, AltSvcEntry> ALT_SVC_CACHE = new ConcurrentHashMap<>();
   private static final Map<String, Http1OnlyEntry> HTTP1_ONLY_CACHE = new ConcurrentHashMap<>();
   private static final Map<String, H2cEntry> H2C_CACHE = new ConcurrentHashMap<>();
+  private static final Map<String, HappyEyeballsStats> HAPPY_EYEBALLS_STATS =
+      new ConcurrentHashMap<>();
   private int requestTimeout = 0;
   private int maxBufferSize = 21 * 1024 * 1024;
   private int maxThreads = 5;
@@ -184,19 +219,18 @@ public class HTTP2JettyClient {
   private int maxConnectionsPerDestination = 100;
 
   private int byteBufferPoolFactor = 4;
-  private int maxConcurrentPushedStreams = 100;
   private int maxRequestsPerConnection = 100;
+  private StreamAwareConnectionPool.Strategy connectionPoolStrategy =
+      StreamAwareConnectionPool.Strategy.FIRST;
+  private int spreadConnectionsPerDestination = DEFAULT_SPREAD_CONNECTIONS_PER_DESTINATION;
   private boolean sharedThreadPoolEnabled = true;
-
-  // Experimental HTTP/2 SETTINGS frame configuration
-  // These can be adjusted via properties to fix protocol_error with specific servers
-  private int settingsInitialWindowSize = 65535;
-  private int settingsMaxFrameSize = 16384;
-  private int settingsMaxConcurrentStreams = 100;
-  // Reduced from 8192 to be more conservative and avoid protocol_error (Issue #12071)
-  private int settingsMaxHeaderListSize = 4096;
-  private int settingsHeaderTableSize = 4096;
-  private boolean disableServerPush = false;
+  private AdaptiveFlowControlStrategy.Mode flowControlStrategy =
+      AdaptiveFlowControlStrategy.Mode.STATIC;
+  private int flowControlMaxWindow = DEFAULT_FLOW_CONTROL_MAX_WINDOW;
+  // HTTP/2 SETTINGS and QUIC transport parameters; may be adjusted via properties to fix
+  // protocol_error with specific servers
+  private HTTP2ClientSettings http2Settings =
+      HTTP2ClientSettings.builder(HTTP2ClientSettings.Preset.DEFAULT).build();
 
   private boolean strictEventOrdering = false;
   private boolean removeIdleDestinations = true;
@@ -222,6 +256,18 @@ public class HTTP2JettyClient {
   private long http1OnlyCooldownMs = DEFAULT_HTTP1_ONLY_COOLDOWN_MS;
   private long h2cCacheTtlMs = DEFAULT_H2C_CACHE_TTL_MS;
   private long happyEyeballsDelayMs = DEFAULT_HAPPY_EYEBALLS_DELAY_MS;
+  private boolean happyEyeballsAdaptive = false;
+  private int happyEyeballsSkipAfterWins = DEFAULT_HAPPY_EYEBALLS_SKIP_AFTER_WINS;
+  private boolean fileBodyCacheEnabled = false;
+  private SamplerDataCapture samplerDataCapture = SamplerDataCapture.FULL;
+  private int samplerDataMaxLength = DEFAULT_SAMPLER_DATA_MAX_LENGTH;
+  private boolean requestTemplatesEnabled = true;
+  private int requestTemplateMaxBodySize = DEFAULT_REQUEST_TEMPLATE_MAX_BODY_SIZE;
+  private boolean preEncodedHeaders = false;
+  private boolean sharedStaticCache = false;
+  private OriginCircuitBreaker circuitBreaker = new OriginCircuitBreaker(0, 0, 0, 0);
+  private final Map<HTTP2Sampler, RequestTemplate> requestTemplates =
+      Collections.synchronizedMap(new WeakHashMap<>());
   private boolean http2PriorKnowledgeEnabled = false;
   private boolean http3PriorKnowledgeEnabled = false;
   private boolean enableHttp3 = true;
@@ -232,10 +278,21 @@ public class HTTP2JettyClient {
   private boolean protocolErrorFallbackEnabled = true;
   private boolean goawayRetryEnabled = true;
   private int maxGoawayRetries = 1;
+  private int retryMaxAttempts = 0;
+  private RetryPolicy retryPolicy = new BudgetedRetryPolicy(maxGoawayRetries, retryMaxAttempts,
+      DEFAULT_RETRY_BACKOFF_MS, DEFAULT_RETRY_MAX_BACKOFF_MS, DEFAULT_RETRY_BUDGET_PERCENT,
+      DEFAULT_RETRY_BUDGET_MIN_RETRIES, DEFAULT_RETRY_BUDGET_WINDOW_MS);
   private boolean altSvcCacheEnabled = true;
   private boolean http1OnlyCacheEnabled = true;
   private boolean h2cCacheEnabled = true;
   private boolean heExecutorsRegistered = false;
+  private boolean metricsEnabled = false;
+  private long metricsPublishIntervalMs = DEFAULT_METRICS_PUBLISH_INTERVAL_MS;
+  private HTTP2ConnectionMetrics connectionMetrics;
+  private final SyncedCookieStore cookieStore = new SyncedCookieStore();
+  private boolean phaseTimingVariables = false;
+  private final RequestPhaseTimings.ConnectionTracker connectionTracker =
+      new RequestPhaseTimings.ConnectionTracker();
 
   public HTTP2JettyClient(boolean http1UpgradeRequired, String name) {
     this(http1UpgradeRequired, name, null);
@@ -245,6 +302,9 @@ public class HTTP2JettyClient {
                           HTTP2ClientProfileConfig profileConfig) {
     loadProperties(profileConfig);
     lowLevelDebug(PLUGIN_BUILD_TAG);
+    if (metricsEnabled) {
+      connectionMetrics = new HTTP2ConnectionMetrics(metricsPublishIntervalMs);
+    }
 
     // Create buffer pool first (needed for both TCP and QUIC connectors)
     this.bufferPool = new ArrayByteBufferPool();
@@ -273,168 +333,18 @@ public class HTTP2JettyClient {
 
     HTTP2Client http2Client = new HTTP2Client(clientConnector);
     enableFrameLoggingIfConfigured(http2Client);
-
-    // Add session listener to log SETTINGS frames received from server (for debugging Issue #12071)
-    // This helps identify if the server sends a lower SETTINGS_MAX_HEADER_LIST_SIZE
-    try {
-      // Use reflection to add Session.Listener if available
-      Class<?> sessionListenerClass = Class.forName("org.eclipse.jetty.http2.api.Session$Listener");
-
-      Object sessionListener = java.lang.reflect.Proxy.newProxyInstance(
-          sessionListenerClass.getClassLoader(),
-          new Class<?>[] {sessionListenerClass},
-          (proxy, method, args) -> {
-            if ("onSettings".equals(method.getName()) && args.length >= 2) {
-              // Log SETTINGS frame received from server
-              Object settingsFrame = args[1];
-              try {
-                // Try to get settings map from SettingsFrame
-                java.lang.reflect.Method getSettingsMethod =
-                    settingsFrame.getClass().getMethod("getSettings");
-                @SuppressWarnings("unchecked")
-                java.util.Map<Integer, Integer> settings =
-                    (java.util.Map<Integer, Integer>) getSettingsMethod.invoke(settingsFrame);
-
-                if (settings != null) {
-                  // SETTINGS_MAX_HEADER_LIST_SIZE = 0x6
-                  Integer maxHeaderListSize = settings.get(0x6);
-                  if (maxHeaderListSize != null) {
-                    lowLevelDebug("HTTP/2 SETTINGS frame received from server: "
-                        + "SETTINGS_MAX_HEADER_LIST_SIZE={}", maxHeaderListSize);
-                    if (maxHeaderListSize < settingsMaxHeaderListSize) {
-                      LOG.warn("Server SETTINGS_MAX_HEADER_LIST_SIZE ({}) is lower than "
-                              + "client setting ({}). This may cause protocol_error if headers "
-                              + "exceed server limit (Issue #12071).",
-                          maxHeaderListSize, settingsMaxHeaderListSize);
-                    }
-                  }
-                  // Log other relevant SETTINGS
-                  Integer maxFrameSize = settings.get(0x5); // SETTINGS_MAX_FRAME_SIZE
-                  Integer initialWindowSize = settings.get(0x4); // INITIAL_WINDOW_SIZE
-                  Integer maxConcurrentStreams = settings.get(0x3); // MAX_CONCURRENT_STREAMS
-
-                  if (maxFrameSize != null) {
-                    lowLevelDebug("HTTP/2 SETTINGS: SETTINGS_MAX_FRAME_SIZE={}", maxFrameSize);
-                  }
-                  if (initialWindowSize != null) {
-                    lowLevelDebug("HTTP/2 SETTINGS: SETTINGS_INITIAL_WINDOW_SIZE={}",
-                        initialWindowSize);
-                  }
-                  if (maxConcurrentStreams != null) {
-                    lowLevelDebug("HTTP/2 SETTINGS: SETTINGS_MAX_CONCURRENT_STREAMS={}",
-                        maxConcurrentStreams);
-                  }
-                }
-              } catch (Exception e) {
-                lowLevelDebug("Could not extract SETTINGS from frame", e);
-              }
-            }
-            return null; // Session.Listener methods return void
-          });
-
-      // Add the listener to HTTP2Client
-      java.lang.reflect.Method addSessionListenerMethod =
-          http2Client.getClass().getMethod("addSessionListener", sessionListenerClass);
-      addSessionListenerMethod.invoke(http2Client, sessionListener);
-      lowLevelDebug("HTTP2Client: Session listener added to log SETTINGS frames from server");
-    } catch (Exception e) {
-      lowLevelDebug("Could not add Session.Listener to HTTP2Client "
-          + "(may not be available in this Jetty version)", e);
-    }
+    configureHttp2Client(http2Client);
 
     CustomClientConnectionFactoryOverHTTP2.HTTP2 http2 =
         new CustomClientConnectionFactoryOverHTTP2.HTTP2(http2Client);
 
-    // Configure server push (can be disabled for compatibility)
-    if (disableServerPush) {
-      http2Client.setMaxConcurrentPushedStreams(0);
-      lowLevelDebug("HTTP2Client: Server push disabled for compatibility");
-    } else {
-      http2Client.setMaxConcurrentPushedStreams(maxConcurrentPushedStreams);
-    }
     if (alpnEnabled) {
       http2Client.setApplicationProtocols(Arrays.asList("h2", "http/1.1"));
     }
     http2Client.setUseALPN(alpnEnabled);
 
-    // Diagnostic toggle: skip custom HTTP/2 SETTINGS configuration.
-    boolean skipHttp2Settings = Boolean.getBoolean("blazemeter.http.skipHttp2Settings");
-    if (skipHttp2Settings) {
-      lowLevelDebug("HTTP2Client: skipping custom SETTINGS configuration");
-    } else {
-      // Configure HTTP/2 SETTINGS frame parameters
-      // These parameters are sent in the SETTINGS frame during HTTP/2 connection establishment
-      // Some servers may reject HTTP/2 if these values are not compatible
-      // Using reflection to access methods that may not be available in all Jetty versions
-      // Values can be configured via properties for specific server compatibility
-
-      // SETTINGS_INITIAL_WINDOW_SIZE: Initial window size for flow control
-      try {
-        if (hasMethod(http2Client.getClass(), "setInitialStreamWindowSize", int.class)) {
-          http2Client.getClass().getMethod("setInitialStreamWindowSize", int.class)
-              .invoke(http2Client, settingsInitialWindowSize);
-          lowLevelDebug("HTTP2Client: setInitialStreamWindowSize={} (SETTINGS_INITIAL_WINDOW_SIZE)",
-              settingsInitialWindowSize);
-        }
-      } catch (Exception e) {
-        lowLevelDebug("HTTP2Client: setInitialStreamWindowSize not available", e);
-      }
-
-      // SETTINGS_MAX_FRAME_SIZE: Maximum size of a frame
-      try {
-        if (hasMethod(http2Client.getClass(), "setMaxFrameSize", int.class)) {
-          http2Client.getClass().getMethod("setMaxFrameSize", int.class)
-              .invoke(http2Client, settingsMaxFrameSize);
-          lowLevelDebug("HTTP2Client: setMaxFrameSize={} (SETTINGS_MAX_FRAME_SIZE)",
-              settingsMaxFrameSize);
-        }
-      } catch (Exception e) {
-        lowLevelDebug("HTTP2Client: setMaxFrameSize not available", e);
-      }
-
-      // SETTINGS_MAX_CONCURRENT_STREAMS: Maximum number of concurrent streams
-      // Note: 0 means no limit (RFC 7540)
-      try {
-        if (hasMethod(http2Client.getClass(), "setMaxConcurrentStreams", int.class)) {
-          http2Client.getClass().getMethod("setMaxConcurrentStreams", int.class)
-              .invoke(http2Client, settingsMaxConcurrentStreams);
-          lowLevelDebug("HTTP2Client: setMaxConcurrentStreams={} (SETTINGS_MAX_CONCURRENT_STREAMS)",
-              settingsMaxConcurrentStreams);
-        }
-      } catch (Exception e) {
-        lowLevelDebug("HTTP2Client: setMaxConcurrentStreams not available", e);
-      }
-
-      // SETTINGS_MAX_HEADER_LIST_SIZE: Maximum size of header list
-      // Note: 0 means no limit (RFC 7540)
-      try {
-        if (hasMethod(http2Client.getClass(), "setMaxHeaderListSize", int.class)) {
-          http2Client.getClass().getMethod("setMaxHeaderListSize", int.class)
-              .invoke(http2Client, settingsMaxHeaderListSize);
-          lowLevelDebug("HTTP2Client: setMaxHeaderListSize={} (SETTINGS_MAX_HEADER_LIST_SIZE)",
-              settingsMaxHeaderListSize);
-        }
-      } catch (Exception e) {
-        lowLevelDebug("HTTP2Client: setMaxHeaderListSize not available", e);
-      }
-
-      // SETTINGS_HEADER_TABLE_SIZE: Maximum size of header compression table (HPACK)
-      try {
-        if (hasMethod(http2Client.getClass(), "setHeaderTableSize", int.class)) {
-          http2Client.getClass().getMethod("setHeaderTableSize", int.class)
-              .invoke(http2Client, settingsHeaderTableSize);
-          lowLevelDebug("HTTP2Client: setHeaderTableSize={} (SETTINGS_HEADER_TABLE_SIZE)",
-              settingsHeaderTableSize);
-        }
-      } catch (Exception e) {
-        lowLevelDebug("HTTP2Client: setHeaderTableSize not available", e);
-      }
-    }
-
-    lowLevelDebug("HTTP2Client configured: ALPN={}, maxConcurrentPushedStreams={}, "
-        + "http1UpgradeRequired={}", alpnEnabled, maxConcurrentPushedStreams, http1UpgradeRequired);
-    lowLevelDebug("HTTP2Client SETTINGS frame parameters configured "
-        + "(via reflection where available)");
+    lowLevelDebug("HTTP2Client configured: ALPN={}, http1UpgradeRequired={}", alpnEnabled,
+        http1UpgradeRequired);
     // Note: setProtocols() was removed in Jetty 12.1.5, protocols are configured via ALPN
 
     // Configure HTTP/3 and QUIC (temporarily disabled for diagnostic runs)
@@ -448,11 +358,7 @@ public class HTTP2JettyClient {
             HTTP3ClientQuicConfiguration.configure(new QuicheClientQuicConfiguration());
         HTTP3Client http3Client = new HTTP3Client(quicConfig, quicConnector);
         http3Client.setUseALPN(true);
-
-        if (hasMethod(http3Client.getClass(), "setMaxConcurrentPushedStreams", int.class)) {
-          http3Client.getClass().getMethod("setMaxConcurrentPushedStreams", int.class)
-              .invoke(http3Client, maxConcurrentPushedStreams);
-        }
+        http2Settings.applyTo(quicConfig, http3Client.getHTTP3Configuration());
 
         Transport quicTransport = new QuicheTransport(quicConfig);
         http3 = new CustomClientConnectionFactoryOverHTTP3.HTTP3(http3Client, quicTransport);
@@ -507,11 +413,7 @@ public class HTTP2JettyClient {
     ClientConnector h2cUpgradeConnector = createClientConnector(name + "-h2c-upgrade");
     HTTP2Client http2cUpgradeClient = new HTTP2Client(h2cUpgradeConnector);
     http2cUpgradeClient.setUseALPN(false);
-    if (disableServerPush) {
-      http2cUpgradeClient.setMaxConcurrentPushedStreams(0);
-    } else {
-      http2cUpgradeClient.setMaxConcurrentPushedStreams(maxConcurrentPushedStreams);
-    }
+    configureHttp2Client(http2cUpgradeClient);
     CustomClientConnectionFactoryOverHTTP2.HTTP2C http2cUpgrade =
         new CustomClientConnectionFactoryOverHTTP2.HTTP2C(http2cUpgradeClient);
     ClientConnectionFactory.Info[] h2cUpgradeProtocols =
@@ -525,11 +427,7 @@ public class HTTP2JettyClient {
     ClientConnector h2cConnector = createClientConnector(name + "-h2c");
     HTTP2Client http2cClient = new HTTP2Client(h2cConnector);
     http2cClient.setUseALPN(false);
-    if (disableServerPush) {
-      http2cClient.setMaxConcurrentPushedStreams(0);
-    } else {
-      http2cClient.setMaxConcurrentPushedStreams(maxConcurrentPushedStreams);
-    }
+    configureHttp2Client(http2cClient);
     HttpClientTransport h2cTransport = new HttpClientTransportOverHTTP2(http2cClient);
     configureTransport(h2cTransport);
     this.httpClientH2cPrior = new HttpClient(h2cTransport);
@@ -566,6 +464,85 @@ public class HTTP2JettyClient {
     lowLevelDebug("HTTP2Client: Frame logging enabled (http2-debug.log)");
   }
 
+  private void configureHttp2Client(HTTP2Client http2Client) {
+    addStreamMetrics(http2Client);
+    http2Client.addBean(serverSettingsListener());
+    // Diagnostic toggle: skip custom HTTP/2 SETTINGS configuration.
+    if (Boolean.getBoolean("blazemeter.http.skipHttp2Settings")) {
+      lowLevelDebug("HTTP2Client: skipping custom SETTINGS configuration");
+    } else {
+      http2Settings.applyTo(http2Client);
+      lowLevelDebug("HTTP2Client SETTINGS: {}", http2Settings);
+    }
+    configureFlowControl(http2Client);
+  }
+
+  /**
+   * Sets the strategy growing the receive windows announced by the client when they are auto
+   * tuned, keeping the default Jetty strategy otherwise.
+   */
+  @VisibleForTesting
+  void configureFlowControl(HTTP2Client http2Client) {
+    if (flowControlStrategy == AdaptiveFlowControlStrategy.Mode.AUTO) {
+      http2Client.setFlowControlStrategyFactory(AdaptiveFlowControlStrategy.factory(
+          flowControlStrategy, http2Client.getInitialSessionRecvWindow(),
+          http2Client.getInitialStreamRecvWindow(), flowControlMaxWindow));
+      http2Client.addBean(AdaptiveFlowControlStrategy.pingListener());
+    }
+    lowLevelDebug("HTTP2Client: flow control strategy={}, maxWindow={}", flowControlStrategy,
+        flowControlMaxWindow);
+  }
+
+  /**
+   * Logs the SETTINGS received from servers (for debugging Issue #12071), which helps identify
+   * servers sending a lower SETTINGS_MAX_HEADER_LIST_SIZE.
+   */
+  private HTTP2Session.FrameListener serverSettingsListener() {
+    return new HTTP2Session.FrameListener() {
+      @Override
+      public void onIncomingFrame(Session session, Frame frame) {
+        if (frame instanceof SettingsFrame && !((SettingsFrame) frame).isReply()) {
+          logServerSettings(((SettingsFrame) frame).getSettings());
+        }
+      }
+    };
+  }
+
+  private void logServerSettings(Map<Integer, Integer> settings) {
+    Integer maxHeaderListSize = settings.get(SettingsFrame.MAX_HEADER_LIST_SIZE);
+    if (maxHeaderListSize != null) {
+      lowLevelDebug("HTTP/2 SETTINGS frame received from server: "
+          + "SETTINGS_MAX_HEADER_LIST_SIZE={}", maxHeaderListSize);
+      if (maxHeaderListSize < http2Settings.getMaxHeaderListSize()) {
+        LOG.warn("Server SETTINGS_MAX_HEADER_LIST_SIZE ({}) is lower than "
+                + "client setting ({}). This may cause protocol_error if headers "
+                + "exceed server limit (Issue #12071).",
+            maxHeaderListSize, http2Settings.getMaxHeaderListSize());
+      }
+    }
+    Integer maxFrameSize = settings.get(SettingsFrame.MAX_FRAME_SIZE);
+    if (maxFrameSize != null) {
+      lowLevelDebug("HTTP/2 SETTINGS: SETTINGS_MAX_FRAME_SIZE={}", maxFrameSize);
+    }
+    Integer initialWindowSize = settings.get(SettingsFrame.INITIAL_WINDOW_SIZE);
+    if (initialWindowSize != null) {
+      lowLevelDebug("HTTP/2 SETTINGS: SETTINGS_INITIAL_WINDOW_SIZE={}", initialWindowSize);
+    }
+    Integer maxConcurrentStreams = settings.get(SettingsFrame.MAX_CONCURRENT_STREAMS);
+    if (maxConcurrentStreams != null) {
+      // Connection pools follow it through the max multiplex of their connections
+      lowLevelDebug("HTTP/2 SETTINGS: SETTINGS_MAX_CONCURRENT_STREAMS={} "
+          + "(client maxRequestsPerConnection={})", maxConcurrentStreams,
+          maxRequestsPerConnection);
+    }
+  }
+
+  private void addStreamMetrics(HTTP2Client http2Client) {
+    if (connectionMetrics != null) {
+      http2Client.addBean(connectionMetrics.frameListener());
+    }
+  }
+
   private void logFrame(String direction, Frame frame) {
     if (frame == null) {
       return;
@@ -671,19 +648,6 @@ public class HTTP2JettyClient {
     // The pool is managed automatically by Jetty
   }
 
-  /**
-   * Helper method to check if a class has a specific method.
-   * Used for reflection-based optional feature detection.
-   */
-  private boolean hasMethod(Class<?> clazz, String methodName, Class<?>... paramTypes) {
-    try {
-      clazz.getMethod(methodName, paramTypes);
-      return true;
-    } catch (NoSuchMethodException e) {
-      return false;
-    }
-  }
-
   public ByteBufferPool getBufferPool() {
     return bufferPool;
   }
@@ -700,6 +664,14 @@ public class HTTP2JettyClient {
     return requestTimeout;
   }
 
+  /**
+   * @return the connection metrics registry, or {@code null} when
+   *     {@code httpJettyClient.metricsEnabled} is not set.
+   */
+  public HTTP2ConnectionMetrics getConnectionMetrics() {
+    return connectionMetrics;
+  }
+
   public void loadProperties() {
     loadProperties(null);
   }
@@ -728,10 +700,16 @@ public class HTTP2JettyClient {
         Integer.parseInt(BzmHttpPluginProperties.getPropDefault(
             "httpJettyClient.maxRequestsPerConnection",
             String.valueOf(maxRequestsPerConnection)));
-    maxConcurrentPushedStreams =
-        Integer.parseInt(BzmHttpPluginProperties.getPropDefault(
-            "httpJettyClient.maxConcurrentPushedStreams",
-            String.valueOf(maxConcurrentPushedStreams)));
+    connectionPoolStrategy = parseConnectionPoolStrategy(BzmHttpPluginProperties.getPropDefault(
+        "httpJettyClient.connectionPoolStrategy", StreamAwareConnectionPool.Strategy.FIRST.name()));
+    spreadConnectionsPerDestination = Integer.parseInt(BzmHttpPluginProperties.getPropDefault(
+        "httpJettyClient.spreadConnectionsPerDestination",
+        String.valueOf(DEFAULT_SPREAD_CONNECTIONS_PER_DESTINATION)));
+    flowControlStrategy = parseFlowControlStrategy(BzmHttpPluginProperties.getPropDefault(
+        "httpJettyClient.flowControlStrategy", AdaptiveFlowControlStrategy.Mode.STATIC.name()));
+    flowControlMaxWindow = Integer.parseInt(BzmHttpPluginProperties.getPropDefault(
+        "httpJettyClient.flowControlMaxWindow",
+        String.valueOf(DEFAULT_FLOW_CONTROL_MAX_WINDOW)));
     maxConnectionsPerDestination =
         Integer.parseInt(BzmHttpPluginProperties.getPropDefault(
             "httpJettyClient.maxConnectionsPerDestination",
@@ -799,6 +777,15 @@ public class HTTP2JettyClient {
     if (maxGoawayRetries < 0) {
       maxGoawayRetries = 0;
     }
+    retryMaxAttempts = Math.max(0, Integer.parseInt(BzmHttpPluginProperties.getPropDefault(
+        "httpJettyClient.retryMaxAttempts", "0")));
+    retryPolicy = buildRetryPolicy();
+    metricsEnabled = BzmHttpPluginProperties.getPropDefault(
+        "httpJettyClient.metricsEnabled", false);
+    metricsPublishIntervalMs = getLongProp("httpJettyClient.metricsPublishIntervalMs", null,
+        DEFAULT_METRICS_PUBLISH_INTERVAL_MS);
+    phaseTimingVariables = BzmHttpPluginProperties.getPropDefault(
+        "httpJettyClient.phaseTimingVariables", false);
 
     http3BrokenCooldownMs = getLongProp("httpJettyClient.http3BrokenCooldownMs",
         profileConfig != null ? profileConfig.getHttp3BrokenCooldownMs() : null,
@@ -817,10 +804,47 @@ public class HTTP2JettyClient {
     happyEyeballsDelayMs = getLongProp("httpJettyClient.happyEyeballsDelayMs",
         profileConfig != null ? profileConfig.getHappyEyeballsDelayMs() : null,
         defaults.happyEyeballsDelayMs);
-    // Default reduced to 4096 (Issue #12071)
-    settingsMaxHeaderListSize =
+    happyEyeballsAdaptive = BzmHttpPluginProperties.getPropDefault(
+        "httpJettyClient.happyEyeballsAdaptive", false);
+    happyEyeballsSkipAfterWins = Integer.parseInt(BzmHttpPluginProperties.getPropDefault(
+        "httpJettyClient.happyEyeballsSkipAfterWins",
+        String.valueOf(DEFAULT_HAPPY_EYEBALLS_SKIP_AFTER_WINS)));
+    fileBodyCacheEnabled = BzmHttpPluginProperties.getPropDefault(
+        "httpJettyClient.fileBodyCacheEnabled", false);
+    if (fileBodyCacheEnabled) {
+      FileBodyCache.configure(Long.parseLong(BzmHttpPluginProperties.getPropDefault(
+          "httpJettyClient.fileBodyCacheMaxBytes",
+          String.valueOf(FileBodyCache.DEFAULT_MAX_BYTES))));
+    }
+    samplerDataCapture = parseSamplerDataCapture(BzmHttpPluginProperties.getPropDefault(
+        "httpJettyClient.samplerDataCapture", SamplerDataCapture.FULL.name()));
+    samplerDataMaxLength = Integer.parseInt(BzmHttpPluginProperties.getPropDefault(
+        "httpJettyClient.samplerDataMaxLength", String.valueOf(DEFAULT_SAMPLER_DATA_MAX_LENGTH)));
+    requestTemplatesEnabled = BzmHttpPluginProperties.getPropDefault(
+        "httpJettyClient.requestTemplatesEnabled", true);
+    requestTemplateMaxBodySize = Integer.parseInt(BzmHttpPluginProperties.getPropDefault(
+        "httpJettyClient.requestTemplateMaxBodySize",
+        String.valueOf(DEFAULT_REQUEST_TEMPLATE_MAX_BODY_SIZE)));
+    preEncodedHeaders = BzmHttpPluginProperties.getPropDefault(
+        "httpJettyClient.preEncodedHeaders", false);
+    sharedStaticCache = BzmHttpPluginProperties.getPropDefault(
+        "httpJettyClient.sharedStaticCache", false);
+    if (sharedStaticCache) {
+      SharedStaticCache.configure(Long.parseLong(BzmHttpPluginProperties.getPropDefault(
+              "httpJettyClient.sharedStaticCacheMaxBytes",
+              String.valueOf(SharedStaticCache.DEFAULT_MAX_BYTES))),
+          BzmHttpPluginProperties.getPropDefault("httpJettyClient.sharedStaticCacheBodies", false));
+    }
+    circuitBreaker = new OriginCircuitBreaker(
         Integer.parseInt(BzmHttpPluginProperties.getPropDefault(
-            "httpJettyClient.settingsMaxHeaderListSize", "4096"));
+            "httpJettyClient.circuitBreakerFailureThreshold", "0")),
+        getLongProp("httpJettyClient.circuitBreakerFailureWindowMs", null,
+            DEFAULT_CIRCUIT_BREAKER_FAILURE_WINDOW_MS),
+        getLongProp("httpJettyClient.circuitBreakerDegradedMs", null,
+            DEFAULT_CIRCUIT_BREAKER_DEGRADED_MS),
+        getLongProp("httpJettyClient.circuitBreakerOpenMs", null,
+            DEFAULT_CIRCUIT_BREAKER_OPEN_MS));
+    http2Settings = loadHttp2Settings();
 
     if (!enableHttp1 && !enableHttp2 && !enableHttp3) {
       LOG.warn("All protocols disabled via configuration; enabling HTTP/1.1 "
@@ -844,6 +868,33 @@ public class HTTP2JettyClient {
     }
   }
 
+  private RetryPolicy buildRetryPolicy() {
+    String className = BzmHttpPluginProperties.getPropDefault("httpJettyClient.retryPolicy", "");
+    if (!className.trim().isEmpty()) {
+      try {
+        return (RetryPolicy) Class.forName(className.trim()).getDeclaredConstructor()
+            .newInstance();
+      } catch (ReflectiveOperationException | ClassCastException e) {
+        LOG.warn("Could not create retry policy {}, using the default one", className, e);
+      }
+    }
+    return new BudgetedRetryPolicy(maxGoawayRetries, retryMaxAttempts,
+        getLongProp("httpJettyClient.retryBackoffMs", null, DEFAULT_RETRY_BACKOFF_MS),
+        getLongProp("httpJettyClient.retryMaxBackoffMs", null, DEFAULT_RETRY_MAX_BACKOFF_MS),
+        Integer.parseInt(BzmHttpPluginProperties.getPropDefault(
+            "httpJettyClient.retryBudgetPercent", String.valueOf(DEFAULT_RETRY_BUDGET_PERCENT))),
+        Integer.parseInt(BzmHttpPluginProperties.getPropDefault(
+            "httpJettyClient.retryBudgetMinRetries",
+            String.valueOf(DEFAULT_RETRY_BUDGET_MIN_RETRIES))),
+        getLongProp("httpJettyClient.retryBudgetWindowMs", null,
+            DEFAULT_RETRY_BUDGET_WINDOW_MS));
+  }
+
+  @VisibleForTesting
+  void setRetryPolicy(RetryPolicy retryPolicy) {
+    this.retryPolicy = retryPolicy;
+  }
+
   private boolean getBooleanProp(String key, Boolean overrideValue, boolean defaultValue) {
     if (overrideValue != null) {
       return overrideValue;
@@ -885,6 +936,50 @@ public class HTTP2JettyClient {
     return defaults.protocolErrorFallbackEnabled;
   }
 
+  private HTTP2ClientSettings loadHttp2Settings() {
+    HTTP2ClientSettings.Preset preset = HTTP2ClientSettings.Preset.DEFAULT;
+    String rawPreset = BzmHttpPluginProperties.getPropDefault("httpJettyClient.settingsPreset",
+        preset.name());
+    try {
+      preset = HTTP2ClientSettings.Preset.parse(rawPreset);
+    } catch (IllegalArgumentException e) {
+      LOG.warn("Unknown HTTP/2 settings preset {}, using {}", rawPreset, preset);
+    }
+    HTTP2ClientSettings.Builder builder = HTTP2ClientSettings.builder(preset);
+    Integer value = getIntSetting("httpJettyClient.settingsHeaderTableSize");
+    if (value != null) {
+      builder.headerTableSize(value);
+    }
+    value = getIntSetting("httpJettyClient.maxConcurrentPushedStreams");
+    if (value != null) {
+      builder.maxConcurrentPushedStreams(value);
+    }
+    value = getIntSetting("httpJettyClient.flowControlSessionWindow");
+    if (value != null) {
+      builder.sessionRecvWindow(value);
+    }
+    value = getIntSetting("httpJettyClient.flowControlStreamWindow");
+    if (value != null) {
+      builder.streamRecvWindow(value);
+    }
+    value = getIntSetting("httpJettyClient.settingsMaxFrameSize");
+    if (value != null) {
+      builder.maxFrameSize(value);
+    }
+    value = getIntSetting("httpJettyClient.settingsMaxHeaderListSize");
+    if (value != null) {
+      builder.maxHeaderListSize(value);
+    }
+    return builder.build();
+  }
+
+  private Integer getIntSetting(String key) {
+    if (!BzmHttpPluginProperties.isDefined(key)) {
+      return null;
+    }
+    return Integer.parseInt(BzmHttpPluginProperties.getPropDefault(key, "").trim());
+  }
+
   private ProfileDefaults resolveProfileDefaults(HTTP2ClientProfileConfig profileConfig) {
     String profile = profileConfig != null ? profileConfig.getProfile() : null;
     if (profile == null || profile.trim().isEmpty()) {
@@ -1151,7 +1246,7 @@ public class HTTP2JettyClient {
 
     // Update result with response
     postContentResponse(sampler, http11Request, result, response,
-        JettyCacheManager.fromCacheManager(sampler.getCacheManager()));
+        buildCacheManager(sampler));
 
     return result;
   }
@@ -1167,6 +1262,13 @@ public class HTTP2JettyClient {
   private ContentResponse sendWithHTTP11Only(Request originalRequest,
                                              HTTP2FutureResponseListener originalListener)
       throws InterruptedException, TimeoutException, ExecutionException {
+    return HttpExchangeEvent.record("http11Fallback", originalRequest,
+        () -> doSendWithHTTP11Only(originalRequest, originalListener));
+  }
+
+  private ContentResponse doSendWithHTTP11Only(Request originalRequest,
+                                               HTTP2FutureResponseListener originalListener)
+      throws InterruptedException, TimeoutException, ExecutionException {
     URI uri = originalRequest.getURI();
     lowLevelDebug("Retrying request with HTTP/1.1 only: method={}, URI={}",
         originalRequest.getMethod(), uri);
@@ -1294,10 +1396,43 @@ public class HTTP2JettyClient {
     request.followRedirects(sampler.getAutoRedirects());
     String method = result.getHTTPMethod();
     request.method(method);
-    setHeaders(request, url, sampler.getHeaderManager());
-    ensureHostHeader(request, url);
+    RequestTemplate template = requestTemplatesEnabled ? requestTemplates.get(sampler) : null;
+    List<Object> templateInputs = null;
+    if (requestTemplatesEnabled && template != RequestTemplate.NONE) {
+      templateInputs = RequestTemplate.inputsOf(sampler, url.toExternalForm(), method, client,
+          http1UpgradeRequired, shouldUseH2cPriorKnowledge(request.getURI()));
+      if (templateInputs == null || (template != null && !template.matches(templateInputs))) {
+        // Samplers sending files or whose values change between samples are not templated
+        requestTemplates.put(sampler, RequestTemplate.NONE);
+        templateInputs = null;
+      }
+    }
+    if (templateInputs == null) {
+      template = null;
+    }
+    HttpFields preparedHeaders = null;
+    if (template != null) {
+      template.applyHeaders(request);
+      if (template.isH2cUpgrade()
+          && request.getAttributes().get(HttpUpgrader.PROTOCOL_ATTRIBUTE) == null) {
+        request.attribute(HttpUpgrader.PROTOCOL_ATTRIBUTE, "h2c");
+      }
+      lowLevelDebug("Request headers and body taken from template for {}", url);
+    } else {
+      setHeaders(request, url, sampler.getHeaderManager());
+      ensureHostHeader(request, url);
+      addPriorityHeader(request, sampler.getPriority());
+      if (templateInputs != null) {
+        preparedHeaders = HttpFields.build(request.getHeaders());
+      }
+    }
     addPreemptiveAuthorizationHeader(request, url, sampler.getAuthManager());
     lowLevelDebug("Headers set, request URI: {}", request.getURI());
+    // Pushed responses are only claimed by embedded resources, otherwise they are refused
+    if (sampler.isImageParser() && http2Settings.getMaxConcurrentPushedStreams() > 0) {
+      PushCache pushCache = PushCache.current();
+      request.onPush((pushing, pushed) -> newPushListener(pushed, pushCache));
+    }
 
     configureContentDecoders(client, request);
 
@@ -1311,6 +1446,11 @@ public class HTTP2JettyClient {
     if (cookieManager != null) {
       result.setCookies(buildCookies(request, url, cookieManager));
     }
+    // Filter invalid headers for HTTP/2 (Issue #2788) once all headers, upgrade ones included,
+    // are set. Template headers were already filtered when the template was compiled.
+    if (template == null && filterInvalidHTTP2Headers(request) && preparedHeaders != null) {
+      ((HttpFields.Mutable) preparedHeaders).remove(HttpHeader.CONNECTION);
+    }
 
     if (!sampler.getProxyHost().isEmpty()) {
       setProxy(sampler.getProxyHost(), sampler.getProxyPortInt(), sampler.getProxyScheme());
@@ -1322,14 +1462,89 @@ public class HTTP2JettyClient {
     }
     result.sampleStart();
 
-    setBody(request, sampler, result);
+    if (template != null) {
+      result.setQueryString(template.applyBody(request));
+      long sentBytesEstimate = template.getSentBytesEstimate(request);
+      if (sentBytesEstimate >= 0 && result.getSentBytes() == 0) {
+        result.setSentBytes(sentBytesEstimate);
+      }
+      initializeSentBytes(result, request);
+      return;
+    }
+    String contentTypeBeforeBody = request.getHeaders().get(HttpHeader.CONTENT_TYPE);
+    String samplerData = setBody(request, sampler, result);
     initializeSentBytes(result, request);
+    if (preparedHeaders != null) {
+      if (preEncodedHeaders) {
+        preparedHeaders = PreEncodedHeaderField.preEncode(preparedHeaders, connectionMetrics);
+      }
+      RequestTemplate compiled = RequestTemplate.compile(templateInputs, preparedHeaders,
+          "h2c".equals(request.getAttributes().get(HttpUpgrader.PROTOCOL_ATTRIBUTE)),
+          contentTypeBeforeBody, request, samplerData, estimateRequestHeaderBytes(request),
+          requestTemplateMaxBodySize);
+      requestTemplates.put(sampler, compiled != null ? compiled : RequestTemplate.NONE);
+    }
+  }
+
+  /**
+   * Receives a pushed response into the push cache of the virtual user that sent the request, so
+   * it is reported as a sub result when claimed by an embedded resource of its page.
+   */
+  private Response.CompleteListener newPushListener(Request pushed, PushCache pushCache) {
+    lowLevelDebug("Accepting pushed response for {}", pushed.getURI());
+    CompletableFuture<HTTPSampleResult> pushedResult = new CompletableFuture<>();
+    HTTP2FutureResponseListener listener = new HTTP2FutureResponseListener(maxBufferSize) {
+      private volatile long headersEnd;
 
+      @Override
+      public void onHeaders(Response response) {
+        headersEnd = System.currentTimeMillis();
+        super.onHeaders(response);
+      }
+
+      @Override
+      public void onComplete(Result result) {
+        super.onComplete(result);
+        pushedResult.complete(result.isFailed() ? null
+            : buildPushedResult(pushed, this, headersEnd));
+      }
+    };
+    listener.setRequest(pushed);
+    pushCache.put(pushed.getURI(), pushedResult);
+    return listener;
+  }
+
+  private HTTPSampleResult buildPushedResult(Request pushed, HTTP2FutureResponseListener listener,
+                                             long headersEnd) {
+    try {
+      HTTPSampleResult result = new HTTPSampleResult();
+      URL url = pushed.getURI().toURL();
+      result.setURL(url);
+      result.setSampleLabel(url.toString());
+      result.setHTTPMethod(pushed.getMethod());
+      // Timings go from the PUSH_PROMISE to the end of the pushed response
+      long start = listener.getResponseStart();
+      long end = listener.getResponseEnd();
+      result.setStampAndTime(start, end - start);
+      if (headersEnd > 0) {
+        result.setLatency(headersEnd - start);
+      }
+      result.setRequestHeaders(getSerializedRequestHeaders(pushed, true));
+      setResultContentResponse(result, listener.get());
+      result.setEndTime(end);
+      return result;
+    } catch (Exception e) {
+      lowLevelDebug("Could not build result of pushed response {}", pushed.getURI(), e);
+      return null;
+    }
+  }
+
+  private JettyCacheManager buildCacheManager(HTTP2Sampler sampler) {
+    return JettyCacheManager.fromCacheManager(sampler.getCacheManager(), sharedStaticCache);
   }
 
   private boolean requestInCache(JettyCacheManager cacheManager,
-                                 Request request)
-      throws URISyntaxException, MalformedURLException {
+                                 Request request) throws MalformedURLException {
     URL url = request.getURI().toURL();
     String method = request.getMethod();
     if (cacheManager != null) {
@@ -1350,12 +1565,39 @@ public class HTTP2JettyClient {
     http1UpgradeRequired = contentResponse.getVersion() != HttpVersion.HTTP_2;
     result.setRequestHeaders(getSerializedRequestHeaders(request, true));
     setResultContentResponse(result, contentResponse);
+    sampler.postProcess(result, contentResponse);
     saveCookiesInCookieManager(contentResponse, request.getURI().toURL(),
         sampler.getCookieManager());
 
     if (cacheManager != null) {
       cacheManager.saveDetails(contentResponse, result);
     }
+    publishConnectionMetrics();
+    publishPhaseTimings(request);
+  }
+
+  private void publishPhaseTimings(Request request) {
+    RequestPhaseTimings timings = RequestPhaseTimings.from(request);
+    if (timings == null) {
+      return;
+    }
+    lowLevelDebug("Request phases for {}: {}", request.getURI(), timings);
+    if (phaseTimingVariables) {
+      JMeterContext context = JMeterContextService.getContext();
+      if (context != null) {
+        timings.publish(context.getVariables());
+      }
+    }
+  }
+
+  private void publishConnectionMetrics() {
+    if (connectionMetrics == null) {
+      return;
+    }
+    JMeterContext context = JMeterContextService.getContext();
+    if (context != null) {
+      connectionMetrics.publishIfDue(context.getVariables());
+    }
   }
 
   public Request sampleAsync(HTTP2Sampler sampler,
@@ -1369,7 +1611,15 @@ public class HTTP2JettyClient {
     RequestContext context = buildRequestContext(result, resolveClientForRequest(sampler, result));
     Request request = context.request;
     lowLevelDebug("Request built: URI={}, method={}", request.getURI(), request.getMethod());
+    rejectWhenCircuitOpen(request.getURI());
+    retryPolicy.onRequest(originKey(request.getURI()));
+    request.attribute(ATTR_SAMPLE_RESULT, result);
     samplePrepareRequest(request, sampler, result, context.client);
+    JettyCacheManager cacheManager = buildCacheManager(sampler);
+    if (cacheManager != null) {
+      // Async requests are always sent, but may still be revalidated
+      cacheManager.setHeaders(url, request);
+    }
     listener.setRequest(request);
     listener.setFallbackHttp1Client(httpClientHttp1Only);
     lowLevelDebug("Request prepared, ready to send");
@@ -1395,11 +1645,14 @@ public class HTTP2JettyClient {
     setAuthManager(sampler);
     RequestContext context = buildRequestContext(result, resolveClientForRequest(sampler, result));
     Request request = context.request;
+    rejectWhenCircuitOpen(request.getURI());
+    retryPolicy.onRequest(originKey(request.getURI()));
+    request.attribute(ATTR_SAMPLE_RESULT, result);
 
     samplePrepareRequest(request, sampler, result, context.client);
 
     JettyCacheManager cacheManager =
-        JettyCacheManager.fromCacheManager(sampler.getCacheManager());
+        buildCacheManager(sampler);
     if (requestInCache(cacheManager, request)) {
       return cacheManager.buildCachedSampleResult(result);
     }
@@ -1419,7 +1672,7 @@ public class HTTP2JettyClient {
       }
       throw e;
     } catch (ExecutionException e) {
-      if (protocolErrorFallbackEnabled && enableHttp1
+      if (protocolErrorFallbackEnabled && enableHttp1 && isCircuitClosed(request.getURI())
           && ProtocolErrorException.isProtocolError(e)) {
         LOG.warn("Protocol error during send(), retrying with HTTP/1.1 only");
         return retryWithHTTP11Only(sampler, result);
@@ -1429,7 +1682,7 @@ public class HTTP2JettyClient {
     lowLevelDebug("=== send() returned successfully ===");
 
     postContentResponse(sampler, request, result, contentResponse, cacheManager);
-    result.setEndTime(listener.getResponseEnd());
+    result.setEndTime(responseEndOf(request, listener));
 
     resetSamplerDataBeforeResultProcessing(result);
     return sampler.resultProcessing(areFollowingRedirect, depth, result);
@@ -1446,41 +1699,46 @@ public class HTTP2JettyClient {
     try {
       ContentResponse contentResponse = getContent(listener, request);
       JettyCacheManager cacheManager =
-          JettyCacheManager.fromCacheManager(sampler.getCacheManager());
+          buildCacheManager(sampler);
       postContentResponse(sampler, request, result, contentResponse, cacheManager);
-      result.setEndTime(listener.getResponseEnd());
+      result.setEndTime(responseEndOf(request, listener));
 
       resetSamplerDataBeforeResultProcessing(result);
       return sampler.resultProcessing(areFollowingRedirect, depth, result);
     } catch (ExecutionException e) {
-      LOG.error("=== ExecutionException caught in sampleFromListener() ===");
-      LOG.error("Exception type: {}", e.getClass().getName());
-      LOG.error("Exception message: {}", e.getMessage());
       Throwable cause = e.getCause();
-      String causeInfo = cause != null
-          ? cause.getClass().getName() + ": " + cause.getMessage()
-          : "null";
-      LOG.error("Cause: {}", causeInfo);
+      if (FailureLog.isVerbose()) {
+        LOG.error("=== ExecutionException caught in sampleFromListener() ===");
+        LOG.error("Exception type: {}", e.getClass().getName());
+        LOG.error("Exception message: {}", e.getMessage());
+        String causeInfo = cause != null
+            ? cause.getClass().getName() + ": " + cause.getMessage()
+            : "null";
+        LOG.error("Cause: {}", causeInfo);
+      }
 
       // Check if this is a protocol_error and attempt HTTP/1.1 fallback
       RetryableRequestException retryable =
           findRetryableRequestException(cause != null ? cause : e);
-      if (retryable != null && goawayRetryEnabled && maxGoawayRetries > 0) {
-        LOG.warn("RetryableRequestException detected (likely GOAWAY) in sampleFromListener()");
-        LOG.warn("Error: {}", retryable.getMessage());
+      boolean circuitClosed = isCircuitClosed(request.getURI());
+      RetryPolicy.Condition retryCondition = retryConditionOf(request, e);
+      if (retryCondition != null && circuitClosed) {
+        LOG.warn("Retryable failure detected ({}) in sampleFromListener(): {}", retryCondition,
+            cause != null ? cause.getMessage() : e.getMessage());
         try {
-          ContentResponse retryResponse = retryAfterGoAway(request);
-          lowLevelDebug("Retry after GOAWAY succeeded: status={}, version={}",
+          ContentResponse retryResponse = retryWithPolicy(request, retryCondition, e);
+          lowLevelDebug("Retry after {} succeeded: status={}, version={}", retryCondition,
               retryResponse.getStatus(), retryResponse.getVersion());
           JettyCacheManager cacheManager =
-              JettyCacheManager.fromCacheManager(sampler.getCacheManager());
+              buildCacheManager(sampler);
           postContentResponse(sampler, request, result, retryResponse, cacheManager);
-          result.setEndTime(listener.getResponseEnd());
+          result.setEndTime(responseEndOf(request, listener));
           resetSamplerDataBeforeResultProcessing(result);
           return sampler.resultProcessing(areFollowingRedirect, depth, result);
         } catch (Exception retryException) {
-          LOG.error("Retry after GOAWAY failed", retryException);
-          if (enableHttp1) {
+          FailureLog.error(LOG, "Retry after " + retryCondition + " failed", request.getURI(),
+              retryException);
+          if (retryable != null && enableHttp1) {
             try {
               lowLevelDebug("Retrying request with HTTP/1.1 only after GOAWAY: {}",
                   result.getURL());
@@ -1492,17 +1750,19 @@ public class HTTP2JettyClient {
               }
               LOG.warn("HTTP/1.1 fallback returned unsuccessful result");
             } catch (Exception fallbackException) {
-              LOG.error("Failed to attempt HTTP/1.1 fallback after GOAWAY", fallbackException);
+              FailureLog.error(LOG, "Failed to attempt HTTP/1.1 fallback after GOAWAY",
+                  request.getURI(), fallbackException);
             }
           }
         }
       }
       boolean isProtocolErrorCause = cause != null && ProtocolErrorException.isProtocolError(cause);
       boolean isProtocolErrorException = ProtocolErrorException.isProtocolError(e);
-      LOG.error("isProtocolError(cause): {}", isProtocolErrorCause);
-      LOG.error("isProtocolError(exception): {}", isProtocolErrorException);
+      lowLevelDebug("isProtocolError(cause): {}", isProtocolErrorCause);
+      lowLevelDebug("isProtocolError(exception): {}", isProtocolErrorException);
 
-      if ((isProtocolErrorCause || isProtocolErrorException) && protocolErrorFallbackEnabled) {
+      if ((isProtocolErrorCause || isProtocolErrorException) && protocolErrorFallbackEnabled
+          && circuitClosed) {
         LOG.warn("HTTP/2 protocol_error detected in sampleFromListener()! "
             + "Attempting fallback to HTTP/1.1");
         LOG.warn("Error: {}", cause != null ? cause.getMessage() : e.getMessage());
@@ -1520,7 +1780,8 @@ public class HTTP2JettyClient {
               LOG.warn("HTTP/1.1 fallback returned unsuccessful result");
             }
           } catch (Exception fallbackException) {
-            LOG.error("Failed to attempt HTTP/1.1 fallback", fallbackException);
+            FailureLog.error(LOG, "Failed to attempt HTTP/1.1 fallback", request.getURI(),
+                fallbackException);
           }
         } else {
           LOG.warn("HTTP/1.1 fallback disabled by configuration");
@@ -1535,6 +1796,12 @@ public class HTTP2JettyClient {
   public ContentResponse send(Request request, HTTP2FutureResponseListener listener)
       throws InterruptedException,
       TimeoutException, ExecutionException {
+    return HttpExchangeEvent.record("send", request, () -> doSend(request, listener));
+  }
+
+  private ContentResponse doSend(Request request, HTTP2FutureResponseListener listener)
+      throws InterruptedException,
+      TimeoutException, ExecutionException {
     lowLevelDebug("=== send() called ===");
     lowLevelDebug("Request URI: {}", request.getURI());
     lowLevelDebug("Listener: {}", listener != null ? listener.getClass().getName() : "null");
@@ -1554,7 +1821,12 @@ public class HTTP2JettyClient {
       return request.send();
     }
     if (shouldUseHappyEyeballs(request)) {
-      return sendWithHappyEyeballs(request, listener);
+      if (!skipHappyEyeballsRace(uri, true)) {
+        return sendWithHappyEyeballs(request, listener);
+      }
+      lowLevelDebug("Happy Eyeballs skipped, HTTP/3 keeps winning for origin {}",
+          originKey(uri));
+      recordSkippedHappyEyeballsRaceOnComplete(request, true);
     }
     request.send(listener);
     lowLevelDebug("Request sent, waiting for response...");
@@ -1566,7 +1838,8 @@ public class HTTP2JettyClient {
           LOG.warn("H2C upgrade timed out; retrying with prior knowledge");
           return sendWithH2cPriorKnowledge(request);
         } catch (Exception retryException) {
-          LOG.error("H2C prior knowledge retry failed", retryException);
+          FailureLog.error(LOG, "H2C prior knowledge retry failed", request.getURI(),
+              retryException);
         }
       }
       throw e;
@@ -1575,22 +1848,25 @@ public class HTTP2JettyClient {
       Throwable cause = e.getCause();
       RetryableRequestException retryable =
           findRetryableRequestException(cause != null ? cause : e);
-      if (retryable != null && goawayRetryEnabled && maxGoawayRetries > 0) {
+      boolean circuitClosed = isCircuitClosed(uri);
+      if (retryable != null && goawayRetryEnabled && maxGoawayRetries > 0 && circuitClosed) {
         LOG.warn("RetryableRequestException detected (likely GOAWAY): {}",
             retryable.getMessage());
         try {
-          ContentResponse retryResponse = retryAfterGoAway(request);
+          ContentResponse retryResponse = retryWithPolicy(request, RetryPolicy.Condition.GOAWAY,
+              e);
           lowLevelDebug("Retry after GOAWAY succeeded: status={}, version={}",
               retryResponse.getStatus(), retryResponse.getVersion());
           return retryResponse;
         } catch (Exception retryException) {
-          LOG.error("Retry after GOAWAY failed", retryException);
+          FailureLog.error(LOG, "Retry after GOAWAY failed", request.getURI(), retryException);
           if (enableHttp1) {
             try {
               lowLevelDebug("Falling back to HTTP/1.1 after GOAWAY retry failure");
               return sendWithHTTP11Only(request, listener);
             } catch (Exception fallbackException) {
-              LOG.error("HTTP/1.1 fallback after GOAWAY retry failed", fallbackException);
+              FailureLog.error(LOG, "HTTP/1.1 fallback after GOAWAY retry failed", request.getURI(),
+                  fallbackException);
             }
           }
           throw e;
@@ -1598,7 +1874,7 @@ public class HTTP2JettyClient {
       }
       if ((cause instanceof ProtocolErrorException
           || ProtocolErrorException.isProtocolError(cause))
-          && protocolErrorFallbackEnabled) {
+          && protocolErrorFallbackEnabled && circuitClosed) {
         LOG.warn("HTTP/2 protocol_error detected in send()! Attempting fallback to HTTP/1.1");
         LOG.warn("Error details: message='{}', exception={}",
             cause != null ? cause.getMessage() : e.getMessage(),
@@ -1611,7 +1887,8 @@ public class HTTP2JettyClient {
                 fallbackResponse.getStatus(), fallbackResponse.getVersion());
             return fallbackResponse;
           } catch (Exception fallbackException) {
-            LOG.error("HTTP/1.1 fallback also failed", fallbackException);
+            FailureLog.error(LOG, "HTTP/1.1 fallback also failed", request.getURI(),
+                fallbackException);
             // Re-throw the original protocol_error
             throw e;
           }
@@ -1638,6 +1915,13 @@ public class HTTP2JettyClient {
   private ContentResponse sendWithHappyEyeballs(Request h3Request,
                                                 HTTP2FutureResponseListener h3Listener)
       throws InterruptedException, TimeoutException, ExecutionException {
+    return HttpExchangeEvent.record("happyEyeballs", h3Request,
+        () -> doSendWithHappyEyeballs(h3Request, h3Listener));
+  }
+
+  private ContentResponse doSendWithHappyEyeballs(Request h3Request,
+                                                  HTTP2FutureResponseListener h3Listener)
+      throws InterruptedException, TimeoutException, ExecutionException {
     URI uri = h3Request.getURI();
     ensureHappyEyeballsExecutors();
     long effectiveDelayMs = computeHappyEyeballsDelayMs(uri);
@@ -1675,21 +1959,29 @@ public class HTTP2JettyClient {
           "Happy Eyeballs timeout"));
     };
 
+    long h3StartNanos = System.nanoTime();
+    AtomicLong h2StartNanos = new AtomicLong();
     java.util.function.BiConsumer<ContentResponse, Boolean> completeSuccess =
         (response, h3Won) -> {
           if (!resolved.compareAndSet(false, true)) {
             return;
           }
+          long now = System.nanoTime();
+          long startNanos = h3Won ? h3StartNanos : h2StartNanos.get();
+          recordHappyEyeballsAttempt(uri, h3Won,
+              TimeUnit.NANOSECONDS.toMillis(now - startNanos), true);
+          // The loser did not answer before the winner, so it tells neither its time nor outcome
+          recordHappyEyeballsWinner(uri, h3Won);
           winner.set(response);
           cancelScheduledStart.run();
           if (h3Won) {
-            h2Request.abort(new java.util.concurrent.CancellationException(
-                "Happy Eyeballs H3 won"));
+            if (h2Started.get()) {
+              discardHappyEyeballsLoser(h2Request, h2Listener, "Happy Eyeballs H3 won");
+            }
           } else {
             h3Listener.completeWith(response,
                 h2Listener.getResponseStart(), h2Listener.getResponseEnd());
-            h3Request.abort(new java.util.concurrent.CancellationException(
-                "Happy Eyeballs H2 won"));
+            discardHappyEyeballsLoser(h3Request, h3Listener, "Happy Eyeballs H2 won");
           }
           done.countDown();
         };
@@ -1712,6 +2004,7 @@ public class HTTP2JettyClient {
       }
       lowLevelDebug("Happy Eyeballs starting HTTP/2 ({}): origin={}",
           reason, originKey(uri));
+      h2StartNanos.set(System.nanoTime());
       try {
         h2Request.send(h2Listener);
       } catch (Throwable sendFailure) {
@@ -1723,6 +2016,10 @@ public class HTTP2JettyClient {
           ContentResponse response = getContent(h2Listener, h2Request);
           completeSuccess.accept(response, false);
         } catch (Throwable t) {
+          if (!resolved.get()) {
+            recordHappyEyeballsAttempt(uri, false,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - h2StartNanos.get()), false);
+          }
           completeFailure.accept(t);
         }
       });
@@ -1742,6 +2039,10 @@ public class HTTP2JettyClient {
           ContentResponse response = getContent(h3Listener, h3Request);
           completeSuccess.accept(response, true);
         } catch (Throwable t) {
+          if (!resolved.get()) {
+            recordHappyEyeballsAttempt(uri, true,
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - h3StartNanos), false);
+          }
           startH2.accept("h3-failed-early");
           completeFailure.accept(t);
         }
@@ -1782,6 +2083,23 @@ public class HTTP2JettyClient {
     throw new ExecutionException(t);
   }
 
+  /**
+   * Stops the losing request of a Happy Eyeballs race. Aborting resets only its stream, so the
+   * multiplexed connection it used stays pooled, and its listener stops buffering content while
+   * the abort completes. The bytes it received anyway are accounted as wasted.
+   */
+  private void discardHappyEyeballsLoser(Request loser, HTTP2FutureResponseListener listener,
+                                         String reason) {
+    listener.discard(wastedBytes -> {
+      lowLevelDebug("Happy Eyeballs loser {} released after receiving {} bytes",
+          loser.getURI(), wastedBytes);
+      if (connectionMetrics != null) {
+        connectionMetrics.recordHappyEyeballsLoser(wastedBytes);
+      }
+    });
+    loser.abort(new java.util.concurrent.CancellationException(reason));
+  }
+
   public ContentResponse getContent(HTTP2FutureResponseListener listener)
       throws InterruptedException, TimeoutException, ExecutionException {
     return getContent(listener, null);
@@ -1789,6 +2107,14 @@ public class HTTP2JettyClient {
 
   private ContentResponse getContent(HTTP2FutureResponseListener listener, Request originalRequest)
       throws InterruptedException, TimeoutException, ExecutionException {
+    return HttpExchangeEvent.record("getContent",
+        originalRequest != null ? originalRequest : listener.getRequest(),
+        () -> doGetContent(listener, originalRequest));
+  }
+
+  private ContentResponse doGetContent(HTTP2FutureResponseListener listener,
+                                       Request originalRequest)
+      throws InterruptedException, TimeoutException, ExecutionException {
     long getStart = System.currentTimeMillis();
     int timeoutMs = requestTimeout > 0 ? requestTimeout + 2000 : 0;
     lowLevelDebug("Waiting for response with timeout={}ms", timeoutMs);
@@ -1819,6 +2145,25 @@ public class HTTP2JettyClient {
         if (originalRequest != null && response.getVersion() == HttpVersion.HTTP_3) {
           recordHttp3Success(originalRequest.getURI());
         }
+        if (originalRequest != null) {
+          if (listener.isFallenBackToHttp11()) {
+            // The listener recovered from a protocol error on its own, as async requests do
+            recordCircuitFailure(originalRequest, true);
+          } else if (HttpStatus.isSuccess(response.getStatus())
+              || HttpStatus.isRedirection(response.getStatus())) {
+            circuitBreaker.onSuccess(originKey(originalRequest.getURI()));
+          }
+        }
+        if (retryConditionOf(originalRequest, response) != null
+            && isCircuitClosed(originalRequest.getURI())) {
+          try {
+            return retryWithPolicy(originalRequest, RetryPolicy.Condition.SERVICE_UNAVAILABLE,
+                response);
+          } catch (ExecutionException retryException) {
+            FailureLog.error(LOG, "Retry after SERVICE_UNAVAILABLE failed",
+                originalRequest.getURI(), retryException);
+          }
+        }
         updateHttp1OnlyCache(originalRequest, response);
         updateH2cCache(originalRequest, response);
         updateAltSvcCache(originalRequest, response.getHeaders());
@@ -1829,41 +2174,55 @@ public class HTTP2JettyClient {
     } catch (TimeoutException e) {
       long endGet = System.currentTimeMillis();
       long elapsed = endGet - getStart;
-      LOG.error("Request timeout after {}ms: {}", elapsed, e.getMessage());
-      throw new TimeoutException("The request took more than " + elapsed
+      TimeoutException timeout = new TimeoutException("The request took more than " + elapsed
           + " milliseconds to complete");
+      if (FailureLog.isVerbose()) {
+        LOG.error("Request timeout after {}ms: {}", elapsed, e.getMessage());
+      } else {
+        FailureLog.record(originalRequest != null ? originalRequest.getURI() : null, timeout);
+      }
+      throw timeout;
     } catch (ExecutionException e) {
       long elapsed = System.currentTimeMillis() - getStart;
       Throwable cause = e.getCause();
-      LOG.error("Request failed after {}ms with ExecutionException", elapsed, e);
+      // The failure was already counted by the listener, so it is only detailed when verbose
+      if (FailureLog.isVerbose()) {
+        LOG.error("Request failed after {}ms with ExecutionException", elapsed, e);
+      }
 
       // Check if the cause is a ProtocolErrorException
       RetryableRequestException retryable =
           findRetryableRequestException(cause != null ? cause : e);
-      if (retryable != null && goawayRetryEnabled && maxGoawayRetries > 0
-          && originalRequest != null) {
-        LOG.warn("RetryableRequestException detected (likely GOAWAY): {}",
-            retryable.getMessage());
+      boolean protocolError = cause instanceof ProtocolErrorException
+          || ProtocolErrorException.isProtocolError(cause);
+      boolean http3ConnectTimeout = isHttp3ConnectTimeout(cause) && originalRequest != null
+          && Boolean.TRUE.equals(originalRequest.getAttributes().get(ATTR_HTTP3_ATTEMPTED));
+      boolean circuitClosed = recordCircuitFailure(originalRequest,
+          (retryable != null || protocolError) && !http3ConnectTimeout);
+      RetryPolicy.Condition retryCondition = retryConditionOf(originalRequest, e);
+      if (retryCondition != null && originalRequest != null && circuitClosed) {
+        LOG.warn("Retryable failure detected ({}): {}", retryCondition,
+            cause != null ? cause.getMessage() : e.getMessage());
         try {
-          ContentResponse retryResponse = retryAfterGoAway(originalRequest);
+          ContentResponse retryResponse = retryWithPolicy(originalRequest, retryCondition, e);
           lowLevelDebug("Retry after GOAWAY succeeded: status={}, version={}",
               retryResponse.getStatus(), retryResponse.getVersion());
           return retryResponse;
         } catch (Exception retryException) {
-          LOG.error("Retry after GOAWAY failed", retryException);
-          if (enableHttp1) {
+          FailureLog.error(LOG, "Retry after " + retryCondition + " failed",
+              originalRequest.getURI(), retryException);
+          if (retryable != null && enableHttp1) {
             try {
               lowLevelDebug("Falling back to HTTP/1.1 after GOAWAY retry failure");
               return sendWithHTTP11Only(originalRequest, listener);
             } catch (Exception fallbackException) {
-              LOG.error("HTTP/1.1 fallback after GOAWAY retry failed", fallbackException);
+              FailureLog.error(LOG, "HTTP/1.1 fallback after GOAWAY retry failed",
+                  originalRequest.getURI(), fallbackException);
             }
           }
         }
       }
-      if ((cause instanceof ProtocolErrorException
-          || ProtocolErrorException.isProtocolError(cause))
-          && protocolErrorFallbackEnabled) {
+      if (protocolError && protocolErrorFallbackEnabled && circuitClosed) {
         LOG.warn("HTTP/2 protocol_error detected in getContent()! "
             + "Attempting fallback to HTTP/1.1");
         LOG.warn("Error details: message='{}', exception={}",
@@ -1880,7 +2239,8 @@ public class HTTP2JettyClient {
                 fallbackResponse.getStatus(), fallbackResponse.getVersion());
             return fallbackResponse;
           } catch (Exception fallbackException) {
-            LOG.error("HTTP/1.1 fallback also failed", fallbackException);
+            FailureLog.error(LOG, "HTTP/1.1 fallback also failed", originalRequest.getURI(),
+                fallbackException);
             // Re-throw the original protocol_error, not the fallback exception
             throw e;
           }
@@ -1906,7 +2266,8 @@ public class HTTP2JettyClient {
               fallbackResponse.getStatus(), fallbackResponse.getVersion());
           return fallbackResponse;
         } catch (Exception fallbackException) {
-          LOG.error("HTTP/2 fallback after HTTP/3 timeout failed", fallbackException);
+          FailureLog.error(LOG, "HTTP/2 fallback after HTTP/3 timeout failed",
+              originalRequest.getURI(), fallbackException);
         }
       }
       if (e.getCause() != null && e.getCause() instanceof TimeoutException) {
@@ -2106,6 +2467,11 @@ public class HTTP2JettyClient {
   }
 
   private HttpClient selectHttpClient(URI uri) {
+    if (enableHttp1 && uri != null && circuitBreaker.isEnabled()
+        && circuitBreaker.stateOf(originKey(uri)) == OriginCircuitBreaker.State.DEGRADED) {
+      lowLevelDebug("Circuit degraded for origin {}, using HTTP/1.1", originKey(uri));
+      return httpClientHttp1Only;
+    }
     if (uri != null && "http".equalsIgnoreCase(uri.getScheme())) {
       if (!enableHttp2 && enableHttp1) {
         return httpClientHttp1Only;
@@ -2149,6 +2515,11 @@ public class HTTP2JettyClient {
     } else {
       lowLevelDebug("HTTP/3 not enabled for origin {}", originKey(uri));
     }
+    if (attemptHttp3 && isHttp3RaceSkipped(uri)) {
+      lowLevelDebug("HTTP/3 skipped, HTTP/2 keeps winning Happy Eyeballs for origin {}",
+          originKey(uri));
+      return httpClientNoH3;
+    }
     if (attemptHttp3) {
       return httpClient;
     }
@@ -2265,11 +2636,16 @@ public class HTTP2JettyClient {
         origin, entry.h3, entry.expiresAt);
   }
 
-  private long computeHappyEyeballsDelayMs(URI uri) {
+  @VisibleForTesting
+  long computeHappyEyeballsDelayMs(URI uri) {
     long baseDelay = happyEyeballsDelayMs;
     if (baseDelay <= 0) {
       return 0L;
     }
+    Long adaptiveDelay = adaptiveHappyEyeballsDelayMs(uri, baseDelay);
+    if (adaptiveDelay != null) {
+      return adaptiveDelay;
+    }
     if (http3PriorKnowledgeEnabled) {
       return baseDelay;
     }
@@ -2291,6 +2667,145 @@ public class HTTP2JettyClient {
     return Math.max(0L, baseDelay / 2);
   }
 
+  /**
+   * Derives the race delay from the moving estimates of the origin: wait about as long as HTTP/3
+   * usually takes to answer, shortened by its observed failure rate.
+   *
+   * @return the delay, or {@code null} when adaptive mode is off or there are not enough
+   *     measurements for the origin.
+   */
+  private Long adaptiveHappyEyeballsDelayMs(URI uri, long baseDelay) {
+    if (!happyEyeballsAdaptive || uri == null) {
+      return null;
+    }
+    HappyEyeballsStats stats = HAPPY_EYEBALLS_STATS.get(originKey(uri));
+    if (stats == null) {
+      return null;
+    }
+    synchronized (stats) {
+      if (stats.h3Samples < HAPPY_EYEBALLS_MIN_SAMPLES) {
+        return null;
+      }
+      if (stats.h3FailureRate >= 0.5) {
+        return 0L;
+      }
+      double expected = stats.h3ResponseMs * 1.25 * (1 - stats.h3FailureRate);
+      return Math.min(baseDelay * 2, Math.max(0L, Math.round(expected)));
+    }
+  }
+
+  /**
+   * Tells whether the Happy Eyeballs race can be skipped for an origin where the given protocol
+   * won the last {@code happyEyeballsSkipAfterWins} races and fails no more often than the other
+   * one. A race is still run after {@value #HAPPY_EYEBALLS_REPROBE_INTERVAL} skipped requests to
+   * notice changes on the origin.
+   *
+   * <p>Skipped requests are only counted once they complete, so asking does not change the
+   * statistics of the origin.</p>
+   */
+  @VisibleForTesting
+  boolean skipHappyEyeballsRace(URI uri, boolean h3) {
+    if (!happyEyeballsAdaptive || happyEyeballsSkipAfterWins <= 0 || uri == null) {
+      return false;
+    }
+    HappyEyeballsStats stats = HAPPY_EYEBALLS_STATS.get(originKey(uri));
+    if (stats == null) {
+      return false;
+    }
+    synchronized (stats) {
+      int wins = h3 ? stats.consecutiveH3Wins : stats.consecutiveH2Wins;
+      int skipped = h3 ? stats.skippedH3Races : stats.skippedH2Races;
+      double failureRate = h3 ? stats.h3FailureRate : stats.h2FailureRate;
+      double otherFailureRate = h3 ? stats.h2FailureRate : stats.h3FailureRate;
+      return wins >= happyEyeballsSkipAfterWins
+          && skipped < HAPPY_EYEBALLS_REPROBE_INTERVAL
+          && failureRate <= otherFailureRate;
+    }
+  }
+
+  private boolean isHttp3RaceSkipped(URI uri) {
+    return enableHttp2 && skipHappyEyeballsRace(uri, false);
+  }
+
+  private void recordSkippedHappyEyeballsRaceOnComplete(Request request, boolean h3) {
+    URI uri = request.getURI();
+    long startNanos = System.nanoTime();
+    request.onComplete(result -> recordSkippedHappyEyeballsRace(uri, h3,
+        TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - startNanos), !result.isFailed()));
+  }
+
+  /**
+   * Records the outcome of a request sent with the protocol that keeps winning, without racing.
+   * A failure ends the winning streak, so the next request races again.
+   */
+  @VisibleForTesting
+  void recordSkippedHappyEyeballsRace(URI uri, boolean h3, long elapsedMs, boolean success) {
+    if (!happyEyeballsAdaptive || uri == null) {
+      return;
+    }
+    recordHappyEyeballsAttempt(uri, h3, elapsedMs, success);
+    HappyEyeballsStats stats = HAPPY_EYEBALLS_STATS.get(originKey(uri));
+    synchronized (stats) {
+      if (h3) {
+        stats.skippedH3Races++;
+        if (!success) {
+          stats.consecutiveH3Wins = 0;
+        }
+      } else {
+        stats.skippedH2Races++;
+        if (!success) {
+          stats.consecutiveH2Wins = 0;
+        }
+      }
+    }
+  }
+
+  @VisibleForTesting
+  void recordHappyEyeballsAttempt(URI uri, boolean h3, long elapsedMs, boolean success) {
+    if (!happyEyeballsAdaptive || uri == null) {
+      return;
+    }
+    HappyEyeballsStats stats =
+        HAPPY_EYEBALLS_STATS.computeIfAbsent(originKey(uri), k -> new HappyEyeballsStats());
+    synchronized (stats) {
+      double failure = success ? 0 : 1;
+      if (h3) {
+        stats.h3ResponseMs = ewma(stats.h3ResponseMs, elapsedMs, stats.h3Samples);
+        stats.h3FailureRate = ewma(stats.h3FailureRate, failure, stats.h3Samples);
+        stats.h3Samples++;
+      } else {
+        stats.h2FailureRate = ewma(stats.h2FailureRate, failure, stats.h2Samples);
+        stats.h2Samples++;
+      }
+    }
+  }
+
+  @VisibleForTesting
+  void recordHappyEyeballsWinner(URI uri, boolean h3Won) {
+    if (!happyEyeballsAdaptive || uri == null) {
+      return;
+    }
+    HappyEyeballsStats stats =
+        HAPPY_EYEBALLS_STATS.computeIfAbsent(originKey(uri), k -> new HappyEyeballsStats());
+    synchronized (stats) {
+      if (h3Won) {
+        stats.consecutiveH3Wins++;
+        stats.consecutiveH2Wins = 0;
+      } else {
+        stats.consecutiveH2Wins++;
+        stats.consecutiveH3Wins = 0;
+      }
+      stats.skippedH3Races = 0;
+      stats.skippedH2Races = 0;
+    }
+    lowLevelDebug("Happy Eyeballs stats for origin {}: {}", originKey(uri), stats);
+  }
+
+  private static double ewma(double current, double sample, int samples) {
+    return samples == 0 ? sample
+        : current + HAPPY_EYEBALLS_EWMA_ALPHA * (sample - current);
+  }
+
   private AltSvcEntry parseAltSvc(String value) {
     String[] parts = value.split(",");
     boolean h3 = false;
@@ -2357,6 +2872,10 @@ public class HTTP2JettyClient {
     if (uri == null || !"https".equalsIgnoreCase(uri.getScheme())) {
       return;
     }
+    // HTTP/1.1 is forced while the circuit is not closed, so it says nothing about the server
+    if (!isCircuitClosed(uri)) {
+      return;
+    }
     String origin = originKey(uri);
     HttpVersion version = response.getVersion();
     if (version == HttpVersion.HTTP_1_1) {
@@ -2396,17 +2915,28 @@ public class HTTP2JettyClient {
     }
   }
 
-  private void markHttp3Broken(URI uri) {
+  /*
+   * Failures of HTTP/3 are recovered by falling back to HTTP/2, so they only mark HTTP/3 broken and
+   * are not counted by the circuit breaker, which would degrade the origin past HTTP/2.
+   */
+  @VisibleForTesting
+  void markHttp3Broken(URI uri) {
+    String origin = originKey(uri);
     if (!enableHttp3 || !altSvcCacheEnabled) {
       return;
     }
-    String origin = originKey(uri);
     AltSvcEntry entry = ALT_SVC_CACHE.get(origin);
     if (entry == null) {
       return;
     }
     entry.brokenUntil = System.currentTimeMillis() + http3BrokenCooldownMs;
     ALT_SVC_CACHE.put(origin, entry);
+    HappyEyeballsStats stats = HAPPY_EYEBALLS_STATS.get(origin);
+    if (stats != null) {
+      synchronized (stats) {
+        stats.consecutiveH3Wins = 0;
+      }
+    }
     lowLevelDebug("HTTP/3 marked broken for origin {} until {}", origin, entry.brokenUntil);
   }
 
@@ -2432,39 +2962,237 @@ public class HTTP2JettyClient {
     return null;
   }
 
-  private ContentResponse retryAfterGoAway(Request originalRequest)
+  private ContentResponse retryWithPolicy(Request originalRequest,
+                                          RetryPolicy.Condition condition,
+                                          ExecutionException failure)
+      throws InterruptedException, TimeoutException, ExecutionException {
+    return HttpExchangeEvent.record("retry", originalRequest,
+        () -> doRetryWithPolicy(originalRequest, condition, failure, null));
+  }
+
+  private ContentResponse retryWithPolicy(Request originalRequest,
+                                          RetryPolicy.Condition condition,
+                                          ContentResponse response)
+      throws InterruptedException, TimeoutException, ExecutionException {
+    return HttpExchangeEvent.record("retry", originalRequest,
+        () -> doRetryWithPolicy(originalRequest, condition, null, response));
+  }
+
+  /**
+   * Sends the request again while the retry policy allows it and the attempts keep failing with
+   * a retryable condition, waiting the backoff given by the policy before each attempt. Every
+   * failed attempt is recorded as a sub-result of the sample.
+   *
+   * @param failure failure of the request, or {@code null} when it got a retryable response.
+   * @return the response of the last attempt, which is the given response when no retry is
+   *     allowed.
+   * @throws ExecutionException with the failure of the last attempt.
+   */
+  private ContentResponse doRetryWithPolicy(Request originalRequest,
+                                            RetryPolicy.Condition condition,
+                                            ExecutionException failure,
+                                            ContentResponse response)
       throws InterruptedException, TimeoutException, ExecutionException {
-    if (originalRequest == null) {
-      throw new ExecutionException("Cannot retry after GOAWAY: original request is null", null);
-    }
     URI uri = originalRequest.getURI();
-    ExecutionException lastException = null;
-    for (int attempt = 1; attempt <= maxGoawayRetries; attempt++) {
+    String origin = originKey(uri);
+    ExecutionException lastFailure = failure;
+    ContentResponse lastResponse = response;
+    RetryPolicy.Condition lastCondition = condition;
+    // The request is retried once, even when the failure is handled again by an outer caller
+    boolean retried = Boolean.TRUE.equals(originalRequest.getAttributes().get(ATTR_RETRIED));
+    originalRequest.attribute(ATTR_RETRIED, true);
+    long attemptStart = sampleStartOf(originalRequest);
+    for (int attempt = 1; !retried; attempt++) {
+      long delay = retryPolicy.retryDelayMillis(origin, lastCondition, attempt,
+          lastResponse != null ? retryAfterMillis(lastResponse) : -1);
+      if (delay < 0) {
+        lowLevelDebug("Retry {} after {} not allowed for origin {}", attempt, lastCondition,
+            origin);
+        break;
+      }
+      recordRetriedAttempt(originalRequest, attempt, lastCondition, attemptStart, delay,
+          lastFailure, lastResponse);
+      if (delay > 0) {
+        backoff(originalRequest, delay);
+      }
+      attemptStart = System.currentTimeMillis();
+      HttpClient retryClient = selectHttpClient(uri);
+      lowLevelDebug("Retrying request after {}: attempt {} method={}, URI={}, client={}",
+          lastCondition, attempt, originalRequest.getMethod(), uri, retryClient.getName());
       try {
-        HttpClient retryClient = selectHttpClient(uri);
-        lowLevelDebug("Retrying request after GOAWAY: attempt {}/{} method={}, URI={}, client={}",
-            attempt, maxGoawayRetries, originalRequest.getMethod(), uri, retryClient.getName());
         Request retryRequest = cloneRequest(originalRequest, retryClient);
-        ContentResponse response = retryRequest.send();
-        updateHttp1OnlyCache(retryRequest, response);
-        updateH2cCache(retryRequest, response);
-        updateAltSvcCache(retryRequest, response.getHeaders());
-        return response;
+        ContentResponse retryResponse = retryRequest.send();
+        originalRequest.attribute(ATTR_RETRY_RESPONSE_END, System.currentTimeMillis());
+        updateHttp1OnlyCache(retryRequest, retryResponse);
+        updateH2cCache(retryRequest, retryResponse);
+        updateAltSvcCache(retryRequest, retryResponse.getHeaders());
+        lastCondition = retryConditionOf(retryRequest, retryResponse);
+        if (lastCondition == null) {
+          return retryResponse;
+        }
+        lastResponse = retryResponse;
+        lastFailure = null;
       } catch (ExecutionException e) {
-        lastException = e;
-        RetryableRequestException retryable = findRetryableRequestException(e);
-        if (retryable != null && attempt < maxGoawayRetries) {
-          LOG.warn("RetryableRequestException during GOAWAY retry, retrying: {}",
-              retryable.getMessage());
-          continue;
+        lastCondition = retryConditionOf(originalRequest, e);
+        if (lastCondition == null) {
+          throw e;
         }
-        throw e;
+        lastFailure = e;
+        lastResponse = null;
       }
     }
-    if (lastException != null) {
-      throw lastException;
+    if (lastResponse != null) {
+      return lastResponse;
+    }
+    throw lastFailure;
+  }
+
+  /**
+   * Waits the backoff before a retry, which is not accounted in the elapsed time of the sample.
+   */
+  private static void backoff(Request request, long delay) throws InterruptedException {
+    Object result = request.getAttributes().get(ATTR_SAMPLE_RESULT);
+    if (!(result instanceof HTTPSampleResult)) {
+      Thread.sleep(delay);
+      return;
+    }
+    HTTPSampleResult sampleResult = (HTTPSampleResult) result;
+    sampleResult.samplePause();
+    try {
+      Thread.sleep(delay);
+    } finally {
+      sampleResult.sampleResume();
+    }
+  }
+
+  /**
+   * @return the end of the response of the last retry of the request, or of the listener
+   *     response when it was not retried.
+   */
+  private static long responseEndOf(Request request, HTTP2FutureResponseListener listener) {
+    Object retryEnd = request != null ? request.getAttributes().get(ATTR_RETRY_RESPONSE_END)
+        : null;
+    return retryEnd instanceof Long ? Math.max((Long) retryEnd, listener.getResponseEnd())
+        : listener.getResponseEnd();
+  }
+
+  /**
+   * @return true when other failures than GOAWAY, and 503 responses, may be retried.
+   */
+  private boolean isRetryEnabled() {
+    return goawayRetryEnabled && retryMaxAttempts > 0;
+  }
+
+  /**
+   * @return the retryable condition of the failure, or {@code null} if the request may have been
+   *     processed by the server, is handled by another fallback or its retries are disabled.
+   */
+  private RetryPolicy.Condition retryConditionOf(Request request, Throwable failure) {
+    if (findRetryableRequestException(failure) != null) {
+      return goawayRetryEnabled && maxGoawayRetries > 0 ? RetryPolicy.Condition.GOAWAY : null;
+    }
+    if (!isRetryEnabled()) {
+      return null;
+    }
+    for (Throwable t = failure; t != null; t = t.getCause() != t ? t.getCause() : null) {
+      String message = t.getMessage() != null ? t.getMessage().toLowerCase(Locale.ROOT) : "";
+      if (message.contains(REFUSED_STREAM_ERROR)) {
+        return RetryPolicy.Condition.REFUSED_STREAM;
+      }
+    }
+    // HTTP/3 connect timeouts fall back to HTTP/2 instead
+    if (isHttp3ConnectTimeout(failure) && (request == null
+        || !Boolean.TRUE.equals(request.getAttributes().get(ATTR_HTTP3_ATTEMPTED)))) {
+      return RetryPolicy.Condition.CONNECT_TIMEOUT;
+    }
+    return null;
+  }
+
+  private RetryPolicy.Condition retryConditionOf(Request request, ContentResponse response) {
+    if (!isRetryEnabled() || request == null
+        || response.getStatus() != HttpStatus.SERVICE_UNAVAILABLE_503
+        || retryAfterMillis(response) < 0) {
+      return null;
+    }
+    HttpMethod method = HttpMethod.fromString(request.getMethod());
+    if (method == null || !method.isIdempotent()) {
+      return null;
+    }
+    return RetryPolicy.Condition.SERVICE_UNAVAILABLE;
+  }
+
+  private static long retryAfterMillis(ContentResponse response) {
+    return retryAfterMillis(response.getHeaders().get(HttpHeader.RETRY_AFTER),
+        System.currentTimeMillis());
+  }
+
+  /**
+   * @return the delay asked by a {@code Retry-After} value, either in seconds or as an HTTP-date,
+   * or -1 when missing or invalid.
+   */
+  @VisibleForTesting
+  static long retryAfterMillis(String retryAfter, long now) {
+    if (retryAfter == null) {
+      return -1;
+    }
+    String value = retryAfter.trim();
+    try {
+      return Math.max(0, Long.parseLong(value) * 1000);
+    } catch (NumberFormatException e) {
+      try {
+        long date = ZonedDateTime.parse(value, DateTimeFormatter.RFC_1123_DATE_TIME)
+            .toInstant().toEpochMilli();
+        return Math.max(0, date - now);
+      } catch (DateTimeParseException ex) {
+        return -1;
+      }
+    }
+  }
+
+  private long sampleStartOf(Request request) {
+    Object result = request.getAttributes().get(ATTR_SAMPLE_RESULT);
+    return result instanceof HTTPSampleResult && ((HTTPSampleResult) result).getStartTime() > 0
+        ? ((HTTPSampleResult) result).getStartTime() : System.currentTimeMillis();
+  }
+
+  private void recordRetriedAttempt(Request request, int retry, RetryPolicy.Condition condition,
+                                    long start, long delay, ExecutionException failure,
+                                    ContentResponse response) {
+    Object parent = request.getAttributes().get(ATTR_SAMPLE_RESULT);
+    if (!(parent instanceof HTTPSampleResult)) {
+      return;
+    }
+    HTTPSampleResult result = (HTTPSampleResult) parent;
+    HTTPSampleResult attempt = newResultLike(result);
+    attempt.setSampleLabel(result.getSampleLabel() + "-attempt-" + retry);
+    attempt.setThreadName(result.getThreadName());
+    attempt.setURL(result.getURL());
+    attempt.setHTTPMethod(request.getMethod());
+    attempt.setStampAndTime(start, System.currentTimeMillis() - start);
+    attempt.setSuccessful(false);
+    attempt.setDataType(SampleResult.TEXT);
+    if (response != null) {
+      attempt.setResponseCode(String.valueOf(response.getStatus()));
+      attempt.setResponseHeaders(response.getHeaders().toString());
+    } else {
+      Throwable cause = failure.getCause() != null ? failure.getCause() : failure;
+      attempt.setResponseCode("Non HTTP response code: " + cause.getClass().getName());
+      attempt.setResponseData(String.valueOf(cause.getMessage()), StandardCharsets.UTF_8.name());
+    }
+    attempt.setResponseMessage(condition + ", retried after " + delay + " ms");
+    result.addRawSubResult(attempt);
+  }
+
+  /**
+   * @return an empty result of the same type as the given one, so sub-results are saved and
+   *     rendered like their parent.
+   */
+  private static HTTPSampleResult newResultLike(HTTPSampleResult result) {
+    try {
+      return result.getClass().getDeclaredConstructor().newInstance();
+    } catch (ReflectiveOperationException e) {
+      return new HTTPSampleResult();
     }
-    throw new ExecutionException("Retry after GOAWAY failed without exception", null);
   }
 
   private ContentResponse sendWithHttp2Only(Request originalRequest)
@@ -2533,6 +3261,7 @@ public class HTTP2JettyClient {
 
   private void configureHttpClient(HttpClient client, ClientConnector connector) {
     client.setUserAgentField(null);
+    client.setHttpCookieStore(cookieStore);
     connector.setByteBufferPool(this.bufferPool);
     client.setMaxRequestsQueuedPerDestination(maxRequestsQueuedPerDestination);
     client.setMaxConnectionsPerDestination(maxConnectionsPerDestination);
@@ -2542,6 +3271,11 @@ public class HTTP2JettyClient {
     }
     client.setIdleTimeout(idleTimeout);
     addConnectionLogging(client);
+    client.addBean(connectionTracker);
+    if (connectionMetrics != null) {
+      client.addBean(connectionMetrics.connectionListener());
+      client.getRequestListeners().addListener(connectionMetrics.requestListener());
+    }
   }
 
   private static void addConnectionLogging(HttpClient client) {
@@ -2613,7 +3347,7 @@ public class HTTP2JettyClient {
   }
 
   private ClientConnector createClientConnector(String name) {
-    ClientConnector connector = new ClientConnector();
+    ClientConnector connector = new RequestPhaseTimings.TimedClientConnector(connectionTracker);
     if (sharedThreadPoolEnabled) {
       connector.setSelectors(-1);
     } else {
@@ -2720,6 +3454,16 @@ public class HTTP2JettyClient {
    */
   private void configureTransport(HttpClientTransport transport, int maxMultiplex) {
     transport.setConnectionPoolFactory((destination) -> {
+      if (maxMultiplex > 1) {
+        int maxConnections = destination.getHttpClient().getMaxConnectionsPerDestination();
+        if (connectionPoolStrategy != StreamAwareConnectionPool.Strategy.FIRST) {
+          maxConnections = Math.max(1, Math.min(spreadConnectionsPerDestination, maxConnections));
+        }
+        lowLevelDebug("Connection pool for {}: strategy={}, connections={}, maxMultiplex={}",
+            destination, connectionPoolStrategy, maxConnections, maxMultiplex);
+        return new StreamAwareConnectionPool(destination, connectionPoolStrategy, maxConnections,
+            maxMultiplex);
+      }
       MultiplexConnectionPool mcp = new MultiplexConnectionPool(
           destination,
           destination.getHttpClient().getMaxConnectionsPerDestination(),
@@ -2729,6 +3473,39 @@ public class HTTP2JettyClient {
     });
   }
 
+  /**
+   * Accounts for a failed request in the circuit of its origin: failures while the origin is
+   * degraded are failures of the known good protocol, otherwise only protocol failures count.
+   *
+   * @return true when the circuit is closed, so the request may be retried and fallen back.
+   */
+  private boolean recordCircuitFailure(Request request, boolean protocolFailure) {
+    if (request == null || !circuitBreaker.isEnabled()) {
+      return true;
+    }
+    String origin = originKey(request.getURI());
+    if (circuitBreaker.stateOf(origin) == OriginCircuitBreaker.State.DEGRADED) {
+      circuitBreaker.onFallbackFailure(origin);
+    } else if (protocolFailure) {
+      circuitBreaker.onProtocolFailure(origin);
+    }
+    return isCircuitClosed(request.getURI());
+  }
+
+  private boolean isCircuitClosed(URI uri) {
+    return !circuitBreaker.isEnabled() || uri == null
+        || circuitBreaker.stateOf(originKey(uri)) == OriginCircuitBreaker.State.CLOSED;
+  }
+
+  private void rejectWhenCircuitOpen(URI uri) throws IOException {
+    if (circuitBreaker.isEnabled()
+        && circuitBreaker.stateOf(originKey(uri)) == OriginCircuitBreaker.State.OPEN) {
+      circuitBreaker.onRejected();
+      throw new IOException("Circuit open for origin " + originKey(uri)
+          + ", request not sent");
+    }
+  }
+
   private String originKey(URI uri) {
     if (uri == null) {
       return "unknown";
@@ -2794,6 +3571,59 @@ public class HTTP2JettyClient {
     private long lastH3SuccessAt;
   }
 
+  private enum SamplerDataCapture {
+    FULL,
+    TRUNCATED,
+    NONE
+  }
+
+  private static StreamAwareConnectionPool.Strategy parseConnectionPoolStrategy(String value) {
+    try {
+      return StreamAwareConnectionPool.Strategy.parse(value);
+    } catch (IllegalArgumentException e) {
+      LOG.warn("Unknown connection pool strategy '{}', filling connections first", value);
+      return StreamAwareConnectionPool.Strategy.FIRST;
+    }
+  }
+
+  private static AdaptiveFlowControlStrategy.Mode parseFlowControlStrategy(String value) {
+    try {
+      return AdaptiveFlowControlStrategy.Mode.parse(value);
+    } catch (IllegalArgumentException e) {
+      LOG.warn("Unknown flow control strategy '{}', keeping static windows", value);
+      return AdaptiveFlowControlStrategy.Mode.STATIC;
+    }
+  }
+
+  private static SamplerDataCapture parseSamplerDataCapture(String value) {
+    try {
+      return SamplerDataCapture.valueOf(value.trim().toUpperCase(Locale.ROOT));
+    } catch (IllegalArgumentException e) {
+      LOG.warn("Unknown sampler data capture mode '{}', capturing full request body", value);
+      return SamplerDataCapture.FULL;
+    }
+  }
+
+  private static class HappyEyeballsStats {
+    private double h3ResponseMs;
+    private double h3FailureRate;
+    private double h2FailureRate;
+    private int h3Samples;
+    private int h2Samples;
+    private int consecutiveH3Wins;
+    private int consecutiveH2Wins;
+    private int skippedH3Races;
+    private int skippedH2Races;
+
+    @Override
+    public synchronized String toString() {
+      return String.format(Locale.ROOT,
+          "h3=%.1fms/%.2f fail (%d), h2=%.2f fail (%d), wins h3=%d h2=%d, skipped h3=%d h2=%d",
+          h3ResponseMs, h3FailureRate, h3Samples, h2FailureRate, h2Samples,
+          consecutiveH3Wins, consecutiveH2Wins, skippedH3Races, skippedH2Races);
+    }
+  }
+
   private static class Http1OnlyEntry {
     private long expiresAt;
   }
@@ -2888,7 +3718,20 @@ public class HTTP2JettyClient {
     boolean http3Attempted = enableHttp3 && client == httpClient && shouldAttemptHttp3(uri);
     request.attribute(ATTR_HTTP3_ATTEMPTED, http3Attempted);
     request.attribute(ATTR_ORIGIN_KEY, originKey(uri));
-    request.onRequestBegin(r -> result.connectEnd());
+    if (client == httpClientNoH3 && !FORCE_HTTP2_ONLY && shouldAttemptHttp3(uri)
+        && isHttp3RaceSkipped(uri)) {
+      recordSkippedHappyEyeballsRaceOnComplete(request, false);
+    }
+    RequestPhaseTimings timings = RequestPhaseTimings.attach(request, connectionTracker);
+    request.onRequestBegin(r -> {
+      // Connect time only covers connection establishment and TLS when the connection can be
+      // identified; otherwise keep the JMeter semantics of "time until the request can be sent".
+      if (timings.isConnectionResolved()) {
+        result.setConnectTime(timings.getConnectionSetupMs());
+      } else {
+        result.connectEnd();
+      }
+    });
     request.onRequestContent(
         (r, c) -> result.setSentBytes(result.getSentBytes() + c.limit()));
     request.onResponseBegin(r -> result.latencyEnd());
@@ -2973,10 +3816,6 @@ public class HTTP2JettyClient {
       }
     }
 
-    // Filter invalid headers for HTTP/2 (Issue #2788)
-    // HTTP/2 does not support Connection: close or other connection-specific headers
-    // This must be done after all headers are set to ensure we catch headers from HeaderManager
-    filterInvalidHTTP2Headers(request);
     // HTTP/2 cleartext (h2c) upgrade headers are only for HTTP, not HTTPS.
     // For HTTPS, HTTP/2 is negotiated via ALPN during the TLS handshake.
     // Adding upgrade headers on HTTPS can trigger protocol_error because:
@@ -2987,7 +3826,8 @@ public class HTTP2JettyClient {
         && !shouldUseH2cPriorKnowledge(request.getURI())) {
       Mutable headers = ((Mutable) request.getHeaders());
       addHeaderIfMissing(HttpHeader.UPGRADE, "h2c", headers);
-      addHeaderIfMissing(HttpHeader.HTTP2_SETTINGS, buildH2cSettingsHeaderValue(), headers);
+      addHeaderIfMissing(HttpHeader.HTTP2_SETTINGS, http2Settings.toH2cSettingsHeaderValue(),
+          headers);
       addHeaderIfMissing(HttpHeader.CONNECTION, "Upgrade, HTTP2-Settings", headers);
       if (request.getAttributes().get(HttpUpgrader.PROTOCOL_ATTRIBUTE) == null) {
         request.attribute(HttpUpgrader.PROTOCOL_ATTRIBUTE, "h2c");
@@ -3001,10 +3841,6 @@ public class HTTP2JettyClient {
           + "(ALPN handles HTTP/2 negotiation)");
     }
 
-    // Filter invalid headers for HTTP/2 again after upgrade headers (if any)
-    // This ensures we don't have invalid headers even after adding upgrade headers
-    filterInvalidHTTP2Headers(request);
-
     // Log all headers for debugging HTTP/2 protocol_error
     if (request.getHeaders() != null) {
       HttpFields headers = request.getHeaders();
@@ -3029,6 +3865,31 @@ public class HTTP2JettyClient {
     }
   }
 
+  /**
+   * Signals the RFC 9218 priority of the request with the {@code priority} header, understood by
+   * HTTP/2 and HTTP/3 servers alike. Jetty has no PRIORITY_UPDATE frame, and the RFC 7540
+   * priority of HEADERS frames is deprecated and ignored by most servers. A priority set through
+   * the header manager takes precedence.
+   */
+  private void addPriorityHeader(Request request, String priority) {
+    if (priority.isEmpty() || !(request.getHeaders() instanceof HttpFields.Mutable)) {
+      return;
+    }
+    HttpFields.Mutable headers = (HttpFields.Mutable) request.getHeaders();
+    if (headers.contains(RequestPriority.HEADER)) {
+      return;
+    }
+    try {
+      String value = RequestPriority.parse(priority).toHeaderValue();
+      // Default priority, same as sending none
+      if (!value.isEmpty()) {
+        headers.put(RequestPriority.HEADER, value);
+      }
+    } catch (IllegalArgumentException e) {
+      LOG.warn("Ignoring priority of {}: {}", request.getURI(), e.getMessage());
+    }
+  }
+
   private void ensureHostHeader(Request request, URL url) {
     if (request == null || url == null) {
       return;
@@ -3107,34 +3968,6 @@ public class HTTP2JettyClient {
     }
   }
 
-  private String buildH2cSettingsHeaderValue() {
-    Map<Integer, Integer> settings = new LinkedHashMap<>();
-    if (settingsHeaderTableSize > 0) {
-      settings.put(0x1, settingsHeaderTableSize);
-    }
-    if (settingsMaxConcurrentStreams > 0) {
-      settings.put(0x3, settingsMaxConcurrentStreams);
-    }
-    if (settingsInitialWindowSize > 0) {
-      settings.put(0x4, settingsInitialWindowSize);
-    }
-    if (settingsMaxFrameSize > 0) {
-      settings.put(0x5, settingsMaxFrameSize);
-    }
-    if (settingsMaxHeaderListSize > 0) {
-      settings.put(0x6, settingsMaxHeaderListSize);
-    }
-    if (settings.isEmpty()) {
-      return "";
-    }
-    ByteBuffer buffer = ByteBuffer.allocate(settings.size() * 6);
-    for (Map.Entry<Integer, Integer> entry : settings.entrySet()) {
-      buffer.putShort(entry.getKey().shortValue());
-      buffer.putInt(entry.getValue());
-    }
-    return Base64.getUrlEncoder().withoutPadding().encodeToString(buffer.array());
-  }
-
   /**
    * Filters invalid headers for HTTP/2 (Issue #2788).
    * HTTP/2 does not support certain headers like "Connection: close" or other
@@ -3142,12 +3975,14 @@ public class HTTP2JettyClient {
    * This method removes these headers to prevent protocol_error.
    *
    * @param request The HTTP request to filter headers from
+   * @return whether the Connection header was removed.
    */
-  private void filterInvalidHTTP2Headers(Request request) {
+  private boolean filterInvalidHTTP2Headers(Request request) {
     HttpFields headers = request.getHeaders();
     if (headers == null || !(headers instanceof HttpFields.Mutable)) {
-      return;
+      return false;
     }
+    boolean connectionRemoved = false;
 
     HttpFields.Mutable mutableHeaders = (HttpFields.Mutable) headers;
 
@@ -3167,6 +4002,7 @@ public class HTTP2JettyClient {
             !connectionValue.contains("HTTP2-Settings")) {
           lowLevelDebug("Removing invalid Connection header for HTTP/2: {}", connectionValue);
           mutableHeaders.remove(HttpHeader.CONNECTION);
+          connectionRemoved = true;
         }
       }
 
@@ -3181,6 +4017,7 @@ public class HTTP2JettyClient {
         });
       }
     }
+    return connectionRemoved;
   }
 
   private HttpField createJettyHeader(Header header, URL url) {
@@ -3216,32 +4053,10 @@ public class HTTP2JettyClient {
     if (cookieManager == null) {
       return null;
     }
-    HttpCookieStore cookieStore = httpClient.getHttpCookieStore();
-    if (cookieStore != null) {
-      URI uri = request.getURI();
-      if (cookieManager.getCookieCount() == 0) {
-        if (!cookieStore.match(uri).isEmpty()) {
-          cookieStore.clear();
-          lowLevelDebug("Cleared Jetty cookie store because JMeter CookieManager is empty");
-        }
-      } else {
-        Set<String> jmeterCookieNames = new HashSet<>();
-        for (JMeterProperty property : cookieManager.getCookies()) {
-          Cookie cookie = (Cookie) property.getObjectValue();
-          if (cookie != null) {
-            jmeterCookieNames.add(cookie.getName());
-          }
-        }
-        if (!jmeterCookieNames.isEmpty()) {
-          for (HttpCookie cookie : cookieStore.match(uri)) {
-            if (jmeterCookieNames.contains(cookie.getName())) {
-              cookieStore.remove(uri, cookie);
-              lowLevelDebug("Removed cookie '{}' from Jetty store because JMeter overrides it",
-                  cookie.getName());
-            }
-          }
-        }
-      }
+    List<String> removed = cookieStore.sync(request.getURI(), cookieManager);
+    if (!removed.isEmpty()) {
+      lowLevelDebug("Removed cookies {} from Jetty store because JMeter overrides them",
+          removed);
     }
     String cookieString = cookieManager.getCookieHeaderForURL(url);
     if (cookieString != null) {
@@ -3271,27 +4086,27 @@ public class HTTP2JettyClient {
     }
   }
 
-  private void setBody(Request request, HTTP2Sampler sampler, HTTPSampleResult result)
+  private String setBody(Request request, HTTP2Sampler sampler, HTTPSampleResult result)
       throws IOException {
+    String bodySamplerData = sampler.configureBody(request);
+    if (bodySamplerData != null) {
+      return setSamplerData(result, () -> bodySamplerData);
+    }
     String contentEncoding = sampler.getContentEncoding();
     String contentTypeHeader =
         request.getHeaders() != null ? request.getHeaders().get(HTTPConstants.HEADER_CONTENT_TYPE)
             : null;
     boolean hasContentTypeHeader = contentTypeHeader != null && contentTypeHeader.isEmpty();
-    StringBuilder postBody = new StringBuilder();
+    Supplier<String> samplerData = () -> "";
     if (sampler.getUseMultipart()) {
       // In Jetty 12, MultiPartRequestContent API has changed significantly
       // The methods addFieldPart() and addFilePart() no longer exist
-      // Solution: Build multipart body manually as bytes and use BytesRequestContent
+      // Solution: Build multipart body manually, streaming file parts from disk
       MultiPartRequestContent multipartEntityBuilder = new MultiPartRequestContent();
       String boundary = extractMultipartBoundary(multipartEntityBuilder);
       Charset contentCharset =
           buildCharsetOrDefault(contentEncoding, StandardCharsets.UTF_8);
 
-      // Build multipart body as bytes
-      byte[] multipartBody = buildMultipartBodyBytes(sampler, boundary, contentCharset,
-          hasContentTypeHeader);
-
       // Set Content-Type header with boundary
       // Note: boundary from extractMultipartBoundary() does NOT include the "--" prefix
       // The test expects: boundary="JettyHttpClient-..." (with quotes)
@@ -3299,33 +4114,16 @@ public class HTTP2JettyClient {
       // it will format it correctly. We need to match the test's format exactly.
       // The test (line 690) uses: "multipart/form-data; boundary=" + boundary.substring(2)
       // Since our boundary doesn't have "--", we use it directly
+      String multipartContentType = "multipart/form-data; boundary=\"" + boundary + "\"";
       HttpFields.Mutable headers = (Mutable) request.getHeaders();
-      headers.put(HTTPConstants.HEADER_CONTENT_TYPE,
-          "multipart/form-data; boundary=\"" + boundary + "\"");
-
-      // Use BytesRequestContent instead of MultiPartRequestContent
-      Request.Content requestContent = new BytesRequestContent(multipartBody);
-      request.body(requestContent);
-
-      // Build postBody string for query string display (for logging/debugging)
-      for (JMeterProperty jMeterProperty : sampler.getArguments()) {
-        HTTPArgument arg = (HTTPArgument) jMeterProperty.getObjectValue();
-        String parameterName = arg.getName();
-        if (!arg.isSkippable(parameterName)) {
-          postBody.append(
-              buildArgumentPartRequestBody(arg, contentCharset, contentEncoding, boundary));
-        }
-      }
-      for (int i = 0; i < sampler.getHTTPFiles().length; i++) {
-        final HTTPFileArg file = sampler.getHTTPFiles()[i];
-        if (StringUtils.isBlank(file.getParamName())) {
-          throw new IllegalStateException("Param name is blank");
-        }
-        String fileName = Paths.get((file.getPath())).getFileName().toString();
-        postBody.append(buildFilePartRequestBody(file, fileName, boundary));
-      }
-      postBody.append(MULTI_PART_SEPARATOR).append(boundary).append(MULTI_PART_SEPARATOR)
-          .append(LINE_SEPARATOR);
+      headers.put(HTTPConstants.HEADER_CONTENT_TYPE, multipartContentType);
+
+      request.body(buildMultipartContent(sampler, boundary, multipartContentType,
+          contentCharset, hasContentTypeHeader));
+
+      String multipartData = samplerDataCapture == SamplerDataCapture.NONE ? ""
+          : buildMultipartSamplerData(sampler, contentCharset, contentEncoding, boundary);
+      samplerData = () -> multipartData;
 
       multipartEntityBuilder.close();
     } else {
@@ -3344,11 +4142,13 @@ public class HTTP2JettyClient {
             ((HttpFields.Mutable) headers).put(HTTPConstants.HEADER_CONTENT_TYPE, mimeTypeFile);
           }
         }
+        ByteBuffer cachedFile = getCachedFileBody(Path.of(file.getPath()));
         // In Jetty 12, PathRequestContent implements Request.Content directly
-        Request.Content requestContent =
-            new PathRequestContent(mimeTypeFile, Path.of(file.getPath()));
+        Request.Content requestContent = cachedFile != null
+            ? new ByteBufferRequestContent(mimeTypeFile, cachedFile)
+            : new PathRequestContent(mimeTypeFile, Path.of(file.getPath()));
         request.body(requestContent);
-        postBody.append("<actual file content, not shown here>");
+        samplerData = () -> "<actual file content, not shown here>";
       } else {
         if (!hasContentTypeHeader && ADD_CONTENT_TYPE_TO_POST_IF_MISSING) {
           HttpFields headers = request.getHeaders();
@@ -3359,15 +4159,17 @@ public class HTTP2JettyClient {
         }
         Charset contentCharset = buildCharsetOrDefault(contentEncoding, StandardCharsets.UTF_8);
         if (sampler.getSendParameterValuesAsPostBody()) {
+          StringBuilder postBody = new StringBuilder();
           for (JMeterProperty jMeterProperty : sampler.getArguments()) {
             HTTPArgument arg = (HTTPArgument) jMeterProperty.getObjectValue();
             postBody.append(arg.getEncodedValue(contentCharset.name()));
           }
+          String body = postBody.toString();
           // In Jetty 12, StringRequestContent implements Request.Content directly
           Request.Content requestContent =
-              new StringRequestContent(contentTypeHeader, postBody.toString(),
-                  contentCharset);
+              new StringRequestContent(contentTypeHeader, body, contentCharset);
           request.body(requestContent);
+          samplerData = () -> body;
         } else if (isMethodWithBody(sampler.getMethod())) {
           Fields fields = new Fields();
           for (JMeterProperty p : sampler.getArguments()) {
@@ -3386,12 +4188,71 @@ public class HTTP2JettyClient {
               fields.add(parameterName, parameterValue);
             }
           }
-          postBody.append(FormRequestContent.convert(fields));
+          samplerData = () -> FormRequestContent.convert(fields);
           request.body(new FormRequestContent(fields, contentCharset));
         }
       }
     }
-    result.setQueryString(postBody.toString());
+    return setSamplerData(result, samplerData);
+  }
+
+  /**
+   * Stores the request body shown as sampler data according to the capture policy, building it
+   * only when it is captured.
+   *
+   * @return the captured sampler data.
+   */
+  private String setSamplerData(HTTPSampleResult result, Supplier<String> samplerData) {
+    String captured;
+    if (samplerDataCapture == SamplerDataCapture.NONE) {
+      captured = "";
+    } else if (samplerDataCapture == SamplerDataCapture.TRUNCATED) {
+      captured = truncateSamplerData(samplerData.get());
+    } else {
+      captured = samplerData.get();
+    }
+    result.setQueryString(captured);
+    return captured;
+  }
+
+  private String truncateSamplerData(String samplerData) {
+    if (samplerData.length() <= samplerDataMaxLength) {
+      return samplerData;
+    }
+    return samplerData.substring(0, samplerDataMaxLength) + "... (truncated)";
+  }
+
+  /**
+   * Builds the multipart body shown as sampler data, without file contents. With truncated
+   * capture, parts after {@code samplerDataMaxLength} characters are not built.
+   */
+  private String buildMultipartSamplerData(HTTP2Sampler sampler, Charset contentCharset,
+                                           String contentEncoding, String boundary)
+      throws UnsupportedEncodingException {
+    int maxLength = samplerDataCapture == SamplerDataCapture.TRUNCATED
+        ? samplerDataMaxLength
+        : Integer.MAX_VALUE;
+    StringBuilder postBody = new StringBuilder();
+    for (JMeterProperty jMeterProperty : sampler.getArguments()) {
+      HTTPArgument arg = (HTTPArgument) jMeterProperty.getObjectValue();
+      if (postBody.length() > maxLength) {
+        return postBody.toString();
+      }
+      if (!arg.isSkippable(arg.getName())) {
+        postBody.append(
+            buildArgumentPartRequestBody(arg, contentCharset, contentEncoding, boundary));
+      }
+    }
+    for (HTTPFileArg file : sampler.getHTTPFiles()) {
+      if (postBody.length() > maxLength) {
+        return postBody.toString();
+      }
+      String fileName = Paths.get((file.getPath())).getFileName().toString();
+      postBody.append(buildFilePartRequestBody(file, fileName, boundary));
+    }
+    postBody.append(MULTI_PART_SEPARATOR).append(boundary).append(MULTI_PART_SEPARATOR)
+        .append(LINE_SEPARATOR);
+    return postBody.toString();
   }
 
   private void initializeSentBytes(HTTPSampleResult result, Request request) {
@@ -3491,20 +4352,23 @@ public class HTTP2JettyClient {
   }
 
   /**
-   * Builds multipart/form-data body as bytes for Jetty 12.
-   * In Jetty 12, MultiPartRequestContent API changed, so we build the body manually.
+   * Builds multipart/form-data body for Jetty 12.
+   * In Jetty 12, MultiPartRequestContent API changed, so we build the body manually. Files are
+   * not loaded in memory, they are read from disk while the request is sent.
    *
    * @param sampler              The HTTP2 sampler with arguments and files
    * @param boundary             The multipart boundary (with -- prefix)
+   * @param contentType          The Content-Type of the body, including the boundary
    * @param contentCharset       The charset for encoding
    * @param hasContentTypeHeader Whether content type header is already set
-   * @return The complete multipart body as bytes
-   * @throws IOException If there's an error reading files
+   * @return The multipart body content
+   * @throws IOException If a file can't be accessed
    */
-  private byte[] buildMultipartBodyBytes(HTTP2Sampler sampler, String boundary,
-                                         Charset contentCharset, boolean hasContentTypeHeader)
+  private Request.Content buildMultipartContent(HTTP2Sampler sampler, String boundary,
+                                                String contentType, Charset contentCharset,
+                                                boolean hasContentTypeHeader)
       throws IOException {
-    ByteArrayOutputStream output = new ByteArrayOutputStream();
+    StreamingMultipartRequestContent output = new StreamingMultipartRequestContent(contentType);
     String newLine = LINE_SEPARATOR;
     String boundaryLine = MULTI_PART_SEPARATOR + boundary + newLine;
 
@@ -3524,12 +4388,12 @@ public class HTTP2JettyClient {
             .add("Content-Disposition", "form-data; name=\"" + arg.getEncodedName() + "\"")
             .add(HttpHeader.CONTENT_TYPE, argContentType);
 
-        output.write(boundaryLine.getBytes(StandardCharsets.US_ASCII));
-        output.write(partHeaders.toString().getBytes(StandardCharsets.US_ASCII));
-        output.write(newLine.getBytes(StandardCharsets.US_ASCII));
+        output.addBytes(boundaryLine.getBytes(StandardCharsets.US_ASCII));
+        output.addBytes(partHeaders.toString().getBytes(StandardCharsets.US_ASCII));
+        output.addBytes(newLine.getBytes(StandardCharsets.US_ASCII));
         String argValue = arg.getEncodedValue(contentCharset.name());
-        output.write(argValue.getBytes(contentCharset));
-        output.write(newLine.getBytes(StandardCharsets.US_ASCII));
+        output.addBytes(argValue.getBytes(contentCharset));
+        output.addBytes(newLine.getBytes(StandardCharsets.US_ASCII));
       }
     }
 
@@ -3548,26 +4412,28 @@ public class HTTP2JettyClient {
               "form-data; name=\"" + file.getParamName() + "\"; filename=\"" + fileName + "\"")
           .add(HttpHeader.CONTENT_TYPE, mimeTypeFile);
 
-      output.write(boundaryLine.getBytes(StandardCharsets.US_ASCII));
-      output.write(partHeaders.toString().getBytes(StandardCharsets.US_ASCII));
-      output.write(newLine.getBytes(StandardCharsets.US_ASCII));
-
-      // Read and write file content
-      try (InputStream fileStream = Files.newInputStream(Paths.get(file.getPath()))) {
-        byte[] buffer = new byte[8192];
-        int bytesRead;
-        while ((bytesRead = fileStream.read(buffer)) != -1) {
-          output.write(buffer, 0, bytesRead);
-        }
+      output.addBytes(boundaryLine.getBytes(StandardCharsets.US_ASCII));
+      output.addBytes(partHeaders.toString().getBytes(StandardCharsets.US_ASCII));
+      output.addBytes(newLine.getBytes(StandardCharsets.US_ASCII));
+      Path filePath = Paths.get(file.getPath());
+      ByteBuffer cachedFile = getCachedFileBody(filePath);
+      if (cachedFile != null) {
+        output.addBuffer(cachedFile);
+      } else {
+        output.addFile(filePath);
       }
-      output.write(newLine.getBytes(StandardCharsets.US_ASCII));
+      output.addBytes(newLine.getBytes(StandardCharsets.US_ASCII));
     }
 
     // Add final boundary
     String finalBoundary = MULTI_PART_SEPARATOR + boundary + MULTI_PART_SEPARATOR + newLine;
-    output.write(finalBoundary.getBytes(StandardCharsets.US_ASCII));
+    output.addBytes(finalBoundary.getBytes(StandardCharsets.US_ASCII));
+
+    return output;
+  }
 
-    return output.toByteArray();
+  private ByteBuffer getCachedFileBody(Path path) throws IOException {
+    return fileBodyCacheEnabled ? FileBodyCache.get(path) : null;
   }
 
   private boolean isMethodWithBody(String method) {
@@ -3666,23 +4532,29 @@ public class HTTP2JettyClient {
     if (cookieManager == null) {
       return;
     }
+    int countBefore = cookieManager.getCookieCount();
+    List<String> names = new ArrayList<>();
     for (HttpField field : response.getHeaders()) {
       if (field.is(HTTPConstants.HEADER_SET_COOKIE)) {
         String cookieHeader = field.getValue();
         if (cookieHeader != null) {
           cookieManager.addCookieFromHeader(cookieHeader, url);
+          int nameEnd = cookieHeader.indexOf('=');
+          names.add((nameEnd < 0 ? cookieHeader : cookieHeader.substring(0, nameEnd)).trim());
         }
       }
     }
+    if (!names.isEmpty()) {
+      cookieStore.onCookiesSaved(cookieManager, names, countBefore);
+    }
   }
 
   public void clearCookies() {
-    // In Jetty 12, getCookieStore() was replaced by getHttpCookieStore()
-    // removeAll() was replaced by clear()
-    HttpCookieStore cookieStore = httpClient.getHttpCookieStore();
-    if (cookieStore != null) {
-      cookieStore.clear();
-    }
+    cookieStore.clear();
+  }
+
+  public void resetCookieManager() {
+    cookieStore.resetManager();
   }
 
   public void clearAuthenticationResults() {
@@ -3752,19 +4624,64 @@ public class HTTP2JettyClient {
       return content;
     }
 
-    switch (encodingToken) {
-      case "gzip":
-      case "x-gzip":
-        return decodeGzip(content, contentEncoding);
-      case "deflate":
-        return decodeDeflate(content, contentEncoding);
-      case "br":
-        return decodeBrotli(content, contentEncoding);
-      case "zstd":
-        return decodeZstd(content, contentEncoding);
-      default:
-        return content;
+    ContentDecodeEvent event = new ContentDecodeEvent();
+    event.begin();
+    byte[] decoded = content;
+    String outcome;
+    try {
+      switch (encodingToken) {
+        case "gzip":
+        case "x-gzip":
+          decoded = decodeGzip(content);
+          break;
+        case "deflate":
+          decoded = decodeDeflate(content);
+          break;
+        case "br":
+          decoded = decodeBrotli(content);
+          break;
+        case "zstd":
+          decoded = decodeZstd(content);
+          break;
+        default:
+          return content;
+      }
+      outcome = decoded == content ? "passthrough" : "decoded";
+    } catch (IOException e) {
+      lowLevelDebug("Failed to decode {} content ({}), keeping original bytes", encodingToken,
+          contentEncoding, e);
+      outcome = "failure: " + e.getClass().getSimpleName();
+    } catch (RuntimeException e) {
+      commitContentDecodeEvent(event, contentResponse, encodingToken, content.length, 0,
+          "failure: " + e.getClass().getSimpleName());
+      throw e;
+    }
+    commitContentDecodeEvent(event, contentResponse, encodingToken, content.length,
+        decoded.length, outcome);
+    return decoded;
+  }
+
+  private void commitContentDecodeEvent(ContentDecodeEvent event, ContentResponse response,
+                                        String encoding, long encodedBytes, long decodedBytes,
+                                        String outcome) {
+    event.end();
+    if (!event.shouldCommit()) {
+      return;
+    }
+    Request request = response.getRequest();
+    if (request != null) {
+      event.origin = originKey(request.getURI());
+      Object stream = request.getAttributes().get(HttpExchangeEvent.STREAM_ID_ATTRIBUTE);
+      if (stream instanceof Number) {
+        event.streamId = ((Number) stream).longValue();
+      }
     }
+    event.protocol = String.valueOf(response.getVersion());
+    event.encoding = encoding;
+    event.encodedBytes = encodedBytes;
+    event.decodedBytes = decodedBytes;
+    event.outcome = outcome;
+    event.commit();
   }
 
   private String normalizeEncodingToken(String headerValue) {
@@ -3804,7 +4721,7 @@ public class HTTP2JettyClient {
     return false;
   }
 
-  private byte[] decodeGzip(byte[] content, String contentEncoding) {
+  private byte[] decodeGzip(byte[] content) throws IOException {
     if (content.length < 2 || (content[0] & 0xFF) != 0x1F || (content[1] & 0xFF) != 0x8B) {
       return content;
     }
@@ -3812,38 +4729,26 @@ public class HTTP2JettyClient {
          ByteArrayOutputStream output = new ByteArrayOutputStream(content.length)) {
       copy(input, output);
       return output.toByteArray();
-    } catch (IOException e) {
-      lowLevelDebug("Failed to decode gzip content ({}), keeping original bytes",
-          contentEncoding, e);
-      return content;
     }
   }
 
-  private byte[] decodeDeflate(byte[] content, String contentEncoding) {
+  private byte[] decodeDeflate(byte[] content) throws IOException {
     try (InputStream input = new InflaterInputStream(new ByteArrayInputStream(content));
          ByteArrayOutputStream output = new ByteArrayOutputStream(content.length)) {
       copy(input, output);
       return output.toByteArray();
-    } catch (IOException e) {
-      lowLevelDebug("Failed to decode deflate content ({}), keeping original bytes",
-          contentEncoding, e);
-      return content;
     }
   }
 
-  private byte[] decodeBrotli(byte[] content, String contentEncoding) {
+  private byte[] decodeBrotli(byte[] content) throws IOException {
     try (InputStream input = new BrotliInputStream(new ByteArrayInputStream(content));
          ByteArrayOutputStream output = new ByteArrayOutputStream(content.length)) {
       copy(input, output);
       return output.toByteArray();
-    } catch (IOException e) {
-      lowLevelDebug("Failed to decode brotli content ({}), keeping original bytes",
-          contentEncoding, e);
-      return content;
     }
   }
 
-  private byte[] decodeZstd(byte[] content, String contentEncoding) {
+  private byte[] decodeZstd(byte[] content) throws IOException {
     if (content.length < 4
         || (content[0] & 0xFF) != 0x28
         || (content[1] & 0xFF) != 0xB5
@@ -3855,10 +4760,6 @@ public class HTTP2JettyClient {
          ByteArrayOutputStream output = new ByteArrayOutputStream(content.length)) {
       copy(input, output);
       return output.toByteArray();
-    } catch (IOException e) {
-      lowLevelDebug("Failed to decode zstd content ({}), keeping original bytes",
-          contentEncoding, e);
-      return content;
     }
   }
 
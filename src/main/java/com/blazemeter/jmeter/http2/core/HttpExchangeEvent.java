@@ -0,0 +1,128 @@
+package com.blazemeter.jmeter.http2.core;
+
+import java.net.URI;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeoutException;
+import jdk.jfr.Category;
+import jdk.jfr.DataAmount;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+import jdk.jfr.StackTrace;
+import org.eclipse.jetty.client.ContentResponse;
+import org.eclipse.jetty.client.Request;
+
+/**
+ * Java Flight Recorder event covering one request exchange performed by
+ * {@link HTTP2JettyClient}: the main send, waiting for the content of an async request and each
+ * of the fallback paths (HTTP/1.1 only, retry after GOAWAY and Happy Eyeballs).
+ *
+ * <p>Events are only built when the event type is enabled in a running recording, so the
+ * instrumentation costs a single check otherwise.</p>
+ */
+@Name("com.blazemeter.http.Exchange")
+@Label("HTTP Exchange")
+@Category({"BlazeMeter", "HTTP"})
+@Description("Request exchange performed by the BlazeMeter HTTP client")
+@StackTrace(false)
+public class HttpExchangeEvent extends Event {
+
+  /**
+   * Request attribute where the HTTP/2 and HTTP/3 senders store the id of the stream used by the
+   * request.
+   */
+  public static final String STREAM_ID_ATTRIBUTE = "bzm.streamId";
+  private static final HttpExchangeEvent PROBE = new HttpExchangeEvent();
+
+  @Label("Operation")
+  String operation;
+
+  @Label("Origin")
+  String origin;
+
+  @Label("Protocol")
+  String protocol;
+
+  @Label("Stream Id")
+  long streamId = -1;
+
+  @Label("Status")
+  int status;
+
+  @Label("Response Bytes")
+  @DataAmount
+  long bytes;
+
+  @Label("Outcome")
+  String outcome;
+
+  @FunctionalInterface
+  interface Exchange {
+    ContentResponse execute() throws InterruptedException, TimeoutException, ExecutionException;
+  }
+
+  /**
+   * Runs the exchange, recording an event with its outcome when the event type is enabled.
+   */
+  static ContentResponse record(String operation, Request request, Exchange exchange)
+      throws InterruptedException, TimeoutException, ExecutionException {
+    if (!PROBE.isEnabled()) {
+      return exchange.execute();
+    }
+    HttpExchangeEvent event = new HttpExchangeEvent();
+    event.operation = operation;
+    event.begin();
+    try {
+      ContentResponse response = exchange.execute();
+      event.end();
+      if (event.shouldCommit()) {
+        event.describe(request, response);
+        event.outcome = "success";
+        event.commit();
+      }
+      return response;
+    } catch (InterruptedException | TimeoutException | ExecutionException | RuntimeException e) {
+      event.end();
+      if (event.shouldCommit()) {
+        event.describe(request, null);
+        event.outcome = failureOutcome(e);
+        event.commit();
+      }
+      throw e;
+    }
+  }
+
+  private void describe(Request request, ContentResponse response) {
+    Request effective = response != null && response.getRequest() != null
+        ? response.getRequest()
+        : request;
+    if (effective != null) {
+      URI uri = effective.getURI();
+      origin = uri != null ? uri.getScheme() + "://" + uri.getAuthority() : null;
+      Object stream = effective.getAttributes().get(STREAM_ID_ATTRIBUTE);
+      if (stream instanceof Number) {
+        streamId = ((Number) stream).longValue();
+      }
+    }
+    if (response != null) {
+      protocol = String.valueOf(response.getVersion());
+      status = response.getStatus();
+      byte[] content = response.getContent();
+      bytes = content != null ? content.length : 0;
+    }
+  }
+
+  private static String failureOutcome(Throwable failure) {
+    Throwable cause = failure instanceof ExecutionException && failure.getCause() != null
+        ? failure.getCause()
+        : failure;
+    if (ProtocolErrorException.isProtocolError(cause)) {
+      return "protocol_error";
+    }
+    if (failure instanceof TimeoutException) {
+      return "timeout";
+    }
+    return "failure: " + cause.getClass().getSimpleName();
+  }
+}
@@ -1,96 +1,95 @@
 package com.blazemeter.jmeter.http2.core;
 
-import java.net.URI;
-import java.net.URISyntaxException;
 import java.net.URL;
 import org.apache.http.Header;
 import org.apache.http.HttpResponse;
 import org.apache.http.ProtocolVersion;
-import org.apache.http.client.methods.HttpGet;
-import org.apache.http.client.methods.HttpHead;
-import org.apache.http.client.methods.HttpOptions;
-import org.apache.http.client.methods.HttpPatch;
-import org.apache.http.client.methods.HttpPost;
-import org.apache.http.client.methods.HttpPut;
 import org.apache.http.client.methods.HttpRequestBase;
-import org.apache.http.client.methods.HttpTrace;
 import org.apache.http.message.BasicHeader;
 import org.apache.http.message.BasicHttpResponse;
 import org.apache.jmeter.protocol.http.control.CacheManager;
-import org.apache.jmeter.protocol.http.sampler.HTTPHC4Impl.HttpDelete;
 import org.apache.jmeter.protocol.http.sampler.HTTPSampleResult;
-import org.apache.jmeter.protocol.http.sampler.HttpWebdav;
 import org.apache.jmeter.protocol.http.util.HTTPConstants;
 import org.apache.jmeter.util.JMeterUtils;
 import org.eclipse.jetty.client.ContentResponse;
 import org.eclipse.jetty.client.Request;
+import org.eclipse.jetty.http.HttpField;
 import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpStatus;
 import org.eclipse.jetty.http.HttpVersion;
 
+/**
+ * Bridge between Jetty requests and responses and the JMeter {@link CacheManager}.
+ *
+ * <p>The cache manager only works with Apache HttpClient messages, so requests and responses are
+ * exposed to it through views backed by the Jetty headers instead of being copied: conditional
+ * headers are written straight to the Jetty request and only the response headers the cache
+ * manager asks for are looked up.</p>
+ *
+ * <p>Optionally, static assets are also looked up in and saved to the engine wide
+ * {@link SharedStaticCache}: fresh ones are not requested, stale ones are revalidated with the
+ * validators another virtual user got, and their kept bodies fill cache hits and {@code 304}
+ * responses.</p>
+ */
 public class JettyCacheManager {
 
   private final CacheManager cacheManager;
+  private final boolean sharedStaticCache;
 
-  private JettyCacheManager(CacheManager cacheManager) {
+  private JettyCacheManager(CacheManager cacheManager, boolean sharedStaticCache) {
     this.cacheManager = cacheManager;
+    this.sharedStaticCache = sharedStaticCache;
   }
 
   public static JettyCacheManager fromCacheManager(CacheManager cacheManager) {
-    return cacheManager == null ? null : new JettyCacheManager(cacheManager);
+    return fromCacheManager(cacheManager, false);
   }
 
-  public void setHeaders(URL url, Request request) throws URISyntaxException {
-    HttpRequestBase apacheRequest = buildApacheRequest(url, request.getMethod());
-    cacheManager.setHeaders(url, apacheRequest);
-    setRequestHeaderFromApache(HTTPConstants.VARY, apacheRequest, request);
-    setRequestHeaderFromApache(HTTPConstants.IF_MODIFIED_SINCE, apacheRequest, request);
-    setRequestHeaderFromApache(HTTPConstants.IF_NONE_MATCH, apacheRequest, request);
+  public static JettyCacheManager fromCacheManager(CacheManager cacheManager,
+                                                   boolean sharedStaticCache) {
+    return cacheManager == null ? null : new JettyCacheManager(cacheManager, sharedStaticCache);
   }
 
-  private HttpRequestBase buildApacheRequest(URL url, String method) throws URISyntaxException {
-    URI uri = url.toURI();
-    switch (method) {
-      case HTTPConstants.POST:
-        return new HttpPost(uri);
-      case HTTPConstants.GET:
-        return new HttpGet(uri);
-      case HTTPConstants.PUT:
-        return new HttpPut(uri);
-      case HTTPConstants.HEAD:
-        return new HttpHead(uri);
-      case HTTPConstants.TRACE:
-        return new HttpTrace(uri);
-      case HTTPConstants.OPTIONS:
-        return new HttpOptions(uri);
-      case HTTPConstants.DELETE:
-        return new HttpDelete(uri);
-      case HTTPConstants.PATCH:
-        return new HttpPatch(uri);
-      default:
-        if (HttpWebdav.isWebdavMethod(method)) {
-          return new HttpWebdav(method, uri);
-        } else {
-          throw new IllegalArgumentException(String.format("Unexpected method: '%s'", method));
-        }
+  public void setHeaders(URL url, Request request) {
+    cacheManager.setHeaders(url, new JettyRequestView(request));
+    if (!sharedStaticCache || !HTTPConstants.GET.equals(request.getMethod())) {
+      return;
+    }
+    HttpFields headers = request.getHeaders();
+    if (headers.contains(HttpHeader.IF_NONE_MATCH)
+        || headers.contains(HttpHeader.IF_MODIFIED_SINCE)) {
+      return;
+    }
+    SharedStaticCache.Entry entry = SharedStaticCache.get(url.toString());
+    if (entry == null) {
+      return;
     }
+    request.headers(h -> {
+      if (entry.getETag() != null) {
+        h.put(HttpHeader.IF_NONE_MATCH, entry.getETag());
+      }
+      if (entry.getLastModified() != null) {
+        h.put(HttpHeader.IF_MODIFIED_SINCE, entry.getLastModified());
+      }
+    });
   }
 
-  private void setRequestHeaderFromApache(String headerName, HttpRequestBase apacheRequest,
-      Request request) {
-    Header header = apacheRequest.getFirstHeader(headerName);
-    if (header != null) {
-      HttpFields headers = request.getHeaders();
-      if (headers instanceof HttpFields.Mutable) {
-        ((HttpFields.Mutable) headers).put(headerName, header.getValue());
-      }
+  public boolean inCache(URL url, HttpFields headers) {
+    if (cacheManager.inCache(url, toApacheHeaders(headers))) {
+      return true;
     }
+    return sharedStaticCache && cacheManager.getUseExpires()
+        && SharedStaticCache.isFresh(url.toString());
   }
 
-  public boolean inCache(URL url, HttpFields headers) {
-    Header[] apacheHeaders = headers.stream()
-        .map(h -> new BasicHeader(h.getName(), h.getValue()))
-        .toArray(Header[]::new);
-    return cacheManager.inCache(url, apacheHeaders);
+  private static Header[] toApacheHeaders(HttpFields headers) {
+    Header[] apacheHeaders = new Header[headers.size()];
+    int i = 0;
+    for (HttpField field : headers) {
+      apacheHeaders[i++] = new BasicHeader(field.getName(), field.getValue());
+    }
+    return apacheHeaders;
   }
 
   public HTTPSampleResult buildCachedSampleResult(HTTPSampleResult res) {
@@ -102,6 +101,7 @@ public class JettyCacheManager {
         return null;
       case RETURN_200_CACHE:
         res.sampleEnd();
+        setSharedBody(res, null);
         res.setResponseCodeOK();
         res.setResponseMessage(
             JMeterUtils.getPropDefault("RETURN_200_CACHE.message", "(ex cache)"));
@@ -109,6 +109,7 @@ public class JettyCacheManager {
         return res;
       case RETURN_CUSTOM_STATUS:
         res.sampleEnd();
+        setSharedBody(res, null);
         res.setResponseCode(JMeterUtils.getProperty("RETURN_CUSTOM_STATUS.code"));
         res.setResponseMessage(
             JMeterUtils.getPropDefault("RETURN_CUSTOM_STATUS.message", "(ex cache)"));
@@ -119,6 +120,19 @@ public class JettyCacheManager {
     }
   }
 
+  private void setSharedBody(HTTPSampleResult res, String etag) {
+    if (!sharedStaticCache) {
+      return;
+    }
+    SharedStaticCache.Entry entry = SharedStaticCache.get(res.getUrlAsString());
+    if (entry != null && entry.getBody() != null
+        && (etag == null || etag.equals(entry.getETag()))) {
+      res.setResponseData(entry.getBody());
+      res.setContentType(entry.getContentType());
+      res.setEncodingAndType(entry.getContentType());
+    }
+  }
+
   private enum CachedResourceMode {
     RETURN_200_CACHE,
     RETURN_NO_SAMPLE,
@@ -127,28 +141,82 @@ public class JettyCacheManager {
 
   public void saveDetails(ContentResponse contentResponse, HTTPSampleResult result) {
     cacheManager.saveDetails(buildApacheResponse(contentResponse), result);
+    if (sharedStaticCache && HTTPConstants.GET.equals(result.getHTTPMethod())) {
+      String url = result.getUrlAsString();
+      SharedStaticCache.save(url, contentResponse.getStatus(), contentResponse.getHeaders(),
+          result.getResponseData());
+      if (contentResponse.getStatus() == HttpStatus.NOT_MODIFIED_304) {
+        setSharedBody(result, contentResponse.getHeaders().get(HttpHeader.ETAG));
+      }
+    }
   }
 
   public HttpResponse buildApacheResponse(ContentResponse contentResponse) {
-    HttpResponse httpResponse = new BasicHttpResponse(
-        buildApacheVersion(contentResponse.getVersion()), contentResponse.getStatus(),
-        contentResponse.getReason());
-    setApacheResponseHeader(HTTPConstants.VARY, contentResponse, httpResponse);
-    setApacheResponseHeader(HTTPConstants.LAST_MODIFIED, contentResponse, httpResponse);
-    setApacheResponseHeader(HTTPConstants.EXPIRES, contentResponse, httpResponse);
-    setApacheResponseHeader(HTTPConstants.ETAG, contentResponse, httpResponse);
-    setApacheResponseHeader(HTTPConstants.CACHE_CONTROL, contentResponse, httpResponse);
-    setApacheResponseHeader(HTTPConstants.DATE, contentResponse, httpResponse);
-    return httpResponse;
+    return new JettyResponseView(contentResponse);
   }
 
-  private ProtocolVersion buildApacheVersion(HttpVersion version) {
+  private static ProtocolVersion buildApacheVersion(HttpVersion version) {
     return new ProtocolVersion(version.name(), version.getVersion() / 10,
         version.getVersion() % 10);
   }
 
-  private void setApacheResponseHeader(String headerName, ContentResponse response,
-      HttpResponse apacheResponse) {
-    apacheResponse.addHeader(headerName, response.getHeaders().get(headerName));
+  /**
+   * Request view whose headers are the ones of the Jetty request, so conditional headers set by
+   * the cache manager don't need to be copied back.
+   */
+  private static class JettyRequestView extends HttpRequestBase {
+
+    private final Request request;
+
+    private JettyRequestView(Request request) {
+      this.request = request;
+    }
+
+    @Override
+    public String getMethod() {
+      return request.getMethod();
+    }
+
+    @Override
+    public Header[] getAllHeaders() {
+      return toApacheHeaders(request.getHeaders());
+    }
+
+    @Override
+    public void setHeader(String name, String value) {
+      request.headers(headers -> headers.put(name, value));
+    }
+  }
+
+  /**
+   * Response view that only looks up the headers the cache manager asks for. As the cache
+   * manager always asks for the last header, while the Jetty response was used to provide the
+   * first one, the first value is kept.
+   */
+  private static class JettyResponseView extends BasicHttpResponse {
+
+    private final HttpFields headers;
+
+    private JettyResponseView(ContentResponse response) {
+      super(buildApacheVersion(response.getVersion()), response.getStatus(),
+          response.getReason());
+      this.headers = response.getHeaders();
+    }
+
+    @Override
+    public Header getFirstHeader(String name) {
+      return getLastHeader(name);
+    }
+
+    @Override
+    public Header getLastHeader(String name) {
+      String value = headers.get(name);
+      return value == null ? null : new BasicHeader(name, value);
+    }
+
+    @Override
+    public boolean containsHeader(String name) {
+      return headers.contains(name);
+    }
   }
 }
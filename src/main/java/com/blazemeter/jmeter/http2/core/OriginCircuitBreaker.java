@@ -0,0 +1,191 @@
+package com.blazemeter.jmeter.http2.core;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Per origin circuit breaker for protocol failures (protocol_error and GOAWAY), shared by all
+ * virtual users.
+ *
+ * <p>Without it, every in-flight request to a struggling origin runs the whole retry and
+ * fallback chain on its own, multiplying the load on the server when it is least able to take
+ * it. Origins go through three states:</p>
+ * <ul>
+ *   <li>{@link State#CLOSED}: requests use the negotiated protocol and are retried and fallen
+ *   back as usual.</li>
+ *   <li>{@link State#DEGRADED}: after {@code failureThreshold} protocol failures within the last
+ *   {@code failureWindowMs}, requests go straight to the known good protocol (HTTP/1.1) without
+ *   retrying on the failing one, until {@code degradedMs} elapse. Each successful response
+ *   forgets the oldest failure counted, so a few successes don't hide a failing origin.</li>
+ *   <li>{@link State#OPEN}: when requests on the known good protocol keep failing as well,
+ *   requests fail fast, without being sent nor retried, for {@code openMs}. The origin is then
+ *   degraded again before being closed.</li>
+ * </ul>
+ *
+ * <p>Transitions are logged and counted in {@link #snapshot()}.</p>
+ */
+public class OriginCircuitBreaker {
+
+  private static final Logger LOG = LoggerFactory.getLogger(OriginCircuitBreaker.class);
+  private static final Map<String, OriginState> STATES = new ConcurrentHashMap<>();
+  private static final LongAdder DEGRADED_TRANSITIONS = new LongAdder();
+  private static final LongAdder OPEN_TRANSITIONS = new LongAdder();
+  private static final LongAdder CLOSED_TRANSITIONS = new LongAdder();
+  private static final LongAdder REJECTED_REQUESTS = new LongAdder();
+
+  private final int failureThreshold;
+  private final long failureWindowMs;
+  private final long degradedMs;
+  private final long openMs;
+
+  public OriginCircuitBreaker(int failureThreshold, long failureWindowMs, long degradedMs,
+                              long openMs) {
+    this.failureThreshold = failureThreshold;
+    this.failureWindowMs = failureWindowMs;
+    this.degradedMs = degradedMs;
+    this.openMs = openMs;
+  }
+
+  public enum State {
+    CLOSED,
+    DEGRADED,
+    OPEN
+  }
+
+  public boolean isEnabled() {
+    return failureThreshold > 0;
+  }
+
+  public State stateOf(String origin) {
+    OriginState state = STATES.get(origin);
+    if (state == null) {
+      return State.CLOSED;
+    }
+    synchronized (state) {
+      return state.current(System.currentTimeMillis(), origin, degradedMs);
+    }
+  }
+
+  /**
+   * Accounts for a protocol failure on the negotiated protocol.
+   */
+  public void onProtocolFailure(String origin) {
+    if (!isEnabled()) {
+      return;
+    }
+    OriginState state = STATES.computeIfAbsent(origin, o -> new OriginState());
+    synchronized (state) {
+      long now = System.currentTimeMillis();
+      if (state.current(now, origin, degradedMs) == State.CLOSED
+          && state.countFailure(now, failureThreshold, failureWindowMs)) {
+        state.transition(State.DEGRADED, now + degradedMs, origin);
+      }
+    }
+  }
+
+  /**
+   * Accounts for a failure on the known good protocol, while the origin is degraded.
+   */
+  public void onFallbackFailure(String origin) {
+    if (!isEnabled()) {
+      return;
+    }
+    OriginState state = STATES.get(origin);
+    if (state == null) {
+      return;
+    }
+    synchronized (state) {
+      long now = System.currentTimeMillis();
+      if (state.current(now, origin, degradedMs) == State.DEGRADED
+          && state.countFailure(now, failureThreshold, failureWindowMs)) {
+        state.transition(State.OPEN, now + openMs, origin);
+      }
+    }
+  }
+
+  /**
+   * Forgets the oldest failure counted for the origin, without changing its state.
+   */
+  public void onSuccess(String origin) {
+    OriginState state = STATES.get(origin);
+    if (state != null) {
+      synchronized (state) {
+        state.failures.pollFirst();
+      }
+    }
+  }
+
+  /**
+   * Accounts for a request failed fast because the origin is open.
+   */
+  public void onRejected() {
+    REJECTED_REQUESTS.increment();
+  }
+
+  public static Map<String, Long> snapshot() {
+    Map<String, Long> values = new LinkedHashMap<>();
+    values.put("circuitDegraded", DEGRADED_TRANSITIONS.sum());
+    values.put("circuitOpened", OPEN_TRANSITIONS.sum());
+    values.put("circuitClosed", CLOSED_TRANSITIONS.sum());
+    values.put("circuitRejected", REJECTED_REQUESTS.sum());
+    return values;
+  }
+
+  public static void clear() {
+    STATES.clear();
+    DEGRADED_TRANSITIONS.reset();
+    OPEN_TRANSITIONS.reset();
+    CLOSED_TRANSITIONS.reset();
+    REJECTED_REQUESTS.reset();
+  }
+
+  private static final class OriginState {
+
+    private State state = State.CLOSED;
+    private long until;
+    private final Deque<Long> failures = new ArrayDeque<>();
+
+    private State current(long now, String origin, long degradedMs) {
+      if (state == State.OPEN && now >= until) {
+        transition(State.DEGRADED, now + degradedMs, origin);
+      } else if (state == State.DEGRADED && now >= until) {
+        transition(State.CLOSED, 0, origin);
+      }
+      return state;
+    }
+
+    /**
+     * @return true when the failure reaches the threshold within the failure window.
+     */
+    private boolean countFailure(long now, int failureThreshold, long failureWindowMs) {
+      while (!failures.isEmpty() && now - failures.peekFirst() > failureWindowMs) {
+        failures.pollFirst();
+      }
+      failures.addLast(now);
+      return failures.size() >= failureThreshold;
+    }
+
+    private void transition(State next, long nextUntil, String origin) {
+      LOG.info("Circuit for origin {} changed from {} to {}", origin, state, next);
+      state = next;
+      until = nextUntil;
+      failures.clear();
+      switch (next) {
+        case DEGRADED:
+          DEGRADED_TRANSITIONS.increment();
+          break;
+        case OPEN:
+          OPEN_TRANSITIONS.increment();
+          break;
+        default:
+          CLOSED_TRANSITIONS.increment();
+      }
+    }
+  }
+}
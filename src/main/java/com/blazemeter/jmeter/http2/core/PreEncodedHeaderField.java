@@ -0,0 +1,65 @@
+package com.blazemeter.jmeter.http2.core;
+
+import java.nio.ByteBuffer;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.PreEncodedHttpField;
+
+/**
+ * Header of a {@link RequestTemplate} encoded once, when the template is built, instead of on
+ * every request that sends it.
+ *
+ * <p>The HPACK encoder of each connection still looks the field up in its static and dynamic
+ * tables first, so repeated fields keep being sent as indexes, and it only writes the
+ * pre-encoded literal (and adds it to the table) when the field is not indexed. Counting both
+ * events gives how often template headers hit the HPACK dynamic table.</p>
+ *
+ * <p>QPACK writes pre-encoded fields as literals without using its dynamic table, so the HTTP/3
+ * sender replaces these fields with {@link #getPlainField()}.</p>
+ */
+public class PreEncodedHeaderField extends PreEncodedHttpField {
+
+  private final HttpField plainField;
+  private final HTTP2ConnectionMetrics metrics;
+
+  private PreEncodedHeaderField(HttpField field, HTTP2ConnectionMetrics metrics) {
+    super(field.getHeader(), field.getName(), field.getValue());
+    this.plainField = field;
+    this.metrics = metrics;
+  }
+
+  /**
+   * @param metrics where to count sent fields and HPACK literals, may be {@code null}.
+   * @return a copy of the headers with every field pre-encoded.
+   */
+  public static HttpFields preEncode(HttpFields headers, HTTP2ConnectionMetrics metrics) {
+    HttpFields.Mutable encoded = HttpFields.build(headers.size());
+    for (HttpField field : headers) {
+      encoded.add(field instanceof PreEncodedHttpField || field.getValue() == null ? field
+          : new PreEncodedHeaderField(field, metrics));
+    }
+    return encoded;
+  }
+
+  public HttpField getPlainField() {
+    return plainField;
+  }
+
+  /**
+   * Called by the HTTP/2 sender for each pre-encoded field of a HEADERS frame.
+   */
+  public void onSent() {
+    if (metrics != null) {
+      metrics.recordPreEncodedHeaderSent();
+    }
+  }
+
+  @Override
+  public void putTo(ByteBuffer buffer, HttpVersion version) {
+    if (version == HttpVersion.HTTP_2 && metrics != null) {
+      metrics.recordPreEncodedHeaderLiteral();
+    }
+    super.putTo(buffer, version);
+  }
+}
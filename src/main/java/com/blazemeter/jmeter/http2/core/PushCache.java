@@ -0,0 +1,246 @@
+package com.blazemeter.jmeter.http2.core;
+
+import com.blazemeter.jmeter.http2.util.BzmHttpPluginProperties;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.net.URL;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import org.apache.jmeter.protocol.http.sampler.HTTPSampleResult;
+
+/**
+ * Responses pushed by servers (HTTP/2 PUSH_PROMISE) to a virtual user, waiting to be claimed by
+ * the embedded resources of its pages.
+ *
+ * <p>Each JMeter thread has its own cache, filled by the push handlers of the requests it sends
+ * and consulted before downloading an embedded resource, so pushed resources are not downloaded
+ * twice. An entry is claimed at most once, and the oldest entries are dropped when the cache
+ * exceeds {@code httpJettyClient.pushCacheMaxEntries} entries or the received responses exceed
+ * {@code httpJettyClient.pushCacheMaxBytes}.</p>
+ *
+ * <p>Pushes received, claimed and dropped without being claimed are counted engine wide, which
+ * tells whether pushes actually save requests or only waste bandwidth.</p>
+ */
+public final class PushCache {
+
+  private static final int DEFAULT_MAX_ENTRIES = 128;
+  private static final long DEFAULT_MAX_BYTES = 4 * 1024 * 1024;
+  private static final long DEFAULT_CLAIM_TIMEOUT_MS = 10000;
+  private static final int MAX_ENTRIES = Integer.parseInt(BzmHttpPluginProperties.getPropDefault(
+      "httpJettyClient.pushCacheMaxEntries", String.valueOf(DEFAULT_MAX_ENTRIES)));
+  private static final long MAX_BYTES = Long.parseLong(BzmHttpPluginProperties.getPropDefault(
+      "httpJettyClient.pushCacheMaxBytes", String.valueOf(DEFAULT_MAX_BYTES)));
+  private static final long CLAIM_TIMEOUT_MS = Long.parseLong(
+      BzmHttpPluginProperties.getPropDefault("httpJettyClient.pushClaimTimeoutMs",
+          String.valueOf(DEFAULT_CLAIM_TIMEOUT_MS)));
+  private static final ThreadLocal<PushCache> CURRENT =
+      ThreadLocal.withInitial(() -> new PushCache(MAX_ENTRIES, MAX_BYTES));
+  private static final LongAdder PUSHES_RECEIVED = new LongAdder();
+  private static final LongAdder PUSHES_CLAIMED = new LongAdder();
+  private static final LongAdder PUSHES_UNCLAIMED = new LongAdder();
+  private static final LongAdder PUSHED_BYTES = new LongAdder();
+
+  private final Map<String, Entry> entries;
+  private final long maxBytes;
+  private long bytes;
+
+  PushCache(int maxEntries, long maxBytes) {
+    this.maxBytes = maxBytes;
+    entries = new LinkedHashMap<String, Entry>() {
+      @Override
+      protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+        if (size() > maxEntries) {
+          bytes -= eldest.getValue().bytes;
+          PUSHES_UNCLAIMED.increment();
+          return true;
+        }
+        return false;
+      }
+    };
+  }
+
+  private static final class Entry {
+
+    private final CompletableFuture<HTTPSampleResult> result;
+    private long bytes;
+
+    private Entry(CompletableFuture<HTTPSampleResult> result) {
+      this.result = result;
+    }
+  }
+
+  /**
+   * @return the cache of the virtual user running in the current thread.
+   */
+  public static PushCache current() {
+    return CURRENT.get();
+  }
+
+  /**
+   * Releases the cache of the current thread, once its virtual user is done.
+   */
+  public static void remove() {
+    CURRENT.get().clear();
+    CURRENT.remove();
+  }
+
+  /**
+   * Registers a pushed response, still being received.
+   *
+   * @param result completes with the result of the pushed response once received, or with
+   *     {@code null} if the pushed stream failed.
+   */
+  void put(URI uri, CompletableFuture<HTTPSampleResult> result) {
+    if (MAX_ENTRIES <= 0 || maxBytes <= 0) {
+      return;
+    }
+    PUSHES_RECEIVED.increment();
+    String key = key(uri);
+    Entry entry = new Entry(result);
+    Entry previous;
+    synchronized (entries) {
+      previous = entries.put(key, entry);
+      if (previous != null) {
+        bytes -= previous.bytes;
+      }
+    }
+    if (previous != null) {
+      PUSHES_UNCLAIMED.increment();
+    }
+    result.thenAccept(res -> {
+      if (res != null) {
+        PUSHED_BYTES.add(res.getBytesAsLong());
+        onReceived(key, entry, res.getBytesAsLong());
+      }
+    });
+  }
+
+  /**
+   * Accounts the size of a received pushed response, dropping the oldest received responses
+   * while the cache holds more than its max bytes. Responses still being received are kept, since
+   * their size is not known yet.
+   */
+  private void onReceived(String key, Entry entry, long size) {
+    int dropped = 0;
+    synchronized (entries) {
+      if (entries.get(key) != entry) {
+        return;
+      }
+      entry.bytes = size;
+      bytes += size;
+      Iterator<Entry> it = entries.values().iterator();
+      while (bytes > maxBytes && it.hasNext()) {
+        Entry eldest = it.next();
+        if (eldest.bytes > 0) {
+          bytes -= eldest.bytes;
+          it.remove();
+          dropped++;
+        }
+      }
+    }
+    PUSHES_UNCLAIMED.add(dropped);
+  }
+
+  /**
+   * Claims the pushed response of a URL, waiting for it to be received.
+   *
+   * @param timeoutMs max time to wait for a pushed response still being received, 0 to wait up
+   *     to {@code httpJettyClient.pushClaimTimeoutMs}.
+   * @return the result of the pushed response, or {@code null} if the URL was not pushed, the
+   *     pushed stream failed or it didn't complete in time, in which case the resource should be
+   *     downloaded.
+   */
+  public HTTPSampleResult claim(URL url, long timeoutMs) throws InterruptedException {
+    Entry pushed;
+    try {
+      synchronized (entries) {
+        pushed = entries.remove(key(url.toURI()));
+        if (pushed != null) {
+          bytes -= pushed.bytes;
+        }
+      }
+    } catch (URISyntaxException e) {
+      return null;
+    }
+    if (pushed == null) {
+      return null;
+    }
+    try {
+      HTTPSampleResult result = pushed.result.get(timeoutMs > 0 ? timeoutMs : CLAIM_TIMEOUT_MS,
+          TimeUnit.MILLISECONDS);
+      if (result != null) {
+        PUSHES_CLAIMED.increment();
+      } else {
+        PUSHES_UNCLAIMED.increment();
+      }
+      return result;
+    } catch (ExecutionException | TimeoutException e) {
+      PUSHES_UNCLAIMED.increment();
+      return null;
+    }
+  }
+
+  /**
+   * @return true when the URL was pushed and its response is still being received, so claiming it
+   *     would wait for it.
+   */
+  public boolean isPending(URL url) {
+    try {
+      String key = key(url.toURI());
+      synchronized (entries) {
+        Entry pushed = entries.get(key);
+        return pushed != null && !pushed.result.isDone();
+      }
+    } catch (URISyntaxException e) {
+      return false;
+    }
+  }
+
+  public void clear() {
+    synchronized (entries) {
+      PUSHES_UNCLAIMED.add(entries.size());
+      entries.clear();
+      bytes = 0;
+    }
+  }
+
+  int size() {
+    synchronized (entries) {
+      return entries.size();
+    }
+  }
+
+  long bytes() {
+    synchronized (entries) {
+      return bytes;
+    }
+  }
+
+  private static String key(URI uri) {
+    String scheme = uri.getScheme() == null ? "" : uri.getScheme().toLowerCase(Locale.ROOT);
+    int port = uri.getPort();
+    if (port < 0) {
+      port = "https".equals(scheme) ? 443 : 80;
+    }
+    String path = uri.getRawPath() == null || uri.getRawPath().isEmpty() ? "/" : uri.getRawPath();
+    String host = uri.getHost() == null ? "" : uri.getHost().toLowerCase(Locale.ROOT);
+    return scheme + "://" + host + ":" + port + path
+        + (uri.getRawQuery() == null ? "" : "?" + uri.getRawQuery());
+  }
+
+  static Map<String, Long> snapshot() {
+    Map<String, Long> values = new LinkedHashMap<>();
+    values.put("pushesReceived", PUSHES_RECEIVED.sum());
+    values.put("pushesClaimed", PUSHES_CLAIMED.sum());
+    values.put("pushesUnclaimed", PUSHES_UNCLAIMED.sum());
+    values.put("pushedBytes", PUSHED_BYTES.sum());
+    return values;
+  }
+}
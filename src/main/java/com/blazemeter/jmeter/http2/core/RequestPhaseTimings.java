@@ -0,0 +1,233 @@
+package com.blazemeter.jmeter.http2.core;
+
+import java.io.IOException;
+import java.net.SocketAddress;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.apache.jmeter.threads.JMeterVariables;
+import org.eclipse.jetty.client.Request;
+import org.eclipse.jetty.io.ClientConnector;
+import org.eclipse.jetty.io.Connection;
+import org.eclipse.jetty.io.EndPoint;
+import org.eclipse.jetty.io.ssl.SslConnection;
+import org.eclipse.jetty.io.ssl.SslHandshakeListener;
+
+/**
+ * Per request breakdown of the time spent queued in the destination, establishing the
+ * connection, doing the TLS handshake, sending the request, waiting for the first response byte
+ * and downloading the response.
+ *
+ * <p>Request and response phases come from the Jetty request listeners. Connection and TLS
+ * phases are only attributed to a request when the connection it was sent on was opened after
+ * the request got queued, so requests on reused connections report zero for both. The connect
+ * phase starts when the connection starts connecting, so time waiting for a pooled connection or
+ * resolving the host is reported as queue time.</p>
+ */
+public class RequestPhaseTimings {
+
+  public static final String VARIABLE_PREFIX = "http2.timing.";
+  private static final String ATTR_PHASE_TIMINGS = "bzm.phaseTimings";
+
+  private volatile long queuedNanos;
+  private volatile long beginNanos;
+  private volatile long commitNanos;
+  private volatile long responseBeginNanos;
+  private volatile long responseEndNanos;
+  private volatile long connectNanos;
+  private volatile long tlsNanos;
+  private volatile boolean connectionResolved;
+
+  public static RequestPhaseTimings attach(Request request, ConnectionTracker tracker) {
+    RequestPhaseTimings timings = new RequestPhaseTimings();
+    request.attribute(ATTR_PHASE_TIMINGS, timings);
+    request.onRequestQueued(r -> timings.queuedNanos = System.nanoTime());
+    request.onRequestBegin(r -> timings.onBegin(r, tracker));
+    request.onRequestCommit(r -> timings.commitNanos = System.nanoTime());
+    request.onResponseBegin(r -> timings.responseBeginNanos = System.nanoTime());
+    request.onResponseSuccess(r -> timings.responseEndNanos = System.nanoTime());
+    request.onResponseFailure((r, failure) -> timings.responseEndNanos = System.nanoTime());
+    return timings;
+  }
+
+  public static RequestPhaseTimings from(Request request) {
+    Object timings = request != null ? request.getAttributes().get(ATTR_PHASE_TIMINGS) : null;
+    return timings instanceof RequestPhaseTimings ? (RequestPhaseTimings) timings : null;
+  }
+
+  private void onBegin(Request request, ConnectionTracker tracker) {
+    beginNanos = System.nanoTime();
+    if (queuedNanos == 0) {
+      queuedNanos = beginNanos;
+    }
+    org.eclipse.jetty.client.Connection connection = request.getConnection();
+    long[] opened = tracker != null && connection != null
+        ? tracker.lookup(connection.getLocalSocketAddress())
+        : null;
+    if (opened == null) {
+      return;
+    }
+    connectionResolved = true;
+    if (opened[1] >= queuedNanos) {
+      connectNanos = opened[1] - Math.max(opened[0], queuedNanos);
+      tlsNanos = opened[2] > opened[1] ? opened[2] - opened[1] : 0;
+    }
+  }
+
+  /**
+   * @return whether the connection used by the request was found, so that connect and TLS
+   *     phases are meaningful.
+   */
+  public boolean isConnectionResolved() {
+    return connectionResolved;
+  }
+
+  public long getQueueMs() {
+    return toMillis(beginNanos - queuedNanos - connectNanos - tlsNanos);
+  }
+
+  public long getConnectMs() {
+    return toMillis(connectNanos);
+  }
+
+  public long getTlsMs() {
+    return toMillis(tlsNanos);
+  }
+
+  public long getConnectionSetupMs() {
+    return toMillis(connectNanos + tlsNanos);
+  }
+
+  public long getRequestSendMs() {
+    return commitNanos > 0 ? toMillis(commitNanos - beginNanos) : 0;
+  }
+
+  public long getTimeToFirstByteMs() {
+    long sent = commitNanos > 0 ? commitNanos : beginNanos;
+    return responseBeginNanos > 0 ? toMillis(responseBeginNanos - sent) : 0;
+  }
+
+  public long getDownloadMs() {
+    return responseEndNanos > 0 && responseBeginNanos > 0
+        ? toMillis(responseEndNanos - responseBeginNanos)
+        : 0;
+  }
+
+  public Map<String, Long> toMap() {
+    Map<String, Long> values = new LinkedHashMap<>();
+    values.put("queue", getQueueMs());
+    values.put("connect", getConnectMs());
+    values.put("tls", getTlsMs());
+    values.put("send", getRequestSendMs());
+    values.put("ttfb", getTimeToFirstByteMs());
+    values.put("download", getDownloadMs());
+    return values;
+  }
+
+  public void publish(JMeterVariables vars) {
+    if (vars != null) {
+      toMap().forEach((name, value) -> vars.put(VARIABLE_PREFIX + name, String.valueOf(value)));
+    }
+  }
+
+  @Override
+  public String toString() {
+    return "RequestPhaseTimings" + toMap();
+  }
+
+  private static long toMillis(long nanos) {
+    return nanos > 0 ? TimeUnit.NANOSECONDS.toMillis(nanos) : 0;
+  }
+
+  /**
+   * Records when each wire level connection started and finished connecting and, for TLS
+   * connections, when the handshake completed. Connections are keyed by their local socket
+   * address, which is what the request side exposes through
+   * {@link org.eclipse.jetty.client.Connection}.
+   *
+   * <p>Connection start is only known for connections opened by a {@link TimedClientConnector},
+   * other connections report no connect phase.</p>
+   */
+  public static class ConnectionTracker implements Connection.Listener {
+
+    private final Map<SocketAddress, Long> connectStarts = new ConcurrentHashMap<>();
+    private final Map<SocketAddress, long[]> connections = new ConcurrentHashMap<>();
+
+    private void connectStarted(SocketAddress local, long startNanos) {
+      if (local != null) {
+        connectStarts.put(local, startNanos);
+      }
+    }
+
+    @Override
+    public void onOpened(Connection connection) {
+      if (connection.getEndPoint() instanceof SslConnection.SslEndPoint) {
+        return;
+      }
+      SocketAddress local = connection.getEndPoint().getLocalSocketAddress();
+      if (local == null) {
+        return;
+      }
+      long openedNanos = System.nanoTime();
+      Long startNanos = connectStarts.remove(local);
+      long[] timestamps =
+          new long[] {startNanos != null ? startNanos : openedNanos, openedNanos, 0};
+      connections.put(local, timestamps);
+      if (connection instanceof SslConnection) {
+        ((SslConnection) connection).addHandshakeListener(new SslHandshakeListener() {
+          @Override
+          public void handshakeSucceeded(Event event) {
+            timestamps[2] = System.nanoTime();
+          }
+        });
+      }
+    }
+
+    @Override
+    public void onClosed(Connection connection) {
+      SocketAddress local = connection.getEndPoint().getLocalSocketAddress();
+      if (local != null && !(connection.getEndPoint() instanceof SslConnection.SslEndPoint)) {
+        connectStarts.remove(local);
+        connections.remove(local);
+      }
+    }
+
+    long[] lookup(SocketAddress local) {
+      return local != null ? connections.get(local) : null;
+    }
+  }
+
+  /**
+   * Client connector that lets a {@link ConnectionTracker} know when each of its connections
+   * started connecting.
+   */
+  public static class TimedClientConnector extends ClientConnector {
+
+    private static final String CONNECT_START_CONTEXT_KEY = "bzm.connectStartNanos";
+
+    private final ConnectionTracker tracker;
+
+    public TimedClientConnector(ConnectionTracker tracker) {
+      this.tracker = tracker;
+    }
+
+    @Override
+    public void connect(SocketAddress address, Map<String, Object> context) {
+      if (context != null) {
+        context.put(CONNECT_START_CONTEXT_KEY, System.nanoTime());
+      }
+      super.connect(address, context);
+    }
+
+    @Override
+    protected Connection newConnection(EndPoint endPoint, Map<String, Object> context)
+        throws IOException {
+      Object startNanos = context != null ? context.get(CONNECT_START_CONTEXT_KEY) : null;
+      if (startNanos instanceof Long) {
+        tracker.connectStarted(endPoint.getLocalSocketAddress(), (Long) startNanos);
+      }
+      return super.newConnection(endPoint, context);
+    }
+  }
+}
@@ -0,0 +1,165 @@
+package com.blazemeter.jmeter.http2.core;
+
+import java.net.URL;
+import java.util.Locale;
+import java.util.Objects;
+
+/**
+ * Priority of a request, as signaled to servers with the RFC 9218 {@code priority} header: an
+ * urgency from 0 (most urgent) to 7, and whether the response may be delivered incrementally,
+ * interleaved with other responses of the same urgency.
+ *
+ * <p>Browsers send these signals so servers deliver render blocking resources first. Embedded
+ * resources get the priority browsers give to their type, so servers schedule responses as they
+ * would for a browser loading the same page.</p>
+ */
+public final class RequestPriority {
+
+  public static final String HEADER = "priority";
+  public static final int DEFAULT_URGENCY = 3;
+  private static final int MAX_URGENCY = 7;
+
+  private static final RequestPriority DOCUMENT = new RequestPriority(0, true);
+  private static final RequestPriority STYLESHEET = new RequestPriority(0, false);
+  private static final RequestPriority FONT = new RequestPriority(0, false);
+  private static final RequestPriority SCRIPT = new RequestPriority(1, false);
+  private static final RequestPriority IMAGE = new RequestPriority(2, true);
+
+  private final int urgency;
+  private final boolean incremental;
+
+  public RequestPriority(int urgency, boolean incremental) {
+    if (urgency < 0 || urgency > MAX_URGENCY) {
+      throw new IllegalArgumentException(String.format(
+          "Invalid priority urgency %d, it must be between 0 and %d", urgency, MAX_URGENCY));
+    }
+    this.urgency = urgency;
+    this.incremental = incremental;
+  }
+
+  /**
+   * Parses a priority from its structured field representation, as {@code u=1, i}. Missing
+   * parameters take their RFC 9218 defaults, and unknown ones are ignored.
+   *
+   * @throws IllegalArgumentException if the urgency is not an integer between 0 and 7, or the
+   *     incremental parameter is not a boolean.
+   */
+  public static RequestPriority parse(String value) {
+    int urgency = DEFAULT_URGENCY;
+    boolean incremental = false;
+    for (String param : value.split(",")) {
+      String trimmed = param.trim();
+      if (trimmed.isEmpty()) {
+        continue;
+      }
+      int eq = trimmed.indexOf('=');
+      String key = (eq < 0 ? trimmed : trimmed.substring(0, eq)).trim();
+      String paramValue = eq < 0 ? null : trimmed.substring(eq + 1).trim();
+      if ("u".equals(key)) {
+        urgency = parseUrgency(paramValue, value);
+      } else if ("i".equals(key)) {
+        incremental = parseIncremental(paramValue, value);
+      }
+    }
+    return new RequestPriority(urgency, incremental);
+  }
+
+  private static int parseUrgency(String value, String priority) {
+    try {
+      return Integer.parseInt(value);
+    } catch (NumberFormatException e) {
+      throw new IllegalArgumentException("Invalid priority urgency in '" + priority + "'", e);
+    }
+  }
+
+  private static boolean parseIncremental(String value, String priority) {
+    if (value == null || "?1".equals(value)) {
+      return true;
+    } else if ("?0".equals(value)) {
+      return false;
+    }
+    throw new IllegalArgumentException("Invalid priority incremental in '" + priority + "'");
+  }
+
+  /**
+   * @return the priority browsers give to a resource of the type of the URL extension, or
+   *     {@code null} when the type is not known, in which case no priority is signaled.
+   */
+  public static RequestPriority forResource(URL url) {
+    String path = url.getPath().toLowerCase(Locale.ROOT);
+    int dot = path.lastIndexOf('.');
+    if (dot < 0 || dot < path.lastIndexOf('/')) {
+      return null;
+    }
+    switch (path.substring(dot + 1)) {
+      case "html":
+      case "htm":
+        return DOCUMENT;
+      case "css":
+        return STYLESHEET;
+      case "woff":
+      case "woff2":
+      case "ttf":
+      case "otf":
+        return FONT;
+      case "js":
+      case "mjs":
+        return SCRIPT;
+      case "png":
+      case "jpg":
+      case "jpeg":
+      case "gif":
+      case "webp":
+      case "avif":
+      case "svg":
+      case "ico":
+        return IMAGE;
+      default:
+        return null;
+    }
+  }
+
+  public int getUrgency() {
+    return urgency;
+  }
+
+  public boolean isIncremental() {
+    return incremental;
+  }
+
+  /**
+   * @return the {@code priority} header value, omitting the parameters with default values.
+   */
+  public String toHeaderValue() {
+    StringBuilder value = new StringBuilder();
+    if (urgency != DEFAULT_URGENCY) {
+      value.append("u=").append(urgency);
+    }
+    if (incremental) {
+      value.append(value.length() > 0 ? ", i" : "i");
+    }
+    return value.toString();
+  }
+
+  @Override
+  public boolean equals(Object o) {
+    if (this == o) {
+      return true;
+    }
+    if (!(o instanceof RequestPriority)) {
+      return false;
+    }
+    RequestPriority that = (RequestPriority) o;
+    return urgency == that.urgency && incremental == that.incremental;
+  }
+
+  @Override
+  public int hashCode() {
+    return Objects.hash(urgency, incremental);
+  }
+
+  @Override
+  public String toString() {
+    return "u=" + urgency + (incremental ? ", i" : "");
+  }
+}
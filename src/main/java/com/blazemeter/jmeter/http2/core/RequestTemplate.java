@@ -0,0 +1,179 @@
+package com.blazemeter.jmeter.http2.core;
+
+import com.blazemeter.jmeter.http2.sampler.HTTP2Sampler;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import org.apache.jmeter.protocol.http.control.Header;
+import org.apache.jmeter.protocol.http.control.HeaderManager;
+import org.apache.jmeter.protocol.http.util.HTTPArgument;
+import org.apache.jmeter.testelement.property.JMeterProperty;
+import org.eclipse.jetty.client.ByteBufferRequestContent;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.Request;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+
+/**
+ * Headers and body that {@link HTTP2JettyClient} built for a sampler, kept to be replayed on the
+ * following samples while the sampler evaluates to the same values.
+ *
+ * <p>A template is matched against the evaluated inputs of each sample (URL, method, headers,
+ * arguments and the client state that affects headers) instead of trying to tell which
+ * properties use variables or functions, so pre-processors changing the sampler are honored.
+ * Values of samplers without variables are the same string instances on every sample, so
+ * matching mostly costs reference comparisons. A sampler whose values change between samples
+ * stops being templated.</p>
+ *
+ * <p>Only requests without body, or with a form or raw body of at most the configured size, are
+ * templated: file and multipart bodies are already streamed from disk.</p>
+ */
+final class RequestTemplate {
+
+  /**
+   * Marks samplers that are not templated, because they send files or their values changed
+   * between samples.
+   */
+  static final RequestTemplate NONE =
+      new RequestTemplate(null, null, false, null, null, null, null, 0, 0);
+
+  private final List<Object> inputs;
+  private final HttpFields headers;
+  private final boolean h2cUpgrade;
+  private final String bodyContentTypeHeader;
+  private final String bodyContentType;
+  private final ByteBuffer[] body;
+  private final String samplerData;
+  private final int preparedHeaderCount;
+  private final long sentBytesEstimate;
+
+  private RequestTemplate(List<Object> inputs, HttpFields headers, boolean h2cUpgrade,
+                          String bodyContentTypeHeader, String bodyContentType,
+                          ByteBuffer[] body, String samplerData,
+                          int preparedHeaderCount, long sentBytesEstimate) {
+    this.inputs = inputs;
+    this.headers = headers;
+    this.h2cUpgrade = h2cUpgrade;
+    this.bodyContentTypeHeader = bodyContentTypeHeader;
+    this.bodyContentType = bodyContentType;
+    this.body = body;
+    this.samplerData = samplerData;
+    this.preparedHeaderCount = preparedHeaderCount;
+    this.sentBytesEstimate = sentBytesEstimate;
+  }
+
+  /**
+   * Collects the values the request headers and body are built from.
+   *
+   * @return the inputs, or {@code null} when the sampler sends files or is not templatable, which
+   *     are never templated.
+   */
+  static List<Object> inputsOf(HTTP2Sampler sampler, String url, String method,
+                               HttpClient client, boolean http1UpgradeRequired,
+                               boolean h2cPriorKnowledge) {
+    // Bodies read from files are not kept, since files may change during the test
+    if (sampler.getUseMultipart() || !sampler.isTemplatable()
+        || (!sampler.hasArguments() && sampler.getSendFileAsPostBody())) {
+      return null;
+    }
+    List<Object> inputs = new ArrayList<>();
+    inputs.add(client);
+    inputs.add(url);
+    inputs.add(method);
+    inputs.add(http1UpgradeRequired);
+    inputs.add(h2cPriorKnowledge);
+    inputs.add(sampler.getContentEncoding());
+    inputs.add(sampler.getSendParameterValuesAsPostBody());
+    inputs.add(sampler.getPriority());
+    HeaderManager headerManager = sampler.getHeaderManager();
+    if (headerManager != null) {
+      for (JMeterProperty property : headerManager.getHeaders()) {
+        Header header = (Header) property.getObjectValue();
+        inputs.add(header.getName());
+        inputs.add(header.getValue());
+      }
+    }
+    inputs.add(null);
+    for (JMeterProperty property : sampler.getArguments()) {
+      HTTPArgument arg = (HTTPArgument) property.getObjectValue();
+      inputs.add(arg.getName());
+      inputs.add(arg.getValue());
+      inputs.add(arg.isAlwaysEncoded());
+    }
+    return inputs;
+  }
+
+  /**
+   * Builds a template from a request prepared without one.
+   *
+   * @param preparedHeaders headers of the request once sampler headers and Host were set.
+   * @param contentTypeBeforeBody Content-Type header before the body was set.
+   * @return the template or {@code null} when the body can't be replayed or is bigger than
+   *     {@code maxBodySize}.
+   */
+  static RequestTemplate compile(List<Object> inputs, HttpFields preparedHeaders,
+                                 boolean h2cUpgrade, String contentTypeBeforeBody,
+                                 Request request, String samplerData,
+                                 long sentBytesEstimate, int maxBodySize) {
+    Request.Content content = request.getBody();
+    ByteBuffer[] body = null;
+    String bodyContentType = null;
+    if (content != null) {
+      if (!(content instanceof ByteBufferRequestContent)
+          || content.getLength() < 0 || content.getLength() > maxBodySize) {
+        return null;
+      }
+      Collection<ByteBuffer> buffers = ((ByteBufferRequestContent) content).getByteBuffers();
+      body = new ByteBuffer[buffers.size()];
+      int i = 0;
+      for (ByteBuffer buffer : buffers) {
+        body[i++] = buffer.asReadOnlyBuffer();
+      }
+      bodyContentType = content.getContentType();
+    }
+    String contentType = request.getHeaders().get(HttpHeader.CONTENT_TYPE);
+    String bodyContentTypeHeader = contentType != null
+        && !contentType.equals(contentTypeBeforeBody) ? contentType : null;
+    return new RequestTemplate(inputs, preparedHeaders.asImmutable(), h2cUpgrade,
+        bodyContentTypeHeader, bodyContentType, body, samplerData,
+        request.getHeaders().size(), sentBytesEstimate);
+  }
+
+  boolean matches(List<Object> sampleInputs) {
+    return inputs.equals(sampleInputs);
+  }
+
+  boolean isH2cUpgrade() {
+    return h2cUpgrade;
+  }
+
+  void applyHeaders(Request request) {
+    request.headers(mutable -> {
+      mutable.clear();
+      mutable.add(headers);
+    });
+  }
+
+  String applyBody(Request request) {
+    if (bodyContentTypeHeader != null) {
+      request.headers(mutable -> mutable.put(HttpHeader.CONTENT_TYPE, bodyContentTypeHeader));
+    }
+    if (body != null) {
+      ByteBuffer[] buffers = new ByteBuffer[body.length];
+      for (int i = 0; i < body.length; i++) {
+        buffers[i] = body[i].duplicate();
+      }
+      request.body(new ByteBufferRequestContent(bodyContentType, buffers));
+    }
+    return samplerData;
+  }
+
+  /**
+   * @return the estimated request line and headers size computed when the template was built, or
+   *     -1 when the request got a different set of headers since then.
+   */
+  long getSentBytesEstimate(Request request) {
+    return request.getHeaders().size() == preparedHeaderCount ? sentBytesEstimate : -1;
+  }
+}
@@ -0,0 +1,46 @@
+package com.blazemeter.jmeter.http2.core;
+
+/**
+ * Decides whether and when requests that failed with a retryable condition are sent again.
+ *
+ * <p>Implementations are shared by the requests of a virtual user and may be configured with
+ * {@code blazemeter.http.retryPolicy}, as the name of a class with a public constructor without
+ * arguments. {@link BudgetedRetryPolicy} is used by default.</p>
+ */
+public interface RetryPolicy {
+
+  /**
+   * Conditions in which the request is known not to have been processed by the server, or the
+   * server asked for it to be sent again later.
+   */
+  enum Condition {
+    /**
+     * The connection was closed with a GOAWAY before the server processed the request stream.
+     */
+    GOAWAY,
+    /**
+     * The server reset the request stream with REFUSED_STREAM before processing it.
+     */
+    REFUSED_STREAM,
+    /**
+     * The connection to the server could not be established in time.
+     */
+    CONNECT_TIMEOUT,
+    /**
+     * The server answered {@code 503} with a {@code Retry-After} header to an idempotent request.
+     */
+    SERVICE_UNAVAILABLE
+  }
+
+  /**
+   * Accounts for a request about to be sent to the origin.
+   */
+  void onRequest(String origin);
+
+  /**
+   * @param attempt number of the retry about to be sent, starting at 1.
+   * @param retryAfterMillis delay asked by the server with {@code Retry-After}, or -1 if none.
+   * @return the milliseconds to wait before retrying, or -1 when the request must not be retried.
+   */
+  long retryDelayMillis(String origin, Condition condition, int attempt, long retryAfterMillis);
+}
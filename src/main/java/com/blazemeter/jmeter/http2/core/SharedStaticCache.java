@@ -0,0 +1,266 @@
+package com.blazemeter.jmeter.http2.core;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpStatus;
+
+/**
+ * Engine wide cache of static assets (images, style sheets, scripts and fonts), shared by all
+ * virtual users on top of their own JMeter cache manager.
+ *
+ * <p>It simulates assets already cached by a CDN-warmed browser population: once any virtual user
+ * downloaded an asset that a shared cache may store, the others don't request it again until it
+ * expires, and revalidate it with its validators ({@code ETag} and {@code Last-Modified}) once it
+ * is stale. Only responses with an explicit lifetime ({@code s-maxage}, {@code max-age} or
+ * {@code Expires}) that are not private, not {@code no-store}/{@code no-cache} and don't vary on
+ * anything but {@code Accept-Encoding} are kept.</p>
+ *
+ * <p>Entries are keyed by URL and, when {@link #configure(long, boolean) configured} to, keep
+ * the asset body so cache hits and {@code 304} revalidations get the content without downloading
+ * it. Least recently used entries are evicted once their estimated size exceeds the configured
+ * bytes.</p>
+ */
+public final class SharedStaticCache {
+
+  public static final long DEFAULT_MAX_BYTES = 64L * 1024 * 1024;
+  // Estimated bytes of an entry besides its URL and body
+  private static final int ENTRY_OVERHEAD = 128;
+  // A single body may not take more than this fraction of the cache, so a big asset can't
+  // evict all the others
+  private static final int MAX_BODY_FRACTION = 16;
+
+  private static final Map<String, Entry> ENTRIES = new LinkedHashMap<>(256, 0.75f, true);
+  private static long maxBytes = DEFAULT_MAX_BYTES;
+  private static boolean storeBodies;
+  private static long bytes;
+
+  private SharedStaticCache() {
+  }
+
+  /**
+   * Sets the maximum estimated size of the cache and whether asset bodies are kept, evicting
+   * entries if the cache no longer fits.
+   */
+  public static synchronized void configure(long maxBytes, boolean storeBodies) {
+    SharedStaticCache.maxBytes = maxBytes;
+    SharedStaticCache.storeBodies = storeBodies;
+    evict();
+  }
+
+  /**
+   * @return true when the asset was stored by any virtual user and is still fresh.
+   */
+  public static boolean isFresh(String url) {
+    Entry entry = get(url);
+    return entry != null && entry.isFresh();
+  }
+
+  /**
+   * @return the entry of the asset, fresh or stale, or {@code null} if it isn't cached.
+   */
+  public static synchronized Entry get(String url) {
+    return ENTRIES.get(url);
+  }
+
+  /**
+   * Stores the response of a GET request when it is a static asset that a shared cache may keep,
+   * or refreshes the lifetime of the cached asset when the response is a {@code 304} for it.
+   *
+   * @param body decoded body of the response, only kept when bodies are stored.
+   */
+  public static void save(String url, int status, HttpFields headers, byte[] body) {
+    if (status == HttpStatus.NOT_MODIFIED_304) {
+      refresh(url, headers);
+      return;
+    }
+    if (status != HttpStatus.OK_200) {
+      return;
+    }
+    String contentType = headers.get(HttpHeader.CONTENT_TYPE);
+    if (!isStaticAsset(contentType)) {
+      return;
+    }
+    long lifetime = lifetimeMillis(headers);
+    String etag = headers.get(HttpHeader.ETAG);
+    String lastModified = headers.get(HttpHeader.LAST_MODIFIED);
+    // Assets without lifetime are still worth keeping when they can be revalidated
+    if (lifetime < 0 || lifetime == 0 && etag == null && lastModified == null) {
+      return;
+    }
+    synchronized (SharedStaticCache.class) {
+      byte[] keptBody = storeBodies && body != null && body.length <= maxBytes / MAX_BODY_FRACTION
+          ? body : null;
+      put(url, new Entry(url, System.currentTimeMillis() + lifetime, etag, lastModified,
+          contentType, keptBody));
+    }
+  }
+
+  private static void refresh(String url, HttpFields headers) {
+    long lifetime = lifetimeMillis(headers);
+    if (lifetime < 0) {
+      return;
+    }
+    synchronized (SharedStaticCache.class) {
+      Entry entry = ENTRIES.get(url);
+      String etag = headers.get(HttpHeader.ETAG);
+      // A 304 with a different validator is not about the cached asset
+      if (entry == null || etag != null && !etag.equals(entry.etag)) {
+        return;
+      }
+      put(url, new Entry(url, System.currentTimeMillis() + lifetime, entry.etag,
+          entry.lastModified, entry.contentType, entry.body));
+    }
+  }
+
+  private static void put(String url, Entry entry) {
+    Entry previous = ENTRIES.put(url, entry);
+    if (previous != null) {
+      bytes -= previous.weight;
+    }
+    bytes += entry.weight;
+    evict();
+  }
+
+  private static void evict() {
+    Iterator<Entry> it = ENTRIES.values().iterator();
+    while (bytes > maxBytes && it.hasNext()) {
+      bytes -= it.next().weight;
+      it.remove();
+    }
+  }
+
+  public static synchronized int size() {
+    return ENTRIES.size();
+  }
+
+  /**
+   * @return the estimated bytes taken by the cached entries.
+   */
+  public static synchronized long bytes() {
+    return bytes;
+  }
+
+  public static synchronized void clear() {
+    ENTRIES.clear();
+    bytes = 0;
+  }
+
+  private static boolean isStaticAsset(String contentType) {
+    if (contentType == null) {
+      return false;
+    }
+    return startsWithIgnoreCase(contentType, "image/")
+        || startsWithIgnoreCase(contentType, "font/")
+        || startsWithIgnoreCase(contentType, "text/css")
+        || startsWithIgnoreCase(contentType, "text/javascript")
+        || startsWithIgnoreCase(contentType, "application/javascript")
+        || startsWithIgnoreCase(contentType, "application/font")
+        || startsWithIgnoreCase(contentType, "application/wasm");
+  }
+
+  private static boolean startsWithIgnoreCase(String value, String prefix) {
+    return value.regionMatches(true, 0, prefix, 0, prefix.length());
+  }
+
+  /**
+   * @return the freshness lifetime a shared cache may give the response, or -1 when it can't be
+   *     stored.
+   */
+  private static long lifetimeMillis(HttpFields headers) {
+    String vary = headers.get(HttpHeader.VARY);
+    if (vary != null && !vary.trim().equalsIgnoreCase(HttpHeader.ACCEPT_ENCODING.asString())) {
+      return -1;
+    }
+    long maxAge = -1;
+    long sharedMaxAge = -1;
+    String cacheControl = headers.get(HttpHeader.CACHE_CONTROL);
+    if (cacheControl != null) {
+      int start = 0;
+      while (start < cacheControl.length()) {
+        int end = cacheControl.indexOf(',', start);
+        if (end < 0) {
+          end = cacheControl.length();
+        }
+        String directive = cacheControl.substring(start, end).trim();
+        start = end + 1;
+        if (directive.equalsIgnoreCase("no-store") || directive.equalsIgnoreCase("no-cache")
+            || directive.equalsIgnoreCase("private")) {
+          return -1;
+        } else if (startsWithIgnoreCase(directive, "s-maxage=")) {
+          sharedMaxAge = parseSeconds(directive.substring("s-maxage=".length()));
+        } else if (startsWithIgnoreCase(directive, "max-age=")) {
+          maxAge = parseSeconds(directive.substring("max-age=".length()));
+        }
+      }
+    }
+    if (sharedMaxAge >= 0) {
+      return sharedMaxAge * 1000;
+    }
+    if (maxAge >= 0) {
+      return maxAge * 1000;
+    }
+    long expires = headers.getDateField(HttpHeader.EXPIRES.asString());
+    if (expires < 0) {
+      return -1;
+    }
+    long date = headers.getDateField(HttpHeader.DATE.asString());
+    return Math.max(0, expires - (date >= 0 ? date : System.currentTimeMillis()));
+  }
+
+  private static long parseSeconds(String value) {
+    try {
+      return Long.parseLong(value.trim().replace("\"", ""));
+    } catch (NumberFormatException e) {
+      return -1;
+    }
+  }
+
+  /**
+   * Cached asset. Entries are immutable, a refreshed asset gets a new entry.
+   */
+  public static final class Entry {
+
+    private final long expiration;
+    private final String etag;
+    private final String lastModified;
+    private final String contentType;
+    private final byte[] body;
+    private final long weight;
+
+    private Entry(String url, long expiration, String etag, String lastModified,
+                  String contentType, byte[] body) {
+      this.expiration = expiration;
+      this.etag = etag;
+      this.lastModified = lastModified;
+      this.contentType = contentType;
+      this.body = body;
+      this.weight = ENTRY_OVERHEAD + 2L * url.length() + (body != null ? body.length : 0);
+    }
+
+    public boolean isFresh() {
+      return expiration > System.currentTimeMillis();
+    }
+
+    public String getETag() {
+      return etag;
+    }
+
+    public String getLastModified() {
+      return lastModified;
+    }
+
+    public String getContentType() {
+      return contentType;
+    }
+
+    /**
+     * @return the asset body, or {@code null} when it was not kept. It must not be modified.
+     */
+    public byte[] getBody() {
+      return body;
+    }
+  }
+}
@@ -0,0 +1,330 @@
+package com.blazemeter.jmeter.http2.core;
+
+import com.helger.commons.annotation.VisibleForTesting;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Locale;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.ToIntFunction;
+import java.util.stream.Stream;
+import org.eclipse.jetty.client.Connection;
+import org.eclipse.jetty.client.ConnectionPool;
+import org.eclipse.jetty.client.Destination;
+import org.eclipse.jetty.client.MultiplexConnectionPool;
+import org.eclipse.jetty.util.ConcurrentPool;
+import org.eclipse.jetty.util.Pool;
+
+/**
+ * Multiplexed connection pool that sizes itself with the concurrent streams the server actually
+ * allows, and that may spread the requests of a destination across several connections, instead
+ * of filling a connection up to its max concurrent streams before opening another one as
+ * {@link MultiplexConnectionPool} does.
+ *
+ * <p>{@link MultiplexConnectionPool} decides whether to open a new connection for queued requests
+ * assuming each pending connection takes its initial max multiplex. When the server
+ * {@code SETTINGS_MAX_CONCURRENT_STREAMS} is lower than {@code maxMultiplex}, requests wait in the
+ * destination queue for connections that will never take them. This pool uses instead the max
+ * concurrent streams of its live connections, which follow the SETTINGS received from the
+ * server, so new connections are opened as soon as queued requests exceed the real capacity.</p>
+ *
+ * <p>Behind L4 load balancers each connection ends in a single backend, so a single busy
+ * connection tests a single backend, and all the streams share its flow control window. With the
+ * round-robin and least active streams strategies this pool opens up to {@code maxConnections}
+ * connections and picks them either in turns or by least active streams. Each connection then
+ * takes at most the concurrent streams allowed by the server, and never more than
+ * {@code maxMultiplex}.</p>
+ */
+final class StreamAwareConnectionPool extends MultiplexConnectionPool {
+
+  enum Strategy {
+    /**
+     * Fills a connection before opening another one, the default Jetty behavior.
+     */
+    FIRST,
+    ROUND_ROBIN,
+    LEAST_ACTIVE_STREAMS;
+
+    static Strategy parse(String value) {
+      return valueOf(value.trim().toUpperCase(Locale.ROOT).replace('-', '_'));
+    }
+  }
+
+  private final ToIntFunction<Connection> maxMultiplexer;
+  private final Set<Connection> connections = ConcurrentHashMap.newKeySet();
+  private volatile int serverMaxMultiplex;
+
+  StreamAwareConnectionPool(Destination destination, Strategy strategy, int maxConnections,
+                            int maxMultiplex) {
+    this(destination, strategy, maxConnections, maxMultiplex, strategy == Strategy.FIRST
+        ? MultiplexConnectionPool.newMaxMultiplexer(maxMultiplex)
+        : maxMultiplexer(maxMultiplex));
+  }
+
+  private StreamAwareConnectionPool(Destination destination, Strategy strategy,
+                                    int maxConnections, int maxMultiplex,
+                                    ToIntFunction<Connection> maxMultiplexer) {
+    super(destination, () -> newPool(strategy, maxConnections, maxMultiplexer), maxMultiplex);
+    this.maxMultiplexer = maxMultiplexer;
+    setInitialMaxMultiplex(maxMultiplex);
+    // Open all the connections instead of waiting for the first ones to be saturated
+    setMaximizeConnections(strategy != Strategy.FIRST);
+  }
+
+  @VisibleForTesting
+  static Pool<Connection> newPool(Strategy strategy, int maxConnections,
+                                 ToIntFunction<Connection> maxMultiplexer) {
+    switch (strategy) {
+      case ROUND_ROBIN:
+        return new ConcurrentPool<>(ConcurrentPool.StrategyType.ROUND_ROBIN, maxConnections,
+            maxMultiplexer);
+      case LEAST_ACTIVE_STREAMS:
+        return new LeastActiveStreamsPool(maxConnections, maxMultiplexer);
+      default:
+        return new ConcurrentPool<>(ConcurrentPool.StrategyType.FIRST, maxConnections,
+            maxMultiplexer);
+    }
+  }
+
+  /**
+   * @return the max concurrent streams of a connection: the limit announced by the server in its
+   *     SETTINGS, once received, capped to {@code maxMultiplex}.
+   */
+  static ToIntFunction<Connection> maxMultiplexer(int maxMultiplex) {
+    ToIntFunction<Connection> serverMaxMultiplex =
+        MultiplexConnectionPool.newMaxMultiplexer(maxMultiplex);
+    return connection -> Math.min(maxMultiplex, serverMaxMultiplex.applyAsInt(connection));
+  }
+
+  /**
+   * @return the concurrent streams a new connection is expected to take, used to decide whether
+   *     pending connections are enough for the queued requests: the lowest max multiplex of the
+   *     live connections, or of the last connection seen when there is none, and the configured
+   *     {@code maxMultiplex} until the server sent its SETTINGS.
+   */
+  @Override
+  public int getInitialMaxMultiplex() {
+    int learned = 0;
+    for (Connection connection : connections) {
+      if (connection instanceof ConnectionPool.MaxMultiplexable) {
+        int connectionMaxMultiplex = Math.max(1, maxMultiplexer.applyAsInt(connection));
+        learned = learned == 0 ? connectionMaxMultiplex : Math.min(learned, connectionMaxMultiplex);
+      }
+    }
+    if (learned > 0) {
+      serverMaxMultiplex = learned;
+    } else {
+      learned = serverMaxMultiplex;
+    }
+    return learned > 0 ? learned : super.getInitialMaxMultiplex();
+  }
+
+  @Override
+  protected void onCreated(Connection connection) {
+    connections.add(connection);
+    super.onCreated(connection);
+  }
+
+  @Override
+  protected void onRemoved(Connection connection) {
+    connections.remove(connection);
+    super.onRemoved(connection);
+  }
+
+  /**
+   * Pool acquiring the connection with the least active streams. Each connection is kept in its
+   * own single entry pool, so a given connection can be acquired while still honoring its max
+   * concurrent streams.
+   */
+  static final class LeastActiveStreamsPool implements Pool<Connection> {
+
+    private final Slot[] slots;
+    private volatile boolean terminated;
+
+    LeastActiveStreamsPool(int maxConnections, ToIntFunction<Connection> maxMultiplexer) {
+      slots = new Slot[maxConnections];
+      for (int i = 0; i < maxConnections; i++) {
+        slots[i] = new Slot(new ConcurrentPool<>(ConcurrentPool.StrategyType.FIRST, 1,
+            maxMultiplexer));
+      }
+    }
+
+    @Override
+    public Entry<Connection> reserve() {
+      if (terminated) {
+        return null;
+      }
+      for (Slot slot : slots) {
+        Entry<Connection> entry = slot.reserve();
+        if (entry != null) {
+          return entry;
+        }
+      }
+      return null;
+    }
+
+    @Override
+    public Entry<Connection> acquire() {
+      if (terminated) {
+        return null;
+      }
+      boolean[] tried = new boolean[slots.length];
+      while (true) {
+        int best = -1;
+        int bestActive = Integer.MAX_VALUE;
+        for (int i = 0; i < slots.length; i++) {
+          int active = slots[i].activeStreams();
+          if (!tried[i] && active >= 0 && active < bestActive) {
+            best = i;
+            bestActive = active;
+          }
+        }
+        if (best < 0) {
+          return null;
+        }
+        Entry<Connection> entry = slots[best].acquire();
+        if (entry != null) {
+          return entry;
+        }
+        tried[best] = true;
+      }
+    }
+
+    @Override
+    public boolean isTerminated() {
+      return terminated;
+    }
+
+    @Override
+    public Collection<Entry<Connection>> terminate() {
+      terminated = true;
+      Collection<Entry<Connection>> entries = new ArrayList<>();
+      for (Slot slot : slots) {
+        entries.addAll(slot.pool.terminate());
+      }
+      return entries;
+    }
+
+    @Override
+    public int size() {
+      return Arrays.stream(slots).mapToInt(slot -> slot.pool.size()).sum();
+    }
+
+    @Override
+    public int getMaxSize() {
+      return slots.length;
+    }
+
+    @Override
+    public Stream<Entry<Connection>> stream() {
+      return Arrays.stream(slots).flatMap(slot -> slot.pool.stream());
+    }
+  }
+
+  private static final class Slot {
+
+    private final ConcurrentPool<Connection> pool;
+    private volatile CountingEntry entry;
+
+    private Slot(ConcurrentPool<Connection> pool) {
+      this.pool = pool;
+    }
+
+    private synchronized Pool.Entry<Connection> reserve() {
+      Pool.Entry<Connection> reserved = pool.reserve();
+      if (reserved == null) {
+        return null;
+      }
+      entry = new CountingEntry(reserved);
+      return entry;
+    }
+
+    private Pool.Entry<Connection> acquire() {
+      Pool.Entry<Connection> acquired = pool.acquire();
+      if (acquired == null) {
+        return null;
+      }
+      CountingEntry current = entry;
+      if (current == null || current.delegate != acquired) {
+        acquired.release();
+        return null;
+      }
+      current.activeStreams.incrementAndGet();
+      return current;
+    }
+
+    /**
+     * @return the active streams of the connection, or -1 if there is no usable connection.
+     */
+    private int activeStreams() {
+      CountingEntry current = entry;
+      if (current == null || current.getPooled() == null || current.isTerminated()) {
+        return -1;
+      }
+      return current.activeStreams.get();
+    }
+  }
+
+  /**
+   * Entry counting the streams using its connection.
+   */
+  private static final class CountingEntry implements Pool.Entry<Connection> {
+
+    private final Pool.Entry<Connection> delegate;
+    private final AtomicInteger activeStreams = new AtomicInteger();
+
+    private CountingEntry(Pool.Entry<Connection> delegate) {
+      this.delegate = delegate;
+    }
+
+    @Override
+    public boolean enable(Connection pooled, boolean acquire) {
+      boolean enabled = delegate.enable(pooled, acquire);
+      if (enabled && acquire) {
+        activeStreams.incrementAndGet();
+      }
+      return enabled;
+    }
+
+    @Override
+    public Connection getPooled() {
+      return delegate.getPooled();
+    }
+
+    @Override
+    public boolean release() {
+      boolean released = delegate.release();
+      if (released) {
+        activeStreams.decrementAndGet();
+      }
+      return released;
+    }
+
+    @Override
+    public boolean remove() {
+      return delegate.remove();
+    }
+
+    @Override
+    public boolean isReserved() {
+      return delegate.isReserved();
+    }
+
+    @Override
+    public boolean isIdle() {
+      return delegate.isIdle();
+    }
+
+    @Override
+    public boolean isInUse() {
+      return delegate.isInUse();
+    }
+
+    @Override
+    public boolean isTerminated() {
+      return delegate.isTerminated();
+    }
+  }
+}
@@ -0,0 +1,166 @@
+package com.blazemeter.jmeter.http2.core;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import org.eclipse.jetty.client.ByteBufferRequestContent;
+import org.eclipse.jetty.client.PathRequestContent;
+import org.eclipse.jetty.client.Request;
+import org.eclipse.jetty.io.Content;
+import org.eclipse.jetty.util.thread.SerializedInvoker;
+
+/**
+ * Multipart request body that is produced while it is sent instead of being built in memory.
+ *
+ * <p>The body is a sequence of segments: consecutive boundaries, part headers and field values
+ * are kept as small byte arrays and file parts are either read from disk through
+ * {@link PathRequestContent} when the request is sent or served from a shared buffer. The total
+ * length is known beforehand, so the request is sent with a {@code Content-Length} header, and
+ * the content can be rewound to be sent again on retries and fallbacks.</p>
+ */
+public class StreamingMultipartRequestContent implements Request.Content {
+
+  private static final int FILE_BUFFER_SIZE = 64 * 1024;
+
+  private final String contentType;
+  private final List<SourceFactory> segments = new ArrayList<>();
+  private final ByteArrayOutputStream pending = new ByteArrayOutputStream();
+  private final SerializedInvoker invoker =
+      new SerializedInvoker(StreamingMultipartRequestContent.class);
+  private long length;
+  private int index;
+  private Content.Source current;
+  private Throwable failure;
+
+  public StreamingMultipartRequestContent(String contentType) {
+    this.contentType = contentType;
+  }
+
+  public StreamingMultipartRequestContent addBytes(byte[] bytes) {
+    pending.write(bytes, 0, bytes.length);
+    return this;
+  }
+
+  public StreamingMultipartRequestContent addFile(Path path) throws IOException {
+    long size = Files.size(path);
+    flushPending();
+    segments.add(() -> new PathRequestContent(null, path, FILE_BUFFER_SIZE));
+    length += size;
+    return this;
+  }
+
+  /**
+   * Adds content shared with other requests, like a cached file. The buffer is not modified, each
+   * read of the body uses its own view of it.
+   */
+  public StreamingMultipartRequestContent addBuffer(ByteBuffer buffer) {
+    flushPending();
+    ByteBuffer shared = buffer.asReadOnlyBuffer();
+    segments.add(() -> new ByteBufferRequestContent(shared.duplicate()));
+    length += shared.remaining();
+    return this;
+  }
+
+  private void flushPending() {
+    if (pending.size() == 0) {
+      return;
+    }
+    ByteBuffer buffer = ByteBuffer.wrap(pending.toByteArray()).asReadOnlyBuffer();
+    segments.add(() -> new ByteBufferRequestContent(buffer.duplicate()));
+    length += buffer.remaining();
+    pending.reset();
+  }
+
+  @Override
+  public String getContentType() {
+    return contentType;
+  }
+
+  @Override
+  public synchronized long getLength() {
+    return length + pending.size();
+  }
+
+  @Override
+  public synchronized Content.Chunk read() {
+    while (true) {
+      if (failure != null) {
+        return Content.Chunk.from(failure);
+      }
+      flushPending();
+      if (current == null) {
+        if (index >= segments.size()) {
+          return Content.Chunk.EOF;
+        }
+        try {
+          current = segments.get(index++).open();
+        } catch (IOException e) {
+          failure = e;
+          continue;
+        }
+      }
+      Content.Chunk chunk = current.read();
+      if (chunk == null || Content.Chunk.isFailure(chunk) || !chunk.isLast()) {
+        return chunk;
+      }
+      current = null;
+      if (index >= segments.size()) {
+        return chunk;
+      }
+      if (!chunk.hasRemaining()) {
+        chunk.release();
+        continue;
+      }
+      // Only the last chunk of the last segment may end the body.
+      return Content.Chunk.from(chunk.getByteBuffer(), false, chunk::release);
+    }
+  }
+
+  @Override
+  public void demand(Runnable demandCallback) {
+    Content.Source source;
+    synchronized (this) {
+      source = failure == null ? current : null;
+    }
+    if (source != null) {
+      source.demand(demandCallback);
+    } else {
+      invoker.run(demandCallback);
+    }
+  }
+
+  @Override
+  public void fail(Throwable failure) {
+    Content.Source source;
+    synchronized (this) {
+      if (this.failure == null) {
+        this.failure = failure;
+      }
+      source = current;
+      current = null;
+    }
+    if (source != null) {
+      source.fail(failure);
+    }
+  }
+
+  @Override
+  public synchronized boolean rewind() {
+    if (current != null) {
+      current.fail(new IOException("Multipart content rewound"));
+      current = null;
+    }
+    index = 0;
+    failure = null;
+    return true;
+  }
+
+  @FunctionalInterface
+  private interface SourceFactory {
+    Content.Source open() throws IOException;
+  }
+}
@@ -0,0 +1,203 @@
+package com.blazemeter.jmeter.http2.core;
+
+import com.helger.commons.annotation.VisibleForTesting;
+import java.net.URI;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import org.apache.jmeter.protocol.http.control.Cookie;
+import org.apache.jmeter.protocol.http.control.CookieManager;
+import org.apache.jmeter.testelement.property.CollectionProperty;
+import org.apache.jmeter.testelement.property.JMeterProperty;
+import org.eclipse.jetty.http.HttpCookie;
+import org.eclipse.jetty.http.HttpCookieStore;
+
+/**
+ * Jetty cookie store shared by the HTTP clients of a {@link HTTP2JettyClient}, which tracks what
+ * changed since it was last reconciled with the JMeter {@link CookieManager}.
+ *
+ * <p>JMeter cookies take precedence over the ones Jetty keeps (like the ones set by redirects
+ * Jetty follows), so before each request the Jetty cookies named as a JMeter cookie are removed.
+ * Instead of doing that on every request, the store keeps the version each domain last got a
+ * cookie at, the version the CookieManager cookie names last changed at, and the version each
+ * request target (the scheme, host and path cookies are matched with) was reconciled at, so
+ * requests only reconcile when a cookie was added for their host (or a parent domain of it) or the
+ * names changed. The names of the CookieManager cookies are cached and updated with the cookies
+ * the client saves from responses; any other change of the manager (detected through its cookie
+ * collection and count) rebuilds them.</p>
+ */
+final class SyncedCookieStore extends HttpCookieStore.Default {
+
+  private static final int MAX_SYNCED_TARGETS = 1024;
+
+  private final Map<String, Long> syncedVersions = new HashMap<>();
+  private final Map<String, Long> domainVersions = new HashMap<>();
+  private final Set<String> managerNames = new HashSet<>();
+  private long version;
+  private long managerVersion;
+  private CookieManager manager;
+  private CollectionProperty managerCookies;
+  private int managerCookieCount = -1;
+
+  @Override
+  public boolean add(URI uri, HttpCookie cookie) {
+    boolean added = super.add(uri, cookie);
+    String domain = cookie.getDomain();
+    changed(domain != null ? domain : uri.getHost());
+    return added;
+  }
+
+  private synchronized void changed(String domain) {
+    if (domain == null) {
+      managerChanged();
+      return;
+    }
+    domain = domain.toLowerCase(Locale.ROOT);
+    if (domain.startsWith(".")) {
+      domain = domain.substring(1);
+    }
+    if (domainVersions.size() >= MAX_SYNCED_TARGETS) {
+      domainVersions.clear();
+      managerChanged();
+      return;
+    }
+    domainVersions.put(domain, ++version);
+  }
+
+  private void managerChanged() {
+    managerVersion = ++version;
+  }
+
+  /*
+   * Cookies added for a domain also match its subdomains, so the version of a host is the latest
+   * one of the host, any of its parent domains and the CookieManager names.
+   */
+  private long versionOf(String host) {
+    long ret = managerVersion;
+    if (host == null) {
+      return ret;
+    }
+    String domain = host.toLowerCase(Locale.ROOT);
+    while (true) {
+      Long domainVersion = domainVersions.get(domain);
+      if (domainVersion != null && domainVersion > ret) {
+        ret = domainVersion;
+      }
+      int dot = domain.indexOf('.');
+      if (dot < 0) {
+        return ret;
+      }
+      domain = domain.substring(dot + 1);
+    }
+  }
+
+  /**
+   * Removes the Jetty cookies for the uri named as a CookieManager cookie, or all the Jetty
+   * cookies when the manager has none, unless nothing changed since the uri was last
+   * reconciled.
+   *
+   * @return the names of the removed cookies.
+   */
+  synchronized List<String> sync(URI uri, CookieManager cookieManager) {
+    CollectionProperty cookies = cookieManager.getCookies();
+    int count = cookieManager.getCookieCount();
+    if (cookieManager != manager || cookies != managerCookies || count != managerCookieCount) {
+      managerNames.clear();
+      for (JMeterProperty property : cookies) {
+        Cookie cookie = (Cookie) property.getObjectValue();
+        if (cookie != null) {
+          managerNames.add(cookie.getName());
+        }
+      }
+      manager = cookieManager;
+      managerCookies = cookies;
+      managerCookieCount = count;
+      managerChanged();
+    }
+    String target = targetOf(uri);
+    long current = versionOf(uri.getHost());
+    Long synced = syncedVersions.get(target);
+    if (synced != null && synced == current) {
+      return Collections.emptyList();
+    }
+    List<String> removed = new ArrayList<>();
+    List<HttpCookie> matched = match(uri);
+    if (count == 0) {
+      if (!matched.isEmpty()) {
+        for (HttpCookie cookie : matched) {
+          removed.add(cookie.getName());
+        }
+        clear();
+      }
+    } else if (!managerNames.isEmpty()) {
+      for (HttpCookie cookie : matched) {
+        if (managerNames.contains(cookie.getName())) {
+          remove(uri, cookie);
+          removed.add(cookie.getName());
+        }
+      }
+    }
+    if (syncedVersions.size() >= MAX_SYNCED_TARGETS) {
+      syncedVersions.clear();
+    }
+    syncedVersions.put(target, current);
+    return removed;
+  }
+
+  @VisibleForTesting
+  synchronized boolean isSynced(URI uri) {
+    Long synced = syncedVersions.get(targetOf(uri));
+    return synced != null && synced == versionOf(uri.getHost());
+  }
+
+  /**
+   * Updates the cached CookieManager names with the cookies just saved to it from a response.
+   * Targets only need to reconcile again when a name was not already known, since Jetty cookies
+   * named as the known ones were already removed.
+   *
+   * @param names names of the saved cookies.
+   * @param countBefore cookie count of the manager before saving them.
+   */
+  synchronized void onCookiesSaved(CookieManager cookieManager, Collection<String> names,
+                                   int countBefore) {
+    if (cookieManager == manager && cookieManager.getCookies() == managerCookies
+        && countBefore == managerCookieCount) {
+      int added = 0;
+      for (String name : names) {
+        if (managerNames.add(name)) {
+          added++;
+        }
+      }
+      int count = cookieManager.getCookieCount();
+      // Rejected or deleted cookies make the names unreliable, so they are computed again
+      managerCookieCount = count == countBefore + added ? count : -1;
+      if (added == 0) {
+        return;
+      }
+    }
+    managerChanged();
+  }
+
+  /**
+   * Forgets the cached CookieManager and its cookie names, so the next sync rebuilds them from the
+   * manager currently in scope instead of one removed or renamed since the last iteration.
+   */
+  synchronized void resetManager() {
+    managerNames.clear();
+    manager = null;
+    managerCookies = null;
+    managerCookieCount = -1;
+    syncedVersions.clear();
+    managerChanged();
+  }
+
+  private static String targetOf(URI uri) {
+    return uri.getScheme() + "://" + uri.getHost() + uri.getRawPath();
+  }
+}
@@ -1,11 +1,14 @@
 package com.blazemeter.jmeter.http2.core.jetty.custom.http2;
 
+import com.blazemeter.jmeter.http2.core.HttpExchangeEvent;
+import com.blazemeter.jmeter.http2.core.PreEncodedHeaderField;
 import java.nio.ByteBuffer;
 import java.util.function.Supplier;
 import org.eclipse.jetty.client.HttpUpgrader;
 import org.eclipse.jetty.client.transport.HttpExchange;
 import org.eclipse.jetty.client.transport.HttpRequest;
 import org.eclipse.jetty.http.HostPortHttpField;
+import org.eclipse.jetty.http.HttpField;
 import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpMethod;
@@ -27,6 +30,10 @@ import org.eclipse.jetty.util.URIUtil;
 /**
  * Custom HTTP/2 sender that filters HTTP/1.1-only headers before sending HEADERS.
  *
+ * <p>Headers of request templates may come as {@link PreEncodedHeaderField}, which the HPACK
+ * encoder writes without encoding them again; they are counted to report the dynamic table hit
+ * ratio.
+ *
  * <p>NOTE: This class depends on Jetty internal APIs and mirrors core logic.
  * It is a PoC and may break if Jetty internals change.
  */
@@ -41,6 +48,11 @@ public class CustomHttpSenderOverHTTP2 extends HttpSenderOverHTTP2 {
     HttpRequest request = exchange.getRequest();
     boolean isTunnel = HttpMethod.CONNECT.is(request.getMethod());
     HttpFields headers = filterHeaders(request);
+    for (HttpField field : headers) {
+      if (field instanceof PreEncodedHeaderField) {
+        ((PreEncodedHeaderField) field).onSent();
+      }
+    }
     MetaData.Request metaData;
     if (isTunnel) {
       String upgradeProtocol =
@@ -140,6 +152,7 @@ public class CustomHttpSenderOverHTTP2 extends HttpSenderOverHTTP2 {
 
     @Override
     public void succeeded(Stream stream) {
+      request.attribute(HttpExchangeEvent.STREAM_ID_ATTRIBUTE, stream.getId());
       long idleTimeout = request.getIdleTimeout();
       if (idleTimeout >= 0) {
         stream.setIdleTimeout(idleTimeout);
@@ -1,11 +1,15 @@
 package com.blazemeter.jmeter.http2.core.jetty.custom.http3;
 
+import com.blazemeter.jmeter.http2.core.HttpExchangeEvent;
+import com.blazemeter.jmeter.http2.core.PreEncodedHeaderField;
 import java.nio.ByteBuffer;
+import java.util.ListIterator;
 import java.util.function.Supplier;
 import org.eclipse.jetty.client.HttpUpgrader;
 import org.eclipse.jetty.client.transport.HttpExchange;
 import org.eclipse.jetty.client.transport.HttpRequest;
 import org.eclipse.jetty.http.HostPortHttpField;
+import org.eclipse.jetty.http.HttpField;
 import org.eclipse.jetty.http.HttpFields;
 import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpMethod;
@@ -134,6 +138,7 @@ public class CustomHttpSenderOverHTTP3 extends HttpSenderOverHTTP3 {
   }
 
   private void onNewStream(Stream stream, HttpRequest request) {
+    request.attribute(HttpExchangeEvent.STREAM_ID_ATTRIBUTE, stream.getId());
     long idleTimeout = request.getIdleTimeout();
     if (idleTimeout > 0) {
       ((HTTP3Stream) stream).setIdleTimeout(idleTimeout);
@@ -154,6 +159,14 @@ public class CustomHttpSenderOverHTTP3 extends HttpSenderOverHTTP3 {
       filtered.remove(HttpHeader.TE);
     }
 
+    // QPACK writes pre-encoded fields as literals, skipping its dynamic table
+    for (ListIterator<HttpField> it = filtered.listIterator(); it.hasNext(); ) {
+      HttpField field = it.next();
+      if (field instanceof PreEncodedHeaderField) {
+        it.set(((PreEncodedHeaderField) field).getPlainField());
+      }
+    }
+
     return filtered;
   }
 
@@ -0,0 +1,159 @@
+package com.blazemeter.jmeter.http2.sampler;
+
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import java.net.URL;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.apache.commons.codec.binary.Hex;
+import org.apache.jmeter.protocol.http.parser.LinkExtractorParseException;
+
+/**
+ * Engine wide cache of the embedded resources found in page responses, shared by all virtual
+ * users.
+ *
+ * <p>Parsing a page to extract its embedded resources is expensive, and in most tests all the
+ * virtual users get the same pages. Entries are keyed by a digest of the response body together
+ * with everything else the result depends on (parser, page URL, user agent, encoding and the
+ * allow and exclude URL filters), so identical pages are parsed and filtered only once while
+ * they stay in the cache.</p>
+ */
+final class EmbeddedResourceCache {
+
+  static final int DEFAULT_MAX_ENTRIES = 1000;
+  private static final String DIGEST_ALGORITHM = "SHA-256";
+
+  // Marker of pages without embedded resources, since the cache doesn't hold null values
+  private static final List<EmbeddedResource> NO_RESOURCES =
+      Collections.unmodifiableList(new ArrayList<>());
+  private static volatile int maxEntries = DEFAULT_MAX_ENTRIES;
+  private static volatile Cache<String, List<EmbeddedResource>> entries =
+      buildCache(DEFAULT_MAX_ENTRIES);
+
+  private EmbeddedResourceCache() {
+  }
+
+  /**
+   * Sets the maximum number of cached pages, discarding the cached ones when it changes. A value
+   * of 0 or less disables the cache.
+   */
+  static synchronized void configure(int maxEntries) {
+    if (maxEntries != EmbeddedResourceCache.maxEntries) {
+      entries = buildCache(maxEntries);
+      EmbeddedResourceCache.maxEntries = maxEntries;
+    }
+  }
+
+  private static Cache<String, List<EmbeddedResource>> buildCache(int maxEntries) {
+    return Caffeine.newBuilder()
+        .maximumSize(Math.max(maxEntries, 0))
+        .build();
+  }
+
+  /**
+   * @param loader resolves the resources when they are not cached; it may return {@code null}
+   *     when the page has no embedded resources at all. Concurrent lookups of the same page wait
+   *     for a single load.
+   * @return the resolved resources, or {@code null} if the page has none.
+   * @throws LinkExtractorParseException if the page can't be parsed, which is not cached.
+   */
+  static List<EmbeddedResource> get(byte[] body, String parser, String url, String userAgent,
+                                    String encoding, String allowRegex, String excludeRegex,
+                                    Loader loader)
+      throws LinkExtractorParseException {
+    if (maxEntries <= 0) {
+      return loader.load();
+    }
+    String key = parser + '\n' + url + '\n' + userAgent + '\n' + encoding + '\n' + allowRegex
+        + '\n' + excludeRegex + '\n' + digest(body);
+    List<EmbeddedResource> resources;
+    try {
+      resources = entries.get(key, k -> {
+        try {
+          List<EmbeddedResource> loaded = loader.load();
+          // Pages without embedded resources are cached too, so they are not parsed again
+          return loaded != null ? loaded : NO_RESOURCES;
+        } catch (LinkExtractorParseException e) {
+          throw new LoadException(e);
+        }
+      });
+    } catch (LoadException e) {
+      throw e.getCause();
+    }
+    return resources == NO_RESOURCES ? null : resources;
+  }
+
+  private static String digest(byte[] body) {
+    try {
+      return Hex.encodeHexString(MessageDigest.getInstance(DIGEST_ALGORITHM).digest(body));
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException(e);
+    }
+  }
+
+  static long size() {
+    Cache<String, List<EmbeddedResource>> cache = entries;
+    cache.cleanUp();
+    return cache.estimatedSize();
+  }
+
+  static void clear() {
+    entries.invalidateAll();
+  }
+
+  /**
+   * Embedded resource of a page: either the normalized URL to download or the error found while
+   * preparing it.
+   */
+  static final class EmbeddedResource {
+
+    private final URL url;
+    private final Exception error;
+
+    private EmbeddedResource(URL url, Exception error) {
+      this.url = url;
+      this.error = error;
+    }
+
+    static EmbeddedResource of(URL url) {
+      return new EmbeddedResource(url, null);
+    }
+
+    static EmbeddedResource failed(Exception error) {
+      return new EmbeddedResource(null, error);
+    }
+
+    URL getUrl() {
+      return url;
+    }
+
+    Exception getError() {
+      return error;
+    }
+  }
+
+  // Carries the parse failure of a load out of the cache, which doesn't cache it
+  private static final class LoadException extends RuntimeException {
+
+    private LoadException(LinkExtractorParseException cause) {
+      super(cause);
+    }
+
+    @Override
+    public synchronized LinkExtractorParseException getCause() {
+      return (LinkExtractorParseException) super.getCause();
+    }
+  }
+
+  /**
+   * Parses and filters the embedded resources of a page.
+   */
+  @FunctionalInterface
+  interface Loader {
+
+    List<EmbeddedResource> load() throws LinkExtractorParseException;
+  }
+}
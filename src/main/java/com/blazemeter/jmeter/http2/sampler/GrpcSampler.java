@@ -0,0 +1,203 @@
+package com.blazemeter.jmeter.http2.sampler;
+
+import com.blazemeter.jmeter.http2.core.FileBodyCache;
+import com.blazemeter.jmeter.http2.core.GrpcFraming;
+import com.blazemeter.jmeter.http2.core.HTTP2JettyClient;
+import com.blazemeter.jmeter.http2.util.BzmHttpPluginProperties;
+import com.helger.commons.annotation.VisibleForTesting;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import org.apache.jmeter.protocol.http.sampler.HTTPSampleResult;
+import org.apache.jmeter.protocol.http.util.HTTPConstants;
+import org.eclipse.jetty.client.ByteBufferRequestContent;
+import org.eclipse.jetty.client.ContentResponse;
+import org.eclipse.jetty.client.Request;
+import org.eclipse.jetty.http.HttpHeader;
+
+/**
+ * Sampler of gRPC calls over HTTP/2, sent by the same clients and connections as the
+ * {@link HTTP2Sampler}, so concurrent calls of a virtual user are multiplexed in its connections.
+ *
+ * <p>The request message is read from a file holding its serialized protobuf bytes, and the
+ * response messages are reported as their serialized bytes, so no code has to be generated for
+ * the service. gRPC requires HTTP/2, so HTTP/1.1 and HTTP/3 are never used, and cleartext
+ * servers are reached with HTTP/2 prior knowledge.</p>
+ */
+public class GrpcSampler extends HTTP2Sampler {
+
+  public enum CallType {
+    /**
+     * Single request and response message.
+     */
+    UNARY,
+    /**
+     * Single request message, any number of response messages.
+     */
+    SERVER_STREAMING;
+
+    public static CallType parse(String value) {
+      return valueOf(value.trim().toUpperCase(Locale.ROOT));
+    }
+  }
+
+  private static final String FULL_METHOD_PROPERTY = "GrpcSampler.fullMethod";
+  private static final String MESSAGE_FILE_PROPERTY = "GrpcSampler.messageFile";
+  private static final String CALL_TYPE_PROPERTY = "GrpcSampler.callType";
+  private static final String DEADLINE_PROPERTY = "GrpcSampler.deadlineMs";
+  private static final boolean FILE_BODY_CACHE_ENABLED =
+      BzmHttpPluginProperties.getPropDefault("httpJettyClient.fileBodyCacheEnabled", false);
+
+  public GrpcSampler() {
+    super();
+    setName("bzm - gRPC Sampler");
+  }
+
+  @VisibleForTesting
+  public GrpcSampler(Callable<HTTP2JettyClient> clientFactory) {
+    super(clientFactory);
+    setName("bzm - gRPC Sampler");
+  }
+
+  /**
+   * @param fullMethod method to call, as {@code package.Service/Method}.
+   */
+  public void setFullMethod(String fullMethod) {
+    setProperty(FULL_METHOD_PROPERTY, fullMethod);
+  }
+
+  public String getFullMethod() {
+    return getPropertyAsString(FULL_METHOD_PROPERTY).trim();
+  }
+
+  /**
+   * @param messageFile file with the serialized request message, or empty to send an empty
+   *     message.
+   */
+  public void setMessageFile(String messageFile) {
+    setProperty(MESSAGE_FILE_PROPERTY, messageFile, "");
+  }
+
+  public String getMessageFile() {
+    return getPropertyAsString(MESSAGE_FILE_PROPERTY, "").trim();
+  }
+
+  public void setCallType(CallType callType) {
+    setProperty(CALL_TYPE_PROPERTY, callType.name());
+  }
+
+  public CallType getCallType() {
+    String value = getPropertyAsString(CALL_TYPE_PROPERTY, "");
+    return value.trim().isEmpty() ? CallType.UNARY : CallType.parse(value);
+  }
+
+  /**
+   * @param deadlineMs milliseconds the server has to complete the call before cancelling it, or
+   *     empty for no deadline.
+   */
+  public void setDeadline(String deadlineMs) {
+    setProperty(DEADLINE_PROPERTY, deadlineMs, "");
+  }
+
+  public String getDeadline() {
+    return getPropertyAsString(DEADLINE_PROPERTY, "");
+  }
+
+  public long getDeadlineMs() {
+    return getPropertyAsLong(DEADLINE_PROPERTY, 0L);
+  }
+
+  @Override
+  public String getPath() {
+    String fullMethod = getFullMethod();
+    return fullMethod.startsWith("/") ? fullMethod : "/" + fullMethod;
+  }
+
+  @Override
+  public String getMethod() {
+    return HTTPConstants.POST;
+  }
+
+  @Override
+  public boolean isHttp1UpgradeEnabled() {
+    return false;
+  }
+
+  @Override
+  public Boolean getEnableHttp3() {
+    return false;
+  }
+
+  @Override
+  public Boolean getEnableHttp2() {
+    return true;
+  }
+
+  @Override
+  public Boolean getEnableHttp1() {
+    return false;
+  }
+
+  @Override
+  public Boolean getFallbackEnabled() {
+    return false;
+  }
+
+  @Override
+  public Boolean getProtocolErrorFallbackEnabled() {
+    return false;
+  }
+
+  @Override
+  public Boolean getHttp2PriorKnowledgeEnabled() {
+    return true;
+  }
+
+  /**
+   * Sends the message of the file as a single length-prefixed gRPC message, declaring that
+   * trailers are expected, as gRPC servers require.
+   */
+  @Override
+  public String configureBody(Request request) throws IOException {
+    String messageFile = getMessageFile();
+    ByteBuffer message = messageFile.isEmpty()
+        ? ByteBuffer.allocate(0)
+        : readMessage(Path.of(messageFile));
+    long deadlineMs = getDeadlineMs();
+    request.headers(headers -> {
+      headers.put(HttpHeader.CONTENT_TYPE, GrpcFraming.CONTENT_TYPE);
+      headers.put(HttpHeader.TE, "trailers");
+      if (deadlineMs > 0) {
+        headers.put(GrpcFraming.TIMEOUT_HEADER, GrpcFraming.encodeTimeout(deadlineMs));
+      }
+    });
+    int messageLength = message.remaining();
+    request.body(new ByteBufferRequestContent(GrpcFraming.CONTENT_TYPE,
+        GrpcFraming.prefix(messageLength), message));
+    return messageFile.isEmpty()
+        ? "<empty gRPC message>"
+        : "<gRPC message of " + messageLength + " bytes from " + messageFile + ">";
+  }
+
+  private static ByteBuffer readMessage(Path path) throws IOException {
+    ByteBuffer message = FILE_BODY_CACHE_ENABLED ? FileBodyCache.get(path) : null;
+    return message != null ? message : ByteBuffer.wrap(Files.readAllBytes(path));
+  }
+
+  @Override
+  public void postProcess(HTTPSampleResult result, ContentResponse response) {
+    GrpcFraming.applyResponse(result, response.getStatus(), response.getHeaders(),
+        response.getTrailers(), getCallType() == CallType.UNARY);
+  }
+
+  /**
+   * Messages are read from files, which may change during the test.
+   */
+  @Override
+  public boolean isTemplatable() {
+    return false;
+  }
+}
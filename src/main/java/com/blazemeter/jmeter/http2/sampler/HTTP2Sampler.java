@@ -3,19 +3,30 @@ package com.blazemeter.jmeter.http2.sampler;
 import static org.apache.jmeter.util.JMeterUtils.getPropDefault;
 
 import com.blazemeter.jmeter.http2.control.HTTP2Controller;
+import com.blazemeter.jmeter.http2.core.BudgetedRetryPolicy;
+import com.blazemeter.jmeter.http2.core.FailureLog;
+import com.blazemeter.jmeter.http2.core.FileBodyCache;
 import com.blazemeter.jmeter.http2.core.HTTP2ClientProfileConfig;
 import com.blazemeter.jmeter.http2.core.HTTP2FutureResponseListener;
 import com.blazemeter.jmeter.http2.core.HTTP2JettyClient;
+import com.blazemeter.jmeter.http2.core.OriginCircuitBreaker;
 import com.blazemeter.jmeter.http2.core.ProtocolErrorException;
+import com.blazemeter.jmeter.http2.core.PushCache;
+import com.blazemeter.jmeter.http2.core.RequestPriority;
+import com.blazemeter.jmeter.http2.core.SharedStaticCache;
+import com.blazemeter.jmeter.http2.sampler.EmbeddedResourceCache.EmbeddedResource;
 import com.blazemeter.jmeter.http2.util.BzmHttpPluginProperties;
 import com.github.benmanes.caffeine.cache.Caffeine;
 import com.github.benmanes.caffeine.cache.LoadingCache;
 import com.helger.commons.annotation.VisibleForTesting;
+import java.io.IOException;
 import java.lang.reflect.Field;
 import java.net.MalformedURLException;
+import java.net.URI;
 import java.net.URISyntaxException;
 import java.net.URL;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
@@ -53,7 +64,7 @@ import org.apache.jmeter.util.JMeterUtils;
 import org.apache.jorphan.util.JOrphanUtils;
 import org.apache.oro.text.MalformedCachePatternException;
 import org.apache.oro.text.regex.Pattern;
-import org.apache.oro.text.regex.Perl5Matcher;
+import org.eclipse.jetty.client.ContentResponse;
 import org.eclipse.jetty.client.Request;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -86,6 +97,8 @@ public class HTTP2Sampler extends HTTPSamplerBase implements LoopIterationListen
   private static final boolean IGNORE_FAILED_EMBEDDED_RESOURCES =
       getPropDefault(
           "httpsampler.ignore_failed_embedded_resources", false); // $NON-NLS-1$
+  private static final boolean INFER_EMBEDDED_PRIORITY =
+      BzmHttpPluginProperties.getPropDefault("httpJettyClient.inferEmbeddedPriority", true);
 
   private static final String HTTP1_UPGRADE_PROPERTY = "HTTP2Sampler.http1_upgrade";
   private static final String PROFILE_PROPERTY = "HTTP2Sampler.profile";
@@ -108,6 +121,7 @@ public class HTTP2Sampler extends HTTPSamplerBase implements LoopIterationListen
   private static final String HTTP1_ONLY_COOLDOWN_PROPERTY =
       "HTTP2Sampler.http1OnlyCooldownMs";
   private static final String H2C_CACHE_TTL_PROPERTY = "HTTP2Sampler.h2cCacheTtlMs";
+  private static final String PRIORITY_PROPERTY = "HTTP2Sampler.priority";
   private static final String UI_TAB_INDEX_PROPERTY = "HTTP2Sampler.uiTabIndex";
   private static final String H2C_UPGRADE_DEFAULT_PROPERTY = "httpJettyClient.h2cUpgradeEnabled";
   // Derive the mapping of content types to parsers
@@ -155,6 +169,8 @@ public class HTTP2Sampler extends HTTPSamplerBase implements LoopIterationListen
   private transient SamplePackage suppressedSamplePackage;
   private transient boolean profileInferenceWarningLogged;
   private transient boolean asyncParentSampleEnabled;
+  private transient CompiledUrlPredicate allowPredicate;
+  private transient CompiledUrlPredicate excludePredicate;
 
   public HTTP2Sampler() {
     clientFactory = this::getClient;
@@ -235,6 +251,18 @@ public class HTTP2Sampler extends HTTPSamplerBase implements LoopIterationListen
     return value == null || value.trim().isEmpty() ? "browser-like" : value.trim();
   }
 
+  /**
+   * @param priority RFC 9218 priority of the request, as {@code u=1, i}, or empty to send no
+   *     priority signal.
+   */
+  public void setPriority(String priority) {
+    setProperty(PRIORITY_PROPERTY, priority, "");
+  }
+
+  public String getPriority() {
+    return getPropertyAsString(PRIORITY_PROPERTY, "").trim();
+  }
+
   public void setUiTabIndex(int index) {
     setProperty(UI_TAB_INDEX_PROPERTY, index);
   }
@@ -372,6 +400,33 @@ public class HTTP2Sampler extends HTTPSamplerBase implements LoopIterationListen
     removeProperty(H2C_CACHE_TTL_PROPERTY);
   }
 
+  /**
+   * Sets the body of a request when it is not built from the HTTP arguments and files of the
+   * sampler, as the messages of protocols carried over HTTP.
+   *
+   * @return the sampler data describing the body, or {@code null} to send the HTTP arguments and
+   *     files of the sampler.
+   * @throws IOException if the body can't be read.
+   */
+  public String configureBody(Request request) throws IOException {
+    return null;
+  }
+
+  /**
+   * Completes the result of a received response, as reporting the status of a protocol carried
+   * in the body or trailers instead of the HTTP status.
+   */
+  public void postProcess(HTTPSampleResult result, ContentResponse response) {
+  }
+
+  /**
+   * @return whether requests of the sampler may be sent from a template compiled from a previous
+   *     request, instead of building their headers and body again.
+   */
+  public boolean isTemplatable() {
+    return true;
+  }
+
   private Boolean getOptionalBoolean(String key) {
     JMeterProperty property = getProperty(key);
     if (property == null || property instanceof NullProperty) {
@@ -578,6 +633,10 @@ public class HTTP2Sampler extends HTTPSamplerBase implements LoopIterationListen
   }
 
   private boolean isProtocolErrorFallbackEnabled() {
+    Boolean override = getProtocolErrorFallbackEnabled();
+    if (override != null) {
+      return override;
+    }
     String fb =
         BzmHttpPluginProperties.resolveRaw("httpJettyClient.protocolErrorFallbackEnabled");
     if (fb != null) {
@@ -792,6 +851,21 @@ public class HTTP2Sampler extends HTTPSamplerBase implements LoopIterationListen
     }
   }
 
+  /**
+   * Embedded URL filter compiled from a regex, kept by the sampler while its regex doesn't
+   * change.
+   */
+  private static final class CompiledUrlPredicate {
+
+    private final String regex;
+    private final Predicate<String> predicate;
+
+    private CompiledUrlPredicate(String regex, Predicate<String> predicate) {
+      this.regex = regex;
+      this.predicate = predicate;
+    }
+  }
+
   private static final class LazyJavaPatternCacheHolder {
 
     public static final LoadingCache<Pair<String, Integer>, java.util.regex.Pattern> INSTANCE =
@@ -817,15 +891,35 @@ public class HTTP2Sampler extends HTTPSamplerBase implements LoopIterationListen
     return LazyJavaPatternCacheHolder.INSTANCE.get(Pair.of(expression, Integer.valueOf(flags)));
   }
 
-  private Predicate<URL> generateMatcherPredicate(String regex, String explanation,
-                                                  boolean defaultAnswer) {
+  private Predicate<String> getAllowPredicate(String regex) {
+    CompiledUrlPredicate compiled = allowPredicate;
+    if (compiled == null || !Objects.equals(compiled.regex, regex)) {
+      compiled = new CompiledUrlPredicate(regex,
+          generateMatcherPredicate(regex, "allow", true));
+      allowPredicate = compiled;
+    }
+    return compiled.predicate;
+  }
+
+  private Predicate<String> getExcludePredicate(String regex) {
+    CompiledUrlPredicate compiled = excludePredicate;
+    if (compiled == null || !Objects.equals(compiled.regex, regex)) {
+      compiled = new CompiledUrlPredicate(regex,
+          generateMatcherPredicate(regex, "exclude", false));
+      excludePredicate = compiled;
+    }
+    return compiled.predicate;
+  }
+
+  private Predicate<String> generateMatcherPredicate(String regex, String explanation,
+                                                     boolean defaultAnswer) {
     if (StringUtils.isEmpty(regex)) {
       return s -> defaultAnswer;
     }
     if (USE_JAVA_REGEX) {
       try {
         java.util.regex.Pattern pattern = compilePattern(regex);
-        return s -> pattern.matcher(s.toString()).matches();
+        return s -> pattern.matcher(s).matches();
       } catch (PatternSyntaxException e) {
         LOG.warn("Ignoring embedded URL {} string: {}", explanation, e.getMessage());
         return s -> defaultAnswer;
@@ -833,26 +927,76 @@ public class HTTP2Sampler extends HTTPSamplerBase implements LoopIterationListen
     }
     try {
       Pattern pattern = JMeterUtils.getPattern(regex);
-      Perl5Matcher matcher = JMeterUtils.getMatcher();
-      return s -> matcher.matches(s.toString(), pattern);
+      // ORO matchers are not thread safe, so the one of the evaluating thread is used
+      return s -> JMeterUtils.getMatcher().matches(s, pattern);
     } catch (MalformedCachePatternException e) { // NOSONAR
       LOG.warn("Ignoring embedded URL {} string: {}", explanation, e.getMessage());
       return s -> defaultAnswer;
     }
   }
 
-  private URL escapeIllegalURLCharacters(java.net.URL url) {
-    if (url == null || "file".equals(url.getProtocol())) {
-      return url;
+  /**
+   * @return the URL with its illegal characters escaped, or {@code null} when it is a file URL
+   *     or can't be escaped.
+   */
+  private URI escapeIllegalURLCharacters(java.net.URL url) {
+    if ("file".equals(url.getProtocol())) {
+      return null;
     }
     try {
-      return ConversionUtils.sanitizeUrl(url).toURL();
+      return ConversionUtils.sanitizeUrl(url);
     } catch (Exception ex) { // NOSONAR
       LOG.error("Error escaping URL:'{}', message:{}", url, ex.getMessage());
-      return url;
+      return null;
     }
   }
 
+  /**
+   * Filters, escapes and normalizes the embedded resource URLs found in a page.
+   *
+   * @return the resources to download or report as failed, or {@code null} if the page has no
+   *     embedded resources.
+   */
+  private List<EmbeddedResource> resolveEmbeddedResources(Iterator<URL> urls, String allowRegex,
+                                                          String excludeRegex) {
+    if (urls == null || !urls.hasNext()) {
+      return null;
+    }
+    Predicate<String> allow = getAllowPredicate(allowRegex);
+    Predicate<String> exclude = getExcludePredicate(excludeRegex);
+    List<EmbeddedResource> resources = new ArrayList<>();
+    while (urls.hasNext()) {
+      Object binURL = urls.next(); // See catch clause below
+      try {
+        URL url = (URL) binURL;
+        if (url == null) {
+          LOG.warn("Null URL detected (should not happen)");
+          continue;
+        }
+        // The escaped URI is filtered and normalized as is, instead of parsing it again
+        URI uri = escapeIllegalURLCharacters(url);
+        String location = uri != null ? uri.toString() : url.toString();
+        if (!allow.test(location)) {
+          continue; // we have a pattern and the URL does not match, so skip it
+        }
+        if (exclude.test(location)) {
+          continue; // we have a pattern and the URL does not match, so skip it
+        }
+        try {
+          resources.add(EmbeddedResource.of(
+              (uri != null ? uri : url.toURI()).normalize().toURL()));
+        } catch (MalformedURLException | URISyntaxException e) {
+          resources.add(EmbeddedResource.failed(
+              new Exception(location + " URI can not be normalized", e)));
+        }
+      } catch (ClassCastException e) { // NOSONAR
+        resources.add(EmbeddedResource.failed(
+            new Exception(binURL + " is not a correct URI", e)));
+      }
+    }
+    return Collections.unmodifiableList(resources);
+  }
+
   @Override
   protected HTTPSampleResult downloadPageResources(final HTTPSampleResult pRes,
                                                    final HTTPSampleResult container,
@@ -861,7 +1005,7 @@ public class HTTP2Sampler extends HTTPSamplerBase implements LoopIterationListen
     boolean orgSyncRequest = isSyncRequest();
     boolean interrupted = false;
     HTTPSampleResult res = pRes;
-    Iterator<URL> urls = null;
+    List<EmbeddedResource> resources = null;
     List<TestElement> samplers = new ArrayList();
 
     try {
@@ -870,8 +1014,14 @@ public class HTTP2Sampler extends HTTPSamplerBase implements LoopIterationListen
         final LinkExtractorParser parser = getParser(res);
         if (parser != null) {
           String userAgent = getUserAgent(res);
-          urls = parser.getEmbeddedResourceURLs(userAgent, responseData, res.getURL(),
-              res.getDataEncodingWithDefault());
+          String allowRegex = getEmbeddedUrlRE();
+          String excludeRegex = getEmbededUrlExcludeRE();
+          final HTTPSampleResult page = res;
+          resources = EmbeddedResourceCache.get(responseData, parser.getClass().getName(),
+              res.getUrlAsString(), userAgent, res.getDataEncodingWithDefault(), allowRegex,
+              excludeRegex, () -> resolveEmbeddedResources(parser.getEmbeddedResourceURLs(
+                  userAgent, responseData, page.getURL(), page.getDataEncodingWithDefault()),
+                  allowRegex, excludeRegex));
         }
       }
     } catch (LinkExtractorParseException e) {
@@ -883,7 +1033,7 @@ public class HTTP2Sampler extends HTTPSamplerBase implements LoopIterationListen
 
     HTTPSampleResult lContainer = container;
     // Iterate through the URLs and download each image:
-    if (urls != null && urls.hasNext()) {
+    if (resources != null) {
       if (lContainer == null) {
         lContainer = new HTTPSampleResult(res);
         lContainer.addRawSubResult(res);
@@ -891,21 +1041,6 @@ public class HTTP2Sampler extends HTTPSamplerBase implements LoopIterationListen
       final HTTPSampleResult subres = lContainer;
       res = subres;
 
-      // Get the URL matcher
-      String allowRegex = "";
-      String excludeRegex = "";
-      Predicate<URL> allowPredicate = null;
-      Predicate<URL> excludePredicate = null;
-      try {
-        allowRegex = getEmbeddedUrlRE();
-        allowPredicate = generateMatcherPredicate(allowRegex, "allow", true);
-        excludeRegex = getEmbededUrlExcludeRE();
-        excludePredicate =
-            generateMatcherPredicate(excludeRegex, "exclude", false);
-      } catch (Exception ex) {
-        ex.printStackTrace(System.err);
-        throw ex;
-      }
       // For concurrent get resources
       int maxConcurrentDownloads = CONCURRENT_POOL_SIZE; // init with default value
       boolean isConcurrentDwn = isConcurrentDwn();
@@ -928,97 +1063,40 @@ public class HTTP2Sampler extends HTTPSamplerBase implements LoopIterationListen
 
       setSyncRequest(!isConcurrentDwn); // Change default from main request based on sub request
 
-      while (urls.hasNext()) {
-        Object binURL = urls.next(); // See catch clause below
-        try {
-          URL url = (URL) binURL;
-          if (url == null) {
-            LOG.warn("Null URL detected (should not happen)");
-          } else {
-            try {
-              url = escapeIllegalURLCharacters(url);
-            } catch (Exception e) { // NOSONAR
-              subres.addSubResult(
-                  errorResult(new Exception(url.toString() + " is not a correct URI", e),
-                      new HTTPSampleResult(res)));
-              setParentSampleSuccess(subres, false);
-              continue;
-            }
-            if (!allowPredicate.test(url)) {
-              continue; // we have a pattern and the URL does not match, so skip it
-            }
-            if (excludePredicate.test(url)) {
-              continue; // we have a pattern and the URL does not match, so skip it
-            }
-            try {
-              url = url.toURI().normalize().toURL();
-            } catch (MalformedURLException | URISyntaxException e) {
-              subres.addSubResult(
-                  errorResult(new Exception(url.toString() + " URI can not be normalized", e),
-                      new HTTPSampleResult(subres)));
-              setParentSampleSuccess(subres, false);
-              continue;
-            }
-
-            HTTP2Sampler h2s = new HTTP2Sampler();
-            copyJettyProtocolSettingsToEmbeddedSampler(h2s);
-            h2s.setMethod("GET");
-            h2s.setSyncRequest(!isConcurrentDwn);
-            h2s.setProtocol(url.getProtocol());
-            h2s.setDomain(url.getHost());
-            h2s.setPort(url.getPort());
-            h2s.setFollowRedirects(true);
-            h2s.setAutoRedirects(true);
-            if (url.getQuery() == null) {
-              h2s.setPath(url.getPath());
-            } else {
-              h2s.setPath(url.getPath() + url.getQuery());
-            }
-
-            // Set proxy
-            h2s.setProxyHost(this.getProxyHost());
-            h2s.setProxyPortInt(String.valueOf(this.getProxyPortInt()));
-            h2s.setProxyScheme(this.getProxyScheme());
-            h2s.setProxyUser(this.getProxyUser());
-            h2s.setProxyPass(this.getProxyPass());
-            // Set Managers
-            h2s.setHeaderManager(getHeaderManager());
-            h2s.setAuthManager(this.getAuthManager());
-            h2s.setCookieManager(this.getCookieManager());
-
-            HTTPSampleResult binRes = h2s.sample(
-                url, HTTPConstants.GET, false, frameDepth + 1);
-
-            if (isConcurrentDwn) {
-              // if concurrent download emb. resources, add to a list for async gets later
-              samplers.add(h2s);
-            } else {
-              // default: serial download embedded resources
-              subres.addSubResult(binRes);
-              setParentSampleSuccess(subres,
-                  subres.isSuccessful() && (binRes == null || binRes.isSuccessful()));
-              try {
-                Thread.sleep(10);
-              } catch (InterruptedException e) {
-                interrupted = true;
-              }
-            }
-          }
-        } catch (ClassCastException e) { // NOSONAR
-          subres.addSubResult(errorResult(new Exception(binURL + " is not a correct URI", e),
-              new HTTPSampleResult(subres)));
+      PushCache pushCache = PushCache.current();
+      // Pushes still being received are claimed after the other resources are requested
+      List<URL> pendingPushes = new ArrayList<>();
+      for (EmbeddedResource resource : resources) {
+        if (resource.getError() != null) {
+          subres.addSubResult(errorResult(resource.getError(), new HTTPSampleResult(subres)));
           setParentSampleSuccess(subres, false);
+          continue;
         }
-        if (interrupted) {
+        URL url = resource.getUrl();
+        if (pushCache.isPending(url)) {
+          pendingPushes.add(url);
+          continue;
+        }
+        try {
+          claimOrDownloadEmbeddedResource(url, pushCache, 0, subres, isConcurrentDwn, samplers,
+              frameDepth);
+        } catch (InterruptedException e) {
+          interrupted = true;
           break;
         }
       }
-      int embeddedTimeout = 0; // Use the same timeout for response
-      if (this.getResponseTimeout() > 0) {
-        embeddedTimeout = this.getResponseTimeout();
-      } else {
-        embeddedTimeout = this.requestTimeout;
+      int pushTimeout = getEmbeddedTimeout();
+      long pushDeadline = System.currentTimeMillis() + pushTimeout;
+      for (int i = 0; i < pendingPushes.size() && !interrupted; i++) {
+        try {
+          claimOrDownloadEmbeddedResource(pendingPushes.get(i), pushCache,
+              pushTimeout > 0 ? Math.max(1, pushDeadline - System.currentTimeMillis()) : 0,
+              subres, isConcurrentDwn, samplers, frameDepth);
+        } catch (InterruptedException e) {
+          interrupted = true;
+        }
       }
+      int embeddedTimeout = getEmbeddedTimeout();
       long start = System.currentTimeMillis();
 
       // IF for download concurrent embedded resources
@@ -1073,6 +1151,79 @@ public class HTTP2Sampler extends HTTPSamplerBase implements LoopIterationListen
     return res;
   }
 
+  /**
+   * Uses the pushed response of an embedded resource, or downloads it when it was not pushed or
+   * the push didn't complete within the timeout.
+   *
+   * @param claimTimeoutMs max time to wait for a push still being received.
+   */
+  private void claimOrDownloadEmbeddedResource(URL url, PushCache pushCache,
+                                               long claimTimeoutMs, HTTPSampleResult subres,
+                                               boolean isConcurrentDwn,
+                                               List<TestElement> samplers, int frameDepth)
+      throws InterruptedException {
+    HTTPSampleResult pushedRes = pushCache.claim(url, claimTimeoutMs);
+    if (pushedRes != null) {
+      // Already pushed by the server along with the page, no need to download it
+      subres.addSubResult(pushedRes);
+      setParentSampleSuccess(subres, subres.isSuccessful() && pushedRes.isSuccessful());
+      return;
+    }
+    HTTP2Sampler h2s = new HTTP2Sampler();
+    copyJettyProtocolSettingsToEmbeddedSampler(h2s);
+    h2s.setMethod("GET");
+    h2s.setSyncRequest(!isConcurrentDwn);
+    h2s.setProtocol(url.getProtocol());
+    h2s.setDomain(url.getHost());
+    h2s.setPort(url.getPort());
+    h2s.setFollowRedirects(true);
+    h2s.setAutoRedirects(true);
+    if (INFER_EMBEDDED_PRIORITY) {
+      RequestPriority priority = RequestPriority.forResource(url);
+      if (priority != null) {
+        h2s.setPriority(priority.toHeaderValue());
+      }
+    }
+    if (url.getQuery() == null) {
+      h2s.setPath(url.getPath());
+    } else {
+      h2s.setPath(url.getPath() + url.getQuery());
+    }
+
+    // Set proxy
+    h2s.setProxyHost(this.getProxyHost());
+    h2s.setProxyPortInt(String.valueOf(this.getProxyPortInt()));
+    h2s.setProxyScheme(this.getProxyScheme());
+    h2s.setProxyUser(this.getProxyUser());
+    h2s.setProxyPass(this.getProxyPass());
+    // Set Managers
+    h2s.setHeaderManager(getHeaderManager());
+    h2s.setAuthManager(this.getAuthManager());
+    h2s.setCookieManager(this.getCookieManager());
+    if (getCacheManager() != null) {
+      h2s.setCacheManager(getCacheManager());
+    }
+
+    HTTPSampleResult binRes = h2s.sample(
+        url, HTTPConstants.GET, false, frameDepth + 1);
+
+    if (isConcurrentDwn) {
+      // if concurrent download emb. resources, add to a list for async gets later
+      samplers.add(h2s);
+    } else {
+      // default: serial download embedded resources
+      subres.addSubResult(binRes);
+      setParentSampleSuccess(subres,
+          subres.isSuccessful() && (binRes == null || binRes.isSuccessful()));
+      Thread.sleep(10);
+    }
+  }
+
+  private int getEmbeddedTimeout() {
+    // Use the same timeout for response
+    return getResponseTimeout() > 0 ? getResponseTimeout() : requestTimeout;
+  }
+
   @Override
   public void iterationStart(LoopIterationEvent iterEvent) {
     this.asyncListener = null;
@@ -1081,6 +1232,9 @@ public class HTTP2Sampler extends HTTPSamplerBase implements LoopIterationListen
     if (!jMeterVariables.isSameUserOnNextIteration()) {
       clearUserStores();
     }
+    for (HTTP2JettyClient client : CONNECTIONS.get().values()) {
+      client.resetCookieManager();
+    }
   }
 
   public void suppressPreProcessorsOnce() {
@@ -1156,6 +1310,7 @@ public class HTTP2Sampler extends HTTPSamplerBase implements LoopIterationListen
       }
     }
     clients.clear();
+    PushCache.remove();
   }
 
   private void dump() {
@@ -1169,9 +1324,24 @@ public class HTTP2Sampler extends HTTPSamplerBase implements LoopIterationListen
     }
   }
 
+  @Override
+  public void testStarted() {
+    super.testStarted();
+    EmbeddedResourceCache.configure(Integer.parseInt(BzmHttpPluginProperties.getPropDefault(
+        "httpJettyClient.embeddedResourceCacheSize",
+        String.valueOf(EmbeddedResourceCache.DEFAULT_MAX_ENTRIES))));
+    FailureLog.start();
+  }
+
   @Override
   public void testEnded() {
     super.testEnded();
+    FileBodyCache.clear();
+    SharedStaticCache.clear();
+    EmbeddedResourceCache.clear();
+    FailureLog.stop();
+    OriginCircuitBreaker.clear();
+    BudgetedRetryPolicy.clear();
     System.gc(); // Force free memory
   }
 
@@ -1184,6 +1354,7 @@ public class HTTP2Sampler extends HTTPSamplerBase implements LoopIterationListen
   }
 
   private void clearUserStores() {
+    PushCache.current().clear();
     Map<HTTP2ClientKey, HTTP2JettyClient> clients = CONNECTIONS.get();
     for (HTTP2JettyClient client : clients.values()) {
       try {
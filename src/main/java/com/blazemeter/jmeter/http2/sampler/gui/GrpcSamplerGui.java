@@ -0,0 +1,144 @@
+package com.blazemeter.jmeter.http2.sampler.gui;
+
+import com.blazemeter.jmeter.commons.BlazemeterLabsLogo;
+import com.blazemeter.jmeter.http2.sampler.GrpcSampler;
+import com.blazemeter.jmeter.http2.sampler.GrpcSampler.CallType;
+import java.awt.BorderLayout;
+import javax.swing.BorderFactory;
+import javax.swing.JComboBox;
+import javax.swing.JLabel;
+import javax.swing.JPanel;
+import org.apache.jmeter.gui.util.VerticalPanel;
+import org.apache.jmeter.protocol.http.sampler.HTTPSamplerBase;
+import org.apache.jmeter.protocol.http.util.HTTPConstants;
+import org.apache.jmeter.samplers.gui.AbstractSamplerGui;
+import org.apache.jmeter.testelement.TestElement;
+import org.apache.jorphan.gui.JLabeledTextField;
+
+public class GrpcSamplerGui extends AbstractSamplerGui {
+
+  private static final String PLUGIN_REPOSITORY_URL = "https://github.com/Blazemeter/jmeter-http2"
+      + "-plugin";
+
+  private final JLabeledTextField protocolField = new JLabeledTextField("Protocol [https]", 5);
+  private final JLabeledTextField domainField = new JLabeledTextField("Server name or IP", 20);
+  private final JLabeledTextField portField = new JLabeledTextField("Port number", 5);
+  private final JLabeledTextField fullMethodField =
+      new JLabeledTextField("Method (package.Service/Method)", 30);
+  private final JComboBox<CallType> callTypeSelector = new JComboBox<>(CallType.values());
+  private final JLabeledTextField messageFileField =
+      new JLabeledTextField("Request message file (serialized protobuf)", 30);
+  private final JLabeledTextField deadlineField = new JLabeledTextField("Deadline (ms)", 8);
+  private final JLabeledTextField connectTimeOutField = new JLabeledTextField("Connect (ms)", 8);
+  private final JLabeledTextField responseTimeOutField = new JLabeledTextField("Response (ms)", 8);
+
+  public GrpcSamplerGui() {
+    setLayout(new BorderLayout(0, 5));
+    setBorder(makeBorder());
+    add(makeTitlePanel(), BorderLayout.NORTH);
+    add(buildSettingsPanel(), BorderLayout.CENTER);
+    add(new BlazemeterLabsLogo(PLUGIN_REPOSITORY_URL), BorderLayout.PAGE_END);
+    clearFields();
+  }
+
+  private JPanel buildSettingsPanel() {
+    JPanel serverPanel = new VerticalPanel();
+    serverPanel.setBorder(BorderFactory.createTitledBorder("Server"));
+    serverPanel.add(protocolField);
+    serverPanel.add(domainField);
+    serverPanel.add(portField);
+
+    JPanel callPanel = new VerticalPanel();
+    callPanel.setBorder(BorderFactory.createTitledBorder("Call"));
+    callPanel.add(fullMethodField);
+    JPanel callTypePanel = new JPanel(new BorderLayout(5, 0));
+    callTypePanel.add(new JLabel("Call type"), BorderLayout.WEST);
+    callTypePanel.add(callTypeSelector, BorderLayout.CENTER);
+    callPanel.add(callTypePanel);
+    callPanel.add(messageFileField);
+    callPanel.add(deadlineField);
+
+    JPanel timeOutPanel = new VerticalPanel();
+    timeOutPanel.setBorder(BorderFactory.createTitledBorder("Timeouts (milliseconds)"));
+    timeOutPanel.add(connectTimeOutField);
+    timeOutPanel.add(responseTimeOutField);
+
+    JPanel panel = new VerticalPanel();
+    panel.add(serverPanel);
+    panel.add(callPanel);
+    panel.add(timeOutPanel);
+    return panel;
+  }
+
+  @Override
+  public String getStaticLabel() {
+    return "bzm - gRPC Sampler";
+  }
+
+  @Override
+  public String getLabelResource() {
+    return null;
+  }
+
+  @Override
+  public TestElement createTestElement() {
+    GrpcSampler sampler = new GrpcSampler();
+    modifyTestElement(sampler);
+    return sampler;
+  }
+
+  @Override
+  public void modifyTestElement(TestElement testElement) {
+    testElement.clear();
+    configureTestElement(testElement);
+    if (testElement instanceof GrpcSampler) {
+      GrpcSampler sampler = (GrpcSampler) testElement;
+      sampler.setProtocol(protocolField.getText());
+      sampler.setDomain(domainField.getText());
+      sampler.setProperty(HTTPSamplerBase.PORT, portField.getText());
+      sampler.setFullMethod(fullMethodField.getText());
+      sampler.setCallType((CallType) callTypeSelector.getSelectedItem());
+      sampler.setMessageFile(messageFileField.getText());
+      sampler.setDeadline(deadlineField.getText());
+      sampler.setConnectTimeout(connectTimeOutField.getText());
+      sampler.setResponseTimeout(responseTimeOutField.getText());
+    }
+  }
+
+  @Override
+  public void configure(TestElement testElement) {
+    super.configure(testElement);
+    if (testElement instanceof GrpcSampler) {
+      GrpcSampler sampler = (GrpcSampler) testElement;
+      protocolField.setText(sampler.getPropertyAsString(HTTPSamplerBase.PROTOCOL));
+      domainField.setText(sampler.getDomain());
+      portField.setText(sampler.getPropertyAsString(HTTPSamplerBase.PORT));
+      fullMethodField.setText(sampler.getFullMethod());
+      callTypeSelector.setSelectedItem(sampler.getCallType());
+      messageFileField.setText(sampler.getMessageFile());
+      deadlineField.setText(sampler.getDeadline());
+      connectTimeOutField.setText(
+          sampler.getPropertyAsString(HTTPSamplerBase.CONNECT_TIMEOUT));
+      responseTimeOutField.setText(
+          sampler.getPropertyAsString(HTTPSamplerBase.RESPONSE_TIMEOUT));
+    }
+  }
+
+  @Override
+  public void clearGui() {
+    super.clearGui();
+    clearFields();
+  }
+
+  private void clearFields() {
+    protocolField.setText(HTTPConstants.PROTOCOL_HTTPS);
+    domainField.setText("");
+    portField.setText("");
+    fullMethodField.setText("");
+    callTypeSelector.setSelectedItem(CallType.UNARY);
+    messageFileField.setText("");
+    deadlineField.setText("");
+    connectTimeOutField.setText("");
+    responseTimeOutField.setText("");
+  }
+}
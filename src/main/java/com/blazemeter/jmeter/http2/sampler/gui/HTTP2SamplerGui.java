@@ -91,6 +91,7 @@ public class HTTP2SamplerGui extends AbstractSamplerGui implements Scrollable {
       http2Sampler.setHttp1UpgradeEnabled(http2SamplerPanel.isHttp1UpgradeSelected());
       String profile = http2SamplerPanel.getProfile();
       http2Sampler.setProfile(profile);
+      http2Sampler.setPriority(http2SamplerPanel.getPriority());
       http2Sampler.setEnableHttp3(http2SamplerPanel.isEnableHttp3Selected());
       http2Sampler.setEnableHttp2(http2SamplerPanel.isEnableHttp2Selected());
       http2Sampler.setEnableHttp1(http2SamplerPanel.isEnableHttp1Selected());
@@ -145,6 +146,7 @@ public class HTTP2SamplerGui extends AbstractSamplerGui implements Scrollable {
       String profile = http2Sampler.getProfile();
       http2SamplerPanel.setProfile(profile);
       http2SamplerPanel.applyProfileDefaultsFor(profile);
+      http2SamplerPanel.setPriority(http2Sampler.getPriority());
       http2SamplerPanel.setHttp1UpgradeSelected(http2Sampler.isHttp1UpgradeEnabled());
       http2SamplerPanel.setEnableHttp3Selected(http2Sampler.getEnableHttp3());
       http2SamplerPanel.setEnableHttp2Selected(http2Sampler.getEnableHttp2());
@@ -106,6 +106,8 @@ public class HTTP2SamplerPanel extends JPanel {
   private final JCheckBox h2cCacheCheck = new JCheckBox("H2C cache (HTTP)");
   private final JCheckBox http2PriorKnowledgeCheck =
       new JCheckBox("HTTP/2 prior knowledge for cleartext (h2c)");
+  private final JLabeledTextField priorityField =
+      new JLabeledTextField("Priority (RFC 9218, e.g. u=1, i)", 8);
   private final JLabeledTextField happyEyeballsDelayField =
       new JLabeledTextField("Happy Eyeballs delay (ms)", 8);
   private final JLabeledTextField http3BrokenCooldownField =
@@ -196,6 +198,7 @@ public class HTTP2SamplerPanel extends JPanel {
     profilePanel.add(new JLabel("Profile"), BorderLayout.WEST);
     profilePanel.add(profileSelector, BorderLayout.CENTER);
     behaviorPanel.add(profilePanel);
+    behaviorPanel.add(priorityField);
 
     JPanel protocolPanel = new VerticalPanel();
     protocolPanel.setBorder(BorderFactory.createTitledBorder("Protocols"));
@@ -568,6 +571,7 @@ public class HTTP2SamplerPanel extends JPanel {
     proxyPortField.setText("");
     proxyUserField.setText("");
     proxyPassField.setText("");
+    priorityField.setText("");
   }
 
   public int getSelectedTabIndex() {
@@ -813,6 +817,14 @@ public class HTTP2SamplerPanel extends JPanel {
     return embeddedResourcesRegexField.getText();
   }
 
+  public String getPriority() {
+    return priorityField.getText();
+  }
+
+  public void setPriority(String priority) {
+    this.priorityField.setText(priority);
+  }
+
   public void setConnectTimeOut(String connectTimeOut) {
     this.connectTimeOutField.setText(connectTimeOut);
   }
@@ -0,0 +1,114 @@
+package com.blazemeter.jmeter.http2.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.tuple;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+import com.blazemeter.jmeter.http2.core.AdaptiveFlowControlStrategy.Mode;
+import java.util.List;
+import org.eclipse.jetty.http2.HTTP2Session;
+import org.eclipse.jetty.http2.HTTP2Stream;
+import org.eclipse.jetty.http2.frames.PingFrame;
+import org.eclipse.jetty.http2.frames.WindowUpdateFrame;
+import org.eclipse.jetty.util.Callback;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+
+public class AdaptiveFlowControlStrategyTest {
+
+  private static final int WINDOW = 1000;
+  private static final int MAX_WINDOW = 10000;
+
+  private final HTTP2Session session = mock(HTTP2Session.class);
+  private final HTTP2Stream stream = mock(HTTP2Stream.class);
+
+  @Before
+  public void setup() {
+    when(session.getRecvWindow()).thenReturn(WINDOW);
+    when(stream.getId()).thenReturn(1);
+  }
+
+  @Test
+  public void shouldGiveConsumedDataBackWhenHalfOfWindowIsConsumed() {
+    AdaptiveFlowControlStrategy strategy = buildStrategy(Mode.STATIC);
+
+    strategy.onDataConsumed(session, stream, WINDOW / 4);
+    verify(session, never()).frames(any(), anyList(), any());
+    strategy.onDataConsumed(session, stream, WINDOW / 4);
+
+    assertThat(sentWindowUpdates()).extracting(WindowUpdateFrame::getStreamId,
+            WindowUpdateFrame::getWindowDelta)
+        .containsExactly(tuple(0, WINDOW / 2), tuple(1, WINDOW / 2));
+  }
+
+  @Test
+  public void shouldGrowWindowsWhenMeasuredBandwidthDelayProductFillsThem() {
+    AdaptiveFlowControlStrategy strategy = buildStrategy(Mode.AUTO);
+
+    strategy.onDataReceived(session, stream, WINDOW);
+    strategy.onPingAck(session, sentPing(), System.nanoTime());
+
+    assertThat(strategy.getStreamWindow()).isEqualTo(2 * WINDOW);
+    assertThat(strategy.getSessionWindow()).isEqualTo(2 * WINDOW);
+    assertThat(strategy.getWindowGrowths()).isEqualTo(1);
+    assertThat(sentWindowUpdates()).extracting(WindowUpdateFrame::getWindowDelta)
+        .containsExactly(WINDOW);
+  }
+
+  @Test
+  public void shouldNotGrowWindowsBeyondMaxWindow() {
+    AdaptiveFlowControlStrategy strategy = buildStrategy(Mode.AUTO);
+
+    strategy.onDataReceived(session, stream, MAX_WINDOW);
+    strategy.onPingAck(session, sentPing(), System.nanoTime());
+
+    assertThat(strategy.getStreamWindow()).isEqualTo(MAX_WINDOW);
+  }
+
+  @Test
+  public void shouldNotPingWhenWindowsAreStatic() {
+    AdaptiveFlowControlStrategy strategy = buildStrategy(Mode.STATIC);
+
+    strategy.onDataReceived(session, stream, WINDOW);
+
+    verify(session, never()).ping(any(), any());
+  }
+
+  @Test
+  public void shouldCountExhaustedRecvWindow() {
+    AdaptiveFlowControlStrategy strategy = buildStrategy(Mode.STATIC);
+    when(session.getRecvWindow()).thenReturn(0);
+
+    strategy.onDataReceived(session, stream, WINDOW);
+
+    assertThat(strategy.getRecvWindowExhausted()).isEqualTo(1);
+  }
+
+  private AdaptiveFlowControlStrategy buildStrategy(Mode mode) {
+    AdaptiveFlowControlStrategy strategy =
+        (AdaptiveFlowControlStrategy) AdaptiveFlowControlStrategy.factory(mode, WINDOW, WINDOW,
+            MAX_WINDOW).newFlowControlStrategy();
+    strategy.updateInitialStreamWindow(session, WINDOW, true);
+    strategy.onStreamCreated(stream);
+    return strategy;
+  }
+
+  private PingFrame sentPing() {
+    ArgumentCaptor<PingFrame> ping = ArgumentCaptor.forClass(PingFrame.class);
+    verify(session).ping(ping.capture(), any(Callback.class));
+    return new PingFrame(ping.getValue().getPayloadAsLong(), true);
+  }
+
+  @SuppressWarnings("unchecked")
+  private List<WindowUpdateFrame> sentWindowUpdates() {
+    ArgumentCaptor<List<WindowUpdateFrame>> frames = ArgumentCaptor.forClass(List.class);
+    verify(session).frames(any(), frames.capture(), any());
+    return frames.getValue();
+  }
+}
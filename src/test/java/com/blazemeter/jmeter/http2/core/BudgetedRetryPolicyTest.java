@@ -0,0 +1,70 @@
+package com.blazemeter.jmeter.http2.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.blazemeter.jmeter.http2.core.RetryPolicy.Condition;
+import org.junit.After;
+import org.junit.Test;
+
+public class BudgetedRetryPolicyTest {
+
+  private static final String ORIGIN = "https://localhost:6666";
+
+  @After
+  public void teardown() {
+    BudgetedRetryPolicy.clear();
+  }
+
+  @Test
+  public void shouldNotRetryWhenAttemptExceedsMaxRetries() {
+    BudgetedRetryPolicy policy = new BudgetedRetryPolicy(2, 2, 100, 1000, 10, 10, 10000);
+
+    assertThat(policy.retryDelayMillis(ORIGIN, Condition.GOAWAY, 2, -1)).isNotNegative();
+    assertThat(policy.retryDelayMillis(ORIGIN, Condition.GOAWAY, 3, -1)).isEqualTo(-1);
+  }
+
+  @Test
+  public void shouldOnlyRetryGoawayWhenOtherRetriesAreNotEnabled() {
+    BudgetedRetryPolicy policy = new BudgetedRetryPolicy(1, 0, 100, 1000, 10, 10, 10000);
+
+    assertThat(policy.retryDelayMillis(ORIGIN, Condition.GOAWAY, 1, -1)).isNotNegative();
+    assertThat(policy.retryDelayMillis(ORIGIN, Condition.REFUSED_STREAM, 1, -1)).isEqualTo(-1);
+    assertThat(policy.retryDelayMillis(ORIGIN, Condition.SERVICE_UNAVAILABLE, 1, 0))
+        .isEqualTo(-1);
+  }
+
+  @Test
+  public void shouldCapJitteredBackoffToMaxBackoff() {
+    BudgetedRetryPolicy policy = new BudgetedRetryPolicy(20, 20, 100, 1000, 100, 100, 10000);
+
+    for (int attempt = 1; attempt <= 20; attempt++) {
+      assertThat(policy.retryDelayMillis(ORIGIN, Condition.REFUSED_STREAM, attempt, -1))
+          .isBetween(0L, 1000L);
+    }
+  }
+
+  @Test
+  public void shouldHonorRetryAfterUnlessLongerThanMaxBackoff() {
+    BudgetedRetryPolicy policy = new BudgetedRetryPolicy(1, 1, 100, 1000, 10, 10, 10000);
+
+    assertThat(policy.retryDelayMillis(ORIGIN, Condition.SERVICE_UNAVAILABLE, 1, 500))
+        .isBetween(500L, 600L);
+    assertThat(policy.retryDelayMillis(ORIGIN, Condition.SERVICE_UNAVAILABLE, 1, 2000))
+        .isEqualTo(-1);
+  }
+
+  @Test
+  public void shouldNotRetryWhenOriginBudgetIsExhausted() {
+    BudgetedRetryPolicy policy = new BudgetedRetryPolicy(1, 1, 0, 1000, 10, 1, 10000);
+    for (int i = 0; i < 10; i++) {
+      policy.onRequest(ORIGIN);
+    }
+
+    assertThat(policy.retryDelayMillis(ORIGIN, Condition.GOAWAY, 1, -1)).isZero();
+    assertThat(policy.retryDelayMillis(ORIGIN, Condition.GOAWAY, 1, -1)).isZero();
+    assertThat(policy.retryDelayMillis(ORIGIN, Condition.GOAWAY, 1, -1)).isEqualTo(-1);
+    assertThat(BudgetedRetryPolicy.snapshot())
+        .containsEntry("retries", 2L)
+        .containsEntry("retriesOverBudget", 1L);
+  }
+}
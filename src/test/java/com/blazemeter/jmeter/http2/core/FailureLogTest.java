@@ -0,0 +1,79 @@
+package com.blazemeter.jmeter.http2.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.blazemeter.jmeter.http2.sampler.JMeterTestUtils;
+import java.io.IOException;
+import java.net.URI;
+import java.nio.channels.ClosedChannelException;
+import org.apache.jmeter.util.JMeterUtils;
+import org.junit.After;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+public class FailureLogTest {
+
+  private static final URI URI_A = URI.create("https://localhost:6666/a");
+  private static final URI URI_B = URI.create("https://localhost:6666/b");
+  private static final String SUMMARY_INTERVAL_PROPERTY =
+      "blazemeter.http.failureLogSummaryIntervalMs";
+  private static final String VERBOSE_PROPERTY = "blazemeter.http.verboseFailureLog";
+
+  @BeforeClass
+  public static void setupClass() {
+    JMeterTestUtils.setupJmeterEnv();
+  }
+
+  @After
+  public void teardown() {
+    JMeterUtils.getJMeterProperties().remove(SUMMARY_INTERVAL_PROPERTY);
+    JMeterUtils.getJMeterProperties().remove(VERBOSE_PROPERTY);
+    // Reads the default properties again
+    FailureLog.start();
+    FailureLog.stop();
+  }
+
+  @Test
+  public void shouldAggregateFailuresByOriginExceptionAndErrorCode() {
+    FailureLog.record(URI_A, new IOException("reset by peer: refused_stream_error"));
+    FailureLog.record(URI_B, new IOException("reset by peer: refused_stream_error"));
+    FailureLog.record(URI_A, new IOException("wrapped", new ClosedChannelException()));
+
+    assertThat(FailureLog.pendingCounts())
+        .containsEntry("https://localhost:6666 java.io.IOException refused_stream_error", 2L)
+        .containsEntry("https://localhost:6666 java.nio.channels.ClosedChannelException", 1L)
+        .hasSize(2);
+  }
+
+  @Test
+  public void shouldResetCountsWhenSummaryIsLogged() {
+    FailureLog.record(URI_A, new IOException("failure"));
+
+    FailureLog.flush();
+
+    assertThat(FailureLog.pendingCounts()).isEmpty();
+  }
+
+  @Test
+  public void shouldLogSummaryWhenIntervalElapsesWithoutFurtherFailures() throws Exception {
+    JMeterUtils.setProperty(SUMMARY_INTERVAL_PROPERTY, "50");
+    FailureLog.start();
+    FailureLog.record(URI_A, new IOException("failure"));
+
+    long deadline = System.currentTimeMillis() + 5000;
+    while (!FailureLog.pendingCounts().isEmpty() && System.currentTimeMillis() < deadline) {
+      Thread.sleep(10);
+    }
+
+    assertThat(FailureLog.pendingCounts()).isEmpty();
+  }
+
+  @Test
+  public void shouldReadVerbosePropertyWhenTestStarts() {
+    JMeterUtils.setProperty(VERBOSE_PROPERTY, "true");
+
+    FailureLog.start();
+
+    assertThat(FailureLog.isVerbose()).isTrue();
+  }
+}
@@ -0,0 +1,88 @@
+package com.blazemeter.jmeter.http2.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import org.junit.After;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class FileBodyCacheTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @After
+  public void tearDown() {
+    FileBodyCache.clear();
+    FileBodyCache.configure(FileBodyCache.DEFAULT_MAX_BYTES);
+  }
+
+  @Test
+  public void shouldShareMappedContentBetweenLookups() throws Exception {
+    Path file = writeFile("fixture.bin", "content");
+
+    ByteBuffer first = FileBodyCache.get(file);
+    first.get(new byte[3]);
+    ByteBuffer second = FileBodyCache.get(file);
+
+    assertThat(FileBodyCache.size()).isEqualTo(1);
+    assertThat(second.isReadOnly()).isTrue();
+    assertThat(asString(second)).isEqualTo("content");
+  }
+
+  @Test
+  public void shouldMapFileAgainWhenItChanges() throws Exception {
+    Path file = writeFile("fixture.bin", "content");
+    FileBodyCache.get(file);
+
+    Files.write(file, "updated content".getBytes(StandardCharsets.UTF_8));
+    Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 5000));
+
+    assertThat(asString(FileBodyCache.get(file))).isEqualTo("updated content");
+  }
+
+  @Test
+  public void shouldEvictLeastRecentlyUsedFileWhenMaxBytesIsExceeded() throws Exception {
+    FileBodyCache.configure(10);
+    Path first = writeFile("first.bin", "1234");
+    Path second = writeFile("second.bin", "5678");
+    Path third = writeFile("third.bin", "9012");
+    FileBodyCache.get(first);
+    FileBodyCache.get(second);
+    FileBodyCache.get(first);
+
+    FileBodyCache.get(third);
+
+    assertThat(FileBodyCache.contains(first)).isTrue();
+    assertThat(FileBodyCache.contains(second)).isFalse();
+    assertThat(FileBodyCache.contains(third)).isTrue();
+    assertThat(FileBodyCache.bytes()).isEqualTo(8);
+  }
+
+  @Test
+  public void shouldNotCacheFileBiggerThanMaxBytes() throws Exception {
+    FileBodyCache.configure(3);
+    Path file = writeFile("fixture.bin", "content");
+
+    assertThat(FileBodyCache.get(file)).isNull();
+    assertThat(FileBodyCache.size()).isZero();
+  }
+
+  private Path writeFile(String name, String content) throws Exception {
+    Path file = tempFolder.newFile(name).toPath();
+    Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+    return file;
+  }
+
+  private static String asString(ByteBuffer buffer) {
+    byte[] bytes = new byte[buffer.remaining()];
+    buffer.get(bytes);
+    return new String(bytes, StandardCharsets.UTF_8);
+  }
+}
@@ -0,0 +1,105 @@
+package com.blazemeter.jmeter.http2.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import org.apache.jmeter.protocol.http.sampler.HTTPSampleResult;
+import org.eclipse.jetty.http.HttpFields;
+import org.junit.Test;
+
+public class GrpcFramingTest {
+
+  private static final HttpFields NO_FIELDS = HttpFields.build();
+
+  @Test
+  public void shouldDecodeMessagesWhenBodyHasSeveralFrames() {
+    byte[] body = frames(new byte[] {1, 2}, new byte[0], new byte[] {3});
+
+    assertThat(GrpcFraming.decode(body))
+        .containsExactly(new byte[] {1, 2}, new byte[0], new byte[] {3});
+  }
+
+  @Test
+  public void shouldThrowIllegalArgumentExceptionWhenMessageIsTruncated() {
+    byte[] body = frames(new byte[] {1, 2, 3});
+
+    assertThatThrownBy(() -> GrpcFraming.decode(Arrays.copyOf(body, body.length - 1)))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("expected 3 bytes but got 2");
+  }
+
+  @Test
+  public void shouldFailWhenMessageIsCompressed() {
+    byte[] body = frames(new byte[] {1});
+    body[0] = 1;
+    HTTPSampleResult result = resultWithBody(body);
+
+    GrpcFraming.applyResponse(result, 200, NO_FIELDS,
+        HttpFields.build().put("grpc-status", "0"), true);
+
+    assertThat(result.isSuccessful()).isFalse();
+    assertThat(result.getResponseMessage())
+        .isEqualTo("INTERNAL: Compressed gRPC message, but no message encoding was accepted");
+  }
+
+  @Test
+  public void shouldTakeStatusFromTrailersWhenPresent() {
+    HTTPSampleResult result = resultWithBody(frames(new byte[] {1}));
+
+    GrpcFraming.applyResponse(result, 200, NO_FIELDS,
+        HttpFields.build().put("grpc-status", "5").put("grpc-message", "user+1%20missing"), true);
+
+    assertThat(result.isSuccessful()).isFalse();
+    assertThat(result.getResponseCode()).isEqualTo("5");
+    assertThat(result.getResponseMessage()).isEqualTo("NOT_FOUND: user+1 missing");
+  }
+
+  @Test
+  public void shouldFailUnaryCallWhenResponseHasSeveralMessages() {
+    HTTPSampleResult result = resultWithBody(frames(new byte[] {1}, new byte[] {2}));
+
+    GrpcFraming.applyResponse(result, 200, NO_FIELDS,
+        HttpFields.build().put("grpc-status", "0"), true);
+
+    assertThat(result.isSuccessful()).isFalse();
+    assertThat(result.getResponseMessage())
+        .isEqualTo("INTERNAL: Unary call got 2 response messages");
+  }
+
+  @Test
+  public void shouldFailWhenStatusIsMissing() {
+    HTTPSampleResult result = resultWithBody(frames(new byte[] {1}));
+
+    GrpcFraming.applyResponse(result, 200, NO_FIELDS, null, false);
+
+    assertThat(result.isSuccessful()).isFalse();
+    assertThat(result.getResponseMessage()).isEqualTo("INTERNAL: Missing grpc-status");
+  }
+
+  @Test
+  public void shouldEncodeTimeoutInSecondsWhenTooLongForMillis() {
+    assertThat(GrpcFraming.encodeTimeout(1500)).isEqualTo("1500m");
+    assertThat(GrpcFraming.encodeTimeout(100_000_000L)).isEqualTo("100000S");
+  }
+
+  private static byte[] frames(byte[]... messages) {
+    int length = 0;
+    for (byte[] message : messages) {
+      length += 5 + message.length;
+    }
+    ByteBuffer body = ByteBuffer.allocate(length);
+    for (byte[] message : messages) {
+      body.put(GrpcFraming.prefix(message.length));
+      body.put(message);
+    }
+    return body.array();
+  }
+
+  private static HTTPSampleResult resultWithBody(byte[] body) {
+    HTTPSampleResult result = new HTTPSampleResult();
+    result.setResponseData(body);
+    return result;
+  }
+}
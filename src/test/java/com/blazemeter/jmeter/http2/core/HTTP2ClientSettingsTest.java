@@ -0,0 +1,97 @@
+package com.blazemeter.jmeter.http2.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.blazemeter.jmeter.http2.core.HTTP2ClientSettings.Preset;
+import java.nio.ByteBuffer;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import org.eclipse.jetty.http2.client.HTTP2Client;
+import org.eclipse.jetty.http2.frames.SettingsFrame;
+import org.junit.Test;
+
+public class HTTP2ClientSettingsTest {
+
+  @Test
+  public void shouldApplySettingsToHttp2Client() {
+    HTTP2ClientSettings settings = HTTP2ClientSettings.builder(Preset.DEFAULT)
+        .headerTableSize(8192)
+        .maxConcurrentPushedStreams(0)
+        .sessionRecvWindow(1024 * 1024)
+        .streamRecvWindow(512 * 1024)
+        .maxFrameSize(32768)
+        .maxHeaderListSize(16384)
+        .build();
+    HTTP2Client client = new HTTP2Client();
+
+    settings.applyTo(client);
+
+    assertThat(client.getMaxDecoderTableCapacity()).isEqualTo(8192);
+    assertThat(client.getMaxConcurrentPushedStreams()).isEqualTo(0);
+    assertThat(client.getInitialSessionRecvWindow()).isEqualTo(1024 * 1024);
+    assertThat(client.getInitialStreamRecvWindow()).isEqualTo(512 * 1024);
+    assertThat(client.getMaxFrameSize()).isEqualTo(32768);
+    assertThat(client.getMaxResponseHeadersSize()).isEqualTo(16384);
+  }
+
+  @Test
+  public void shouldDisableServerPushWithBrowserPreset() {
+    HTTP2ClientSettings settings = HTTP2ClientSettings.builder(Preset.BROWSER).build();
+
+    assertThat(settings.getMaxConcurrentPushedStreams()).isEqualTo(0);
+    assertThat(decodeH2cSettings(settings.toH2cSettingsHeaderValue()))
+        .containsEntry(SettingsFrame.ENABLE_PUSH, 0)
+        .containsEntry(SettingsFrame.HEADER_TABLE_SIZE, 65536)
+        .containsEntry(SettingsFrame.INITIAL_WINDOW_SIZE, 6 * 1024 * 1024)
+        .containsEntry(SettingsFrame.MAX_HEADER_LIST_SIZE, 262144);
+  }
+
+  @Test
+  public void shouldNotDisableServerPushInH2cSettingsWhenPushedStreamsAreAllowed() {
+    HTTP2ClientSettings settings = HTTP2ClientSettings.builder(Preset.DEFAULT).build();
+
+    assertThat(decodeH2cSettings(settings.toH2cSettingsHeaderValue()))
+        .doesNotContainKey(SettingsFrame.ENABLE_PUSH)
+        .containsEntry(SettingsFrame.MAX_CONCURRENT_STREAMS, 100)
+        .containsEntry(SettingsFrame.MAX_FRAME_SIZE, 16384);
+  }
+
+  @Test
+  public void shouldKeepJettyMaxResponseHeadersSizeWhenMaxHeaderListSizeIsUnset() {
+    HTTP2ClientSettings settings = HTTP2ClientSettings.builder(Preset.DEFAULT).build();
+    HTTP2Client client = new HTTP2Client();
+    int jettyMaxResponseHeadersSize = client.getMaxResponseHeadersSize();
+
+    settings.applyTo(client);
+
+    assertThat(client.getMaxResponseHeadersSize()).isEqualTo(jettyMaxResponseHeadersSize);
+    assertThat(decodeH2cSettings(settings.toH2cSettingsHeaderValue()))
+        .doesNotContainKey(SettingsFrame.MAX_HEADER_LIST_SIZE);
+  }
+
+  @Test
+  public void shouldThrowIllegalArgumentExceptionWhenMaxFrameSizeIsOutOfRange() {
+    HTTP2ClientSettings.Builder builder = HTTP2ClientSettings.builder(Preset.DEFAULT)
+        .maxFrameSize(1024);
+
+    assertThatThrownBy(builder::build)
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("settingsMaxFrameSize=1024");
+  }
+
+  @Test
+  public void shouldParsePresetIgnoringCase() {
+    assertThat(Preset.parse(" Browser ")).isEqualTo(Preset.BROWSER);
+  }
+
+  private Map<Integer, Integer> decodeH2cSettings(String value) {
+    ByteBuffer buffer = ByteBuffer.wrap(Base64.getUrlDecoder().decode(value));
+    Map<Integer, Integer> settings = new LinkedHashMap<>();
+    while (buffer.hasRemaining()) {
+      settings.put((int) buffer.getShort(), buffer.getInt());
+    }
+    return settings;
+  }
+}
@@ -0,0 +1,85 @@
+package com.blazemeter.jmeter.http2.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+import org.apache.jmeter.threads.JMeterVariables;
+import org.eclipse.jetty.client.Request;
+import org.eclipse.jetty.io.Connection;
+import org.eclipse.jetty.io.EndPoint;
+import org.junit.Before;
+import org.junit.Test;
+
+public class HTTP2ConnectionMetricsTest {
+
+  private HTTP2ConnectionMetrics metrics;
+
+  @Before
+  public void setUp() {
+    metrics = new HTTP2ConnectionMetrics(0);
+  }
+
+  @Test
+  public void shouldTrackOpenConnectionsPerDestination() {
+    Connection.Listener listener = metrics.connectionListener();
+    Connection first = mockConnection("localhost", 443, 100, 200);
+    Connection second = mockConnection("localhost", 443, 10, 20);
+
+    listener.onOpened(first);
+    listener.onOpened(second);
+    assertThat(metrics.getOpenConnectionsByDestination()).containsEntry("localhost:443", 2);
+
+    listener.onClosed(first);
+    Map<String, Long> snapshot = metrics.snapshot();
+    assertThat(snapshot.get("connectionsOpen")).isEqualTo(1L);
+    assertThat(snapshot.get("connectionsClosed")).isEqualTo(1L);
+    assertThat(snapshot.get("bytesIn")).isEqualTo(110L);
+    assertThat(snapshot.get("bytesOut")).isEqualTo(220L);
+    assertThat(metrics.getOpenConnectionsByDestination()).containsEntry("localhost:443", 1);
+  }
+
+  @Test
+  public void shouldRecordQueueWaitWhenRequestLeavesQueue() {
+    Request.Listener listener = metrics.requestListener();
+    Request request = mock(Request.class);
+    Map<String, Object> attributes = new HashMap<>();
+    when(request.attribute(anyString(), any())).then(invocation -> {
+      attributes.put(invocation.getArgument(0), invocation.getArgument(1));
+      return request;
+    });
+    when(request.getAttributes()).thenReturn(attributes);
+
+    listener.onQueued(request);
+    listener.onBegin(request);
+
+    assertThat(metrics.snapshot().get("queuedRequests")).isEqualTo(1L);
+  }
+
+  @Test
+  public void shouldPublishVariablesOnlyOncePerInterval() {
+    HTTP2ConnectionMetrics throttled = new HTTP2ConnectionMetrics(60000);
+    JMeterVariables vars = new JMeterVariables();
+
+    assertThat(throttled.publishIfDue(vars)).isTrue();
+    assertThat(throttled.publishIfDue(vars)).isFalse();
+    assertThat(vars.get(HTTP2ConnectionMetrics.VARIABLE_PREFIX + "connectionsOpen"))
+        .isEqualTo("0");
+  }
+
+  private Connection mockConnection(String host, int port, long bytesIn, long bytesOut) {
+    EndPoint endPoint = mock(EndPoint.class);
+    when(endPoint.getRemoteSocketAddress())
+        .thenReturn(InetSocketAddress.createUnresolved(host, port));
+    Connection connection = mock(Connection.class);
+    when(connection.getEndPoint()).thenReturn(endPoint);
+    when(connection.getBytesIn()).thenReturn(bytesIn);
+    when(connection.getBytesOut()).thenReturn(bytesOut);
+    return connection;
+  }
+}
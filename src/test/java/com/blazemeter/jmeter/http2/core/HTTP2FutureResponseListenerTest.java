@@ -11,10 +11,12 @@ import org.junit.Before;
 import org.junit.Test;
 import org.mockito.Mockito;
 
+import java.nio.ByteBuffer;
 import java.util.concurrent.CancellationException;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicLong;
 
 import static org.junit.Assert.*;
 import static org.mockito.Mockito.*;
@@ -127,4 +129,37 @@ public class HTTP2FutureResponseListenerTest extends HTTP2TestBase {
 
         listener.get(timeout, unit); // Should throw TimeoutException
     }
+
+    @Test
+    public void discardStopsBufferingAndReportsReceivedBytesOnComplete()
+            throws InterruptedException, TimeoutException, ExecutionException {
+        Response mockResponse = mock(Response.class);
+        AtomicLong wasted = new AtomicLong(-1);
+        listener.onContent(mockResponse, ByteBuffer.wrap(new byte[10]));
+
+        listener.discard(wasted::set);
+        listener.onContent(mockResponse, ByteBuffer.wrap(new byte[20]));
+        assertEquals(-1, wasted.get());
+        listener.onComplete(mock(Result.class));
+
+        assertEquals(30, wasted.get());
+        try {
+            listener.get(1, TimeUnit.SECONDS);
+            fail("Discarded listener should not return a response");
+        } catch (CancellationException e) {
+            assertTrue(listener.isCancelled());
+        }
+    }
+
+    @Test
+    public void discardKeepsResponseProvidedByRaceWinner()
+            throws InterruptedException, TimeoutException, ExecutionException {
+        ContentResponse winner = mock(ContentResponse.class);
+        listener.completeWith(winner, 1, 2);
+
+        listener.discard(null);
+        listener.onComplete(mock(Result.class));
+
+        assertSame(winner, listener.get(1, TimeUnit.SECONDS));
+    }
 }
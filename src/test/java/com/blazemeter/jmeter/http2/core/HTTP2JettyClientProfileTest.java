@@ -6,6 +6,7 @@ import static org.junit.Assert.assertEquals;
 
 import com.blazemeter.jmeter.http2.HTTP2TestBase;
 import java.lang.reflect.Field;
+import java.net.URI;
 import org.apache.jmeter.util.JMeterUtils;
 import org.junit.After;
 import org.junit.BeforeClass;
@@ -25,6 +26,9 @@ public class HTTP2JettyClientProfileTest extends HTTP2TestBase {
   private static final String ALT_SVC_CACHE = "httpJettyClient.altSvcCacheEnabled";
   private static final String HTTP1_ONLY_CACHE = "httpJettyClient.http1OnlyCacheEnabled";
   private static final String H2C_CACHE = "httpJettyClient.h2cCacheEnabled";
+  private static final String HAPPY_EYEBALLS_ADAPTIVE = "httpJettyClient.happyEyeballsAdaptive";
+  private static final String HAPPY_EYEBALLS_SKIP_AFTER_WINS =
+      "httpJettyClient.happyEyeballsSkipAfterWins";
 
   @BeforeClass
   public static void setupClass() {
@@ -44,6 +48,8 @@ public class HTTP2JettyClientProfileTest extends HTTP2TestBase {
     remove(ALT_SVC_CACHE);
     remove(HTTP1_ONLY_CACHE);
     remove(H2C_CACHE);
+    remove(HAPPY_EYEBALLS_ADAPTIVE);
+    remove(HAPPY_EYEBALLS_SKIP_AFTER_WINS);
   }
 
   @Test
@@ -138,6 +144,101 @@ public class HTTP2JettyClientProfileTest extends HTTP2TestBase {
     assertFalse(protocols.contains("h2"));
   }
 
+  @Test
+  public void shouldDeriveHappyEyeballsDelayFromObservedHttp3Latency() throws Exception {
+    set(PROFILE_PROPERTY, "browser-like-custom");
+    set(HAPPY_EYEBALLS, "200");
+    set(HAPPY_EYEBALLS_ADAPTIVE, "true");
+    HTTP2JettyClient client = new HTTP2JettyClient(false, "test");
+    URI uri = new URI("https://adaptive-delay.example:8443/");
+
+    assertEquals(200L, client.computeHappyEyeballsDelayMs(uri));
+    for (int i = 0; i < 3; i++) {
+      client.recordHappyEyeballsAttempt(uri, true, 40, true);
+    }
+    assertEquals(50L, client.computeHappyEyeballsDelayMs(uri));
+  }
+
+  @Test
+  public void shouldRaceImmediatelyWhenHttp3MostlyFails() throws Exception {
+    set(PROFILE_PROPERTY, "browser-like-custom");
+    set(HAPPY_EYEBALLS, "200");
+    set(HAPPY_EYEBALLS_ADAPTIVE, "true");
+    HTTP2JettyClient client = new HTTP2JettyClient(false, "test");
+    URI uri = new URI("https://adaptive-failures.example:8443/");
+
+    for (int i = 0; i < 3; i++) {
+      client.recordHappyEyeballsAttempt(uri, true, 500, false);
+    }
+    assertEquals(0L, client.computeHappyEyeballsDelayMs(uri));
+  }
+
+  @Test
+  public void shouldRaceAgainAfterSkippedRacesPerProtocol() throws Exception {
+    set(PROFILE_PROPERTY, "browser-like-custom");
+    set(HAPPY_EYEBALLS, "200");
+    set(HAPPY_EYEBALLS_ADAPTIVE, "true");
+    set(HAPPY_EYEBALLS_SKIP_AFTER_WINS, "1");
+    HTTP2JettyClient client = new HTTP2JettyClient(false, "test");
+    URI uri = new URI("https://adaptive-skip.example:8443/");
+
+    client.recordHappyEyeballsWinner(uri, false);
+    for (int i = 0; i < 31; i++) {
+      assertTrue(client.skipHappyEyeballsRace(uri, false));
+      client.recordSkippedHappyEyeballsRace(uri, false, 10, true);
+    }
+    assertTrue(client.skipHappyEyeballsRace(uri, false));
+    client.recordSkippedHappyEyeballsRace(uri, false, 10, true);
+    assertFalse(client.skipHappyEyeballsRace(uri, false));
+    assertFalse(client.skipHappyEyeballsRace(uri, true));
+  }
+
+  @Test
+  public void shouldNotCountSkippedRaceWhenOnlyAskedWhetherToSkip() throws Exception {
+    set(PROFILE_PROPERTY, "browser-like-custom");
+    set(HAPPY_EYEBALLS, "200");
+    set(HAPPY_EYEBALLS_ADAPTIVE, "true");
+    set(HAPPY_EYEBALLS_SKIP_AFTER_WINS, "1");
+    HTTP2JettyClient client = new HTTP2JettyClient(false, "test");
+    URI uri = new URI("https://adaptive-skip-predicate.example:8443/");
+
+    client.recordHappyEyeballsWinner(uri, true);
+    for (int i = 0; i < 64; i++) {
+      assertTrue(client.skipHappyEyeballsRace(uri, true));
+    }
+  }
+
+  @Test
+  public void shouldRaceAgainWhenSkippedRaceFails() throws Exception {
+    set(PROFILE_PROPERTY, "browser-like-custom");
+    set(HAPPY_EYEBALLS, "200");
+    set(HAPPY_EYEBALLS_ADAPTIVE, "true");
+    set(HAPPY_EYEBALLS_SKIP_AFTER_WINS, "1");
+    HTTP2JettyClient client = new HTTP2JettyClient(false, "test");
+    URI uri = new URI("https://adaptive-skip-failure.example:8443/");
+
+    client.recordHappyEyeballsWinner(uri, true);
+    client.recordSkippedHappyEyeballsRace(uri, true, 500, false);
+
+    assertFalse(client.skipHappyEyeballsRace(uri, true));
+  }
+
+  @Test
+  public void shouldNotSkipRaceWhenWinnerFailsMoreThanOtherProtocol() throws Exception {
+    set(PROFILE_PROPERTY, "browser-like-custom");
+    set(HAPPY_EYEBALLS, "200");
+    set(HAPPY_EYEBALLS_ADAPTIVE, "true");
+    set(HAPPY_EYEBALLS_SKIP_AFTER_WINS, "1");
+    HTTP2JettyClient client = new HTTP2JettyClient(false, "test");
+    URI uri = new URI("https://adaptive-skip-health.example:8443/");
+
+    client.recordHappyEyeballsAttempt(uri, true, 40, false);
+    client.recordHappyEyeballsAttempt(uri, false, 40, true);
+    client.recordHappyEyeballsWinner(uri, true);
+
+    assertFalse(client.skipHappyEyeballsRace(uri, true));
+  }
+
   private static void set(String key, String value) {
     JMeterUtils.getJMeterProperties().setProperty(key, value);
   }
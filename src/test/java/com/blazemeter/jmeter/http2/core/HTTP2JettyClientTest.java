@@ -11,16 +11,23 @@ import static com.blazemeter.jmeter.http2.core.ServerBuilder.KEYSTORE_PASSWORD;
 import static com.blazemeter.jmeter.http2.core.ServerBuilder.RESPONSE_DATA_COOKIES;
 import static com.blazemeter.jmeter.http2.core.ServerBuilder.RESPONSE_DATA_COOKIES2;
 import static com.blazemeter.jmeter.http2.core.ServerBuilder.SERVER_IMAGE;
+import static com.blazemeter.jmeter.http2.core.ServerBuilder.SERVER_IMAGE_PUSHED;
 import static com.blazemeter.jmeter.http2.core.ServerBuilder.SERVER_PATH_200;
 import static com.blazemeter.jmeter.http2.core.ServerBuilder.SERVER_PATH_200_EMBEDDED;
+import static com.blazemeter.jmeter.http2.core.ServerBuilder.SERVER_PATH_200_EMBEDDED_PUSH;
 import static com.blazemeter.jmeter.http2.core.ServerBuilder.SERVER_PATH_200_FILE_SENT;
 import static com.blazemeter.jmeter.http2.core.ServerBuilder.SERVER_PATH_200_GZIP;
+import static com.blazemeter.jmeter.http2.core.ServerBuilder.SERVER_PATH_200_GZIP_TRUNCATED;
 import static com.blazemeter.jmeter.http2.core.ServerBuilder.SERVER_PATH_200_BROTLI;
 import static com.blazemeter.jmeter.http2.core.ServerBuilder.SERVER_PATH_200_ZSTD;
 import static com.blazemeter.jmeter.http2.core.ServerBuilder.SERVER_PATH_200_WITH_BODY;
 import static com.blazemeter.jmeter.http2.core.ServerBuilder.SERVER_PATH_302;
 import static com.blazemeter.jmeter.http2.core.ServerBuilder.SERVER_PATH_400;
+import static com.blazemeter.jmeter.http2.core.ServerBuilder.SERVER_PATH_503_ONCE;
 import static com.blazemeter.jmeter.http2.core.ServerBuilder.SERVER_PATH_BIG_RESPONSE;
+import static com.blazemeter.jmeter.http2.core.ServerBuilder.SERVER_PATH_GRPC_ECHO;
+import static com.blazemeter.jmeter.http2.core.ServerBuilder.SERVER_PATH_GRPC_STREAM;
+import static com.blazemeter.jmeter.http2.core.ServerBuilder.SERVER_PATH_GRPC_UNIMPLEMENTED;
 import static com.blazemeter.jmeter.http2.core.ServerBuilder.SERVER_PATH_200_DEFLATE;
 import static com.blazemeter.jmeter.http2.core.ServerBuilder.SERVER_PATH_JSON_ONLY;
 import static com.blazemeter.jmeter.http2.core.ServerBuilder.SERVER_PATH_SET_COOKIES;
@@ -32,6 +39,7 @@ import static org.junit.Assert.assertThrows;
 
 import com.blazemeter.jmeter.http2.HTTP2TestBase;
 import com.blazemeter.jmeter.http2.core.ServerBuilder.TeardownableServer;
+import com.blazemeter.jmeter.http2.sampler.GrpcSampler;
 import com.blazemeter.jmeter.http2.sampler.HTTP2Sampler;
 import com.blazemeter.jmeter.http2.sampler.JMeterTestUtils;
 import com.google.common.io.Resources;
@@ -46,8 +54,12 @@ import java.net.URISyntaxException;
 import java.net.URL;
 import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
+import java.nio.file.Path;
 import java.nio.file.Paths;
 import java.lang.reflect.Method;
+import java.time.Duration;
+import java.time.ZoneOffset;
+import java.time.ZonedDateTime;
 import java.util.Arrays;
 import java.util.Base64;
 import java.util.Collections;
@@ -57,7 +69,11 @@ import java.util.List;
 import java.util.Map;
 import java.util.concurrent.ExecutionException;
 import java.util.concurrent.TimeoutException;
+import java.util.stream.Collectors;
 import java.util.zip.GZIPOutputStream;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
 import org.apache.jmeter.config.Arguments;
 import org.apache.jmeter.protocol.http.control.AuthManager;
 import org.apache.jmeter.protocol.http.control.AuthManager.Mechanism;
@@ -72,6 +88,8 @@ import org.apache.jmeter.protocol.http.util.HTTPArgument;
 import org.apache.jmeter.protocol.http.util.HTTPConstants;
 import org.apache.jmeter.protocol.http.util.HTTPFileArg;
 import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.threads.JMeterContextService;
+import org.apache.jmeter.threads.JMeterVariables;
 import org.apache.jmeter.util.JMeterUtils;
 import org.assertj.core.api.JUnitSoftAssertions;
 import org.eclipse.jetty.client.Request;
@@ -86,6 +104,8 @@ import org.eclipse.jetty.http.HttpFields.Mutable;
 import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpStatus;
 import org.eclipse.jetty.http.HttpStatus.Code;
+import org.eclipse.jetty.http2.BufferingFlowControlStrategy;
+import org.eclipse.jetty.http2.client.HTTP2Client;
 import org.eclipse.jetty.server.ServerConnector;
 import org.junit.After;
 import org.junit.Before;
@@ -183,6 +203,120 @@ public class HTTP2JettyClientTest extends HTTP2TestBase {
     assertThat(result.getResponseDataAsString()).isEqualTo(SERVER_RESPONSE);
   }
 
+  @Test
+  public void shouldNotAttributeConnectTimeWhenConnectionIsReused() throws Exception {
+    buildStartedServer();
+    sampleWithGet();
+    HTTPSampleResult reused = sampleWithGet();
+    assertThat(reused.getConnectTime()).isZero();
+    assertThat(reused.getLatency()).isGreaterThanOrEqualTo(0);
+  }
+
+  @Test
+  public void shouldPublishPhaseTimingVariablesWhenEnabled() throws Exception {
+    JMeterUtils.setProperty("httpJettyClient.phaseTimingVariables", "true");
+    JMeterVariables vars = new JMeterVariables();
+    JMeterContextService.getContext().setVariables(vars);
+    try {
+      buildStartedServer();
+      sampleWithGet();
+      assertThat(vars.get(RequestPhaseTimings.VARIABLE_PREFIX + "ttfb")).isNotNull();
+      assertThat(vars.get(RequestPhaseTimings.VARIABLE_PREFIX + "download")).isNotNull();
+    } finally {
+      JMeterUtils.getJMeterProperties().remove("httpJettyClient.phaseTimingVariables");
+    }
+  }
+
+  @Test
+  public void shouldGetResponsesWhenConnectionPoolSpreadsLeastActiveStreams() throws Exception {
+    JMeterUtils.setProperty("httpJettyClient.connectionPoolStrategy", "least-active-streams");
+    try {
+      buildStartedServer();
+      assertThat(sampleWithGet().getResponseDataAsString()).isEqualTo(SERVER_RESPONSE);
+      assertThat(sampleWithGet().getResponseDataAsString()).isEqualTo(SERVER_RESPONSE);
+    } finally {
+      JMeterUtils.getJMeterProperties().remove("httpJettyClient.connectionPoolStrategy");
+    }
+  }
+
+  @Test
+  public void shouldGetBigResponseWhenFlowControlWindowsAreAutoTuned() throws Exception {
+    JMeterUtils.setProperty("httpJettyClient.flowControlStrategy", "auto");
+    JMeterUtils.setProperty("httpJettyClient.flowControlSessionWindow", "65535");
+    JMeterUtils.setProperty("httpJettyClient.flowControlStreamWindow", "65535");
+    try {
+      buildStartedServer();
+      client.stop();
+      client = new HTTP2JettyClient();
+      client.start();
+      JMeterUtils.setProperty("httpJettyClient.maxBufferSize", String.valueOf(BIG_BUFFER_SIZE));
+      assertThat(sampleWithGet(SERVER_PATH_BIG_RESPONSE).getBodySizeAsLong())
+          .isEqualTo(BIG_BUFFER_SIZE);
+    } finally {
+      JMeterUtils.getJMeterProperties().remove("httpJettyClient.flowControlStrategy");
+      JMeterUtils.getJMeterProperties().remove("httpJettyClient.flowControlSessionWindow");
+      JMeterUtils.getJMeterProperties().remove("httpJettyClient.flowControlStreamWindow");
+    }
+  }
+
+  @Test
+  public void shouldNotForgetCircuitFailuresWhenResponseIsNotSuccessful() throws Exception {
+    JMeterUtils.setProperty("httpJettyClient.circuitBreakerFailureThreshold", "2");
+    try {
+      buildStartedServer();
+      String origin = "https://" + HOST_NAME + ":" + getActivePort();
+      OriginCircuitBreaker breaker = new OriginCircuitBreaker(2, 60000, 60000, 60000);
+      breaker.onProtocolFailure(origin);
+      sampleWithGet(SERVER_PATH_400);
+      breaker.onProtocolFailure(origin);
+      assertThat(breaker.stateOf(origin)).isEqualTo(OriginCircuitBreaker.State.DEGRADED);
+    } finally {
+      JMeterUtils.getJMeterProperties().remove("httpJettyClient.circuitBreakerFailureThreshold");
+      OriginCircuitBreaker.clear();
+    }
+  }
+
+  @Test
+  public void shouldKeepOriginOnHttp2WhenOnlyHttp3Failed() throws Exception {
+    JMeterUtils.setProperty("httpJettyClient.circuitBreakerFailureThreshold", "1");
+    try {
+      buildStartedServer();
+      client.loadProperties();
+      URL url = createURL(SERVER_PATH_200);
+      client.markHttp3Broken(url.toURI());
+      String origin = "https://" + HOST_NAME + ":" + getActivePort();
+      softly.assertThat(new OriginCircuitBreaker(1, 60000, 60000, 60000).stateOf(origin))
+          .isEqualTo(OriginCircuitBreaker.State.CLOSED);
+      softly.assertThat(sampleWithGet().getResponseHeaders()).startsWith("HTTP/2.0 200");
+    } finally {
+      JMeterUtils.getJMeterProperties().remove("httpJettyClient.circuitBreakerFailureThreshold");
+      OriginCircuitBreaker.clear();
+    }
+  }
+
+  @Test
+  public void shouldKeepJettyFlowControlStrategyWhenWindowsAreStatic() throws Exception {
+    HTTP2Client http2Client = new HTTP2Client();
+    client.loadProperties();
+    client.configureFlowControl(http2Client);
+    assertThat(http2Client.getFlowControlStrategyFactory().newFlowControlStrategy())
+        .isInstanceOf(BufferingFlowControlStrategy.class);
+  }
+
+  @Test
+  public void shouldUseAdaptiveFlowControlStrategyWhenWindowsAreAutoTuned() throws Exception {
+    JMeterUtils.setProperty("httpJettyClient.flowControlStrategy", "auto");
+    try {
+      HTTP2Client http2Client = new HTTP2Client();
+      client.loadProperties();
+      client.configureFlowControl(http2Client);
+      assertThat(http2Client.getFlowControlStrategyFactory().newFlowControlStrategy())
+          .isInstanceOf(AdaptiveFlowControlStrategy.class);
+    } finally {
+      JMeterUtils.getJMeterProperties().remove("httpJettyClient.flowControlStrategy");
+    }
+  }
+
   private void buildStartedServer() throws Exception {
     server = new ServerBuilder()
         .withHTTP2()
@@ -292,6 +426,32 @@ public class HTTP2JettyClientTest extends HTTP2TestBase {
     }
   }
 
+  @Test
+  public void shouldRecordContentDecodeFailureWhenGzipBodyIsTruncated() throws Exception {
+    buildStartedServer();
+    String eventName = "com.blazemeter.http.ContentDecode";
+    Path file = Files.createTempFile("content-decode", ".jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable(eventName).withThreshold(Duration.ZERO);
+      recording.start();
+      HTTPSampleResult result = sampleWithGet(SERVER_PATH_200_GZIP_TRUNCATED);
+      recording.stop();
+      recording.dump(file);
+      List<RecordedEvent> events = RecordingFile.readAllEvents(file).stream()
+          .filter(e -> eventName.equals(e.getEventType().getName()))
+          .collect(Collectors.toList());
+
+      assertThat(result.getResponseData()).hasSize(12);
+      assertThat(events).hasSize(1);
+      RecordedEvent event = events.get(0);
+      softly.assertThat(event.getString("outcome")).startsWith("failure: ");
+      softly.assertThat(event.getString("protocol")).isEqualTo("HTTP/2.0");
+      softly.assertThat(event.getLong("streamId")).isGreaterThanOrEqualTo(0L);
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
   @Test
   public void shouldReturnSuccessSampleResultWhenSuccessResponseWithContentTypeBrotli()
       throws Exception {
@@ -564,6 +724,70 @@ public class HTTP2JettyClientTest extends HTTP2TestBase {
     validateResponse(sample(SERVER_PATH_200_WITH_BODY, HTTPConstants.POST), expected);
   }
 
+  @Test
+  public void shouldTruncateSamplerDataWhenCaptureIsTruncated() throws Exception {
+    buildStartedServer();
+    JMeterUtils.setProperty("httpJettyClient.samplerDataCapture", "truncated");
+    JMeterUtils.setProperty("httpJettyClient.samplerDataMaxLength", "10");
+    try {
+      sampler.setMethod(HTTPConstants.POST);
+      sampler.addArgument("test1", TEST_ARGUMENT_1);
+      sampler.addArgument("test2", TEST_ARGUMENT_2);
+
+      HTTPSampleResult result = sample(SERVER_PATH_200_WITH_BODY, HTTPConstants.POST);
+
+      assertThat(result.getQueryString()).isEqualTo("test1=valu... (truncated)");
+    } finally {
+      JMeterUtils.getJMeterProperties().remove("httpJettyClient.samplerDataCapture");
+      JMeterUtils.getJMeterProperties().remove("httpJettyClient.samplerDataMaxLength");
+    }
+  }
+
+  @Test
+  public void shouldNotCaptureSamplerDataWhenDisabled() throws Exception {
+    buildStartedServer();
+    JMeterUtils.setProperty("httpJettyClient.samplerDataCapture", "none");
+    try {
+      sampler.setMethod(HTTPConstants.POST);
+      sampler.addArgument("test1", TEST_ARGUMENT_1);
+
+      HTTPSampleResult result = sample(SERVER_PATH_200_WITH_BODY, HTTPConstants.POST);
+
+      assertThat(result.getQueryString()).isEmpty();
+    } finally {
+      JMeterUtils.getJMeterProperties().remove("httpJettyClient.samplerDataCapture");
+    }
+  }
+
+  @Test
+  public void shouldSendSameRequestWhenSamplerIsSampledAgainWithSameValues() throws Exception {
+    buildStartedServer();
+    sampler.setMethod(HTTPConstants.POST);
+    sampler.addArgument("test1", TEST_ARGUMENT_1);
+
+    HTTPSampleResult first = sample(SERVER_PATH_200_WITH_BODY, HTTPConstants.POST);
+    HTTPSampleResult second = sample(SERVER_PATH_200_WITH_BODY, HTTPConstants.POST);
+
+    assertThat(second.getResponseDataAsString()).isEqualTo(first.getResponseDataAsString());
+    assertThat(second.getRequestHeaders()).isEqualTo(first.getRequestHeaders());
+    assertThat(second.getQueryString()).isEqualTo(first.getQueryString());
+    assertThat(second.getSentBytes()).isEqualTo(first.getSentBytes());
+  }
+
+  @Test
+  public void shouldRebuildRequestWhenSamplerValuesChange() throws Exception {
+    buildStartedServer();
+    sampler.setMethod(HTTPConstants.POST);
+    sampler.addArgument("test1", TEST_ARGUMENT_1);
+    sample(SERVER_PATH_200_WITH_BODY, HTTPConstants.POST);
+    sampler.getArguments().clear();
+    sampler.addArgument("test1", TEST_ARGUMENT_2);
+
+    HTTPSampleResult result = sample(SERVER_PATH_200_WITH_BODY, HTTPConstants.POST);
+
+    assertThat(result.getResponseDataAsString()).isEqualTo("test1=" + TEST_ARGUMENT_2);
+  }
+
   @Test
   public void shouldSendArgumentsInUrlWhenDeleteMethodWithArguments() throws Exception {
     sampler.setMethod(HTTPConstants.DELETE);
@@ -602,6 +826,71 @@ public class HTTP2JettyClientTest extends HTTP2TestBase {
     validateResponse(sampleWithGet(SERVER_PATH_400), expected);
   }
 
+  @Test
+  public void shouldNotRetryWhenResponseIs503WithRetryAfterAndRetriesAreNotEnabled()
+      throws Exception {
+    buildStartedServer();
+    HTTPSampleResult result = sampleWithGet(SERVER_PATH_503_ONCE);
+    softly.assertThat(result.getResponseCode()).isEqualTo("503");
+    softly.assertThat(result.getSubResults()).isEmpty();
+  }
+
+  @Test
+  public void shouldRetryAndRecordAttemptWhenResponseIs503WithRetryAfter() throws Exception {
+    JMeterUtils.setProperty("httpJettyClient.retryMaxAttempts", "1");
+    JMeterUtils.setProperty("httpJettyClient.retryBackoffMs", "500");
+    try {
+      buildStartedServer();
+      HTTPSampleResult result = new AttemptAwareSampleResult();
+      result.setURL(createURL(SERVER_PATH_503_ONCE));
+      result.setHTTPMethod(HTTPConstants.GET);
+      client.loadProperties();
+      result = client.sample(sampler, result, false, 0);
+      SampleResult attempt = result.getSubResults()[0];
+      long delay = Long.parseLong(attempt.getResponseMessage()
+          .replaceAll(".*retried after (\\d+) ms", "$1"));
+      softly.assertThat(result.getResponseCode()).isEqualTo("200");
+      softly.assertThat(result.getSubResults()).hasSize(1);
+      softly.assertThat(attempt).isInstanceOf(AttemptAwareSampleResult.class);
+      softly.assertThat(attempt.getResponseCode()).isEqualTo("503");
+      softly.assertThat(attempt.isSuccessful()).isFalse();
+      softly.assertThat(result.getIdleTime()).isGreaterThanOrEqualTo(delay);
+      softly.assertThat(result.getEndTime()).isGreaterThanOrEqualTo(attempt.getEndTime() + delay);
+    } finally {
+      JMeterUtils.getJMeterProperties().remove("httpJettyClient.retryMaxAttempts");
+      JMeterUtils.getJMeterProperties().remove("httpJettyClient.retryBackoffMs");
+    }
+  }
+
+  @Test
+  public void shouldGetRetryAfterDelayWhenRetryAfterIsHttpDate() {
+    long now = ZonedDateTime.of(2015, 10, 21, 7, 28, 0, 0, ZoneOffset.UTC).toInstant()
+        .toEpochMilli();
+    softly.assertThat(HTTP2JettyClient.retryAfterMillis("Wed, 21 Oct 2015 07:28:30 GMT", now))
+        .isEqualTo(30000);
+    softly.assertThat(HTTP2JettyClient.retryAfterMillis("Wed, 21 Oct 2015 07:27:00 GMT", now))
+        .isEqualTo(0);
+    softly.assertThat(HTTP2JettyClient.retryAfterMillis("tomorrow", now)).isEqualTo(-1);
+  }
+
+  @Test
+  public void shouldNotRetryWhenResponseIs503AndGoawayRetryIsDisabled() throws Exception {
+    JMeterUtils.setProperty("httpJettyClient.retryMaxAttempts", "1");
+    JMeterUtils.setProperty("httpJettyClient.goawayRetryEnabled", "false");
+    try {
+      buildStartedServer();
+      HTTPSampleResult result = sampleWithGet(SERVER_PATH_503_ONCE);
+      softly.assertThat(result.getResponseCode()).isEqualTo("503");
+      softly.assertThat(result.getSubResults()).isEmpty();
+    } finally {
+      JMeterUtils.getJMeterProperties().remove("httpJettyClient.retryMaxAttempts");
+      JMeterUtils.getJMeterProperties().remove("httpJettyClient.goawayRetryEnabled");
+    }
+  }
+
+  public static class AttemptAwareSampleResult extends HTTPSampleResult {
+  }
+
   @Test(expected = UnsupportedOperationException.class)
   public void shouldReturnErrorMessageWhenMethodIsNotSupported() throws Exception {
     client.sample(sampler, buildBaseResult(createURL(SERVER_PATH_200), "MethodNotSupported"), false,
@@ -622,6 +911,193 @@ public class HTTP2JettyClientTest extends HTTP2TestBase {
         httpSampleResult);
   }
 
+  @Test
+  public void shouldReportPushedResourceAsSubSampleWithoutDownloadingItAgain() throws Exception {
+    buildStartedServer();
+    sampler.setImageParser(true);
+    PushCache.current().clear();
+    int pushedImageRequests = ServerBuilder.getPushedImageRequestCount();
+    long claimedPushes = PushCache.snapshot().get("pushesClaimed");
+
+    HTTPSampleResult result = sampleWithGet(SERVER_PATH_200_EMBEDDED_PUSH);
+
+    SampleResult[] results = result.getSubResults();
+    softly.assertThat(results).hasSize(2);
+    assertResultTypeAndUrl(results[1], SampleResult.BINARY, SERVER_IMAGE_PUSHED);
+    softly.assertThat(results[1].getResponseData()).isEqualTo(new byte[] {1, 2, 3, 4, 5});
+    softly.assertThat(ServerBuilder.getPushedImageRequestCount())
+        .isEqualTo(pushedImageRequests + 1);
+    softly.assertThat(PushCache.snapshot().get("pushesClaimed")).isEqualTo(claimedPushes + 1);
+  }
+
+  @Test
+  public void shouldNotAcceptPushedResourcesWhenImageParserIsDisabled() throws Exception {
+    buildStartedServer();
+    long receivedPushes = PushCache.snapshot().get("pushesReceived");
+
+    sampleWithGet(SERVER_PATH_200_EMBEDDED_PUSH);
+
+    assertThat(PushCache.snapshot().get("pushesReceived")).isEqualTo(receivedPushes);
+    assertThat(PushCache.current().size()).isZero();
+  }
+
+  @Test
+  public void shouldNotSendConnectionHeaderOverHttp2WhenRequestIsBuiltFromTemplate()
+      throws Exception {
+    buildStartedServer();
+    HeaderManager hm = new HeaderManager();
+    hm.add(new Header(HttpHeader.CONNECTION.asString(), "close"));
+    sampler.setHeaderManager(hm);
+
+    HTTPSampleResult first = sampleWithGet(SERVER_PATH_200);
+    HTTPSampleResult templated = sampleWithGet(SERVER_PATH_200);
+
+    softly.assertThat(first.getRequestHeaders()).doesNotContain("Connection:");
+    softly.assertThat(templated.getRequestHeaders()).doesNotContain("Connection:");
+  }
+
+  @Test
+  public void shouldSendPriorityHeaderWhenSamplerHasPriority() throws Exception {
+    buildStartedServer();
+    sampler.setPriority("i, u=1");
+
+    HTTPSampleResult result = sampleWithGet(SERVER_PATH_200);
+
+    assertThat(result.getRequestHeaders()).contains("priority: u=1, i");
+  }
+
+  @Test
+  public void shouldSendPriorityOfResourceTypeWhenDownloadingEmbeddedResources()
+      throws Exception {
+    buildStartedServer();
+    sampler.setImageParser(true);
+
+    HTTPSampleResult result = sampleWithGet(SERVER_PATH_200_EMBEDDED);
+
+    SampleResult[] results = result.getSubResults();
+    softly.assertThat(results).hasSize(2);
+    softly.assertThat(((HTTPSampleResult) results[1]).getRequestHeaders())
+        .contains("priority: u=2, i");
+  }
+
+  @Test
+  public void shouldReportResponseMessageWhenUnaryGrpcCallSucceeds() throws Exception {
+    buildStartedServer();
+    GrpcSampler grpcSampler = buildGrpcSampler(SERVER_PATH_GRPC_ECHO, new byte[] {8, 42});
+    grpcSampler.setDeadline("1500");
+
+    HTTPSampleResult result = sampleGrpc(grpcSampler, SERVER_PATH_GRPC_ECHO);
+
+    softly.assertThat(result.isSuccessful()).isTrue();
+    softly.assertThat(result.getResponseCode()).isEqualTo("0");
+    softly.assertThat(result.getResponseMessage()).isEqualTo("OK");
+    softly.assertThat(result.getResponseData()).containsExactly(8, 42);
+    softly.assertThat(result.getBodySizeAsLong()).isEqualTo(7);
+    softly.assertThat(result.getRequestHeaders()).contains("Content-Type: application/grpc",
+        "TE: trailers");
+    softly.assertThat(result.getResponseHeaders()).contains("grpc-timeout-received: 1500m");
+  }
+
+  @Test
+  public void shouldReportAllResponseMessagesWhenServerStreamingGrpcCallSucceeds()
+      throws Exception {
+    buildStartedServer();
+    GrpcSampler grpcSampler = buildGrpcSampler(SERVER_PATH_GRPC_STREAM, new byte[] {8, 42});
+    grpcSampler.setCallType(GrpcSampler.CallType.SERVER_STREAMING);
+
+    HTTPSampleResult result = sampleGrpc(grpcSampler, SERVER_PATH_GRPC_STREAM);
+
+    softly.assertThat(result.isSuccessful()).isTrue();
+    softly.assertThat(result.getResponseData()).containsExactly(8, 42, 8, 42);
+  }
+
+  @Test
+  public void shouldFailWithGrpcStatusWhenServerAnswersTrailersOnly() throws Exception {
+    buildStartedServer();
+    GrpcSampler grpcSampler = buildGrpcSampler(SERVER_PATH_GRPC_UNIMPLEMENTED, new byte[0]);
+
+    HTTPSampleResult result = sampleGrpc(grpcSampler, SERVER_PATH_GRPC_UNIMPLEMENTED);
+
+    softly.assertThat(result.isSuccessful()).isFalse();
+    softly.assertThat(result.getResponseCode()).isEqualTo("12");
+    softly.assertThat(result.getResponseMessage()).isEqualTo("UNIMPLEMENTED: Method not found");
+  }
+
+  @Test
+  public void shouldCallGrpcMethodOverHttp2WhenSamplerDisablesHttp2() throws Exception {
+    buildStartedServer();
+    GrpcSampler grpcSampler = buildSampledGrpcSampler(new byte[] {8, 42});
+    grpcSampler.setEnableHttp2(false);
+    grpcSampler.setEnableHttp1(true);
+    grpcSampler.setFallbackEnabled(true);
+    try {
+      HTTPSampleResult result = (HTTPSampleResult) grpcSampler.sample();
+
+      softly.assertThat(result.getURL().getPath()).isEqualTo(SERVER_PATH_GRPC_ECHO);
+      softly.assertThat(result.getHTTPMethod()).isEqualTo(HTTPConstants.POST);
+      softly.assertThat(result.isSuccessful()).isTrue();
+      softly.assertThat(result.getResponseData()).containsExactly(8, 42);
+      softly.assertThat(result.getResponseHeaders())
+          .contains("grpc-protocol-received: HTTP/2.0");
+    } finally {
+      grpcSampler.threadFinished();
+    }
+  }
+
+  @Test
+  public void shouldReportGrpcStatusWhenGrpcCallIsSampledAsynchronously() throws Exception {
+    buildStartedServer();
+    GrpcSampler grpcSampler = buildSampledGrpcSampler(new byte[] {8, 42});
+    grpcSampler.setSyncRequest(false);
+    try {
+      softly.assertThat(grpcSampler.sample()).isNull();
+      HTTPSampleResult result = (HTTPSampleResult) grpcSampler.sample();
+
+      softly.assertThat(result.getURL().getPath()).isEqualTo(SERVER_PATH_GRPC_ECHO);
+      softly.assertThat(result.isSuccessful()).isTrue();
+      softly.assertThat(result.getResponseCode()).isEqualTo("0");
+      softly.assertThat(result.getResponseData()).containsExactly(8, 42);
+    } finally {
+      grpcSampler.threadFinished();
+    }
+  }
+
+  private GrpcSampler buildGrpcSampler(String path, byte[] message) throws IOException {
+    GrpcSampler grpcSampler = new GrpcSampler(() -> client);
+    grpcSampler.setDomain("server");
+    grpcSampler.setProtocol(HTTPConstants.PROTOCOL_HTTPS);
+    grpcSampler.setPort(DEFAULT_TEST_PORT);
+    grpcSampler.setFullMethod(path);
+    grpcSampler.setMessageFile(writeGrpcMessage(message));
+    return grpcSampler;
+  }
+
+  /**
+   * Builds a sampler with its own client, sampling the full method without leading slash.
+   */
+  private GrpcSampler buildSampledGrpcSampler(byte[] message) throws IOException {
+    GrpcSampler grpcSampler = new GrpcSampler();
+    grpcSampler.setDomain(HOST_NAME);
+    grpcSampler.setProtocol(HTTPConstants.PROTOCOL_HTTPS);
+    grpcSampler.setPort(getActivePort());
+    grpcSampler.setFullMethod(SERVER_PATH_GRPC_ECHO.substring(1));
+    grpcSampler.setMessageFile(writeGrpcMessage(message));
+    return grpcSampler;
+  }
+
+  private String writeGrpcMessage(byte[] message) throws IOException {
+    Path messageFile = Files.createTempFile("grpc-message", ".bin");
+    messageFile.toFile().deleteOnExit();
+    Files.write(messageFile, message);
+    return messageFile.toString();
+  }
+
+  private HTTPSampleResult sampleGrpc(GrpcSampler grpcSampler, String path) throws Exception {
+    client.loadProperties();
+    return client.sample(grpcSampler, buildBaseResult(createURL(path), HTTPConstants.POST),
+        false, 0);
+  }
+
   private void validateEmbeddedResources(HTTPSampleResult result, HTTPSampleResult expected)
       throws MalformedURLException {
     SampleResult[] results = result.getSubResults();
@@ -667,6 +1143,23 @@ public class HTTP2JettyClientTest extends HTTP2TestBase {
         httpSampleResult);
   }
 
+  @Test
+  public void shouldApplyNewExcludeFilterWhenItChangesBetweenSamples() throws Exception {
+    buildStartedServer();
+    sampler.setImageParser(true);
+    sampler.setEmbeddedUrlExcludeRE(".+css");
+    HTTPSampleResult first = sampleWithGet(SERVER_PATH_200_EMBEDDED);
+    sampler.setEmbeddedUrlExcludeRE(".+png");
+    HTTPSampleResult second = sampleWithGet(SERVER_PATH_200_EMBEDDED);
+    HTTPSampleResult httpSampleResult = buildResult(true, Code.OK,
+        hostHeader(),
+        null, null, createURL(SERVER_PATH_200_EMBEDDED), HTTPConstants.GET);
+    httpSampleResult.setResponseData(BASIC_HTML_TEMPLATE, StandardCharsets.UTF_8.name());
+    softly.assertThat(first.getSubResults()).extracting(SampleResult::getDataType)
+        .contains(SampleResult.BINARY);
+    validateEmbeddedResourcesWithUrlFilter(second, httpSampleResult);
+  }
+
   private void validateEmbeddedResourcesWithUrlFilter(HTTPSampleResult result,
                                                       HTTPSampleResult expected) {
     SampleResult[] results = result.getSubResults();
@@ -1011,6 +1504,25 @@ public class HTTP2JettyClientTest extends HTTP2TestBase {
     validateMultipartResponse(result, expected);
   }
 
+  @Test
+  public void shouldNotBuildMultipartPartsPastMaxLengthWhenCaptureIsTruncated() throws Exception {
+    buildStartedServer();
+    JMeterUtils.setProperty("httpJettyClient.samplerDataCapture", "truncated");
+    JMeterUtils.setProperty("httpJettyClient.samplerDataMaxLength", "10");
+    try {
+      configureMultipartSampler(Arrays.asList(buildArg("Param1", "Valor1"),
+          buildArg("Param2", "Valor2")), Collections.singletonList(buildFile("logo")));
+
+      HTTPSampleResult result = sample(SERVER_PATH_200_FILE_SENT, HTTPConstants.POST);
+
+      assertThat(result.getQueryString()).hasSize(10 + "... (truncated)".length())
+          .endsWith("... (truncated)");
+    } finally {
+      JMeterUtils.getJMeterProperties().remove("httpJettyClient.samplerDataCapture");
+      JMeterUtils.getJMeterProperties().remove("httpJettyClient.samplerDataMaxLength");
+    }
+  }
+
   private void configureMultipartSampler(List<HTTPArgument> argsList, List<HTTPFileArg> files) {
     sampler.setImageParser(true); // Indicates download embedded resources
     sampler.setDoMultipart(true);
@@ -0,0 +1,90 @@
+package com.blazemeter.jmeter.http2.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.net.URI;
+import java.time.Duration;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
+import jdk.jfr.Recording;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordingFile;
+import org.eclipse.jetty.client.ContentResponse;
+import org.eclipse.jetty.client.Request;
+import org.eclipse.jetty.http.HttpVersion;
+import org.junit.Test;
+
+public class HttpExchangeEventTest {
+
+  private static final String EVENT_NAME = "com.blazemeter.http.Exchange";
+
+  @Test
+  public void shouldRecordSuccessfulExchange() throws Exception {
+    Request request = mockRequest();
+    ContentResponse response = mock(ContentResponse.class);
+    when(response.getVersion()).thenReturn(HttpVersion.HTTP_2);
+    when(response.getStatus()).thenReturn(200);
+    when(response.getContent()).thenReturn(new byte[] {1, 2, 3});
+
+    List<RecordedEvent> events = recordEvents(() ->
+        HttpExchangeEvent.record("send", request, () -> response));
+
+    assertThat(events).hasSize(1);
+    RecordedEvent event = events.get(0);
+    assertThat(event.getString("operation")).isEqualTo("send");
+    assertThat(event.getString("origin")).isEqualTo("https://localhost:6666");
+    assertThat(event.getString("protocol")).isEqualTo("HTTP/2.0");
+    assertThat(event.getLong("streamId")).isEqualTo(3L);
+    assertThat(event.getLong("bytes")).isEqualTo(3L);
+    assertThat(event.getString("outcome")).isEqualTo("success");
+  }
+
+  @Test
+  public void shouldRecordProtocolErrorOutcome() throws Exception {
+    Request request = mockRequest();
+
+    List<RecordedEvent> events = recordEvents(() ->
+        assertThatThrownBy(() -> HttpExchangeEvent.record("http11Fallback", request, () -> {
+          throw new ExecutionException(new ProtocolErrorException("protocol_error"));
+        })).isInstanceOf(ExecutionException.class));
+
+    assertThat(events).hasSize(1);
+    assertThat(events.get(0).getString("outcome")).isEqualTo("protocol_error");
+  }
+
+  private Request mockRequest() {
+    Request request = mock(Request.class);
+    when(request.getURI()).thenReturn(URI.create("https://localhost:6666/path"));
+    when(request.getAttributes()).thenReturn(
+        Collections.singletonMap(HttpExchangeEvent.STREAM_ID_ATTRIBUTE, 3));
+    return request;
+  }
+
+  private List<RecordedEvent> recordEvents(ThrowingRunnable action) throws Exception {
+    Path file = Files.createTempFile("http-exchange", ".jfr");
+    try (Recording recording = new Recording()) {
+      recording.enable(EVENT_NAME).withThreshold(Duration.ZERO);
+      recording.start();
+      action.run();
+      recording.stop();
+      recording.dump(file);
+      return RecordingFile.readAllEvents(file).stream()
+          .filter(e -> EVENT_NAME.equals(e.getEventType().getName()))
+          .collect(Collectors.toList());
+    } finally {
+      Files.deleteIfExists(file);
+    }
+  }
+
+  @FunctionalInterface
+  private interface ThrowingRunnable {
+    void run() throws Exception;
+  }
+}
@@ -0,0 +1,116 @@
+package com.blazemeter.jmeter.http2.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+import java.net.URL;
+import org.apache.jmeter.protocol.http.control.CacheManager;
+import org.apache.jmeter.protocol.http.sampler.HTTPSampleResult;
+import org.apache.jmeter.protocol.http.util.HTTPConstants;
+import org.eclipse.jetty.client.ContentResponse;
+import org.eclipse.jetty.client.HttpClient;
+import org.eclipse.jetty.client.Request;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpVersion;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class JettyCacheManagerTest {
+
+  private static final String ETAG = "\"v1\"";
+  private static final String LAST_MODIFIED = "Wed, 21 Oct 2015 07:28:00 GMT";
+
+  private final HttpClient httpClient = new HttpClient();
+  private CacheManager cacheManager;
+
+  @Before
+  public void setup() {
+    cacheManager = new CacheManager();
+    cacheManager.setUseExpires(true);
+    cacheManager.testIterationStart(null);
+    SharedStaticCache.clear();
+  }
+
+  @After
+  public void teardown() {
+    SharedStaticCache.clear();
+  }
+
+  @Test
+  public void shouldSetConditionalHeadersInJettyRequestWhenResponseWasSaved() throws Exception {
+    URL url = new URL("http://localhost/style.css");
+    JettyCacheManager jettyCacheManager = JettyCacheManager.fromCacheManager(cacheManager);
+    jettyCacheManager.saveDetails(buildResponse(HttpFields.build()
+        .add(HttpHeader.ETAG, ETAG)
+        .add(HttpHeader.LAST_MODIFIED, LAST_MODIFIED)), buildResult(url));
+
+    Request request = httpClient.newRequest(url.toString());
+    jettyCacheManager.setHeaders(url, request);
+
+    assertThat(request.getHeaders().get(HttpHeader.IF_NONE_MATCH)).isEqualTo(ETAG);
+    assertThat(request.getHeaders().get(HttpHeader.IF_MODIFIED_SINCE)).isEqualTo(LAST_MODIFIED);
+  }
+
+  @Test
+  public void shouldFindStaticAssetSavedByOtherUserWhenSharedCacheIsEnabled() throws Exception {
+    URL url = new URL("http://localhost/logo.png");
+    JettyCacheManager.fromCacheManager(cacheManager, true).saveDetails(
+        buildResponse(HttpFields.build()
+            .add(HttpHeader.CONTENT_TYPE, "image/png")
+            .add(HttpHeader.CACHE_CONTROL, "public, max-age=3600")), buildResult(url));
+
+    CacheManager otherUserCacheManager = new CacheManager();
+    otherUserCacheManager.setUseExpires(true);
+    otherUserCacheManager.testIterationStart(null);
+
+    assertThat(JettyCacheManager.fromCacheManager(otherUserCacheManager, true)
+        .inCache(url, HttpFields.EMPTY)).isTrue();
+    assertThat(JettyCacheManager.fromCacheManager(otherUserCacheManager, false)
+        .inCache(url, HttpFields.EMPTY)).isFalse();
+  }
+
+  @Test
+  public void shouldNotShareAssetWhenResponseIsPrivate() throws Exception {
+    URL url = new URL("http://localhost/avatar.png");
+    JettyCacheManager.fromCacheManager(cacheManager, true).saveDetails(
+        buildResponse(HttpFields.build()
+            .add(HttpHeader.CONTENT_TYPE, "image/png")
+            .add(HttpHeader.CACHE_CONTROL, "private, max-age=3600")), buildResult(url));
+
+    assertThat(SharedStaticCache.isFresh(url.toString())).isFalse();
+  }
+
+  @Test
+  public void shouldRevalidateWithSharedValidatorsWhenUserHasNoCachedAsset() throws Exception {
+    URL url = new URL("http://localhost/app.js");
+    SharedStaticCache.save(url.toString(), 200, HttpFields.build()
+        .add(HttpHeader.CONTENT_TYPE, "text/javascript")
+        .add(HttpHeader.CACHE_CONTROL, "max-age=0")
+        .add(HttpHeader.ETAG, ETAG), null);
+
+    Request request = httpClient.newRequest(url.toString());
+    JettyCacheManager.fromCacheManager(cacheManager, true).setHeaders(url, request);
+
+    assertThat(request.getHeaders().get(HttpHeader.IF_NONE_MATCH)).isEqualTo(ETAG);
+  }
+
+  private ContentResponse buildResponse(HttpFields.Mutable headers) {
+    ContentResponse response = mock(ContentResponse.class);
+    when(response.getStatus()).thenReturn(200);
+    when(response.getReason()).thenReturn("OK");
+    when(response.getVersion()).thenReturn(HttpVersion.HTTP_2);
+    when(response.getHeaders()).thenReturn(headers.asImmutable());
+    return response;
+  }
+
+  private HTTPSampleResult buildResult(URL url) {
+    HTTPSampleResult result = new HTTPSampleResult();
+    result.setURL(url);
+    result.setHTTPMethod(HTTPConstants.GET);
+    result.setResponseCodeOK();
+    return result;
+  }
+}
@@ -0,0 +1,107 @@
+package com.blazemeter.jmeter.http2.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import com.blazemeter.jmeter.http2.core.OriginCircuitBreaker.State;
+import org.junit.After;
+import org.junit.Test;
+
+public class OriginCircuitBreakerTest {
+
+  private static final String ORIGIN = "https://localhost:6666";
+  private static final String OTHER_ORIGIN = "https://localhost:7777";
+
+  @After
+  public void teardown() {
+    OriginCircuitBreaker.clear();
+  }
+
+  @Test
+  public void shouldDegradeOriginWhenProtocolFailuresReachThreshold() {
+    OriginCircuitBreaker breaker = new OriginCircuitBreaker(2, 10000, 60000, 60000);
+
+    breaker.onProtocolFailure(ORIGIN);
+    assertThat(breaker.stateOf(ORIGIN)).isEqualTo(State.CLOSED);
+    breaker.onProtocolFailure(ORIGIN);
+
+    assertThat(breaker.stateOf(ORIGIN)).isEqualTo(State.DEGRADED);
+    assertThat(breaker.stateOf(OTHER_ORIGIN)).isEqualTo(State.CLOSED);
+    assertThat(OriginCircuitBreaker.snapshot()).containsEntry("circuitDegraded", 1L);
+  }
+
+  @Test
+  public void shouldNotDegradeOriginWhenSuccessDecaysFailures() {
+    OriginCircuitBreaker breaker = new OriginCircuitBreaker(2, 10000, 60000, 60000);
+
+    breaker.onProtocolFailure(ORIGIN);
+    breaker.onSuccess(ORIGIN);
+    breaker.onProtocolFailure(ORIGIN);
+
+    assertThat(breaker.stateOf(ORIGIN)).isEqualTo(State.CLOSED);
+  }
+
+  @Test
+  public void shouldDegradeOriginWhenSuccessOnlyDecaysOldestFailure() {
+    OriginCircuitBreaker breaker = new OriginCircuitBreaker(3, 10000, 60000, 60000);
+
+    breaker.onProtocolFailure(ORIGIN);
+    breaker.onProtocolFailure(ORIGIN);
+    breaker.onSuccess(ORIGIN);
+    breaker.onProtocolFailure(ORIGIN);
+    assertThat(breaker.stateOf(ORIGIN)).isEqualTo(State.CLOSED);
+    breaker.onProtocolFailure(ORIGIN);
+
+    assertThat(breaker.stateOf(ORIGIN)).isEqualTo(State.DEGRADED);
+  }
+
+  @Test
+  public void shouldNotCountFailuresOlderThanWindow() throws Exception {
+    OriginCircuitBreaker breaker = new OriginCircuitBreaker(2, 50, 60000, 60000);
+
+    breaker.onProtocolFailure(ORIGIN);
+    Thread.sleep(100);
+    breaker.onProtocolFailure(ORIGIN);
+
+    assertThat(breaker.stateOf(ORIGIN)).isEqualTo(State.CLOSED);
+  }
+
+  @Test
+  public void shouldOpenDegradedOriginWhenFallbackKeepsFailing() {
+    OriginCircuitBreaker breaker = new OriginCircuitBreaker(1, 10000, 60000, 60000);
+    breaker.onProtocolFailure(ORIGIN);
+
+    breaker.onFallbackFailure(ORIGIN);
+
+    assertThat(breaker.stateOf(ORIGIN)).isEqualTo(State.OPEN);
+    assertThat(OriginCircuitBreaker.snapshot()).containsEntry("circuitOpened", 1L);
+  }
+
+  @Test
+  public void shouldDegradeOriginAgainWhenOpenPeriodElapses() {
+    OriginCircuitBreaker breaker = new OriginCircuitBreaker(1, 10000, 60000, 0);
+    breaker.onProtocolFailure(ORIGIN);
+    breaker.onFallbackFailure(ORIGIN);
+
+    assertThat(breaker.stateOf(ORIGIN)).isEqualTo(State.DEGRADED);
+    assertThat(OriginCircuitBreaker.snapshot()).containsEntry("circuitDegraded", 2L);
+  }
+
+  @Test
+  public void shouldCloseOriginWhenDegradedPeriodElapses() {
+    OriginCircuitBreaker breaker = new OriginCircuitBreaker(1, 10000, 0, 60000);
+    breaker.onProtocolFailure(ORIGIN);
+
+    assertThat(breaker.stateOf(ORIGIN)).isEqualTo(State.CLOSED);
+    assertThat(OriginCircuitBreaker.snapshot()).containsEntry("circuitClosed", 1L);
+  }
+
+  @Test
+  public void shouldKeepOriginClosedWhenBreakerIsDisabled() {
+    OriginCircuitBreaker breaker = new OriginCircuitBreaker(0, 10000, 60000, 60000);
+
+    breaker.onProtocolFailure(ORIGIN);
+    breaker.onProtocolFailure(ORIGIN);
+
+    assertThat(breaker.stateOf(ORIGIN)).isEqualTo(State.CLOSED);
+  }
+}
@@ -0,0 +1,64 @@
+package com.blazemeter.jmeter.http2.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.ByteBuffer;
+import org.eclipse.jetty.http.HttpField;
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpVersion;
+import org.eclipse.jetty.http.MetaData;
+import org.eclipse.jetty.http2.hpack.HpackDecoder;
+import org.eclipse.jetty.http2.hpack.HpackEncoder;
+import org.junit.Test;
+
+public class PreEncodedHeaderFieldTest {
+
+  private static final HttpFields HEADERS = HttpFields.build()
+      .add(HttpHeader.USER_AGENT, "JMeter")
+      .add("X-Custom", "Value")
+      .asImmutable();
+
+  @Test
+  public void shouldDecodeSameHeadersWhenEncodedFromPreEncodedFields() throws Exception {
+    HttpFields preEncoded = PreEncodedHeaderField.preEncode(HEADERS, null);
+    HpackEncoder encoder = new HpackEncoder();
+    HpackDecoder decoder = new HpackDecoder(8192, System::nanoTime);
+
+    assertThat(decode(decoder, encode(encoder, preEncoded))).isEqualTo(HEADERS);
+    assertThat(decode(decoder, encode(encoder, preEncoded))).isEqualTo(HEADERS);
+  }
+
+  @Test
+  public void shouldReportIndexedFieldsWhenSameHeadersAreSentAgainOnConnection()
+      throws Exception {
+    HTTP2ConnectionMetrics metrics = new HTTP2ConnectionMetrics(0);
+    HttpFields preEncoded = PreEncodedHeaderField.preEncode(HEADERS, metrics);
+    HpackEncoder encoder = new HpackEncoder();
+
+    send(encoder, preEncoded);
+    send(encoder, preEncoded);
+
+    assertThat(metrics.snapshot())
+        .containsEntry("hpackPreEncodedFields", 4L)
+        .containsEntry("hpackPreEncodedIndexedPct", 50L);
+  }
+
+  private void send(HpackEncoder encoder, HttpFields headers) throws Exception {
+    for (HttpField field : headers) {
+      ((PreEncodedHeaderField) field).onSent();
+    }
+    encode(encoder, headers);
+  }
+
+  private ByteBuffer encode(HpackEncoder encoder, HttpFields headers) throws Exception {
+    ByteBuffer buffer = ByteBuffer.allocate(1024);
+    encoder.encode(buffer, new MetaData(HttpVersion.HTTP_2, headers));
+    buffer.flip();
+    return buffer;
+  }
+
+  private HttpFields decode(HpackDecoder decoder, ByteBuffer buffer) throws Exception {
+    return decoder.decode(buffer).getHttpFields().asImmutable();
+  }
+}
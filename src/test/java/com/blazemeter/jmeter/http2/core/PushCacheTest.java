@@ -0,0 +1,95 @@
+package com.blazemeter.jmeter.http2.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URI;
+import java.net.URL;
+import java.util.concurrent.CompletableFuture;
+import org.apache.jmeter.protocol.http.sampler.HTTPSampleResult;
+import org.junit.Test;
+
+public class PushCacheTest {
+
+  private static final String PUSHED_URL = "https://localhost:6666/test/image.png";
+
+  private final PushCache cache = new PushCache(2, 8);
+
+  @Test
+  public void shouldClaimPushedResultOnlyOnce() throws Exception {
+    HTTPSampleResult pushed = new HTTPSampleResult();
+    cache.put(URI.create(PUSHED_URL), CompletableFuture.completedFuture(pushed));
+
+    assertThat(cache.claim(new URL(PUSHED_URL), 0)).isSameAs(pushed);
+    assertThat(cache.claim(new URL(PUSHED_URL), 0)).isNull();
+  }
+
+  @Test
+  public void shouldClaimPushedResultWhenUrlHasDefaultPort() throws Exception {
+    HTTPSampleResult pushed = new HTTPSampleResult();
+    cache.put(URI.create("https://LOCALHOST/test/image.png"),
+        CompletableFuture.completedFuture(pushed));
+
+    assertThat(cache.claim(new URL("https://localhost:443/test/image.png"), 0)).isSameAs(pushed);
+  }
+
+  @Test
+  public void shouldNotClaimFailedPush() throws Exception {
+    cache.put(URI.create(PUSHED_URL), CompletableFuture.completedFuture(null));
+
+    assertThat(cache.claim(new URL(PUSHED_URL), 0)).isNull();
+  }
+
+  @Test
+  public void shouldNotClaimPushStillReceivedAfterTimeout() throws Exception {
+    cache.put(URI.create(PUSHED_URL), new CompletableFuture<>());
+
+    assertThat(cache.claim(new URL(PUSHED_URL), 10)).isNull();
+  }
+
+  @Test
+  public void shouldReportPushAsPendingUntilItIsReceived() throws Exception {
+    CompletableFuture<HTTPSampleResult> pushed = new CompletableFuture<>();
+    cache.put(URI.create(PUSHED_URL), pushed);
+
+    assertThat(cache.isPending(new URL(PUSHED_URL))).isTrue();
+    pushed.complete(new HTTPSampleResult());
+    assertThat(cache.isPending(new URL(PUSHED_URL))).isFalse();
+    assertThat(cache.isPending(new URL("https://localhost:6666/test/other.png"))).isFalse();
+  }
+
+  @Test
+  public void shouldDropOldestReceivedPushWhenMaxBytesAreExceeded() throws Exception {
+    cache.put(URI.create(PUSHED_URL), CompletableFuture.completedFuture(resultOfBytes(5)));
+    cache.put(URI.create("https://localhost:6666/test/image-1.png"),
+        CompletableFuture.completedFuture(resultOfBytes(5)));
+
+    assertThat(cache.size()).isEqualTo(1);
+    assertThat(cache.bytes()).isEqualTo(5);
+    assertThat(cache.claim(new URL(PUSHED_URL), 0)).isNull();
+  }
+
+  @Test
+  public void shouldReleaseBytesOfClaimedPush() throws Exception {
+    cache.put(URI.create(PUSHED_URL), CompletableFuture.completedFuture(resultOfBytes(5)));
+
+    cache.claim(new URL(PUSHED_URL), 0);
+
+    assertThat(cache.bytes()).isZero();
+  }
+
+  @Test
+  public void shouldDropOldestPushWhenFull() throws Exception {
+    cache.put(URI.create(PUSHED_URL), CompletableFuture.completedFuture(new HTTPSampleResult()));
+    cache.put(URI.create("https://localhost:6666/test/image-1.png"), new CompletableFuture<>());
+    cache.put(URI.create("https://localhost:6666/test/image-2.png"), new CompletableFuture<>());
+
+    assertThat(cache.size()).isEqualTo(2);
+    assertThat(cache.claim(new URL(PUSHED_URL), 0)).isNull();
+  }
+
+  private HTTPSampleResult resultOfBytes(int bytes) {
+    HTTPSampleResult result = new HTTPSampleResult();
+    result.setBytes((long) bytes);
+    return result;
+  }
+}
@@ -0,0 +1,46 @@
+package com.blazemeter.jmeter.http2.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import java.net.URL;
+import org.junit.Test;
+
+public class RequestPriorityTest {
+
+  @Test
+  public void shouldParseUrgencyAndIncremental() {
+    assertThat(RequestPriority.parse(" i , u=5")).isEqualTo(new RequestPriority(5, true));
+  }
+
+  @Test
+  public void shouldParseMissingParametersAsDefaults() {
+    assertThat(RequestPriority.parse("i=?0, foo=bar"))
+        .isEqualTo(new RequestPriority(RequestPriority.DEFAULT_URGENCY, false));
+  }
+
+  @Test
+  public void shouldThrowIllegalArgumentExceptionWhenUrgencyIsOutOfRange() {
+    assertThatThrownBy(() -> RequestPriority.parse("u=8"))
+        .isInstanceOf(IllegalArgumentException.class)
+        .hasMessageContaining("urgency 8");
+  }
+
+  @Test
+  public void shouldOmitDefaultParametersInHeaderValue() {
+    assertThat(new RequestPriority(1, true).toHeaderValue()).isEqualTo("u=1, i");
+    assertThat(new RequestPriority(3, true).toHeaderValue()).isEqualTo("i");
+    assertThat(new RequestPriority(3, false).toHeaderValue()).isEmpty();
+  }
+
+  @Test
+  public void shouldInferPriorityFromResourceType() throws Exception {
+    assertThat(RequestPriority.forResource(new URL("https://localhost/style.CSS?v=1")))
+        .isEqualTo(new RequestPriority(0, false));
+    assertThat(RequestPriority.forResource(new URL("https://localhost/app.js")))
+        .isEqualTo(new RequestPriority(1, false));
+    assertThat(RequestPriority.forResource(new URL("https://localhost/image.png")))
+        .isEqualTo(new RequestPriority(2, true));
+    assertThat(RequestPriority.forResource(new URL("https://localhost/v1.0/data"))).isNull();
+  }
+}
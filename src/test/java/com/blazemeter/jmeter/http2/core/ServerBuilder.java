@@ -3,6 +3,7 @@ package com.blazemeter.jmeter.http2.core;
 import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
+import jakarta.servlet.http.PushBuilder;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.net.URISyntaxException;
@@ -12,6 +13,7 @@ import java.nio.file.Paths;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
+import java.util.Map;
 import java.util.function.Consumer;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.stream.Collectors;
@@ -24,6 +26,7 @@ import org.eclipse.jetty.io.ByteBufferPool;
 import jodd.net.MimeTypes;
 import org.apache.jmeter.protocol.http.util.HTTPConstants;
 import org.eclipse.jetty.alpn.server.ALPNServerConnectionFactory;
+import org.eclipse.jetty.http.HttpHeader;
 import org.eclipse.jetty.http.HttpStatus;
 import org.eclipse.jetty.http2.server.HTTP2CServerConnectionFactory;
 import org.eclipse.jetty.http2.server.HTTP2ServerConnectionFactory;
@@ -67,6 +70,8 @@ public class ServerBuilder {
   public static final String SERVER_PATH_200 = "/test/200";
   public static final String SERVER_PATH_SLOW = "/test/slow";
   public static final String SERVER_PATH_200_GZIP = "/test/gzip";
+  /** gzip encoded response whose body is cut after the gzip header. */
+  public static final String SERVER_PATH_200_GZIP_TRUNCATED = "/test/gzip-truncated";
   public static final String SERVER_PATH_200_DEFLATE = "/test/deflate";
   public static final String SERVER_PATH_200_BROTLI = "/test/brotli";
   public static final String SERVER_PATH_200_ZSTD = "/test/zstd";
@@ -78,9 +83,19 @@ public class ServerBuilder {
    * Requires {@link #withCrossOriginEmbeddedAssetPort(int)} when building the server.
    */
   public static final String SERVER_PATH_200_EMBEDDED_CROSS_ORIGIN = "/test/embedded-cross-origin";
+  /** HTML whose embedded image is pushed along with it, when the client accepts pushes. */
+  public static final String SERVER_PATH_200_EMBEDDED_PUSH = "/test/embedded-push";
+  public static final String SERVER_IMAGE_PUSHED = "/test/image-pushed.png";
+  /** gRPC methods answering the request message, once when unary and twice when streaming. */
+  public static final String SERVER_PATH_GRPC_ECHO = "/test/grpc.Echo/Unary";
+  public static final String SERVER_PATH_GRPC_STREAM = "/test/grpc.Echo/ServerStreaming";
+  /** gRPC method answering with a trailers-only UNIMPLEMENTED status. */
+  public static final String SERVER_PATH_GRPC_UNIMPLEMENTED = "/test/grpc.Echo/Missing";
   public static final String SERVER_PATH_200_FILE_SENT = "/test/file";
   public static final String SERVER_PATH_BIG_RESPONSE = "/test/big-response";
   public static final String SERVER_PATH_400 = "/test/400";
+  /** Answers 503 with {@code Retry-After} to every other request. */
+  public static final String SERVER_PATH_503_ONCE = "/test/503-once";
   public static final String SERVER_PATH_302 = "/test/302";
   public static final String SERVER_PATH_200_WITH_BODY = "/test/body";
   public static final String SERVER_PATH_JSON_ONLY = "/test/json-only";
@@ -95,6 +110,8 @@ public class ServerBuilder {
   private static final byte[] GZIP_RESPONSE_BODY = buildGzipResponseBody();
   private static final byte[] DEFLATE_RESPONSE_BODY = buildDeflateResponseBody();
   private static final AtomicInteger GZIP_REQUEST_COUNT = new AtomicInteger();
+  private static final AtomicInteger UNAVAILABLE_REQUEST_COUNT = new AtomicInteger();
+  private static final AtomicInteger PUSHED_IMAGE_REQUEST_COUNT = new AtomicInteger();
   public static final String AUTH_USERNAME = "username";
   public static final String AUTH_PASSWORD = "password";
   public static final String AUTH_REALM = "realm";
@@ -169,6 +186,8 @@ public class ServerBuilder {
   }
 
   public TeardownableServer buildServer() {
+    // Each server answers 503 to the first request to SERVER_PATH_503_ONCE
+    UNAVAILABLE_REQUEST_COUNT.set(0);
 
     ALPNServerConnectionFactory alpn = new ALPNServerConnectionFactory();
     alpn.setDefaultProtocol(http1ConnectionFactory.getProtocol());
@@ -266,6 +285,10 @@ public class ServerBuilder {
     }
   }
 
+  public static int getPushedImageRequestCount() {
+    return PUSHED_IMAGE_REQUEST_COUNT.get();
+  }
+
   private HttpServlet buildServlet() {
     return new HttpServlet() {
 
@@ -289,6 +312,14 @@ public class ServerBuilder {
           case SERVER_PATH_400:
             resp.setStatus(HttpStatus.BAD_REQUEST_400);
             break;
+          case SERVER_PATH_503_ONCE:
+            if (UNAVAILABLE_REQUEST_COUNT.getAndIncrement() % 2 == 0) {
+              resp.addHeader(HttpHeader.RETRY_AFTER.asString(), "0");
+              resp.setStatus(HttpStatus.SERVICE_UNAVAILABLE_503);
+            } else {
+              resp.getWriter().write(SERVER_RESPONSE);
+            }
+            break;
           case SERVER_PATH_302:
             resp.addHeader(HTTPConstants.HEADER_LOCATION,
                 "https://localhost:" + req.getLocalPort() + SERVER_PATH_200);
@@ -332,6 +363,20 @@ public class ServerBuilder {
             resp.addHeader(HTTPConstants.EXPIRES,
                 "Sat, 25 Sep 2041 00:00:00 GMT");
             break;
+          case SERVER_PATH_200_EMBEDDED_PUSH:
+            PushBuilder pushBuilder = req.newPushBuilder();
+            if (pushBuilder != null) {
+              pushBuilder.path(SERVER_IMAGE_PUSHED).push();
+            }
+            resp.setContentType(MimeTypes.MIME_TEXT_HTML + ";" + StandardCharsets.UTF_8.name());
+            resp.getWriter().write("<!DOCTYPE html><html><body><img src='image-pushed.png'/>"
+                + "</body></html>");
+            break;
+          case SERVER_IMAGE_PUSHED:
+            PUSHED_IMAGE_REQUEST_COUNT.incrementAndGet();
+            resp.setContentType("image/png");
+            resp.getOutputStream().write(new byte[] {1, 2, 3, 4, 5});
+            break;
           case SERVER_PATH_200_EMBEDDED_CROSS_ORIGIN:
             if (crossOriginEmbeddedAssetPort < 0) {
               resp.sendError(HttpStatus.NOT_FOUND_404,
@@ -369,6 +414,10 @@ public class ServerBuilder {
             resp.flushBuffer();
             resp.getOutputStream().close();
             break;
+          case SERVER_PATH_200_GZIP_TRUNCATED:
+            resp.addHeader("Content-Encoding", "gzip");
+            resp.getOutputStream().write(Arrays.copyOf(GZIP_RESPONSE_BODY, 12));
+            break;
           case SERVER_PATH_200_DEFLATE:
             resp.addHeader("Content-Encoding", "deflate");
             resp.setContentLength(DEFLATE_RESPONSE_BODY.length);
@@ -397,6 +446,23 @@ public class ServerBuilder {
           case SERVER_PATH_DELETE_DATA:
             resp.setStatus(HttpStatus.OK_200);
             break;
+          case SERVER_PATH_GRPC_ECHO:
+          case SERVER_PATH_GRPC_STREAM:
+            byte[] grpcRequest = req.getInputStream().readAllBytes();
+            resp.setContentType(req.getContentType());
+            resp.setTrailerFields(() -> Map.of("grpc-status", "0"));
+            resp.addHeader("grpc-timeout-received", req.getHeader("grpc-timeout"));
+            resp.addHeader("grpc-protocol-received", req.getProtocol());
+            resp.getOutputStream().write(grpcRequest);
+            if (SERVER_PATH_GRPC_STREAM.equals(req.getServletPath() + req.getPathInfo())) {
+              resp.getOutputStream().write(grpcRequest);
+            }
+            break;
+          case SERVER_PATH_GRPC_UNIMPLEMENTED:
+            resp.setContentType(req.getContentType());
+            resp.addHeader("grpc-status", "12");
+            resp.addHeader("grpc-message", "Method%20not%20found");
+            break;
           case SERVER_PATH_BIG_RESPONSE:
             resp.getOutputStream().write(new byte[(int) BIG_BUFFER_SIZE]);
             resp.setContentType("image/jpg");
@@ -0,0 +1,65 @@
+package com.blazemeter.jmeter.http2.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import org.eclipse.jetty.http.HttpFields;
+import org.eclipse.jetty.http.HttpHeader;
+import org.eclipse.jetty.http.HttpStatus;
+import org.junit.After;
+import org.junit.Test;
+
+public class SharedStaticCacheTest {
+
+  private static final String URL_A = "http://localhost/a.css";
+  private static final String URL_B = "http://localhost/b.css";
+  private static final String URL_C = "http://localhost/c.css";
+  private static final byte[] BODY = new byte[1000];
+
+  @After
+  public void teardown() {
+    SharedStaticCache.clear();
+    SharedStaticCache.configure(SharedStaticCache.DEFAULT_MAX_BYTES, false);
+  }
+
+  @Test
+  public void shouldEvictLeastRecentlyUsedAssetWhenCacheExceedsMaxBytes() {
+    SharedStaticCache.configure(400, false);
+    SharedStaticCache.save(URL_A, HttpStatus.OK_200, buildHeaders("max-age=60"), BODY);
+    SharedStaticCache.save(URL_B, HttpStatus.OK_200, buildHeaders("max-age=60"), BODY);
+    SharedStaticCache.isFresh(URL_A);
+
+    SharedStaticCache.save(URL_C, HttpStatus.OK_200, buildHeaders("max-age=60"), BODY);
+
+    assertThat(SharedStaticCache.isFresh(URL_A)).isTrue();
+    assertThat(SharedStaticCache.get(URL_B)).isNull();
+    assertThat(SharedStaticCache.isFresh(URL_C)).isTrue();
+    assertThat(SharedStaticCache.bytes()).isLessThanOrEqualTo(400);
+  }
+
+  @Test
+  public void shouldRefreshStaleAssetWhenNotModifiedResponseHasSameETag() {
+    SharedStaticCache.configure(SharedStaticCache.DEFAULT_MAX_BYTES, true);
+    SharedStaticCache.save(URL_A, HttpStatus.OK_200, buildHeaders("max-age=0"), BODY);
+    assertThat(SharedStaticCache.isFresh(URL_A)).isFalse();
+
+    SharedStaticCache.save(URL_A, HttpStatus.NOT_MODIFIED_304, buildHeaders("max-age=60"), null);
+
+    assertThat(SharedStaticCache.isFresh(URL_A)).isTrue();
+    assertThat(SharedStaticCache.get(URL_A).getBody()).isSameAs(BODY);
+  }
+
+  @Test
+  public void shouldNotKeepBodyWhenBodiesAreNotStored() {
+    SharedStaticCache.save(URL_A, HttpStatus.OK_200, buildHeaders("max-age=60"), BODY);
+
+    assertThat(SharedStaticCache.get(URL_A).getBody()).isNull();
+  }
+
+  private HttpFields buildHeaders(String cacheControl) {
+    return HttpFields.build()
+        .add(HttpHeader.CONTENT_TYPE, "text/css")
+        .add(HttpHeader.CACHE_CONTROL, cacheControl)
+        .add(HttpHeader.ETAG, "\"v1\"")
+        .asImmutable();
+  }
+}
@@ -0,0 +1,124 @@
+package com.blazemeter.jmeter.http2.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+import static org.mockito.Mockito.withSettings;
+
+import com.blazemeter.jmeter.http2.core.StreamAwareConnectionPool.LeastActiveStreamsPool;
+import com.blazemeter.jmeter.http2.core.StreamAwareConnectionPool.Strategy;
+import org.eclipse.jetty.client.Connection;
+import org.eclipse.jetty.client.ConnectionPool;
+import org.eclipse.jetty.client.transport.HttpDestination;
+import org.eclipse.jetty.util.Pool;
+import org.junit.Test;
+
+public class StreamAwareConnectionPoolTest {
+
+  private static final int MAX_MULTIPLEX = 100;
+
+  private final Connection first = mock(Connection.class);
+  private final Connection second = mock(Connection.class);
+
+  @Test
+  public void shouldAcquireConnectionWithLeastActiveStreams() {
+    Pool<Connection> pool = buildPool(MAX_MULTIPLEX);
+
+    Pool.Entry<Connection> firstAcquired = pool.acquire();
+    Pool.Entry<Connection> secondAcquired = pool.acquire();
+    firstAcquired.release();
+
+    assertThat(firstAcquired.getPooled()).isNotSameAs(secondAcquired.getPooled());
+    assertThat(pool.acquire().getPooled()).isSameAs(firstAcquired.getPooled());
+  }
+
+  @Test
+  public void shouldNotForgetActiveStreamWhenReleasingEntryNotInUse() {
+    Pool<Connection> pool = buildPool(MAX_MULTIPLEX);
+
+    Pool.Entry<Connection> firstAcquired = pool.acquire();
+    Pool.Entry<Connection> secondAcquired = pool.acquire();
+    Pool.Entry<Connection> thirdAcquired = pool.acquire();
+    secondAcquired.release();
+
+    assertThat(firstAcquired.getPooled()).isSameAs(thirdAcquired.getPooled());
+    assertThat(secondAcquired.release()).isFalse();
+    assertThat(pool.acquire().getPooled()).isSameAs(secondAcquired.getPooled());
+  }
+
+  @Test
+  public void shouldAcquireConnectionsInTurnsWithRoundRobinStrategy() {
+    Pool<Connection> pool = StreamAwareConnectionPool.newPool(Strategy.ROUND_ROBIN, 2,
+        StreamAwareConnectionPool.maxMultiplexer(MAX_MULTIPLEX));
+    pool.reserve().enable(first, false);
+    pool.reserve().enable(second, false);
+
+    assertThat(pool.acquire().getPooled()).isSameAs(first);
+    assertThat(pool.acquire().getPooled()).isSameAs(second);
+    assertThat(pool.acquire().getPooled()).isSameAs(first);
+  }
+
+  @Test
+  public void shouldNotAcquireMoreStreamsThanServerAllows() {
+    Connection limited = buildServerLimitedConnection(1);
+    Pool<Connection> pool = new LeastActiveStreamsPool(1,
+        StreamAwareConnectionPool.maxMultiplexer(MAX_MULTIPLEX));
+    pool.reserve().enable(limited, false);
+
+    assertThat(pool.acquire()).isNotNull();
+    assertThat(pool.acquire()).isNull();
+  }
+
+  @Test
+  public void shouldNotReserveMoreEntriesThanMaxConnections() {
+    Pool<Connection> pool = buildPool(MAX_MULTIPLEX);
+
+    assertThat(pool.reserve()).isNull();
+    assertThat(pool.size()).isEqualTo(2);
+  }
+
+  @Test
+  public void shouldSizePendingConnectionsWithServerMaxConcurrentStreams() {
+    StreamAwareConnectionPool pool = new StreamAwareConnectionPool(mock(HttpDestination.class),
+        Strategy.FIRST, 2, MAX_MULTIPLEX);
+    Connection limited = buildServerLimitedConnection(10);
+
+    assertThat(pool.getInitialMaxMultiplex()).isEqualTo(MAX_MULTIPLEX);
+    pool.onCreated(limited);
+    assertThat(pool.getInitialMaxMultiplex()).isEqualTo(10);
+    pool.onRemoved(limited);
+    assertThat(pool.getInitialMaxMultiplex()).isEqualTo(10);
+  }
+
+  @Test
+  public void shouldNotSizePendingConnectionsAboveMaxMultiplexWhenSpreadingStreams() {
+    StreamAwareConnectionPool pool = new StreamAwareConnectionPool(mock(HttpDestination.class),
+        Strategy.ROUND_ROBIN, 2, 5);
+
+    pool.onCreated(buildServerLimitedConnection(10));
+
+    assertThat(pool.getInitialMaxMultiplex()).isEqualTo(5);
+  }
+
+  @Test
+  public void shouldParseStrategyWithDashes() {
+    assertThat(Strategy.parse("least-active-streams")).isEqualTo(Strategy.LEAST_ACTIVE_STREAMS);
+    assertThat(Strategy.parse("round_robin")).isEqualTo(Strategy.ROUND_ROBIN);
+  }
+
+  private Connection buildServerLimitedConnection(int maxConcurrentStreams) {
+    Connection connection = mock(Connection.class,
+        withSettings().extraInterfaces(ConnectionPool.MaxMultiplexable.class));
+    when(((ConnectionPool.MaxMultiplexable) connection).getMaxMultiplex())
+        .thenReturn(maxConcurrentStreams);
+    return connection;
+  }
+
+  private Pool<Connection> buildPool(int maxMultiplex) {
+    Pool<Connection> pool = new LeastActiveStreamsPool(2,
+        StreamAwareConnectionPool.maxMultiplexer(maxMultiplex));
+    pool.reserve().enable(first, false);
+    pool.reserve().enable(second, false);
+    return pool;
+  }
+}
@@ -0,0 +1,68 @@
+package com.blazemeter.jmeter.http2.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import org.eclipse.jetty.io.Content;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class StreamingMultipartRequestContentTest {
+
+  @Rule
+  public TemporaryFolder tempFolder = new TemporaryFolder();
+
+  @Test
+  public void shouldStreamBytesAndFilesInOrderWithKnownLength() throws Exception {
+    Path file = tempFolder.newFile("upload.txt").toPath();
+    Files.write(file, "file content".getBytes(StandardCharsets.UTF_8));
+    StreamingMultipartRequestContent content = buildContent(file);
+
+    assertThat(content.getLength()).isEqualTo(expectedBody().length());
+    assertThat(Content.Source.asString(content, StandardCharsets.UTF_8))
+        .isEqualTo(expectedBody());
+  }
+
+  @Test
+  public void shouldProduceSameBodyAfterRewind() throws Exception {
+    Path file = tempFolder.newFile("upload.txt").toPath();
+    Files.write(file, "file content".getBytes(StandardCharsets.UTF_8));
+    StreamingMultipartRequestContent content = buildContent(file);
+
+    Content.Source.asString(content, StandardCharsets.UTF_8);
+
+    assertThat(content.rewind()).isTrue();
+    assertThat(Content.Source.asString(content, StandardCharsets.UTF_8))
+        .isEqualTo(expectedBody());
+  }
+
+  @Test
+  public void shouldFailWhenFileIsRemovedBeforeSending() throws Exception {
+    Path file = tempFolder.newFile("upload.txt").toPath();
+    StreamingMultipartRequestContent content = buildContent(file);
+    Files.delete(file);
+
+    Content.Chunk chunk = content.read();
+    while (chunk != null && !Content.Chunk.isFailure(chunk)) {
+      chunk.release();
+      chunk = content.read();
+    }
+
+    assertThat(chunk).isNotNull();
+    assertThat(chunk.getFailure()).isNotNull();
+  }
+
+  private StreamingMultipartRequestContent buildContent(Path file) throws Exception {
+    return new StreamingMultipartRequestContent("multipart/form-data; boundary=\"b\"")
+        .addBytes("--b\r\nhead\r\n\r\n".getBytes(StandardCharsets.US_ASCII))
+        .addFile(file)
+        .addBytes("\r\n--b--\r\n".getBytes(StandardCharsets.US_ASCII));
+  }
+
+  private String expectedBody() {
+    return "--b\r\nhead\r\n\r\nfile content\r\n--b--\r\n";
+  }
+}
@@ -0,0 +1,113 @@
+package com.blazemeter.jmeter.http2.core;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+import java.net.URI;
+import java.util.Collections;
+import org.apache.jmeter.protocol.http.control.Cookie;
+import org.apache.jmeter.protocol.http.control.CookieManager;
+import org.eclipse.jetty.http.HttpCookie;
+import org.junit.Before;
+import org.junit.Test;
+
+public class SyncedCookieStoreTest {
+
+  private static final String HOST = "localhost";
+  private static final URI URI_A = URI.create("https://localhost:6666/a");
+  private static final URI URI_B = URI.create("https://example.com/b");
+
+  private final SyncedCookieStore store = new SyncedCookieStore();
+  private CookieManager cookieManager;
+
+  @Before
+  public void setup() {
+    cookieManager = new CookieManager();
+    cookieManager.testStarted(HOST);
+    cookieManager.add(new Cookie("JMETER", "value", HOST, "/", false, 0));
+  }
+
+  @Test
+  public void shouldRemoveOverriddenCookieAddedAfterLastSync() {
+    store.sync(URI_A, cookieManager);
+    store.add(URI_A, HttpCookie.from("JMETER", "jetty"));
+    store.add(URI_A, HttpCookie.from("JETTY", "jetty"));
+
+    assertThat(store.sync(URI_A, cookieManager)).containsExactly("JMETER");
+    assertThat(store.match(URI_A)).extracting(HttpCookie::getName).containsExactly("JETTY");
+  }
+
+  @Test
+  public void shouldRemoveCookieSavedToCookieManagerFromResponse() {
+    store.sync(URI_A, cookieManager);
+    store.add(URI_A, HttpCookie.from("SESSION", "1"));
+    int countBefore = cookieManager.getCookieCount();
+    cookieManager.add(new Cookie("SESSION", "1", HOST, "/", false, 0));
+    store.onCookiesSaved(cookieManager, Collections.singletonList("SESSION"), countBefore);
+
+    assertThat(store.sync(URI_A, cookieManager)).containsExactly("SESSION");
+  }
+
+  @Test
+  public void shouldReconcileOtherHostWhenCookieWasAddedWhileSyncingFirstOne() {
+    store.sync(URI_A, cookieManager);
+    store.sync(URI_B, cookieManager);
+    store.add(URI_B, HttpCookie.from("JMETER", "jetty"));
+
+    store.sync(URI_A, cookieManager);
+
+    assertThat(store.sync(URI_B, cookieManager)).containsExactly("JMETER");
+  }
+
+  @Test
+  public void shouldKeepOtherHostSyncedWhenCookieIsAddedForAnotherHost() {
+    store.sync(URI_A, cookieManager);
+    store.sync(URI_B, cookieManager);
+
+    store.add(URI_B, HttpCookie.from("JETTY", "jetty"));
+
+    assertThat(store.isSynced(URI_A)).isTrue();
+    assertThat(store.isSynced(URI_B)).isFalse();
+  }
+
+  @Test
+  public void shouldReconcileSubdomainWhenCookieIsAddedForParentDomain() {
+    URI subdomain = URI.create("https://www.example.com/b");
+    store.sync(subdomain, cookieManager);
+
+    store.add(URI_B, HttpCookie.build("JMETER", "jetty").domain("example.com").path("/").build());
+
+    assertThat(store.sync(subdomain, cookieManager)).containsExactly("JMETER");
+  }
+
+  @Test
+  public void shouldKeepTargetsSyncedWhenSavedCookieNameIsAlreadyKnown() {
+    store.sync(URI_A, cookieManager);
+    int countBefore = cookieManager.getCookieCount();
+    cookieManager.add(new Cookie("JMETER", "other", HOST, "/", false, 0));
+    store.onCookiesSaved(cookieManager, Collections.singletonList("JMETER"), countBefore);
+
+    assertThat(store.isSynced(URI_A)).isTrue();
+  }
+
+  @Test
+  public void shouldNotRemoveAnythingWhenNothingChangedSinceLastSync() {
+    store.add(URI_A, HttpCookie.from("JETTY", "jetty"));
+    store.sync(URI_A, cookieManager);
+
+    assertThat(store.sync(URI_A, cookieManager)).isEmpty();
+    assertThat(store.match(URI_A)).hasSize(1);
+  }
+
+  @Test
+  public void shouldNotRemoveCookieNamedAsRemovedManagerCookieAfterReset() {
+    store.sync(URI_A, cookieManager);
+    store.resetManager();
+    CookieManager other = new CookieManager();
+    other.testStarted(HOST);
+    other.add(new Cookie("OTHER", "value", HOST, "/", false, 0));
+    store.add(URI_A, HttpCookie.from("JMETER", "jetty"));
+
+    assertThat(store.sync(URI_A, other)).isEmpty();
+    assertThat(store.match(URI_A)).extracting(HttpCookie::getName).containsExactly("JMETER");
+  }
+}
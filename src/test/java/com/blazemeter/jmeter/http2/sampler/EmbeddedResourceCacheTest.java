@@ -0,0 +1,153 @@
+package com.blazemeter.jmeter.http2.sampler;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+import com.blazemeter.jmeter.http2.sampler.EmbeddedResourceCache.EmbeddedResource;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.apache.jmeter.protocol.http.parser.LinkExtractorParseException;
+import org.junit.After;
+import org.junit.Test;
+
+public class EmbeddedResourceCacheTest {
+
+  private static final String PARSER = "parser";
+  private static final String PAGE_URL = "http://localhost/index.html";
+  private static final String USER_AGENT = "JMeter";
+  private static final String ENCODING = "UTF-8";
+
+  private final AtomicInteger loads = new AtomicInteger();
+
+  @After
+  public void teardown() {
+    EmbeddedResourceCache.configure(EmbeddedResourceCache.DEFAULT_MAX_ENTRIES);
+    EmbeddedResourceCache.clear();
+  }
+
+  @Test
+  public void shouldResolveResourcesOnceWhenSamePageIsReceivedAgain() throws Exception {
+    List<EmbeddedResource> first = get("<img src='a.png'>", "");
+    List<EmbeddedResource> second = get("<img src='a.png'>", "");
+
+    assertThat(second).isSameAs(first);
+    assertThat(loads).hasValue(1);
+  }
+
+  @Test
+  public void shouldResolveResourcesAgainWhenPageBodyChanges() throws Exception {
+    get("<img src='a.png'>", "");
+    get("<img src='b.png'>", "");
+
+    assertThat(loads).hasValue(2);
+  }
+
+  @Test
+  public void shouldResolveResourcesAgainWhenFilterChanges() throws Exception {
+    get("<img src='a.png'>", "");
+    get("<img src='a.png'>", ".*png");
+
+    assertThat(loads).hasValue(2);
+  }
+
+  @Test
+  public void shouldNotParseAgainWhenPageHasNoEmbeddedResources() throws Exception {
+    assertThat(EmbeddedResourceCache.get(body("<p>"), PARSER, PAGE_URL, USER_AGENT, ENCODING, "",
+        "", this::loadNone)).isNull();
+    assertThat(EmbeddedResourceCache.get(body("<p>"), PARSER, PAGE_URL, USER_AGENT, ENCODING, "",
+        "", this::loadNone)).isNull();
+
+    assertThat(loads).hasValue(1);
+  }
+
+  @Test
+  public void shouldResolveResourcesEveryTimeWhenCacheIsDisabledOnTestStart() throws Exception {
+    EmbeddedResourceCache.configure(0);
+    get("<img src='a.png'>", "");
+    get("<img src='a.png'>", "");
+
+    assertThat(loads).hasValue(2);
+  }
+
+  @Test
+  public void shouldResolveResourcesOnceWhenSamePageIsReceivedConcurrently() throws Exception {
+    CountDownLatch loading = new CountDownLatch(1);
+    CountDownLatch release = new CountDownLatch(1);
+    List<EmbeddedResource> resources = Collections.singletonList(
+        EmbeddedResource.of(new URL("http://localhost/a.png")));
+    ExecutorService executor = Executors.newSingleThreadExecutor();
+    try {
+      Future<List<EmbeddedResource>> first = executor.submit(() ->
+          EmbeddedResourceCache.get(body("<img src='a.png'>"), PARSER, PAGE_URL, USER_AGENT,
+              ENCODING, "", "", () -> {
+                loads.incrementAndGet();
+                loading.countDown();
+                awaitUninterruptibly(release);
+                return resources;
+              }));
+      loading.await();
+      Future<List<EmbeddedResource>> second = CompletableFuture.supplyAsync(() -> {
+        try {
+          return get("<img src='a.png'>", "");
+        } catch (Exception e) {
+          throw new IllegalStateException(e);
+        }
+      });
+      release.countDown();
+
+      assertThat(second.get(5, TimeUnit.SECONDS)).isSameAs(first.get(5, TimeUnit.SECONDS));
+      assertThat(loads).hasValue(1);
+    } finally {
+      executor.shutdownNow();
+    }
+  }
+
+  @Test
+  public void shouldNotCacheFailedParse() throws Exception {
+    assertThatThrownBy(() -> EmbeddedResourceCache.get(body("<img"), PARSER, PAGE_URL,
+        USER_AGENT, ENCODING, "", "", () -> {
+          loads.incrementAndGet();
+          throw new LinkExtractorParseException("broken page");
+        })).isInstanceOf(LinkExtractorParseException.class);
+    EmbeddedResourceCache.get(body("<img"), PARSER, PAGE_URL, USER_AGENT, ENCODING, "", "",
+        this::loadNone);
+
+    assertThat(loads).hasValue(2);
+  }
+
+  private List<EmbeddedResource> get(String page, String excludeRegex) throws Exception {
+    List<EmbeddedResource> resources = Collections.singletonList(
+        EmbeddedResource.of(new URL("http://localhost/a.png")));
+    return EmbeddedResourceCache.get(body(page), PARSER, PAGE_URL, USER_AGENT, ENCODING, "",
+        excludeRegex, () -> {
+          loads.incrementAndGet();
+          return resources;
+        });
+  }
+
+  private static void awaitUninterruptibly(CountDownLatch latch) {
+    try {
+      latch.await();
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+    }
+  }
+
+  private List<EmbeddedResource> loadNone() {
+    loads.incrementAndGet();
+    return null;
+  }
+
+  private static byte[] body(String page) {
+    return page.getBytes(StandardCharsets.UTF_8);
+  }
+}
@@ -8,8 +8,21 @@ import static org.mockito.Mockito.when;
 
 import com.blazemeter.jmeter.http2.HTTP2TestBase;
 import com.blazemeter.jmeter.http2.core.HTTP2JettyClient;
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.concurrent.TimeoutException;
+import org.apache.jmeter.protocol.http.sampler.HTTPSampleResult;
+import org.apache.jmeter.protocol.http.util.HTTPConstants;
+import org.apache.jmeter.reporters.ResultCollector;
+import org.apache.jmeter.reporters.ResultCollectorHelper;
+import org.apache.jmeter.samplers.SampleEvent;
 import org.apache.jmeter.samplers.SampleResult;
+import org.apache.jmeter.samplers.SampleSaveConfiguration;
+import org.apache.jmeter.save.SaveService;
+import org.apache.jmeter.visualizers.Visualizer;
 import org.assertj.core.api.JUnitSoftAssertions;
 import org.junit.Before;
 import org.junit.BeforeClass;
@@ -51,4 +64,58 @@ public class HTTP2SamplerTest extends HTTP2TestBase {
         .thenThrow(new TimeoutException());
     validateErrorResponse(sampler.sample(), TimeoutException.class.getName());
   }
+
+  @Test
+  public void shouldRoundTripResultThroughSaveServiceWhenSavedAsXml() throws Exception {
+    sampler.setProtocol(HTTPConstants.PROTOCOL_HTTPS);
+    sampler.setDomain("localhost");
+    sampler.setPath("/test");
+    sampler.setMethod(HTTPConstants.POST);
+    when(client.sample(any(), any(), anyBoolean(), anyInt())).thenAnswer(invocation -> {
+      HTTPSampleResult result = invocation.getArgument(1);
+      result.setQueryString("test1=value");
+      result.setResponseCode("200");
+      result.setSuccessful(true);
+      return result;
+    });
+    SampleResult result = sampler.sample();
+    SampleSaveConfiguration saveConfig = new SampleSaveConfiguration();
+    saveConfig.setAsXml(true);
+    saveConfig.setSamplerData(true);
+    result.setSaveConfig(saveConfig);
+
+    StringWriter xml = new StringWriter();
+    xml.write("<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n<testResults version=\"1.2\">\n");
+    SaveService.saveSampleResult(new SampleEvent(result, "group"), xml);
+    xml.write("</testResults>\n");
+    List<SampleResult> loaded = new ArrayList<>();
+    SaveService.loadTestResults(
+        new ByteArrayInputStream(xml.toString().getBytes(StandardCharsets.UTF_8)),
+        new ResultCollectorHelper(new ResultCollector(), new CollectingVisualizer(loaded)));
+
+    softly.assertThat(result.getClass()).isEqualTo(HTTPSampleResult.class);
+    softly.assertThat(xml.toString()).contains("<httpSample ");
+    softly.assertThat(loaded).hasSize(1);
+    softly.assertThat(((HTTPSampleResult) loaded.get(0)).getQueryString())
+        .isEqualTo("test1=value");
+  }
+
+  private static class CollectingVisualizer implements Visualizer {
+
+    private final List<SampleResult> results;
+
+    private CollectingVisualizer(List<SampleResult> results) {
+      this.results = results;
+    }
+
+    @Override
+    public void add(SampleResult sample) {
+      results.add(sample);
+    }
+
+    @Override
+    public boolean isStats() {
+      return false;
+    }
+  }
 }